@@ -0,0 +1,96 @@
+package com.iabtcf.benchmarks;
+
+/*-
+ * #%L
+ * IAB TCF Java Benchmarks
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.iabtcf.utils.Base64Url;
+
+/**
+ * Compares {@link Base64Url} against the JDK url decoder on random, unpadded segments of the
+ * lengths seen in consent strings: short OOB segments up to core segments with long vendor
+ * sections.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Base64DecodeBenchmark {
+
+    @Param({"30", "120", "400"})
+    public int length;
+
+    private String segment;
+    private byte[] segmentBytes;
+    private byte[] dst;
+
+    @Setup
+    public void setup() {
+        byte[] bytes = new byte[length * 3 / 4];
+        new Random(0x7cf).nextBytes(bytes);
+
+        segment = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        segmentBytes = segment.getBytes(StandardCharsets.US_ASCII);
+        dst = new byte[Base64Url.maxDecodedLength(segment.length())];
+    }
+
+    @Benchmark
+    public byte[] jdk() {
+        return Base64.getUrlDecoder().decode(segment);
+    }
+
+    @Benchmark
+    public int jdkIntoBuffer() {
+        return Base64.getUrlDecoder().decode(segmentBytes, dst);
+    }
+
+    @Benchmark
+    public int base64Url() {
+        return Base64Url.decode(segment, 0, segment.length(), dst, 0);
+    }
+
+    @Benchmark
+    public int base64UrlAscii() {
+        return Base64Url.decode(segmentBytes, 0, segmentBytes.length, dst, 0);
+    }
+
+    @Benchmark
+    public int base64UrlValidate() {
+        return Base64Url.decodedLength(segment, 0, segment.length());
+    }
+}
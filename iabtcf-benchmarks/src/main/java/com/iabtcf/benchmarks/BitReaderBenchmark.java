@@ -0,0 +1,151 @@
+package com.iabtcf.benchmarks;
+
+/*-
+ * #%L
+ * IAB TCF Java Benchmarks
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.iabtcf.utils.BitReader;
+
+/**
+ * Compares the word at a time {@link BitReader#readBits(int, int)} against the per width methods it
+ * replaced, kept in {@link LegacyBitReader}. Every invocation reads the same set of random, unaligned
+ * offsets so all bit positions within a byte are covered.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BitReaderBenchmark {
+    private static final int READS = 1024;
+
+    @Param({"1", "6", "12", "16", "36"})
+    public int width;
+
+    private BitReader reader;
+    private LegacyBitReader legacy;
+    private int[] offsets;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(0x7cf);
+        byte[] buffer = new byte[512];
+        r.nextBytes(buffer);
+
+        reader = new BitReader(buffer);
+        legacy = new LegacyBitReader(buffer);
+        offsets = new int[READS];
+        for (int i = 0; i < READS; i++) {
+            offsets[i] = r.nextInt(buffer.length * 8 - width);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public long legacyPerWidth() {
+        long sum = 0;
+        for (int offset : offsets) {
+            switch (width) {
+                case 1:
+                    sum += legacy.readBits1(offset) ? 1 : 0;
+                    break;
+                case 6:
+                    sum += legacy.readBits6(offset);
+                    break;
+                case 12:
+                    sum += legacy.readBits12(offset);
+                    break;
+                case 16:
+                    sum += legacy.readBits16(offset);
+                    break;
+                default:
+                    sum += legacy.readBits36(offset);
+                    break;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * The per width methods of the current reader, dispatched the same way as
+     * {@link #legacyPerWidth()}.
+     */
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public long perWidth() {
+        long sum = 0;
+        for (int offset : offsets) {
+            switch (width) {
+                case 1:
+                    sum += reader.readBits1(offset) ? 1 : 0;
+                    break;
+                case 6:
+                    sum += reader.readBits6(offset);
+                    break;
+                case 12:
+                    sum += reader.readBits12(offset);
+                    break;
+                case 16:
+                    sum += reader.readBits16(offset);
+                    break;
+                default:
+                    sum += reader.readBits36(offset);
+                    break;
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public long readBits() {
+        long sum = 0;
+        for (int offset : offsets) {
+            sum += reader.readBits(offset, width);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public long readBitsUnchecked() {
+        long sum = 0;
+        for (int offset : offsets) {
+            sum += reader.readBitsUnchecked(offset, width);
+        }
+        return sum;
+    }
+}
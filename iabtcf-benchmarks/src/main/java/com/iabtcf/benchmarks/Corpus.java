@@ -0,0 +1,189 @@
+package com.iabtcf.benchmarks;
+
+/*-
+ * #%L
+ * IAB TCF Java Benchmarks
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Instant;
+import java.util.Random;
+
+import com.iabtcf.encoder.PublisherRestrictionEntry;
+import com.iabtcf.encoder.TCStringEncoder;
+import com.iabtcf.utils.BitSetIntIterable;
+import com.iabtcf.v2.RestrictionType;
+
+/**
+ * A fixed corpus of consent strings shaped like the ones seen in bid request traffic. The strings
+ * are generated with the encoder from a seeded random source, so every run benchmarks the exact
+ * same inputs.
+ *
+ * The encoder picks whichever of the bit field or range encoding is smaller. Sparse vendor sets
+ * therefore produce bit field encoded vendor sections and long contiguous runs produce range
+ * encoded ones.
+ */
+public enum Corpus {
+    /**
+     * Core segment only, vendor sections are bit field encoded.
+     */
+    BITFIELD {
+        @Override
+        TCStringEncoder.Builder builder(Random r) {
+            return core(r)
+                .addVendorConsent(sparse(r, MAX_VENDOR_ID, 3))
+                .addVendorLegitimateInterest(sparse(r, MAX_VENDOR_ID, 5));
+        }
+    },
+
+    /**
+     * Core segment only, vendor sections are range encoded.
+     */
+    RANGE {
+        @Override
+        TCStringEncoder.Builder builder(Random r) {
+            return core(r)
+                .addVendorConsent(runs(r, MAX_VENDOR_ID, 4))
+                .addVendorLegitimateInterest(runs(r, MAX_VENDOR_ID, 8));
+        }
+    },
+
+    /**
+     * Bit field encoded core segment followed by the disclosed vendors, allowed vendors and
+     * publisher TC segments.
+     */
+    BITFIELD_OOB {
+        @Override
+        TCStringEncoder.Builder builder(Random r) {
+            return BITFIELD.builder(r)
+                .addDisclosedVendors(sparse(r, MAX_VENDOR_ID, 2))
+                .addAllowedVendors(sparse(r, MAX_VENDOR_ID, 4))
+                .addPubPurposesConsent(BitSetIntIterable.from(1, 2, 3, 4))
+                .addPubPurposesLITransparency(BitSetIntIterable.from(7, 9))
+                .addCustomPurposesConsent(BitSetIntIterable.from(1, 3))
+                .addCustomPurposesLITransparency(BitSetIntIterable.from(2));
+        }
+    },
+
+    /**
+     * Range encoded core segment carrying publisher restrictions.
+     */
+    RANGE_RESTRICTIONS {
+        @Override
+        TCStringEncoder.Builder builder(Random r) {
+            TCStringEncoder.Builder b = RANGE.builder(r);
+            RestrictionType[] types = RestrictionType.values();
+            for (int purposeId = 1; purposeId <= 6; purposeId++) {
+                b.addPublisherRestrictionEntry(PublisherRestrictionEntry.newBuilder()
+                    .purposeId(purposeId)
+                    .restrictionType(types[purposeId % 3])
+                    .addVendor(runs(r, MAX_VENDOR_ID, 8))
+                    .build());
+            }
+            return b;
+        }
+    },
+
+    /**
+     * Range encoded core segment with publisher restrictions followed by all OOB segments.
+     */
+    RANGE_RESTRICTIONS_OOB {
+        @Override
+        TCStringEncoder.Builder builder(Random r) {
+            return RANGE_RESTRICTIONS.builder(r)
+                .addDisclosedVendors(runs(r, MAX_VENDOR_ID, 6))
+                .addAllowedVendors(runs(r, MAX_VENDOR_ID, 6))
+                .addPubPurposesConsent(BitSetIntIterable.from(1, 2, 3, 4));
+        }
+    };
+
+    /**
+     * Roughly the size of the GVL at the time of writing.
+     */
+    static final int MAX_VENDOR_ID = 1000;
+
+    private static final long SEED = 0x7cf;
+    private static final Instant CREATED = Instant.parse("2020-06-01T10:00:00Z");
+
+    private String encoded;
+
+    abstract TCStringEncoder.Builder builder(Random r);
+
+    /**
+     * The base64 url encoded consent string.
+     */
+    public String consentString() {
+        if (encoded == null) {
+            encoded = newBuilder().encode();
+        }
+        return encoded;
+    }
+
+    /**
+     * A builder producing {@link #consentString()}, used by the encoder benchmarks.
+     */
+    public TCStringEncoder.Builder newBuilder() {
+        return builder(new Random(SEED));
+    }
+
+    private static TCStringEncoder.Builder core(Random r) {
+        return TCStringEncoder.newBuilder()
+            .version(2)
+            .created(CREATED)
+            .lastUpdated(CREATED.plusSeconds(r.nextInt(86400)))
+            .cmpId(10)
+            .cmpVersion(22)
+            .consentScreen(1)
+            .consentLanguage("FR")
+            .vendorListVersion(48)
+            .tcfPolicyVersion(2)
+            .isServiceSpecific(true)
+            .addSpecialFeatureOptIns(BitSetIntIterable.from(1))
+            .addPurposesConsent(BitSetIntIterable.from(1, 2, 3, 4, 7, 9, 10))
+            .addPurposesLITransparency(BitSetIntIterable.from(2, 7, 8, 9, 10))
+            .publisherCC("DE");
+    }
+
+    /**
+     * Roughly one in {@code oneIn} vendors from 1 to max.
+     */
+    static BitSetIntIterable sparse(Random r, int max, int oneIn) {
+        BitSetIntIterable.Builder b = BitSetIntIterable.newBuilder();
+        for (int i = 1; i <= max; i++) {
+            if (r.nextInt(oneIn) == 0) {
+                b.add(i);
+            }
+        }
+        return b.build();
+    }
+
+    /**
+     * Roughly {@code count} contiguous runs of vendors between 1 and max.
+     */
+    static BitSetIntIterable runs(Random r, int max, int count) {
+        BitSetIntIterable.Builder b = BitSetIntIterable.newBuilder();
+        int span = max / count;
+        for (int i = 0; i < count; i++) {
+            int start = 1 + i * span + r.nextInt(span / 4 + 1);
+            int end = Math.min(max, start + span / 2 + r.nextInt(span / 4 + 1));
+            for (int v = start; v <= end; v++) {
+                b.add(v);
+            }
+        }
+        return b.build();
+    }
+}
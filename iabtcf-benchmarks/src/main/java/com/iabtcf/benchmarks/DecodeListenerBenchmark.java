@@ -0,0 +1,90 @@
+package com.iabtcf.benchmarks;
+
+/*-
+ * #%L
+ * IAB TCF Java Benchmarks
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.iabtcf.decoder.DecodeListener;
+import com.iabtcf.decoder.DecodeListeners;
+import com.iabtcf.decoder.DecoderOption;
+import com.iabtcf.decoder.TCString;
+
+/**
+ * Measures the overhead of the {@link DecodeListener} hooks. Without a registered listener the
+ * results should match {@link TCStringDecodeBenchmark}, with a listener doing nothing they show the
+ * cost of taking the timings.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecodeListenerBenchmark {
+
+    @Param({"BITFIELD_OOB", "RANGE_RESTRICTIONS"})
+    public Corpus corpus;
+
+    @Param({"false", "true"})
+    public boolean registered;
+
+    @Param({"755"})
+    public int vendorId;
+
+    private String consentString;
+
+    @Setup
+    public void setup() {
+        consentString = corpus.consentString();
+        if (registered) {
+            DecodeListeners.register(new DecodeListener() {
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        DecodeListeners.unregister();
+    }
+
+    @Benchmark
+    public TCString decodeEager() {
+        return TCString.decode(consentString);
+    }
+
+    @Benchmark
+    public boolean lazyVendorConsentContains() {
+        return TCString.decode(consentString, DecoderOption.LAZY).getVendorConsent().contains(vendorId);
+    }
+}
@@ -0,0 +1,183 @@
+package com.iabtcf.benchmarks;
+
+/*-
+ * #%L
+ * IAB TCF Java Benchmarks
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.iabtcf.exceptions.ByteParseException;
+
+/**
+ * A frozen copy of the byte at a time, per width {@code BitReader} read methods the decoder used
+ * before switching to word at a time reads. Kept as the baseline of {@link BitReaderBenchmark}.
+ */
+class LegacyBitReader {
+    private final byte[] buffer;
+
+    LegacyBitReader(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    private void ensureReadable(int offset, int length) {
+        if (offset + length > buffer.length) {
+            throw new ByteParseException(String.format("read %d bytes at index %d out of bounds for buffer length %d",
+                    length, offset, buffer.length));
+        }
+    }
+
+    String readStr2(int offset) {
+        return String
+            .valueOf(new char[] {(char) ('A' + readBits6(offset)), (char) ('A' + readBits6(offset + 6))});
+    }
+
+    boolean readBits1(int offset) {
+        int startByte = offset >> 3;
+        int bitPos = offset % 8;
+
+        ensureReadable(startByte, 1);
+
+        return ((buffer[startByte] >>> (7 - bitPos)) & 1) == 1;
+    }
+
+    byte readBits2(int offset) {
+        return readByteBits(offset, 2);
+    }
+
+    byte readBits3(int offset) {
+        return readByteBits(offset, 3);
+    }
+
+    byte readBits6(int offset) {
+        int startByte = offset >> 3;
+        int bitPos = offset % 8;
+        int n = 8 - bitPos;
+
+        if (n < 6) {
+            ensureReadable(startByte, 2);
+            return (byte) (unsafeReadLsb(buffer[startByte], 6 - n, n)
+                    | unsafeReadMsb(buffer[startByte + 1], 0, 6 - n));
+        } else {
+            ensureReadable(startByte, 1);
+            return unsafeReadMsb(buffer[startByte], bitPos, 6);
+        }
+    }
+
+    /**
+     * When nbits <= 8
+     *
+     * @throws ByteParseException
+     */
+    private byte readByteBits(int offset, int nbits) {
+        int startByte = offset >> 3;
+        int bitPos = offset % 8;
+        int n = 8 - bitPos;
+
+        if (n < nbits) {
+            ensureReadable(startByte, 2);
+            return (byte) (unsafeReadLsb(buffer[startByte], nbits - n, n)
+                    | unsafeReadMsb(buffer[startByte + 1], 0, nbits - n));
+        } else {
+            ensureReadable(startByte, 1);
+            return unsafeReadMsb(buffer[startByte], bitPos, nbits);
+        }
+    }
+
+    int readBits12(int offset) {
+        int startByte = offset >> 3;
+        int bitPos = offset % 8;
+        int n = 8 - bitPos;
+
+        if (n < 4) {
+            ensureReadable(startByte, 3);
+            return (unsafeReadLsb(buffer[startByte], bitPos, n) & 0xFF) << 4
+                    | (buffer[startByte + 1] & 0xFF) << (bitPos - 4)
+                    | (unsafeReadMsb(buffer[startByte + 2], 0, bitPos - 4) & 0xFF);
+        } else {
+            ensureReadable(startByte, 2);
+            return (unsafeReadLsb(buffer[startByte], bitPos, n) & 0xFF) << 4
+                    | (unsafeReadMsb(buffer[startByte + 1], 0, 4 + bitPos) & 0xFF);
+        }
+    }
+
+    int readBits16(int offset) {
+        int startByte = offset >> 3;
+        int bitPos = offset % 8;
+        int n = 8 - bitPos;
+
+        if (n < 8) {
+            ensureReadable(startByte, 3);
+            return ((unsafeReadLsb(buffer[startByte], bitPos, n) & 0xFF) << 8)
+                    | (buffer[startByte + 1] & 0xFF) << bitPos
+                    | (unsafeReadMsb(buffer[startByte + 2], 0, bitPos) & 0xFF);
+        } else {
+            ensureReadable(startByte, 2);
+            return (buffer[startByte] & 0xFF) << 8
+                    | (buffer[startByte + 1] & 0xFF);
+        }
+    }
+
+    int readBits24(int offset) {
+        int startByte = offset >> 3;
+        int bitPos = offset % 8;
+        int n = 8 - bitPos;
+
+        if (n < 8) {
+            ensureReadable(startByte, 4);
+            return ((unsafeReadLsb(buffer[startByte], bitPos, n) & 0xFF) << 16)
+                    | (buffer[startByte + 1] & 0xFF) << (8 + bitPos)
+                    | (buffer[startByte + 2] & 0xFF) << bitPos
+                    | (unsafeReadMsb(buffer[startByte + 3], 0, bitPos) & 0xFF);
+        } else {
+            ensureReadable(startByte, 3);
+            return (buffer[startByte] & 0xFF) << 16
+                    | (buffer[startByte + 1] & 0xFF) << 8
+                    | (buffer[startByte + 2] & 0xFF);
+        }
+    }
+
+    long readBits36(int offset) {
+        int startByte = offset >> 3;
+        int bitPos = offset % 8;
+        int n = 8 - bitPos; // # bits to read
+
+        if (n < 4) {
+            ensureReadable(startByte, 6);
+            return ((long) unsafeReadLsb(buffer[startByte], bitPos, n) & 0xFF) << 28
+                    | ((long) buffer[startByte + 1] & 0xFF) << (20 + bitPos)
+                    | ((long) buffer[startByte + 2] & 0xFF) << (12 + bitPos)
+                    | ((long) buffer[startByte + 3] & 0xFF) << (4 + bitPos)
+                    | ((long) buffer[startByte + 4] & 0xFF) << (bitPos - 4)
+                    | ((long) unsafeReadMsb(buffer[startByte + 5], 0, bitPos - 4) & 0xFF);
+        } else {
+            ensureReadable(startByte, 5);
+            return ((long) unsafeReadLsb(buffer[startByte], bitPos, n) & 0xFF) << 28
+                    | ((long) buffer[startByte + 1] & 0xFF) << (20 + bitPos)
+                    | ((long) buffer[startByte + 2] & 0xFF) << (12 + bitPos)
+                    | ((long) buffer[startByte + 3] & 0xFF) << (4 + bitPos)
+                    | ((long) unsafeReadMsb(buffer[startByte + 4], 0, 4 + bitPos) & 0xFF);
+        }
+    }
+
+    private byte unsafeReadMsb(byte from, int offset, int length) {
+        return length == 0 ? 0 : (byte) ((from >>> ((8 - length) - offset)) & ((1 << length) - 1));
+    }
+
+    private byte unsafeReadLsb(byte from, int offset, int length) {
+        return length == 0 ? from : (byte) ((from & ((1 << length) - 1)) << offset);
+    }
+}
@@ -0,0 +1,91 @@
+package com.iabtcf.benchmarks;
+
+/*-
+ * #%L
+ * IAB TCF Java Benchmarks
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.iabtcf.decoder.DecodeResult;
+import com.iabtcf.decoder.TCString;
+import com.iabtcf.exceptions.TCStringDecodeException;
+
+/**
+ * Measures decoding truncated consent strings, as found in bot traffic and cut off cookies, with
+ * the throwing {@link TCString#decode(String, com.iabtcf.decoder.DecoderOption...)} and with
+ * {@link TCString#tryDecode(CharSequence, com.iabtcf.decoder.DecoderOption...)}. The valid variants
+ * show what validating up front costs when the string is well formed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MalformedDecodeBenchmark {
+
+    @Param({"BITFIELD", "RANGE_RESTRICTIONS"})
+    public Corpus corpus;
+
+    private String consentString;
+    private String truncated;
+
+    @Setup
+    public void setup() {
+        consentString = corpus.consentString();
+        // cut within the vendor sections
+        truncated = consentString.substring(0, consentString.length() / 2);
+    }
+
+    @Benchmark
+    public TCString decodeTruncated() {
+        try {
+            return TCString.decode(truncated);
+        } catch (TCStringDecodeException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public DecodeResult tryDecodeTruncated() {
+        return TCString.tryDecode(truncated);
+    }
+
+    @Benchmark
+    public TCString decodeValid() {
+        return TCString.decode(consentString);
+    }
+
+    @Benchmark
+    public DecodeResult tryDecodeValid() {
+        return TCString.tryDecode(consentString);
+    }
+}
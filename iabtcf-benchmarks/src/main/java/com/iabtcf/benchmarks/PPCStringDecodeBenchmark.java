@@ -0,0 +1,88 @@
+package com.iabtcf.benchmarks;
+
+/*-
+ * #%L
+ * IAB TCF Java Benchmarks
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.iabtcf.decoder.DecoderOption;
+import com.iabtcf.decoder.PPCString;
+
+/**
+ * Measures decoding of TCF v1 publisher purposes consent strings.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PPCStringDecodeBenchmark {
+
+    @Param({"BOxgOqAOxgOqAAAABBENC2-AAAAtHAA"})
+    public String consentString;
+
+    @Benchmark
+    public PPCString decode() {
+        return PPCString.decode(consentString);
+    }
+
+    @Benchmark
+    public PPCString decodeLazy() {
+        return PPCString.decode(consentString, DecoderOption.LAZY);
+    }
+
+    @Benchmark
+    public boolean standardPurposesAllowedContains() {
+        return PPCString.decode(consentString).getStandardPurposesAllowed().contains(7);
+    }
+
+    @Benchmark
+    public boolean lazyStandardPurposesAllowedContains() {
+        return PPCString.decode(consentString, DecoderOption.LAZY).getStandardPurposesAllowed().contains(7);
+    }
+
+    @Benchmark
+    public void allFields(Blackhole bh) {
+        PPCString ppcString = PPCString.decode(consentString);
+        bh.consume(ppcString.getCreated());
+        bh.consume(ppcString.getLastUpdated());
+        bh.consume(ppcString.getCmpId());
+        bh.consume(ppcString.getCmpVersion());
+        bh.consume(ppcString.getConsentScreen());
+        bh.consume(ppcString.getConsentLanguage());
+        bh.consume(ppcString.getVendorListVersion());
+        bh.consume(ppcString.getPublisherPurposesVersion());
+        bh.consume(ppcString.getStandardPurposesAllowed());
+        bh.consume(ppcString.getCustomPurposesBitField());
+    }
+}
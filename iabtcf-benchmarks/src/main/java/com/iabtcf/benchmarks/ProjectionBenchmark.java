@@ -0,0 +1,92 @@
+package com.iabtcf.benchmarks;
+
+/*-
+ * #%L
+ * IAB TCF Java Benchmarks
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.iabtcf.decoder.DecoderOption;
+import com.iabtcf.decoder.ProjectedFields;
+import com.iabtcf.decoder.Projection;
+import com.iabtcf.decoder.TCString;
+import com.iabtcf.utils.FieldDefs;
+
+/**
+ * Compares reading header fields with a compiled {@link Projection} to a {@link DecoderOption#LAZY}
+ * decode followed by the getters.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProjectionBenchmark {
+
+    private static final Projection LAST_UPDATED = Projection.of(FieldDefs.CORE_LAST_UPDATED);
+    private static final Projection ROUTING =
+            Projection.of(EnumSet.of(FieldDefs.CORE_CMP_ID, FieldDefs.CORE_VENDOR_LIST_VERSION));
+
+    @Param({"BITFIELD", "RANGE_RESTRICTIONS"})
+    public Corpus corpus;
+
+    private String consentString;
+
+    @Setup
+    public void setup() {
+        consentString = corpus.consentString();
+    }
+
+    @Benchmark
+    public Instant projectLastUpdated() {
+        return LAST_UPDATED.project(consentString).getInstant(FieldDefs.CORE_LAST_UPDATED);
+    }
+
+    @Benchmark
+    public Instant lazyLastUpdated() {
+        return TCString.decode(consentString, DecoderOption.LAZY).getLastUpdated();
+    }
+
+    @Benchmark
+    public long projectRouting() {
+        ProjectedFields fields = ROUTING.project(consentString);
+        return fields.get(FieldDefs.CORE_CMP_ID) << 12 | fields.get(FieldDefs.CORE_VENDOR_LIST_VERSION);
+    }
+
+    @Benchmark
+    public long lazyRouting() {
+        TCString tcString = TCString.decode(consentString, DecoderOption.LAZY);
+        return tcString.getCmpId() << 12 | tcString.getVendorListVersion();
+    }
+}
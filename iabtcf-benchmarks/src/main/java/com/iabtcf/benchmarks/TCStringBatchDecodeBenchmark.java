@@ -0,0 +1,112 @@
+package com.iabtcf.benchmarks;
+
+/*-
+ * #%L
+ * IAB TCF Java Benchmarks
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.iabtcf.decoder.TCString;
+import com.iabtcf.decoder.TCStringBatch;
+import com.iabtcf.utils.FieldDefs;
+
+/**
+ * Compares counting the strings of a batch consenting to a vendor with {@link TCStringBatch}
+ * against decoding a {@link TCString} per string. Scores are per string.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TCStringBatchDecodeBenchmark {
+    private static final int BATCH_SIZE = 1024;
+
+    @Param
+    public Corpus corpus;
+
+    @Param({"755"})
+    public int vendorId;
+
+    private List<String> consentStrings;
+    private TCStringBatch cmpIdBatch;
+    private TCStringBatch vendorConsentBatch;
+
+    @Setup
+    public void setup() {
+        consentStrings = new ArrayList<>(Collections.nCopies(BATCH_SIZE, corpus.consentString()));
+        cmpIdBatch = TCStringBatch.newBuilder().capacity(BATCH_SIZE).columns(FieldDefs.CORE_CMP_ID).build();
+        vendorConsentBatch = TCStringBatch.newBuilder()
+            .capacity(BATCH_SIZE)
+            .columns(FieldDefs.CORE_VENDOR_BITRANGE_FIELD)
+            .build();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int decodeEager() {
+        int count = 0;
+        for (String consentString : consentStrings) {
+            if (TCString.decode(consentString).hasVendorConsent(vendorId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int decodeBatch() {
+        vendorConsentBatch.decode(consentStrings);
+        int count = 0;
+        for (int row = 0; row < vendorConsentBatch.size(); row++) {
+            if (vendorConsentBatch.hasVendorConsent(row, vendorId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Projecting a single fixed field only decodes the leading characters of each string.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] decodeBatchCmpId() {
+        cmpIdBatch.decode(consentStrings);
+        return cmpIdBatch.getIntColumn(FieldDefs.CORE_CMP_ID);
+    }
+}
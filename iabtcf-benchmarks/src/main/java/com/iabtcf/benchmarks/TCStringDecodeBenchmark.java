@@ -0,0 +1,301 @@
+package com.iabtcf.benchmarks;
+
+/*-
+ * #%L
+ * IAB TCF Java Benchmarks
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.iabtcf.decoder.DecoderOption;
+import com.iabtcf.decoder.TCString;
+import com.iabtcf.decoder.TCStringCache;
+import com.iabtcf.decoder.TCStringPushDecoder;
+import com.iabtcf.decoder.TCStringView;
+import com.iabtcf.decoder.ValidationResult;
+import com.iabtcf.v2.PublisherRestriction;
+import com.iabtcf.v2.RestrictionType;
+
+/**
+ * Measures {@link TCString#decode(String, DecoderOption...)} for the eager and lazy modes, and
+ * the typical bid request access pattern of decoding a string only to query a single field.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TCStringDecodeBenchmark {
+
+    @Param
+    public Corpus corpus;
+
+    /**
+     * A vendor id near the end of the vendor sections, forcing a decode of the whole section.
+     */
+    @Param({"755"})
+    public int vendorId;
+
+    private String consentString;
+    private byte[] consentBytes;
+    private ByteBuffer directBuffer;
+    private TCStringCache cache;
+    private TCStringView view;
+    private TCStringPushDecoder pushDecoder;
+    private ByteBuffer chunks;
+    private String uri;
+    private int uriStart;
+    private int uriEnd;
+
+    @Setup
+    public void setup() {
+        consentString = corpus.consentString();
+        consentBytes = consentString.getBytes(StandardCharsets.US_ASCII);
+        directBuffer = ByteBuffer.allocateDirect(consentBytes.length);
+        directBuffer.put(consentBytes).flip();
+        cache = TCStringCache.newBuilder().build();
+        view = new TCStringView();
+        pushDecoder = new TCStringPushDecoder();
+        chunks = ByteBuffer.wrap(consentBytes);
+        uri = "/bid?gdpr=1&gdpr_consent=" + consentString.replace(".", "%2E") + "&us_privacy=1---";
+        uriStart = uri.indexOf("gdpr_consent=") + "gdpr_consent=".length();
+        uriEnd = uri.indexOf('&', uriStart);
+    }
+
+    @Benchmark
+    public TCString decodeEager() {
+        return TCString.decode(consentString);
+    }
+
+    /**
+     * The eager decode before the single pass decode, kept as the baseline of {@link #decodeEager()}.
+     * It scanned the layouts of all segments and then decoded every field through them, which is
+     * what the getters of a lazily decoded string still do, scanning the layouts on first use.
+     */
+    @Benchmark
+    public TCString decodeEagerLegacy() {
+        TCString tcString = TCString.decode(consentString, DecoderOption.LAZY);
+        tcString.getCreated();
+        tcString.getLastUpdated();
+        tcString.getConsentLanguage();
+        tcString.getSpecialFeatureOptIns();
+        tcString.getPurposesConsent();
+        tcString.getPurposesLITransparency();
+        tcString.getPublisherCC();
+        tcString.getVendorConsent();
+        tcString.getVendorLegitimateInterest();
+        tcString.getPublisherRestrictions();
+        tcString.getDisclosedVendors();
+        tcString.getAllowedVendors();
+        tcString.getPubPurposesConsent();
+        tcString.getPubPurposesLITransparency();
+        tcString.getCustomPurposesConsent();
+        tcString.getCustomPurposesLITransparency();
+        return tcString;
+    }
+
+    @Benchmark
+    public TCString decodeLazy() {
+        return TCString.decode(consentString, DecoderOption.LAZY);
+    }
+
+    @Benchmark
+    public TCString decodeStreaming() {
+        return TCString.decode(consentString, DecoderOption.STREAMING);
+    }
+
+    /**
+     * A repeatedly requested string served from the cache.
+     */
+    @Benchmark
+    public TCString decodeCached() {
+        return cache.decode(consentString);
+    }
+
+    /**
+     * Decodes the escaped gdpr_consent parameter of a request URI the way callers had to, taking a
+     * substring and unescaping it into another string.
+     */
+    @Benchmark
+    public TCString decodeUrlUnescaped() throws UnsupportedEncodingException {
+        return TCString.decode(URLDecoder.decode(uri.substring(uriStart, uriEnd), "UTF-8"));
+    }
+
+    /**
+     * Same as {@link #decodeUrlUnescaped()} unescaping while base64 decoding.
+     */
+    @Benchmark
+    public TCString decodeUrlEncoded() {
+        return TCString.decodeUrlEncoded(uri, uriStart, uriEnd);
+    }
+
+    /**
+     * Pushes the bytes in chunks of 16 as if read from a non blocking channel, reusing the decoder.
+     */
+    @Benchmark
+    public TCString decodePushed() {
+        pushDecoder.reset();
+        chunks.clear();
+        while (chunks.position() < consentBytes.length) {
+            chunks.limit(Math.min(chunks.position() + 16, consentBytes.length));
+            pushDecoder.feed(chunks);
+        }
+        pushDecoder.finish();
+        return pushDecoder.getTCString();
+    }
+
+    /**
+     * Decoding the ASCII bytes of a request, as held by the HTTP layer.
+     */
+    @Benchmark
+    public TCString decodeEagerBytes() {
+        return TCString.decode(consentBytes, 0, consentBytes.length);
+    }
+
+    @Benchmark
+    public TCString decodeEagerDirectBuffer() {
+        return TCString.decode(directBuffer);
+    }
+
+    @Benchmark
+    public boolean eagerVendorConsentContains() {
+        return TCString.decode(consentString).getVendorConsent().contains(vendorId);
+    }
+
+    @Benchmark
+    public boolean lazyVendorConsentContains() {
+        return TCString.decode(consentString, DecoderOption.LAZY).getVendorConsent().contains(vendorId);
+    }
+
+    @Benchmark
+    public boolean lazyVendorLegitimateInterestContains() {
+        return TCString.decode(consentString, DecoderOption.LAZY).getVendorLegitimateInterest().contains(vendorId);
+    }
+
+    /**
+     * Membership queries answered from the raw bits, without expanding the vendor section.
+     */
+    @Benchmark
+    public boolean lazyHasVendorConsent() {
+        return TCString.decode(consentString, DecoderOption.LAZY).hasVendorConsent(vendorId);
+    }
+
+    @Benchmark
+    public boolean lazyHasVendorLegitimateInterest() {
+        return TCString.decode(consentString, DecoderOption.LAZY).hasVendorLegitimateInterest(vendorId);
+    }
+
+    /**
+     * Validates as thoroughly as {@link #decodeEager()} without decoding any field.
+     */
+    @Benchmark
+    public ValidationResult validate() {
+        return TCString.validate(consentString);
+    }
+
+    /**
+     * A reused view, decoding without allocating.
+     */
+    @Benchmark
+    public boolean viewHasVendorConsent() {
+        return view.reset(consentString).hasVendorConsent(vendorId);
+    }
+
+    @Benchmark
+    public int viewCmpId() {
+        return view.reset(consentString).getCmpId();
+    }
+
+    @Benchmark
+    public int lazyCmpId() {
+        return TCString.decode(consentString, DecoderOption.LAZY).getCmpId();
+    }
+
+    @Benchmark
+    public int lazyVendorListVersion() {
+        return TCString.decode(consentString, DecoderOption.LAZY).getVendorListVersion();
+    }
+
+    /**
+     * A decoded string used as a map key.
+     */
+    @Benchmark
+    public int lazyHashCode() {
+        return TCString.decode(consentString, DecoderOption.LAZY).hashCode();
+    }
+
+    @Benchmark
+    public Object lazyPublisherRestrictions() {
+        return TCString.decode(consentString, DecoderOption.LAZY).getPublisherRestrictions();
+    }
+
+    /**
+     * How the vendor is restricted for purpose 3, scanning the list of restrictions.
+     */
+    @Benchmark
+    public RestrictionType lazyRestrictionFromList() {
+        for (PublisherRestriction restriction : TCString.decode(consentString, DecoderOption.LAZY)
+                .getPublisherRestrictions()) {
+            if (restriction.getPurposeId() == 3 && restriction.getVendorIds().contains(vendorId)) {
+                return restriction.getRestrictionType();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Same as {@link #lazyRestrictionFromList()} using the index.
+     */
+    @Benchmark
+    public RestrictionType lazyRestrictionFromIndex() {
+        return TCString.decode(consentString, DecoderOption.LAZY).getPublisherRestrictionIndex()
+            .getRestriction(3, vendorId);
+    }
+
+    @Benchmark
+    public boolean lazyDisclosedVendorsContains() {
+        return TCString.decode(consentString, DecoderOption.LAZY).getDisclosedVendors().contains(vendorId);
+    }
+
+    @Benchmark
+    public int streamingCmpId() {
+        return TCString.decode(consentString, DecoderOption.STREAMING).getCmpId();
+    }
+
+    @Benchmark
+    public boolean streamingVendorConsentContains() {
+        return TCString.decode(consentString, DecoderOption.STREAMING).getVendorConsent().contains(vendorId);
+    }
+}
@@ -0,0 +1,120 @@
+package com.iabtcf.benchmarks;
+
+/*-
+ * #%L
+ * IAB TCF Java Benchmarks
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.iabtcf.decoder.TCString;
+import com.iabtcf.encoder.TCStringEncoder;
+import com.iabtcf.utils.BitSetIntIterable;
+
+/**
+ * Measures decoding of TCF v1 consent strings, which are decoded by {@code TCStringV1}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TCStringV1DecodeBenchmark {
+
+    public enum Encoding {
+        BITFIELD,
+        RANGE,
+        RANGE_DEFAULT_CONSENT
+    }
+
+    @Param
+    public Encoding encoding;
+
+    @Param({"755"})
+    public int vendorId;
+
+    private String consentString;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(0x7cf);
+        BitSetIntIterable vendors = encoding == Encoding.BITFIELD
+                ? Corpus.sparse(r, Corpus.MAX_VENDOR_ID, 3)
+                : Corpus.runs(r, Corpus.MAX_VENDOR_ID, 4);
+
+        consentString = TCStringEncoder.newBuilder()
+            .version(1)
+            .created(Instant.parse("2020-06-01T10:00:00Z"))
+            .lastUpdated(Instant.parse("2020-06-01T10:00:00Z"))
+            .cmpId(10)
+            .cmpVersion(22)
+            .consentScreen(1)
+            .consentLanguage("FR")
+            .vendorListVersion(180)
+            .addPurposesConsent(BitSetIntIterable.from(1, 2, 3, 4, 5))
+            .defaultConsent(encoding == Encoding.RANGE_DEFAULT_CONSENT)
+            .addVendorConsent(vendors)
+            .encode();
+    }
+
+    @Benchmark
+    public TCString decode() {
+        return TCString.decode(consentString);
+    }
+
+    @Benchmark
+    public boolean vendorConsentContains() {
+        return TCString.decode(consentString).getVendorConsent().contains(vendorId);
+    }
+
+    @Benchmark
+    public int cmpId() {
+        return TCString.decode(consentString).getCmpId();
+    }
+
+    @Benchmark
+    public void allFields(Blackhole bh) {
+        TCString tcString = TCString.decode(consentString);
+        bh.consume(tcString.getCreated());
+        bh.consume(tcString.getLastUpdated());
+        bh.consume(tcString.getCmpId());
+        bh.consume(tcString.getCmpVersion());
+        bh.consume(tcString.getConsentScreen());
+        bh.consume(tcString.getConsentLanguage());
+        bh.consume(tcString.getVendorListVersion());
+        bh.consume(tcString.getPurposesConsent());
+        bh.consume(tcString.getVendorConsent());
+        bh.consume(tcString.getDefaultVendorConsent());
+    }
+}
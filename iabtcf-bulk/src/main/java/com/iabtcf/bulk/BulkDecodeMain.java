@@ -0,0 +1,85 @@
+package com.iabtcf.bulk;
+
+/*-
+ * #%L
+ * IAB TCF Java Bulk Decoder
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.iabtcf.decoder.DecoderOption;
+import com.iabtcf.decoder.TCString;
+
+/**
+ * Decodes a newline delimited file, or a directory of them, and prints the report.
+ *
+ * <pre>
+ * java -jar iabtcf-bulk.jar [--parallelism n] [--chunk-size bytes] [--lazy] path
+ * </pre>
+ */
+public final class BulkDecodeMain {
+    private BulkDecodeMain() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        BulkDecoder.Builder builder = BulkDecoder.newBuilder();
+        Path path = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--parallelism":
+                    builder.parallelism(Integer.parseInt(args[++i]));
+                    break;
+                case "--chunk-size":
+                    builder.chunkSize(Integer.parseInt(args[++i]));
+                    break;
+                case "--lazy":
+                    builder.decoderOptions(DecoderOption.LAZY);
+                    break;
+                default:
+                    path = Paths.get(args[i]);
+                    break;
+            }
+        }
+
+        if (path == null) {
+            System.err.println("usage: BulkDecodeMain [--parallelism n] [--chunk-size bytes] [--lazy] path");
+            System.exit(2);
+            return;
+        }
+
+        LongAdder versions = new LongAdder();
+        BulkDecodeReport report = builder.build().decode(path, new BulkDecodeSink() {
+            @Override
+            public void accept(Path source, long lineNumber, TCString tcString) {
+                // touch the string so lazy decodes do some work
+                versions.add(tcString.getVersion());
+            }
+
+            @Override
+            public void reject(Path source, long lineNumber, String line, RuntimeException cause) {
+                System.err.println(source + ":" + lineNumber + ": " + cause);
+            }
+        });
+        System.out.println(report);
+    }
+}
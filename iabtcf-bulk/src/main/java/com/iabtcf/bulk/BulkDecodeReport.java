@@ -0,0 +1,147 @@
+package com.iabtcf.bulk;
+
+/*-
+ * #%L
+ * IAB TCF Java Bulk Decoder
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The outcome of a {@link BulkDecoder} run.
+ */
+public final class BulkDecodeReport {
+    private final long decoded;
+    private final Map<Class<? extends RuntimeException>, Long> errorCounts;
+    private final Duration elapsed;
+    private final LatencyHistogram latencies;
+
+    BulkDecodeReport(long decoded, Map<Class<? extends RuntimeException>, Long> errorCounts, Duration elapsed,
+            LatencyHistogram latencies) {
+        this.decoded = decoded;
+        this.errorCounts = Collections.unmodifiableMap(new LinkedHashMap<>(errorCounts));
+        this.elapsed = elapsed;
+        this.latencies = latencies;
+    }
+
+    /**
+     * The number of non blank lines decoded, successfully or not.
+     */
+    public long getStrings() {
+        return decoded + getErrors();
+    }
+
+    /**
+     * The number of successfully decoded lines.
+     */
+    public long getDecoded() {
+        return decoded;
+    }
+
+    /**
+     * The number of lines failing to decode.
+     */
+    public long getErrors() {
+        long errors = 0;
+        for (long count : errorCounts.values()) {
+            errors += count;
+        }
+        return errors;
+    }
+
+    /**
+     * The number of lines failing to decode by the type of the exception thrown, e.g.
+     * ByteParseException, UnsupportedVersionException, InvalidRangeFieldException or
+     * IllegalArgumentException for invalid base64.
+     */
+    public Map<Class<? extends RuntimeException>, Long> getErrorCounts() {
+        return errorCounts;
+    }
+
+    /**
+     * The number of lines failing to decode with exactly the given exception type.
+     */
+    public long getErrorCount(Class<? extends RuntimeException> type) {
+        return errorCounts.getOrDefault(type, 0L);
+    }
+
+    /**
+     * Wall clock time of the run, including reading the input.
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Decoded lines, successfully or not, per second of wall clock time.
+     */
+    public double getThroughput() {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? 0 : getStrings() * 1e9 / nanos;
+    }
+
+    /**
+     * The time to decode a single line, in nanoseconds, at the given percentile from 0 to 100. The
+     * precision is about 6%.
+     */
+    public long getLatencyPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be within [0, 100]: " + percentile);
+        }
+        return latencies.percentile(percentile);
+    }
+
+    public long getLatencyP50() {
+        return getLatencyPercentile(50);
+    }
+
+    public long getLatencyP99() {
+        return getLatencyPercentile(99);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("BulkDecodeReport [strings=");
+        builder.append(getStrings());
+        builder.append(", decoded=");
+        builder.append(decoded);
+        builder.append(", errors=");
+        builder.append(getErrors());
+        for (Map.Entry<Class<? extends RuntimeException>, Long> e : errorCounts.entrySet()) {
+            builder.append(", ");
+            builder.append(e.getKey().getSimpleName());
+            builder.append("=");
+            builder.append(e.getValue());
+        }
+        builder.append(", elapsed=");
+        builder.append(elapsed);
+        builder.append(", throughput=");
+        builder.append(String.format("%.0f/s", getThroughput()));
+        builder.append(", p50=");
+        builder.append(getLatencyP50());
+        builder.append("ns, p99=");
+        builder.append(getLatencyP99());
+        builder.append("ns]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package com.iabtcf.bulk;
+
+/*-
+ * #%L
+ * IAB TCF Java Bulk Decoder
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.nio.file.Path;
+
+import com.iabtcf.decoder.TCString;
+
+/**
+ * Receives the results of a {@link BulkDecoder}. Methods are called concurrently from the worker
+ * threads of the decoder, in no particular order, implementations must be thread safe.
+ */
+public interface BulkDecodeSink {
+    /**
+     * Called for every successfully decoded line.
+     *
+     * @param source the file the line was read from
+     * @param lineNumber the 1 based number of the line within the file
+     */
+    void accept(Path source, long lineNumber, TCString tcString);
+
+    /**
+     * Called for every line failing to decode, does nothing by default. The failure is counted in
+     * the report either way.
+     *
+     * @param source the file the line was read from
+     * @param lineNumber the 1 based number of the line within the file
+     * @param line the content of the line
+     */
+    default void reject(Path source, long lineNumber, String line, RuntimeException cause) {
+    }
+}
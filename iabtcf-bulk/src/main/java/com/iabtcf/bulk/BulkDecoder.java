@@ -0,0 +1,383 @@
+package com.iabtcf.bulk;
+
+/*-
+ * #%L
+ * IAB TCF Java Bulk Decoder
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.iabtcf.decoder.DecoderOption;
+import com.iabtcf.decoder.TCString;
+
+/**
+ * Decodes newline delimited consent strings, one per line, e.g. request logs reprocessed for audits.
+ *
+ * The input is read sequentially in chunks of whole lines, each chunk is decoded on a fork join pool
+ * while the next ones are read. Chunks are decoded from their bytes without creating a String per
+ * line and their buffers are recycled, so the memory used is bounded by the chunk size times the
+ * number of chunks in flight, twice the parallelism. Blank lines are skipped, a trailing carriage
+ * return is ignored.
+ *
+ * <pre>
+ * BulkDecodeReport report = BulkDecoder.newBuilder()
+ *         .parallelism(8)
+ *         .build()
+ *         .decode(Paths.get("consent-strings.log"), (source, lineNumber, tcString) -&gt; { ... });
+ * </pre>
+ */
+public final class BulkDecoder {
+    private static final byte NEWLINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final int parallelism;
+    private final int chunkSize;
+    private final DecoderOption[] options;
+
+    private BulkDecoder(Builder builder) {
+        this.parallelism = builder.parallelism;
+        this.chunkSize = builder.chunkSize;
+        this.options = builder.options.clone();
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Decodes every line of the file, or of every regular file directly within the directory in
+     * the order of their names, handing the results to the sink.
+     *
+     * @throws IOException if reading the input fails
+     * @throws RuntimeException thrown by the sink, which stops the run
+     */
+    public BulkDecodeReport decode(Path path, BulkDecodeSink sink) throws IOException {
+        List<Path> files;
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> s = Files.list(path)) {
+                files = s.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+        } else {
+            files = Arrays.asList(path);
+        }
+
+        Run run = new Run(sink);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Path file : files) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    run.read(pool, file, in);
+                }
+            }
+            return run.finish();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Lines of a file held by buffer[0, length), the first of them being line firstLine.
+     */
+    private static final class Chunk {
+        byte[] buffer;
+        int length;
+        Path source;
+        long firstLine;
+
+        Chunk(int capacity) {
+            buffer = new byte[capacity];
+        }
+    }
+
+    /**
+     * Counters of a single worker thread, merged once the run completes.
+     */
+    private static final class WorkerStats {
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final Map<Class<? extends RuntimeException>, long[]> errors = new HashMap<>();
+        long decoded;
+    }
+
+    /**
+     * The state of a single call to decode.
+     */
+    private final class Run {
+        private final BulkDecodeSink sink;
+        private final long start = System.nanoTime();
+        private final int maxInFlight = 2 * parallelism;
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private final Queue<Chunk> free = new ConcurrentLinkedQueue<>();
+        private final Queue<WorkerStats> workers = new ConcurrentLinkedQueue<>();
+        private final ThreadLocal<WorkerStats> workerStats = ThreadLocal.withInitial(() -> {
+            WorkerStats stats = new WorkerStats();
+            workers.add(stats);
+            return stats;
+        });
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Run(BulkDecodeSink sink) {
+            this.sink = sink;
+        }
+
+        /**
+         * Splits the input into chunks ending at a line boundary and submits them to the pool.
+         */
+        void read(ForkJoinPool pool, Path source, InputStream in) throws IOException {
+            Chunk chunk = takeChunk();
+            int length = 0;
+            long line = 1;
+            boolean eof = false;
+
+            while (!eof && failure.get() == null) {
+                int n = in.read(chunk.buffer, length, chunk.buffer.length - length);
+                if (n < 0) {
+                    eof = true;
+                } else {
+                    length += n;
+                }
+                if (!eof && length < chunk.buffer.length) {
+                    continue;
+                }
+                if (length == 0) {
+                    break;
+                }
+
+                int end = eof ? length : lastNewline(chunk.buffer, length) + 1;
+                if (end == 0) {
+                    // a single line longer than the chunk, make room for the rest of it
+                    chunk.buffer = Arrays.copyOf(chunk.buffer, chunk.buffer.length * 2);
+                    continue;
+                }
+
+                Chunk next = takeChunk();
+                int remaining = length - end;
+                if (next.buffer.length < remaining) {
+                    next.buffer = new byte[chunk.buffer.length];
+                }
+                System.arraycopy(chunk.buffer, end, next.buffer, 0, remaining);
+
+                chunk.length = end;
+                chunk.source = source;
+                chunk.firstLine = line;
+                line += countNewlines(chunk.buffer, end);
+                submit(pool, chunk);
+
+                chunk = next;
+                length = remaining;
+            }
+            free.add(chunk);
+        }
+
+        private Chunk takeChunk() {
+            Chunk chunk = free.poll();
+            return chunk != null ? chunk : new Chunk(chunkSize);
+        }
+
+        private void submit(ForkJoinPool pool, Chunk chunk) throws InterruptedIOException {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for a chunk to be decoded");
+            }
+            pool.execute(new DecodeTask(this, chunk));
+        }
+
+        /**
+         * Waits for the submitted chunks and merges the worker counters.
+         */
+        BulkDecodeReport finish() throws InterruptedIOException {
+            try {
+                inFlight.acquire(maxInFlight);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for chunks to be decoded");
+            }
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+            Throwable t = failure.get();
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+
+            long decoded = 0;
+            LatencyHistogram latencies = new LatencyHistogram();
+            Map<Class<? extends RuntimeException>, Long> errorCounts = new HashMap<>();
+            for (WorkerStats stats : workers) {
+                decoded += stats.decoded;
+                latencies.merge(stats.latencies);
+                for (Map.Entry<Class<? extends RuntimeException>, long[]> e : stats.errors.entrySet()) {
+                    errorCounts.merge(e.getKey(), e.getValue()[0], Long::sum);
+                }
+            }
+            return new BulkDecodeReport(decoded, errorCounts, elapsed, latencies);
+        }
+    }
+
+    /**
+     * Decodes the lines of a chunk on a worker of the pool, then recycles the chunk.
+     */
+    private final class DecodeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Run run;
+        private final transient Chunk chunk;
+
+        DecodeTask(Run run, Chunk chunk) {
+            this.run = run;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                decodeLines(run.workerStats.get());
+            } catch (Throwable t) {
+                run.failure.compareAndSet(null, t);
+            } finally {
+                run.free.add(chunk);
+                run.inFlight.release();
+            }
+        }
+
+        private void decodeLines(WorkerStats stats) {
+            byte[] buffer = chunk.buffer;
+            long line = chunk.firstLine;
+            int pos = 0;
+
+            while (pos < chunk.length && run.failure.get() == null) {
+                int eol = pos;
+                while (eol < chunk.length && buffer[eol] != NEWLINE) {
+                    eol++;
+                }
+                int end = eol > pos && buffer[eol - 1] == CARRIAGE_RETURN ? eol - 1 : eol;
+
+                if (end > pos) {
+                    TCString tcString = null;
+                    RuntimeException error = null;
+
+                    long t0 = System.nanoTime();
+                    try {
+                        tcString = TCString.decode(buffer, pos, end - pos, options);
+                    } catch (RuntimeException e) {
+                        error = e;
+                    }
+                    stats.latencies.record(System.nanoTime() - t0);
+
+                    if (error == null) {
+                        stats.decoded++;
+                        run.sink.accept(chunk.source, line, tcString);
+                    } else {
+                        stats.errors.computeIfAbsent(error.getClass(), k -> new long[1])[0]++;
+                        run.sink.reject(chunk.source, line, new String(buffer, pos, end - pos,
+                                StandardCharsets.ISO_8859_1), error);
+                    }
+                }
+
+                pos = eol + 1;
+                line++;
+            }
+        }
+    }
+
+    private static int lastNewline(byte[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == NEWLINE) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int countNewlines(byte[] buffer, int length) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] == NEWLINE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static final class Builder {
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private int chunkSize = 1 << 20;
+        private DecoderOption[] options = {};
+
+        private Builder() {
+        }
+
+        /**
+         * The number of worker threads, the number of available processors by default.
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * The size in bytes of the chunks the input is split into, 1 MiB by default. Lines longer
+         * than a chunk are supported.
+         */
+        public Builder chunkSize(int chunkSize) {
+            if (chunkSize < 1) {
+                throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+            }
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * The options the lines are decoded with. Lines are decoded eagerly by default, so every
+         * invalid line is counted in the report. Lazily decoded lines may fail later, in the sink.
+         */
+        public Builder decoderOptions(DecoderOption... options) {
+            this.options = options.clone();
+            return this;
+        }
+
+        public BulkDecoder build() {
+            return new BulkDecoder(this);
+        }
+    }
+}
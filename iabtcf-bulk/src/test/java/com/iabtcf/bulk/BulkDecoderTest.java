@@ -0,0 +1,191 @@
+package com.iabtcf.bulk;
+
+/*-
+ * #%L
+ * IAB TCF Java Bulk Decoder
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.iabtcf.decoder.TCString;
+import com.iabtcf.exceptions.ByteParseException;
+import com.iabtcf.exceptions.UnsupportedVersionException;
+
+public class BulkDecoderTest {
+    private static final String V2 = "COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA";
+    private static final String V2_OOB =
+            "COrEAV4OrXx94ACABBENAHCIAD-AAAAAAACAAxAAAAgAIAwgAgAAAAEAgQAAAAAEAYQAQAAAACAAAABAAA"
+                    + ".IBAgAAAgAIAwgAgAAAAEAAAACA.QAagAQAgAIAwgA.cAAAAAAAITg=";
+    private static final String V1 = "BObdrPUOevsguAfDqFENCNAAAAAmeAAA";
+    private static final String TRUNCATED = "COtybn4PA_zT";
+    private static final String UNSUPPORTED_VERSION = "DOtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA";
+    private static final String INVALID_BASE64 = "COtybn4PA+zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA";
+
+    private static final String[] LINES = {V2, V2_OOB, "", V1, TRUNCATED, UNSUPPORTED_VERSION, INVALID_BASE64};
+
+    /**
+     * Collects the results by line number.
+     */
+    private static class CollectingSink implements BulkDecodeSink {
+        final Map<Long, TCString> decoded = new ConcurrentHashMap<>();
+        final Map<Long, String> rejected = new ConcurrentHashMap<>();
+
+        @Override
+        public void accept(Path source, long lineNumber, TCString tcString) {
+            decoded.put(lineNumber, tcString);
+        }
+
+        @Override
+        public void reject(Path source, long lineNumber, String line, RuntimeException cause) {
+            rejected.put(lineNumber, line);
+        }
+    }
+
+    private static Path tempDirectory() throws IOException {
+        return Files.createTempDirectory("iabtcf-bulk");
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> s = Files.walk(directory)) {
+            for (Path p : (Iterable<Path>) s.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    private static Path write(Path directory, String name, int repeat, String separator) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int r = 0; r < repeat; r++) {
+            for (String line : LINES) {
+                sb.append(line).append(separator);
+            }
+        }
+        return Files.write(directory.resolve(name), sb.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testDecodeFile() throws IOException {
+        Path directory = tempDirectory();
+        try {
+            Path file = write(directory, "log", 100, "\n");
+            CollectingSink sink = new CollectingSink();
+            // chunks smaller than the longest line
+            BulkDecodeReport report = BulkDecoder.newBuilder().parallelism(4).chunkSize(64).build().decode(file, sink);
+
+            assertEquals(600, report.getStrings());
+            assertEquals(300, report.getDecoded());
+            assertEquals(300, report.getErrors());
+            assertEquals(100, report.getErrorCount(ByteParseException.class));
+            assertEquals(100, report.getErrorCount(UnsupportedVersionException.class));
+            assertEquals(100, report.getErrorCount(IllegalArgumentException.class));
+            assertTrue(report.getLatencyP50() <= report.getLatencyP99());
+            assertTrue(report.getThroughput() > 0);
+
+            for (int r = 0; r < 100; r++) {
+                long first = r * LINES.length + 1;
+                assertEquals(TCString.decode(V2), sink.decoded.get(first));
+                assertEquals(TCString.decode(V2_OOB), sink.decoded.get(first + 1));
+                assertEquals(TCString.decode(V1), sink.decoded.get(first + 3));
+                assertEquals(TRUNCATED, sink.rejected.get(first + 4));
+                assertEquals(UNSUPPORTED_VERSION, sink.rejected.get(first + 5));
+                assertEquals(INVALID_BASE64, sink.rejected.get(first + 6));
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testDecodeDirectory() throws IOException {
+        Path directory = tempDirectory();
+        try {
+            write(directory, "a.log", 10, "\r\n");
+            Files.write(directory.resolve("b.log"), V2.getBytes(StandardCharsets.US_ASCII));
+            Files.write(directory.resolve("c.log"), new byte[0]);
+
+            List<Path> sources = new ArrayList<>();
+            BulkDecodeReport report = BulkDecoder.newBuilder().build().decode(directory, (source, line, tcString) -> {
+                synchronized (sources) {
+                    sources.add(source);
+                }
+            });
+
+            assertEquals(31, report.getDecoded());
+            assertEquals(30, report.getErrors());
+            assertEquals(30, sources.stream().filter(p -> p.endsWith("a.log")).count());
+            assertEquals(1, sources.stream().filter(p -> p.endsWith("b.log")).count());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testSinkFailureStopsRun() throws IOException {
+        Path directory = tempDirectory();
+        try {
+            Path file = write(directory, "log", 1000, "\n");
+            try {
+                BulkDecoder.newBuilder().chunkSize(256).build().decode(file, (source, line, tcString) -> {
+                    throw new IllegalStateException("sink failed");
+                });
+                fail("expected IllegalStateException");
+            } catch (IllegalStateException e) {
+                assertEquals("sink failed", e.getMessage());
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testLatencyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 1000; v++) {
+            histogram.record(v * 100);
+        }
+
+        assertEquals(1000, histogram.getTotal());
+        long p50 = histogram.percentile(50);
+        long p99 = histogram.percentile(99);
+        assertTrue(p50 >= 50_000 && p50 <= 50_000 * 17 / 16);
+        assertTrue(p99 >= 99_000 && p99 <= 99_000 * 17 / 16);
+
+        for (long v = 0; v < 1_000_000; v += 997) {
+            int index = LatencyHistogram.index(v);
+            assertTrue(LatencyHistogram.highestEquivalent(index) >= v);
+            assertTrue(index == 0 || LatencyHistogram.highestEquivalent(index - 1) < v);
+        }
+        assertEquals(959, LatencyHistogram.index(Long.MAX_VALUE));
+    }
+}
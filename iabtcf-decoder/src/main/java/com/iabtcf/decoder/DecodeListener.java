@@ -0,0 +1,96 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.iabtcf.utils.FieldDefs;
+import com.iabtcf.v2.SegmentType;
+
+/**
+ * Receives timings and sizes of the phases of decoding, to attribute the latency of consent
+ * processing. Register a listener with {@link DecodeListeners#register(DecodeListener)}. Callbacks
+ * happen on the decoding thread, synchronously, and must not throw. All methods do nothing by
+ * default.
+ *
+ * Durations are measured with {@link System#nanoTime()}. Without a registered listener the decoder
+ * takes no timings at all.
+ *
+ * @since 2.0.8
+ */
+public interface DecodeListener {
+
+    /**
+     * The base64url characters of a segment were decoded, or validated when decoding lazily, or
+     * wrapped in a stream when streaming.
+     *
+     * @param characters the number of base64url characters of the segment
+     * @param bytes the number of bytes the characters decode to, an upper bound unless decoded upfront
+     * @param nanos the duration of the base64 decoding
+     */
+    default void base64Decoded(int characters, int bytes, long nanos) {
+    }
+
+    /**
+     * The consent string was split into segments, including the base64 decoding of the segments.
+     *
+     * @param segments the number of segments, trailing empty segments are not counted
+     * @param nanos the duration of the split
+     */
+    default void segmentsSplit(int segments, long nanos) {
+    }
+
+    /**
+     * A segment of a version 2 string was decoded by an eager decode.
+     *
+     * @param segmentType the type of the segment
+     * @param bits the length of the segment up to the end of its last field
+     * @param nanos the duration of decoding all fields of the segment
+     */
+    default void segmentDecoded(SegmentType segmentType, int bits, long nanos) {
+    }
+
+    /**
+     * A field of a version 2 string was decoded on first access.
+     *
+     * @param field the field, for vendor sections the bit or range field
+     * @param nanos the duration of decoding the field
+     */
+    default void fieldDecoded(FieldDefs field, long nanos) {
+    }
+
+    /**
+     * A vendor section of a version 2 string was decoded, eagerly or on first access.
+     *
+     * @param field the bit or range field of the section
+     * @param rangeEncoded whether the section is range encoded rather than a bit field
+     * @param maxVendorId the max vendor id of the section
+     */
+    default void vendorSectionDecoded(FieldDefs field, boolean rangeEncoded, int maxVendorId) {
+    }
+
+    /**
+     * Decoding failed, either in {@link TCString#decode(String, DecoderOption...)} or on first access
+     * to a field. The exception is rethrown to the caller after this callback.
+     *
+     * @param cause the exception thrown to the caller
+     */
+    default void decodeFailed(RuntimeException cause) {
+    }
+}
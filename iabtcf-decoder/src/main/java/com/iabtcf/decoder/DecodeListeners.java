@@ -0,0 +1,74 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Holds the globally registered {@link DecodeListener}. At most one listener is registered at a
+ * time, a listener wanting to fan out callbacks to several consumers has to do so itself.
+ *
+ * @since 2.0.8
+ */
+public final class DecodeListeners {
+    private static volatile DecodeListener listener;
+
+    private DecodeListeners() {
+    }
+
+    /**
+     * Registers the listener receiving the callbacks of every subsequent decode, replacing the
+     * previously registered one.
+     *
+     * @throws IllegalArgumentException if listener is null
+     */
+    public static void register(DecodeListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        DecodeListeners.listener = listener;
+    }
+
+    /**
+     * Unregisters the listener, if any.
+     */
+    public static void unregister() {
+        listener = null;
+    }
+
+    /**
+     * The registered listener, or null.
+     */
+    static DecodeListener get() {
+        return listener;
+    }
+
+    /**
+     * Reports the failure to the registered listener, if any.
+     *
+     * @return e, for the caller to rethrow
+     */
+    static RuntimeException failed(RuntimeException e) {
+        DecodeListener l = listener;
+        if (l != null) {
+            l.decodeFailed(e);
+        }
+        return e;
+    }
+}
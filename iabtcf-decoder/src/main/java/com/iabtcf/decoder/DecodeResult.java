@@ -0,0 +1,87 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.iabtcf.utils.FieldDefs;
+
+/**
+ * The outcome of {@link TCString#tryDecode(CharSequence, DecoderOption...)}, either the decoded
+ * consent string or the status, field and bit offset decoding fails at. Failing doesn't create
+ * exceptions or messages.
+ */
+public final class DecodeResult {
+    private final TCString tcString;
+    private final ValidationStatus status;
+    private final FieldDefs field;
+    private final int bitOffset;
+
+    private DecodeResult(TCString tcString, ValidationStatus status, FieldDefs field, int bitOffset) {
+        this.tcString = tcString;
+        this.status = status;
+        this.field = field;
+        this.bitOffset = bitOffset;
+    }
+
+    static DecodeResult success(TCString tcString) {
+        return new DecodeResult(tcString, ValidationStatus.VALID, null, -1);
+    }
+
+    static DecodeResult failure(long code) {
+        return new DecodeResult(null, TCStringValidator.status(code), TCStringValidator.field(code),
+                TCStringValidator.bitOffset(code));
+    }
+
+    public boolean isValid() {
+        return status == ValidationStatus.VALID;
+    }
+
+    /**
+     * The decoded consent string, null if decoding failed.
+     */
+    public TCString getTCString() {
+        return tcString;
+    }
+
+    public ValidationStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * The field decoding fails at, null if decoding succeeded or the string is not valid base64url.
+     */
+    public FieldDefs getField() {
+        return field;
+    }
+
+    /**
+     * The offset of the failing read within the segment of the failing field, e.g. the offset of
+     * the truncated field or of the invalid range entry. -1 if decoding succeeded or the string is
+     * not valid base64url.
+     */
+    public int getBitOffset() {
+        return bitOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "DecodeResult [status=" + status + ", field=" + field + ", bitOffset=" + bitOffset + "]";
+    }
+}
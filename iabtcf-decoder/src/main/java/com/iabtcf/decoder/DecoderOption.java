@@ -25,5 +25,16 @@ public enum DecoderOption {
      * Use lazy evaluation when decoding fields. A field is decoded when it is accessed for the
      * first time.
      */
-    LAZY;
+    LAZY,
+
+    /**
+     * Decode lazily, base64 decoding each segment through a stream on first access to one of its
+     * fields. Only the segment type of OOB segments nobody asks for is decoded. Fields read from a
+     * segment already decoded don't translate base64 characters again, unlike with {@link #LAZY}.
+     * Illegal base64 characters surface as a ByteParseException when the field holding them is
+     * read.
+     *
+     * @since 2.0.8
+     */
+    STREAMING;
 }
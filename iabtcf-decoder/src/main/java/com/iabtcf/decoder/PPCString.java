@@ -30,11 +30,12 @@ import static com.iabtcf.utils.FieldDefs.V1_VENDOR_LIST_VERSION;
 import static com.iabtcf.utils.FieldDefs.V1_VERSION;
 
 import java.time.Instant;
-import java.util.Base64;
 import java.util.Objects;
 
 import com.iabtcf.exceptions.ByteParseException;
+import com.iabtcf.exceptions.TCStringDecodeException;
 import com.iabtcf.exceptions.UnsupportedVersionException;
+import com.iabtcf.utils.Base64Url;
 import com.iabtcf.utils.BitReader;
 import com.iabtcf.utils.FieldDefs;
 import com.iabtcf.utils.IntIterable;
@@ -43,60 +44,127 @@ import com.iabtcf.utils.IntIterable;
  * Parses TCFv1 Publisher Purposes Consent String Format
  */
 public class PPCString {
+    /*
+     * Fields are decoded on first access and published through volatile references (racy
+     * single-check), like the fields of TCStringV2.
+     */
+    private volatile Instant created;
+    private volatile Instant lastUpdated;
+    private volatile String consentLanguage;
+    private volatile IntIterable standardPurposesAllowed;
+    private volatile IntIterable customPurposesBitField;
+
     private final BitReader bbv;
 
     private PPCString(BitReader bitVector) {
         this.bbv = bitVector;
     }
 
-    public static PPCString decode(String consentString)
+    /**
+     * Decodes the string with the same {@link DecoderOption} semantics as {@link TCString#decode}:
+     * every field is decoded upfront unless {@link DecoderOption#LAZY} (or
+     * {@link DecoderOption#STREAMING}) is set, in which case fields are read from the base64url
+     * characters on first access.
+     *
+     * @throws ByteParseException if a field failed to parse
+     * @throws IllegalArgumentException if consentString is not in valid Base64 scheme
+     */
+    public static PPCString decode(String consentString, DecoderOption... options)
             throws IllegalArgumentException, ByteParseException, UnsupportedVersionException {
-        byte[] bytes = Base64.getUrlDecoder().decode(consentString);
-        return new PPCString(new BitReader(bytes));
+        if (TCStringDecoder.isLazy(options) || TCStringDecoder.isStreaming(options)) {
+            return new PPCString(BitReader.fromBase64(consentString, 0, consentString.length()));
+        }
+
+        byte[] buffer = new byte[Base64Url.maxDecodedLength(consentString.length())];
+        int n = Base64Url.decode(consentString, 0, consentString.length(), buffer, 0);
+        PPCString ppcString = new PPCString(new BitReader(buffer, 0, n));
+        ppcString.decodeAll();
+        return ppcString;
+    }
+
+    /**
+     * Decodes every field front to back. Like version 1 consent strings, decoding stops at the first
+     * field that fails and the remaining fields throw on access.
+     */
+    private void decodeAll() {
+        try {
+            created = Instant.ofEpochMilli(bbv.readBits36(V1_CREATED) * 100);
+            lastUpdated = Instant.ofEpochMilli(bbv.readBits36(V1_LAST_UPDATED) * 100);
+            consentLanguage = bbv.readStr2(V1_CONSENT_LANGUAGE);
+            standardPurposesAllowed = TCStringV2.fillBitSet(bbv, FieldDefs.V1_PPC_STANDARD_PURPOSES_ALLOWED);
+            customPurposesBitField = TCStringV2.fillBitSet(bbv, FieldDefs.V1_PPC_CUSTOM_PURPOSES_BITFIELD);
+        } catch (TCStringDecodeException e) {
+            // thrown again by the getter of the field
+        }
     }
 
     public int getVersion() {
-        return bbv.readBits6(V1_VERSION);
+        return (int) bbv.readBits(V1_VERSION);
     }
 
     public Instant getCreated() {
-        return Instant.ofEpochMilli(bbv.readBits36(V1_CREATED) * 100);
+        Instant rv = created;
+        if (rv == null) {
+            rv = Instant.ofEpochMilli(bbv.readBits36(V1_CREATED) * 100);
+            created = rv;
+        }
+        return rv;
     }
 
     public Instant getLastUpdated() {
-        return Instant.ofEpochMilli(bbv.readBits36(V1_LAST_UPDATED) * 100);
+        Instant rv = lastUpdated;
+        if (rv == null) {
+            rv = Instant.ofEpochMilli(bbv.readBits36(V1_LAST_UPDATED) * 100);
+            lastUpdated = rv;
+        }
+        return rv;
     }
 
     public int getCmpId() {
-        return bbv.readBits12(V1_CMP_ID);
+        return (int) bbv.readBits(V1_CMP_ID);
     }
 
     public int getCmpVersion() {
-        return bbv.readBits12(V1_CMP_VERSION);
+        return (int) bbv.readBits(V1_CMP_VERSION);
     }
 
     public int getConsentScreen() {
-        return bbv.readBits6(V1_CONSENT_SCREEN);
+        return (int) bbv.readBits(V1_CONSENT_SCREEN);
     }
 
     public String getConsentLanguage() {
-        return bbv.readStr2(V1_CONSENT_LANGUAGE);
+        String rv = consentLanguage;
+        if (rv == null) {
+            rv = bbv.readStr2(V1_CONSENT_LANGUAGE);
+            consentLanguage = rv;
+        }
+        return rv;
     }
 
     public int getVendorListVersion() {
-        return bbv.readBits12(V1_VENDOR_LIST_VERSION);
+        return (int) bbv.readBits(V1_VENDOR_LIST_VERSION);
     }
 
     public int getPublisherPurposesVersion() {
-        return bbv.readBits12(FieldDefs.V1_PPC_PUBLISHER_PURPOSES_VERSION);
+        return (int) bbv.readBits(FieldDefs.V1_PPC_PUBLISHER_PURPOSES_VERSION);
     }
 
     public IntIterable getStandardPurposesAllowed() {
-        return TCStringV2.fillBitSet(bbv, FieldDefs.V1_PPC_STANDARD_PURPOSES_ALLOWED);
+        IntIterable rv = standardPurposesAllowed;
+        if (rv == null) {
+            rv = TCStringV2.fillBitSet(bbv, FieldDefs.V1_PPC_STANDARD_PURPOSES_ALLOWED);
+            standardPurposesAllowed = rv;
+        }
+        return rv;
     }
 
     public IntIterable getCustomPurposesBitField() {
-        return TCStringV2.fillBitSet(bbv, FieldDefs.V1_PPC_CUSTOM_PURPOSES_BITFIELD);
+        IntIterable rv = customPurposesBitField;
+        if (rv == null) {
+            rv = TCStringV2.fillBitSet(bbv, FieldDefs.V1_PPC_CUSTOM_PURPOSES_BITFIELD);
+            customPurposesBitField = rv;
+        }
+        return rv;
     }
 
     @Override
@@ -0,0 +1,71 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Instant;
+import java.util.StringJoiner;
+
+import com.iabtcf.utils.FieldDefs;
+
+/**
+ * The values of the fields of a {@link Projection}, decoded as unsigned numbers.
+ *
+ * @since 2.0.8
+ */
+public final class ProjectedFields {
+    private final Projection projection;
+    private final long[] values;
+
+    ProjectedFields(Projection projection, long[] values) {
+        this.projection = projection;
+        this.values = values;
+    }
+
+    /**
+     * Returns the field as an unsigned number, e.g. the deciseconds of a timestamp or the 6 bit
+     * letters of a language code.
+     *
+     * @throws IllegalArgumentException if the field is not projected
+     */
+    public long get(FieldDefs field) {
+        return values[projection.slot(field)];
+    }
+
+    /**
+     * Returns a timestamp field such as {@link FieldDefs#CORE_LAST_UPDATED} as an instant.
+     *
+     * @throws IllegalArgumentException if the field is not projected
+     */
+    public Instant getInstant(FieldDefs field) {
+        return Instant.ofEpochMilli(get(field) * 100);
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner sj = new StringJoiner(", ", "ProjectedFields [", "]");
+        for (FieldDefs field : FieldDefs.values()) {
+            if (projection.contains(field)) {
+                sj.add(field + "=" + get(field));
+            }
+        }
+        return sj.toString();
+    }
+}
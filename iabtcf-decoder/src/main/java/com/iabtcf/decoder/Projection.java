@@ -0,0 +1,252 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static com.iabtcf.decoder.TCStringDecoder.SEGMENT_SEPARATOR;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import com.iabtcf.exceptions.ByteParseException;
+import com.iabtcf.exceptions.UnsupportedVersionException;
+import com.iabtcf.utils.Base64Url;
+import com.iabtcf.utils.BitReader;
+import com.iabtcf.utils.FieldDefs;
+
+/**
+ * A compiled set of header fields of the core segment, decoded straight from the base64url
+ * characters into a {@link ProjectedFields}. Only the characters up to the last bit of the last
+ * requested field are read, plus the following one telling whether the segment ends there, nothing
+ * after them is base64 decoded or scanned. Like the decoder, a field ending within the bits of a
+ * trailing partial byte of the segment is truncated.
+ *
+ * Projections are immutable, build them once and share them between threads.
+ *
+ * <pre>
+ * private static final Projection ROUTING =
+ *         Projection.of(EnumSet.of(FieldDefs.CORE_CMP_ID, FieldDefs.CORE_VENDOR_LIST_VERSION));
+ *
+ * ProjectedFields fields = ROUTING.project(consentString);
+ * long cmpId = fields.get(FieldDefs.CORE_CMP_ID);
+ * </pre>
+ *
+ * @since 2.0.8
+ */
+public final class Projection {
+    private static final int SEXTET_BITS = 6;
+    private static final char PADDING = '=';
+
+    private static final FieldDefs[] FIELDS = FieldDefs.values();
+    private static final int VERSION_LENGTH = FieldDefs.CORE_VERSION.getLength();
+
+    /**
+     * Offsets and versions of the fixed header fields by ordinal, -1 for fields that can't be
+     * projected.
+     */
+    private static final int[] OFFSETS = new int[FIELDS.length];
+    private static final int[] VERSIONS = new int[FIELDS.length];
+
+    static {
+        Arrays.fill(OFFSETS, -1);
+        Arrays.fill(VERSIONS, -1);
+        BitReader empty = new BitReader(new byte[0]);
+        header(2, FieldDefs.CORE_VERSION, FieldDefs.CORE_PUBLISHER_CC, empty);
+        header(1, FieldDefs.V1_VERSION, FieldDefs.V1_PURPOSES_ALLOW, empty);
+    }
+
+    private final int version;
+    private final FieldDefs[] fields;
+    private final int[] offsets;
+    private final int[] lengths;
+
+    /**
+     * The index of each projected field in fields by ordinal, -1 for other fields.
+     */
+    private final int[] slots;
+
+    /**
+     * The number of characters holding the projected fields.
+     */
+    private final int characters;
+
+    private Projection(int version, FieldDefs[] fields) {
+        this.version = version;
+        this.fields = fields;
+        this.offsets = new int[fields.length];
+        this.lengths = new int[fields.length];
+        this.slots = new int[FIELDS.length];
+        Arrays.fill(slots, -1);
+
+        int end = VERSION_LENGTH;
+        for (int i = 0; i < fields.length; i++) {
+            FieldDefs field = fields[i];
+            offsets[i] = OFFSETS[field.ordinal()];
+            lengths[i] = field.getLength();
+            slots[field.ordinal()] = i;
+            end = Math.max(end, offsets[i] + lengths[i]);
+        }
+        this.characters = (end + SEXTET_BITS - 1) / SEXTET_BITS;
+    }
+
+    private static void header(int version, FieldDefs first, FieldDefs last, BitReader empty) {
+        for (int i = first.ordinal(); i <= last.ordinal(); i++) {
+            OFFSETS[i] = FIELDS[i].getOffset(empty);
+            VERSIONS[i] = version;
+        }
+    }
+
+    /**
+     * Compiles a projection of header fields of the core segment of a single version, either
+     * CORE_VERSION to CORE_PUBLISHER_CC or V1_VERSION to V1_PURPOSES_ALLOW.
+     *
+     * @throws IllegalArgumentException if the set is empty, holds a field that isn't at a fixed
+     *         offset of the core segment or mixes versions
+     */
+    public static Projection of(EnumSet<FieldDefs> fields) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("no fields to project");
+        }
+
+        int version = -1;
+        for (FieldDefs field : fields) {
+            int fieldVersion = VERSIONS[field.ordinal()];
+            if (fieldVersion < 0) {
+                throw new IllegalArgumentException(field + " is not a header field of the core segment");
+            }
+            if (version >= 0 && fieldVersion != version) {
+                throw new IllegalArgumentException("fields of versions " + version + " and " + fieldVersion);
+            }
+            version = fieldVersion;
+        }
+        return new Projection(version, fields.toArray(new FieldDefs[0]));
+    }
+
+    /**
+     * Same as {@link #of(EnumSet)}.
+     *
+     * @throws IllegalArgumentException
+     */
+    public static Projection of(FieldDefs first, FieldDefs... rest) {
+        return of(EnumSet.of(first, rest));
+    }
+
+    /**
+     * The version of the consent strings this projection decodes.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean contains(FieldDefs field) {
+        return slots[field.ordinal()] >= 0;
+    }
+
+    int slot(FieldDefs field) {
+        int slot = slots[field.ordinal()];
+        if (slot < 0) {
+            throw new IllegalArgumentException(field + " is not projected");
+        }
+        return slot;
+    }
+
+    /**
+     * Decodes the projected fields of the consent string.
+     *
+     * @throws ByteParseException if the core segment ends before the last projected field
+     * @throws UnsupportedVersionException if the version of the consent string is not the version
+     *         of the projected fields
+     * @throws IllegalArgumentException if a character holding the fields is not valid base64url
+     */
+    public ProjectedFields project(CharSequence consentString) {
+        return project(consentString, 0, consentString.length());
+    }
+
+    /**
+     * Decodes the projected fields of the consent string held by the characters [start, end) of
+     * the sequence.
+     *
+     * @throws ByteParseException if the core segment ends before the last projected field
+     * @throws UnsupportedVersionException if the version of the consent string is not the version
+     *         of the projected fields
+     * @throws IllegalArgumentException if a character holding the fields is not valid base64url
+     * @throws IndexOutOfBoundsException if the range is not within the sequence
+     */
+    public ProjectedFields project(CharSequence consentString, int start, int end) {
+        if (start < 0 || end > consentString.length() || start > end) {
+            throw new IndexOutOfBoundsException(
+                    String.format("range [%d, %d) out of bounds for length %d", start, end, consentString.length()));
+        }
+
+        // only the characters holding the fields and the one following them are scanned, telling
+        // whether the core segment ends within them
+        int limit = Math.min(characters + 1, end - start);
+        int length = 0;
+        while (length < limit && !isSegmentEnd(consentString.charAt(start + length))) {
+            length++;
+        }
+        // like the decoder, only the whole bytes of the segment can be read
+        int bits = length > characters ? characters * SEXTET_BITS : length * SEXTET_BITS / Byte.SIZE * Byte.SIZE;
+
+        int stringVersion = (int) readBits(consentString, start, bits, 0, VERSION_LENGTH, null);
+        if (stringVersion != version) {
+            throw new UnsupportedVersionException("Version " + stringVersion + " doesn't match the projection");
+        }
+
+        long[] values = new long[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            values[i] = readBits(consentString, start, bits, offsets[i], lengths[i], fields[i]);
+        }
+        return new ProjectedFields(this, values);
+    }
+
+    /**
+     * The separator of the segments or the padding ending the base64 data of a segment.
+     */
+    private static boolean isSegmentEnd(char c) {
+        return c == SEGMENT_SEPARATOR || c == PADDING;
+    }
+
+    /**
+     * Reads nbits, at most 36, at the bit offset of the segment starting at start, of which the
+     * given number of bits can be read.
+     */
+    private static long readBits(CharSequence src, int start, int bits, int offset, int nbits, FieldDefs field) {
+        int first = offset / SEXTET_BITS;
+        int last = (offset + nbits - 1) / SEXTET_BITS;
+        if (offset + nbits > bits) {
+            throw new ByteParseException(String.format("field %s exceeds the segment",
+                    field != null ? field : FieldDefs.CORE_VERSION));
+        }
+
+        long acc = 0;
+        for (int i = first; i <= last; i++) {
+            char c = src.charAt(start + i);
+            int v = Base64Url.sextet(c);
+            if (v < 0) {
+                throw new IllegalArgumentException(
+                        "Illegal base64 character " + Integer.toString(c, 16) + " at index " + (start + i));
+            }
+            acc = acc << SEXTET_BITS | v;
+        }
+        int trailing = (last + 1) * SEXTET_BITS - offset - nbits;
+        return acc >>> trailing & ((1L << nbits) - 1);
+    }
+}
@@ -0,0 +1,207 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import com.iabtcf.exceptions.InvalidRangeFieldException;
+import com.iabtcf.utils.BitReader;
+import com.iabtcf.utils.FieldDefs;
+import com.iabtcf.v2.PublisherRestriction;
+import com.iabtcf.v2.RestrictionType;
+
+/**
+ * The publisher restrictions of a consent string indexed by purpose id and restriction type,
+ * answering whether and how a vendor is restricted for a purpose without building the list of
+ * {@link PublisherRestriction}.
+ *
+ * Creating the index only records where the vendor ranges of each purpose and restriction type
+ * start. The ranges are decoded on first lookup of that purpose and restriction type, and kept as
+ * sorted intervals searched with a binary search instead of being expanded into bitmaps.
+ *
+ * Lookups may be made from multiple threads.
+ *
+ * @since 2.0.8
+ */
+public final class PublisherRestrictions {
+    static final PublisherRestrictions EMPTY =
+            new PublisherRestrictions(null, new int[0], new int[0], new int[0], new RangeIndex[0]);
+
+    private static final RestrictionType[] TYPES = RestrictionType.values();
+    private static final int TYPE_BITS = 2;
+    private static final int MAX_PURPOSE_ID = (1 << FieldDefs.PURPOSE_ID.getLength()) - 1;
+
+    private static final int NUM_ENTRIES_LENGTH = FieldDefs.NUM_ENTRIES.getLength();
+    private static final int PURPOSE_ID_LENGTH = FieldDefs.PURPOSE_ID.getLength();
+    private static final int RESTRICTION_TYPE_LENGTH = FieldDefs.RESTRICTION_TYPE.getLength();
+
+    private final BitReader bbv;
+
+    /**
+     * The distinct purpose id << 2 | restriction type of the restrictions, ascending.
+     */
+    private final int[] keys;
+
+    /**
+     * The offsets of the range entries of keys[i] are offsets[firsts[i]] to offsets[firsts[i + 1] - 1].
+     */
+    private final int[] firsts;
+    private final int[] offsets;
+
+    /**
+     * The vendors of keys[i], decoded on first lookup. Range indexes only have final fields, so
+     * they are published without synchronization.
+     */
+    private final RangeIndex[] indexes;
+
+    private PublisherRestrictions(BitReader bbv, int[] keys, int[] firsts, int[] offsets, RangeIndex[] indexes) {
+        this.bbv = bbv;
+        this.keys = keys;
+        this.firsts = firsts;
+        this.offsets = offsets;
+        this.indexes = indexes;
+    }
+
+    /**
+     * Indexes the restrictions starting with the number of restrictions at
+     * numberOfRestrictionsOffset, skipping over their vendor ranges.
+     */
+    static PublisherRestrictions of(BitReader bbv, int numberOfRestrictionsOffset) {
+        int numberOfRestrictions = bbv.readBits12(numberOfRestrictionsOffset);
+        if (numberOfRestrictions == 0) {
+            return EMPTY;
+        }
+
+        // pack the restrictions as key << 32 | offset of their range entries to group them by key
+        long[] entries = new long[numberOfRestrictions];
+        int offset = numberOfRestrictionsOffset + NUM_ENTRIES_LENGTH;
+        for (int i = 0; i < numberOfRestrictions; i++) {
+            int purposeId = bbv.readBits6(offset);
+            int restrictionType = bbv.readBits2(offset + PURPOSE_ID_LENGTH);
+            offset += PURPOSE_ID_LENGTH + RESTRICTION_TYPE_LENGTH;
+            entries[i] = (long) (purposeId << TYPE_BITS | restrictionType) << Integer.SIZE | offset;
+            offset = RangeIndex.skip(bbv, offset);
+        }
+        Arrays.sort(entries);
+
+        int[] keys = new int[numberOfRestrictions];
+        int[] firsts = new int[numberOfRestrictions + 1];
+        int[] offsets = new int[numberOfRestrictions];
+        int n = 0;
+        for (int i = 0; i < numberOfRestrictions; i++) {
+            int key = (int) (entries[i] >>> Integer.SIZE);
+            offsets[i] = (int) entries[i];
+            if (n == 0 || keys[n - 1] != key) {
+                keys[n] = key;
+                firsts[n++] = i;
+            }
+        }
+        firsts[n] = numberOfRestrictions;
+
+        return new PublisherRestrictions(bbv, Arrays.copyOf(keys, n), Arrays.copyOf(firsts, n + 1), offsets,
+                new RangeIndex[n]);
+    }
+
+    /**
+     * Indexes already decoded restrictions.
+     */
+    static PublisherRestrictions from(List<PublisherRestriction> restrictions) {
+        if (restrictions.isEmpty()) {
+            return EMPTY;
+        }
+
+        long[] entries = new long[restrictions.size()];
+        for (int i = 0; i < entries.length; i++) {
+            PublisherRestriction restriction = restrictions.get(i);
+            entries[i] = (long) key(restriction.getPurposeId(), restriction.getRestrictionType()) << Integer.SIZE | i;
+        }
+        Arrays.sort(entries);
+
+        int[] keys = new int[entries.length];
+        RangeIndex[] indexes = new RangeIndex[entries.length];
+        int n = 0;
+        for (int i = 0, j; i < entries.length; i = j) {
+            int key = (int) (entries[i] >>> Integer.SIZE);
+            IntStream vendorIds = IntStream.empty();
+            for (j = i; j < entries.length && (int) (entries[j] >>> Integer.SIZE) == key; j++) {
+                vendorIds = IntStream.concat(vendorIds,
+                        restrictions.get((int) entries[j]).getVendorIds().toStream());
+            }
+            keys[n] = key;
+            indexes[n++] = RangeIndex.of(vendorIds.toArray());
+        }
+
+        return new PublisherRestrictions(null, Arrays.copyOf(keys, n), new int[0], new int[0],
+                Arrays.copyOf(indexes, n));
+    }
+
+    private static int key(int purposeId, RestrictionType restrictionType) {
+        return purposeId << TYPE_BITS | restrictionType.ordinal();
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * Returns how the vendor is restricted for the purpose, or null if it isn't. A vendor listed
+     * under several restriction types of the same purpose gets the first of them in the order of
+     * {@link RestrictionType}.
+     *
+     * @throws InvalidRangeFieldException
+     */
+    public RestrictionType getRestriction(int purposeId, int vendorId) {
+        for (RestrictionType restrictionType : TYPES) {
+            if (isRestricted(purposeId, restrictionType, vendorId)) {
+                return restrictionType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the publisher restricts the vendor for the purpose with the restriction type.
+     *
+     * @throws InvalidRangeFieldException
+     */
+    public boolean isRestricted(int purposeId, RestrictionType restrictionType, int vendorId) {
+        if (purposeId < 0 || purposeId > MAX_PURPOSE_ID) {
+            return false;
+        }
+        int i = Arrays.binarySearch(keys, key(purposeId, restrictionType));
+        return i >= 0 && index(i).contains(vendorId);
+    }
+
+    private RangeIndex index(int i) {
+        RangeIndex rv = indexes[i];
+        if (rv == null) {
+            try {
+                rv = RangeIndex.of(bbv, offsets, firsts[i], firsts[i + 1], Integer.MAX_VALUE);
+            } catch (RuntimeException e) {
+                throw DecodeListeners.failed(e);
+            }
+            indexes[i] = rv;
+        }
+        return rv;
+    }
+}
@@ -0,0 +1,164 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Core Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+import com.iabtcf.exceptions.InvalidRangeFieldException;
+import com.iabtcf.utils.BitReader;
+import com.iabtcf.utils.FieldDefs;
+
+/**
+ * The entries of a range encoded vendor section as sorted, disjoint intervals, answering membership
+ * queries with a binary search instead of expanding the section into a bitmap.
+ *
+ * Only has final fields, instances may be published without synchronization.
+ */
+final class RangeIndex {
+    private static final int NUM_ENTRIES_LENGTH = FieldDefs.NUM_ENTRIES.getLength();
+    private static final int VENDOR_ID_LENGTH = FieldDefs.START_OR_ONLY_VENDOR_ID.getLength();
+
+    private final int[] starts;
+    private final int[] ends;
+
+    private RangeIndex(int[] starts, int[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * Reads the range entries starting with the number of entries at numberOfVendorEntriesOffset,
+     * validating them like {@link TCStringV2#vendorIdsFromRange(BitReader, java.util.BitSet, int, int)}.
+     *
+     * @throws InvalidRangeFieldException
+     */
+    static RangeIndex of(BitReader bbv, int numberOfVendorEntriesOffset, int maxV) {
+        long[] entries = new long[bbv.readBits12(numberOfVendorEntriesOffset)];
+        readEntries(bbv, numberOfVendorEntriesOffset, maxV, entries, 0);
+        return merge(entries);
+    }
+
+    /**
+     * Same as {@link #of(BitReader, int, int)} for the union of the range entries starting at the
+     * offsets [from, to) of the array.
+     *
+     * @throws InvalidRangeFieldException
+     */
+    static RangeIndex of(BitReader bbv, int[] numberOfVendorEntriesOffsets, int from, int to, int maxV) {
+        int numberOfVendorEntries = 0;
+        for (int i = from; i < to; i++) {
+            numberOfVendorEntries += bbv.readBits12(numberOfVendorEntriesOffsets[i]);
+        }
+        long[] entries = new long[numberOfVendorEntries];
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            n = readEntries(bbv, numberOfVendorEntriesOffsets[i], maxV, entries, n);
+        }
+        return merge(entries);
+    }
+
+    /**
+     * The vendor ids as intervals, the array is sorted in place.
+     */
+    static RangeIndex of(int[] vendorIds) {
+        Arrays.sort(vendorIds);
+        long[] entries = new long[vendorIds.length];
+        for (int i = 0; i < vendorIds.length; i++) {
+            entries[i] = (long) vendorIds[i] << Integer.SIZE | vendorIds[i];
+        }
+        return merge(entries);
+    }
+
+    /**
+     * Returns the offset following the range entries starting with the number of entries at
+     * numberOfVendorEntriesOffset, without reading the vendor ids.
+     */
+    static int skip(BitReader bbv, int numberOfVendorEntriesOffset) {
+        int numberOfVendorEntries = bbv.readBits12(numberOfVendorEntriesOffset);
+        int offset = numberOfVendorEntriesOffset + NUM_ENTRIES_LENGTH;
+        for (int j = 0; j < numberOfVendorEntries; j++) {
+            offset += bbv.readBits1(offset) ? 1 + 2 * VENDOR_ID_LENGTH : 1 + VENDOR_ID_LENGTH;
+        }
+        return offset;
+    }
+
+    /**
+     * Reads the entries packed as start << 32 | end into the array from index n on, returning the
+     * index following them.
+     */
+    private static int readEntries(BitReader bbv, int numberOfVendorEntriesOffset, int maxV, long[] entries,
+            int n) {
+        int numberOfVendorEntries = bbv.readBits12(numberOfVendorEntriesOffset);
+        int offset = numberOfVendorEntriesOffset + NUM_ENTRIES_LENGTH;
+
+        // entries are not required to be ordered, they are sorted once all are read
+        for (int j = 0; j < numberOfVendorEntries; j++) {
+            boolean isRangeEntry = bbv.readBits1(offset++);
+            int startOrOnlyVendorId = bbv.readBits16(offset);
+            offset += VENDOR_ID_LENGTH;
+            int endVendorId = startOrOnlyVendorId;
+            if (isRangeEntry) {
+                endVendorId = bbv.readBits16(offset);
+                offset += VENDOR_ID_LENGTH;
+
+                if (startOrOnlyVendorId > endVendorId || endVendorId > maxV) {
+                    throw new InvalidRangeFieldException(startOrOnlyVendorId, endVendorId, maxV);
+                }
+            }
+            entries[n++] = (long) startOrOnlyVendorId << Integer.SIZE | endVendorId;
+        }
+        return n;
+    }
+
+    /**
+     * Sorts the packed entries and merges overlapping and adjacent ones.
+     */
+    private static RangeIndex merge(long[] entries) {
+        Arrays.sort(entries);
+
+        int[] starts = new int[entries.length];
+        int[] ends = new int[entries.length];
+        int n = 0;
+        for (long entry : entries) {
+            int start = (int) (entry >>> Integer.SIZE);
+            int end = (int) entry;
+            if (n > 0 && start <= ends[n - 1] + 1) {
+                ends[n - 1] = Math.max(ends[n - 1], end);
+            } else {
+                starts[n] = start;
+                ends[n] = end;
+                n++;
+            }
+        }
+
+        return new RangeIndex(Arrays.copyOf(starts, n), Arrays.copyOf(ends, n));
+    }
+
+    boolean contains(int vendorId) {
+        int i = Arrays.binarySearch(starts, vendorId);
+        if (i >= 0) {
+            return true;
+        }
+        // the interval starting before vendorId, if any
+        int before = -i - 2;
+        return before >= 0 && vendorId <= ends[before];
+    }
+}
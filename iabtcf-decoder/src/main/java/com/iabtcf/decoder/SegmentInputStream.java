@@ -47,7 +47,7 @@ class SegmentInputStream extends InputStream {
         }
 
         this.src = src;
-        start = rpos = Math.min(start, src.length());
+        this.start = rpos = Math.min(start, src.length());
     }
 
     @Override
@@ -0,0 +1,213 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static com.iabtcf.decoder.TCStringDecoder.SEGMENT_SEPARATOR;
+
+import com.iabtcf.utils.Base64Url;
+import com.iabtcf.utils.BitReader;
+
+/**
+ * The characters of a consent string as seen by {@link TCStringDecoder#split}: where the segments
+ * end and how their base64url characters are decoded. Sources only hold their input, a
+ * {@link TCStringView} resets its sources to each new consent string.
+ */
+abstract class SegmentSource {
+
+    /**
+     * Returns the number of characters of the separator at index, 0 if there is none or index is
+     * end.
+     */
+    abstract int separatorLength(int index, int end);
+
+    /**
+     * Base64 decodes the characters [start, end) of a segment into dst starting at dstOffset.
+     *
+     * @return the number of bytes written to dst
+     * @throws IllegalArgumentException if the characters are not valid base64url
+     */
+    abstract int decode(int start, int end, byte[] dst, int dstOffset);
+
+    /**
+     * Returns a reader of the base64url characters [start, end) of a segment, read in place.
+     *
+     * @throws IllegalArgumentException if the characters are not valid base64url
+     */
+    abstract BitReader fromBase64(int start, int end);
+
+    /**
+     * Returns the end of the segment starting at start, the index of the next separator or end.
+     */
+    int segmentEnd(int start, int end) {
+        int i = start;
+        while (i < end && separatorLength(i, end) == 0) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns true if the characters [start, end) are separators only, i.e. only trailing empty
+     * segments are left.
+     */
+    boolean isTrailing(int start, int end) {
+        int i = start;
+        while (i < end) {
+            int n = separatorLength(i, end);
+            if (n == 0) {
+                return false;
+            }
+            i += n;
+        }
+        return true;
+    }
+
+    /**
+     * Returns an upper bound of the number of segments of the characters [start, end).
+     */
+    int maxSegments(int start, int end) {
+        int count = 1;
+        for (int i = start; i < end; i++) {
+            if (separatorLength(i, end) > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Segments separated by dots within a character sequence.
+     */
+    static final class Chars extends SegmentSource {
+        private CharSequence chars;
+
+        Chars(CharSequence chars) {
+            this.chars = chars;
+        }
+
+        Chars reset(CharSequence chars) {
+            this.chars = chars;
+            return this;
+        }
+
+        @Override
+        int separatorLength(int index, int end) {
+            return index < end && chars.charAt(index) == SEGMENT_SEPARATOR ? 1 : 0;
+        }
+
+        @Override
+        int segmentEnd(int start, int end) {
+            int i = start;
+            while (i < end && chars.charAt(i) != SEGMENT_SEPARATOR) {
+                i++;
+            }
+            return i;
+        }
+
+        @Override
+        int decode(int start, int end, byte[] dst, int dstOffset) {
+            return Base64Url.decode(chars, start, end, dst, dstOffset);
+        }
+
+        @Override
+        BitReader fromBase64(int start, int end) {
+            return BitReader.fromBase64(chars, start, end);
+        }
+    }
+
+    /**
+     * Segments separated by dots within an array of ASCII bytes.
+     */
+    static final class Bytes extends SegmentSource {
+        private byte[] bytes;
+
+        Bytes(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        Bytes reset(byte[] bytes) {
+            this.bytes = bytes;
+            return this;
+        }
+
+        @Override
+        int separatorLength(int index, int end) {
+            return index < end && bytes[index] == SEGMENT_SEPARATOR ? 1 : 0;
+        }
+
+        @Override
+        int segmentEnd(int start, int end) {
+            int i = start;
+            while (i < end && bytes[i] != SEGMENT_SEPARATOR) {
+                i++;
+            }
+            return i;
+        }
+
+        @Override
+        int decode(int start, int end, byte[] dst, int dstOffset) {
+            return Base64Url.decode(bytes, start, end, dst, dstOffset);
+        }
+
+        @Override
+        BitReader fromBase64(int start, int end) {
+            return BitReader.fromBase64(bytes, start, end);
+        }
+    }
+
+    /**
+     * Segments of a percent-encoded character sequence, separated by dots or their escape %2E.
+     * Segments are only decoded upfront.
+     */
+    static final class PercentEncoded extends SegmentSource {
+        private final CharSequence chars;
+
+        PercentEncoded(CharSequence chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        int separatorLength(int index, int end) {
+            if (index == end) {
+                return 0;
+            }
+            char c = chars.charAt(index);
+            if (c == SEGMENT_SEPARATOR) {
+                return 1;
+            }
+            if (c == '%' && index + 2 < end && chars.charAt(index + 1) == '2'
+                    && (chars.charAt(index + 2) | 0x20) == 'e') {
+                return 3;
+            }
+            return 0;
+        }
+
+        @Override
+        int decode(int start, int end, byte[] dst, int dstOffset) {
+            return Base64Url.decodePercentEncoded(chars, start, end, dst, dstOffset);
+        }
+
+        @Override
+        BitReader fromBase64(int start, int end) {
+            throw new UnsupportedOperationException("percent-encoded segments are decoded upfront");
+        }
+    }
+}
@@ -20,14 +20,20 @@ package com.iabtcf.decoder;
  * #L%
  */
 
+import java.nio.ByteBuffer;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import com.iabtcf.exceptions.ByteParseException;
 import com.iabtcf.exceptions.TCStringDecodeException;
 import com.iabtcf.exceptions.UnsupportedVersionException;
+import com.iabtcf.utils.FieldDefs;
 import com.iabtcf.utils.IntIterable;
 import com.iabtcf.v2.PublisherRestriction;
+import com.iabtcf.v2.SegmentType;
 
 public interface TCString {
 
@@ -40,7 +46,144 @@ public interface TCString {
      */
     static TCString decode(String consentString, DecoderOption... options)
             throws IllegalArgumentException, ByteParseException, UnsupportedVersionException {
-        return TCStringDecoder.decode(consentString, options);
+        try {
+            return TCStringDecoder.decode(consentString, options);
+        } catch (RuntimeException e) {
+            throw DecodeListeners.failed(e);
+        }
+    }
+
+    /**
+     * Decodes an iabtcf compliant encoded string held by the characters [start, end) of the
+     * sequence.
+     *
+     * @throws ByteParseException if version field failed to parse
+     * @throws UnsupportedVersionException invalid version field
+     * @throws IllegalArgumentException if consentString is not in valid Base64 scheme
+     * @throws IndexOutOfBoundsException if the range is not within the sequence
+     */
+    static TCString decode(CharSequence consentString, int start, int end, DecoderOption... options)
+            throws IllegalArgumentException, ByteParseException, UnsupportedVersionException {
+        try {
+            return TCStringDecoder.decode(consentString, start, end, options);
+        } catch (RuntimeException e) {
+            throw DecodeListeners.failed(e);
+        }
+    }
+
+    /**
+     * Decodes a percent-encoded iabtcf compliant encoded string held by the characters [start, end)
+     * of the sequence, e.g. the value of the gdpr_consent parameter within a raw request URI or a
+     * cookie header. Escapes such as %2E and padding are handled while base64 decoding, without
+     * creating intermediate strings.
+     *
+     * @since 2.0.8
+     * @throws ByteParseException if version field failed to parse
+     * @throws UnsupportedVersionException invalid version field
+     * @throws IllegalArgumentException if consentString is not in valid Base64 scheme once unescaped
+     * @throws IndexOutOfBoundsException if the range is not within the sequence
+     */
+    static TCString decodeUrlEncoded(CharSequence consentString, int start, int end, DecoderOption... options)
+            throws IllegalArgumentException, ByteParseException, UnsupportedVersionException {
+        try {
+            return TCStringDecoder.decodeUrlEncoded(consentString, start, end, options);
+        } catch (RuntimeException e) {
+            throw DecodeListeners.failed(e);
+        }
+    }
+
+    /**
+     * Decodes an iabtcf compliant encoded string held by the ASCII bytes [offset, offset + length)
+     * of the array, without creating intermediate strings.
+     *
+     * @throws ByteParseException if version field failed to parse
+     * @throws UnsupportedVersionException invalid version field
+     * @throws IllegalArgumentException if consentString is not in valid Base64 scheme
+     * @throws IndexOutOfBoundsException if the range is not within the array
+     */
+    static TCString decode(byte[] consentString, int offset, int length, DecoderOption... options)
+            throws IllegalArgumentException, ByteParseException, UnsupportedVersionException {
+        try {
+            return TCStringDecoder.decode(consentString, offset, length, options);
+        } catch (RuntimeException e) {
+            throw DecodeListeners.failed(e);
+        }
+    }
+
+    /**
+     * Decodes an iabtcf compliant encoded string held by the ASCII bytes between the position and
+     * the limit of a heap or direct buffer, without creating intermediate strings. The position of
+     * the buffer is not changed.
+     *
+     * @throws ByteParseException if version field failed to parse
+     * @throws UnsupportedVersionException invalid version field
+     * @throws IllegalArgumentException if consentString is not in valid Base64 scheme
+     */
+    static TCString decode(ByteBuffer consentString, DecoderOption... options)
+            throws IllegalArgumentException, ByteParseException, UnsupportedVersionException {
+        try {
+            return TCStringDecoder.decode(consentString, options);
+        } catch (RuntimeException e) {
+            throw DecodeListeners.failed(e);
+        }
+    }
+
+    /**
+     * Validates an iabtcf compliant encoded string as thoroughly as an eager decode, walking all
+     * segments and range entries, without decoding any field and without allocating. The result
+     * holds the status an eager decode would fail with and the failing field. Like the decoder,
+     * version 1 strings are only checked up to their version.
+     *
+     * @since 2.0.8
+     */
+    static ValidationResult validate(CharSequence consentString) {
+        return TCStringValidator.validate(consentString, 0, consentString.length());
+    }
+
+    /**
+     * Decodes an iabtcf compliant encoded string without throwing if it is malformed. The string
+     * is validated first, a malformed string yields the status, field and bit offset decoding would
+     * fail at without creating any exception or message, a valid one is decoded with the given
+     * options. Exactly the strings {@link #decode(String, DecoderOption...)} accepts are valid.
+     *
+     * @since 2.0.8
+     */
+    static DecodeResult tryDecode(CharSequence consentString, DecoderOption... options) {
+        long code = TCStringValidator.check(consentString, 0, consentString.length());
+        if (code < 0) {
+            return DecodeResult.failure(code);
+        }
+        return DecodeResult.success(decode(consentString, 0, consentString.length(), options));
+    }
+
+    /**
+     * Decodes only the given header fields of the core segment, reading the characters up to the
+     * last of them. Callers projecting many strings should compile the {@link Projection} once.
+     *
+     * @since 2.0.8
+     * @throws IllegalArgumentException if a field can't be projected, see {@link Projection#of(EnumSet)}
+     * @throws ByteParseException if the core segment ends before the last field
+     * @throws UnsupportedVersionException if the version doesn't match the fields
+     */
+    static ProjectedFields project(CharSequence consentString, EnumSet<FieldDefs> fields) {
+        try {
+            return Projection.of(fields).project(consentString);
+        } catch (RuntimeException e) {
+            throw DecodeListeners.failed(e);
+        }
+    }
+
+    /**
+     * The segments present in this TC String, known without decoding any of their fields. The core
+     * segment is always present as {@link SegmentType#DEFAULT}, OOB segments of a type unknown to this
+     * library are reported as {@link SegmentType#INVALID}. The default implementation only reports the
+     * core segment, implementations knowing their OOB segments override it.
+     *
+     * @since 2.0.8
+     * @return the types of the segments of this TC String
+     */
+    default Set<SegmentType> getSegmentTypes() {
+        return Collections.singleton(SegmentType.DEFAULT);
     }
 
     /**
@@ -143,6 +286,18 @@ public interface TCString {
      */
     IntIterable getVendorConsent();
 
+    /**
+     * Same as {@code getVendorConsent().contains(vendorId)}. Implementations may answer from the
+     * encoded vendor section without decoding the whole section.
+     *
+     * @since 2.0.8
+     * @throws TCStringDecodeException
+     * @return true if the vendor has consent to process this users personal data.
+     */
+    default boolean hasVendorConsent(int vendorId) {
+        return getVendorConsent().contains(vendorId);
+    }
+
     /**
      * Default consent for VendorIds not covered by a RangeEntry. VendorIds covered by a RangeEntry
      * have a consent value the opposite of DefaultConsent.
@@ -250,6 +405,18 @@ public interface TCString {
      */
     IntIterable getVendorLegitimateInterest();
 
+    /**
+     * Same as {@code getVendorLegitimateInterest().contains(vendorId)}. Implementations may answer
+     * from the encoded vendor section without decoding the whole section.
+     *
+     * @since 2.0.8
+     * @throws TCStringDecodeException
+     * @return true if the vendor can process this user based on legitimate interest
+     */
+    default boolean hasVendorLegitimateInterest(int vendorId) {
+        return getVendorLegitimateInterest().contains(vendorId);
+    }
+
     /**
      * The restrictions of a vendor's data processing by a publisher within the context of the users
      * trafficking their digital property.
@@ -260,6 +427,20 @@ public interface TCString {
      */
     List<PublisherRestriction> getPublisherRestrictions();
 
+    /**
+     * The publisher restrictions indexed by purpose id and restriction type, answering whether
+     * and how a vendor is restricted for a purpose. Implementations may decode the vendors of a
+     * purpose and restriction type on first lookup, without building
+     * {@link #getPublisherRestrictions()}.
+     *
+     * @since 2.0.8
+     * @throws TCStringDecodeException
+     * @return the index of the publisher restrictions.
+     */
+    default PublisherRestrictions getPublisherRestrictionIndex() {
+        return PublisherRestrictions.from(getPublisherRestrictions());
+    }
+
     /**
      * Part of the OOB segments expressing that a Vendor is using legal bases outside of the TCF to
      * process personal data.
@@ -270,6 +451,18 @@ public interface TCString {
      */
     IntIterable getAllowedVendors();
 
+    /**
+     * Same as {@code getAllowedVendors().contains(vendorId)}. Implementations may answer from the
+     * encoded segment without decoding the whole segment.
+     *
+     * @since 2.0.8
+     * @throws TCStringDecodeException
+     * @return true if the publisher allows the vendor to use out-of-band legal bases
+     */
+    default boolean isVendorAllowed(int vendorId) {
+        return getAllowedVendors().contains(vendorId);
+    }
+
     /**
      * Part of the OOB segments expressing that a Vendor is using legal bases outside of the TCF to
      * process personal data.
@@ -280,6 +473,18 @@ public interface TCString {
      */
     IntIterable getDisclosedVendors();
 
+    /**
+     * Same as {@code getDisclosedVendors().contains(vendorId)}. Implementations may answer from the
+     * encoded segment without decoding the whole segment.
+     *
+     * @since 2.0.8
+     * @throws TCStringDecodeException
+     * @return true if the vendor was disclosed to the user
+     */
+    default boolean isVendorDisclosed(int vendorId) {
+        return getDisclosedVendors().contains(vendorId);
+    }
+
     /**
      * Part of the Publisher Transparency and Consent segment of a TC String that publishers may use
      * to establish transparency with and receive consent from users for their own legal bases to
@@ -337,4 +542,18 @@ public interface TCString {
      * @return The custom purpose consent values with established legitimate interest disclosure.
      */
     IntIterable getCustomPurposesLITransparency();
+
+    /**
+     * A 64 bit hash of the encoded fields, consistent with {@link #equals(Object)}. For version 2
+     * strings, neither the order of the segments nor the padding of the base64 encoding change the
+     * fingerprint, so decoded strings are cheap map keys. Other versions fall back to
+     * {@link #hashCode()}.
+     *
+     * @since 2.0.8
+     * @throws TCStringDecodeException
+     * @return the fingerprint of this string
+     */
+    default long fingerprint() {
+        return hashCode();
+    }
 }
@@ -0,0 +1,566 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Core Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static com.iabtcf.decoder.TCStringDecoder.SEGMENT_SEPARATOR;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import com.iabtcf.utils.Base64Url;
+import com.iabtcf.utils.BitReader;
+import com.iabtcf.utils.FieldDefs;
+
+/**
+ * Decodes batches of version 2 consent strings into columns, one array per field indexed by the
+ * position of the string in the batch, for analytics pulling a few fields out of many strings.
+ *
+ * No object is allocated per string: the core segment of each string is base64 decoded into a
+ * scratch buffer reused for the whole batch, the projected fields are read from it into the
+ * columns, and vendor sections are expanded into a shared bitmap arena. Only the requested columns
+ * are decoded, when no vendor section is projected only the leading characters holding the
+ * projected fields are decoded and validated. OOB segments are ignored.
+ *
+ * Strings failing to decode don't fail the batch, their status is recorded per row and their
+ * columns are zeroed. Vendor ids of single range entries must not exceed the max vendor id.
+ *
+ * A batch is not safe for concurrent use, the columns are overwritten by the next decode.
+ *
+ * <pre>
+ * TCStringBatch batch = TCStringBatch.newBuilder()
+ *         .columns(FieldDefs.CORE_CMP_ID, FieldDefs.CORE_VENDOR_BITRANGE_FIELD)
+ *         .build();
+ *
+ * batch.decode(consentStrings);
+ * int[] cmpIds = batch.getIntColumn(FieldDefs.CORE_CMP_ID);
+ * for (int row = 0; row &lt; batch.size(); row++) {
+ *     if (batch.getStatus(row) == TCStringBatch.OK &amp;&amp; batch.hasVendorConsent(row, 755)) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ */
+public final class TCStringBatch {
+    public static final byte OK = 0;
+    public static final byte INVALID_BASE64 = 1;
+    public static final byte UNSUPPORTED_VERSION = 2;
+    public static final byte TRUNCATED = 3;
+    public static final byte INVALID_RANGE = 4;
+
+    /**
+     * Fields read into a long column, in deciseconds.
+     */
+    private static final Set<FieldDefs> LONG_FIELDS = EnumSet.of(FieldDefs.CORE_CREATED, FieldDefs.CORE_LAST_UPDATED);
+
+    /**
+     * Fields read into an int column.
+     */
+    private static final Set<FieldDefs> INT_FIELDS = EnumSet.of(
+            FieldDefs.CORE_VERSION,
+            FieldDefs.CORE_CMP_ID,
+            FieldDefs.CORE_CMP_VERSION,
+            FieldDefs.CORE_CONSENT_SCREEN,
+            FieldDefs.CORE_VENDOR_LIST_VERSION,
+            FieldDefs.CORE_TCF_POLICY_VERSION);
+
+    /**
+     * Bit fields read into an int column as masks, bit i - 1 of the mask set for id i.
+     */
+    private static final Set<FieldDefs> MASK_FIELDS = EnumSet.of(
+            FieldDefs.CORE_SPECIAL_FEATURE_OPT_INS,
+            FieldDefs.CORE_PURPOSES_CONSENT,
+            FieldDefs.CORE_PURPOSES_LI_TRANSPARENCY);
+
+    /**
+     * Vendor sections expanded into the bitmap arena.
+     */
+    private static final Set<FieldDefs> VENDOR_FIELDS =
+            EnumSet.of(FieldDefs.CORE_VENDOR_BITRANGE_FIELD, FieldDefs.CORE_VENDOR_LI_BITRANGE_FIELD);
+
+    private static final int SUPPORTED_VERSION = 2;
+    private static final int SEXTET_BITS = 6;
+    private static final int VERSION_LENGTH = FieldDefs.CORE_VERSION.getLength();
+    private static final int MAX_VENDOR_ID_LENGTH = FieldDefs.CORE_VENDOR_MAX_VENDOR_ID.getLength();
+    private static final int NUM_ENTRIES_LENGTH = FieldDefs.NUM_ENTRIES.getLength();
+    private static final int VENDOR_ID_LENGTH = FieldDefs.START_OR_ONLY_VENDOR_ID.getLength();
+
+    /**
+     * Offsets of the fixed fields preceding the vendor sections, the same in every core segment.
+     */
+    private static final int[] OFFSETS = new int[FieldDefs.values().length];
+    private static final int[] LENGTHS = new int[FieldDefs.values().length];
+
+    static {
+        BitReader empty = new BitReader(new byte[0]);
+        for (FieldDefs field : FieldDefs.values()) {
+            if (field.ordinal() <= FieldDefs.CORE_VENDOR_MAX_VENDOR_ID.ordinal()) {
+                OFFSETS[field.ordinal()] = field.getOffset(empty);
+                LENGTHS[field.ordinal()] = field.getLength();
+            }
+        }
+    }
+
+    private final FieldDefs[] fixedFields;
+    private final boolean decodeVendorConsent;
+    private final boolean decodeVendorLegitimateInterest;
+
+    /**
+     * Bits of the core segment needed for the projected fixed fields.
+     */
+    private final int fixedEnd;
+
+    /**
+     * Characters to decode when no vendor section is projected, a multiple of 4 so a prefix of a
+     * longer segment is valid base64 on its own.
+     */
+    private final int prefixChars;
+
+    private final long[][] longColumns = new long[FieldDefs.values().length][];
+    private final int[][] intColumns = new int[FieldDefs.values().length][];
+    private final VendorColumn vendorConsent;
+    private final VendorColumn vendorLegitimateInterest;
+    private byte[] status;
+    private int size;
+
+    private byte[] scratch = new byte[256];
+    private BitReader reader = new BitReader(scratch);
+
+    private TCStringBatch(Builder builder) {
+        Set<FieldDefs> columns = builder.columns;
+        fixedFields = columns.stream().filter(f -> !VENDOR_FIELDS.contains(f)).toArray(FieldDefs[]::new);
+        decodeVendorConsent = columns.contains(FieldDefs.CORE_VENDOR_BITRANGE_FIELD);
+        decodeVendorLegitimateInterest = columns.contains(FieldDefs.CORE_VENDOR_LI_BITRANGE_FIELD);
+
+        int end = VERSION_LENGTH;
+        for (FieldDefs field : fixedFields) {
+            end = Math.max(end, OFFSETS[field.ordinal()] + LENGTHS[field.ordinal()]);
+        }
+        fixedEnd = end;
+        prefixChars = (end + 4 * SEXTET_BITS - 1) / (4 * SEXTET_BITS) * 4;
+
+        int capacity = builder.capacity;
+        for (FieldDefs field : fixedFields) {
+            if (LONG_FIELDS.contains(field)) {
+                longColumns[field.ordinal()] = new long[capacity];
+            } else {
+                intColumns[field.ordinal()] = new int[capacity];
+            }
+        }
+        vendorConsent = decodeVendorConsent ? new VendorColumn(capacity) : null;
+        vendorLegitimateInterest = decodeVendorLegitimateInterest ? new VendorColumn(capacity) : null;
+        status = new byte[capacity];
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Decodes the strings into rows [0, consentStrings.size()) of the columns, replacing the
+     * previous batch. The columns grow if the batch exceeds their capacity.
+     */
+    public void decode(List<? extends CharSequence> consentStrings) {
+        int n = consentStrings.size();
+        ensureCapacity(n);
+
+        size = n;
+        for (int row = 0; row < n; row++) {
+            byte s = decodeRow(consentStrings.get(row), row);
+            status[row] = s;
+            if (s != OK) {
+                clearRow(row);
+            }
+        }
+    }
+
+    /**
+     * The number of rows of the last decoded batch.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * One of {@link #OK}, {@link #INVALID_BASE64}, {@link #UNSUPPORTED_VERSION}, {@link #TRUNCATED}
+     * or {@link #INVALID_RANGE}.
+     */
+    public byte getStatus(int row) {
+        checkRow(row);
+        return status[row];
+    }
+
+    /**
+     * The column of a projected {@link FieldDefs#CORE_CREATED} or {@link FieldDefs#CORE_LAST_UPDATED}
+     * field in deciseconds. The column is backed by the batch, only rows [0, size()) are valid.
+     *
+     * @throws IllegalArgumentException if the field is not a projected long column
+     */
+    public long[] getLongColumn(FieldDefs field) {
+        long[] column = longColumns[field.ordinal()];
+        if (column == null) {
+            throw new IllegalArgumentException("not a projected long column: " + field);
+        }
+        return column;
+    }
+
+    /**
+     * The column of a projected int field. Purpose and special feature bit fields are masks with
+     * bit i - 1 set for id i. The column is backed by the batch, only rows [0, size()) are valid.
+     *
+     * @throws IllegalArgumentException if the field is not a projected int column
+     */
+    public int[] getIntColumn(FieldDefs field) {
+        int[] column = intColumns[field.ordinal()];
+        if (column == null) {
+            throw new IllegalArgumentException("not a projected int column: " + field);
+        }
+        return column;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@link FieldDefs#CORE_VENDOR_BITRANGE_FIELD} is not projected
+     */
+    public boolean hasVendorConsent(int row, int vendorId) {
+        checkRow(row);
+        return vendorColumn(FieldDefs.CORE_VENDOR_BITRANGE_FIELD).contains(row, vendorId);
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@link FieldDefs#CORE_VENDOR_LI_BITRANGE_FIELD} is not
+     *         projected
+     */
+    public boolean hasVendorLegitimateInterest(int row, int vendorId) {
+        checkRow(row);
+        return vendorColumn(FieldDefs.CORE_VENDOR_LI_BITRANGE_FIELD).contains(row, vendorId);
+    }
+
+    /**
+     * The bitmap arena of a projected vendor field. The bitmap of row r is held by the words
+     * [offsets[r], offsets[r + 1]) of the arena, see {@link #getVendorOffsets(FieldDefs)}, in the
+     * layout of {@link java.util.BitSet#valueOf(long[])} with bit i set for vendor id i.
+     *
+     * @throws IllegalArgumentException if the field is not a projected vendor field
+     */
+    public long[] getVendorBitmaps(FieldDefs field) {
+        return vendorColumn(field).words;
+    }
+
+    /**
+     * The size() + 1 offsets of the bitmaps of a projected vendor field within its arena.
+     *
+     * @throws IllegalArgumentException if the field is not a projected vendor field
+     */
+    public int[] getVendorOffsets(FieldDefs field) {
+        return vendorColumn(field).offsets;
+    }
+
+    private VendorColumn vendorColumn(FieldDefs field) {
+        VendorColumn column = null;
+        if (field == FieldDefs.CORE_VENDOR_BITRANGE_FIELD) {
+            column = vendorConsent;
+        } else if (field == FieldDefs.CORE_VENDOR_LI_BITRANGE_FIELD) {
+            column = vendorLegitimateInterest;
+        }
+        if (column == null) {
+            throw new IllegalArgumentException("not a projected vendor column: " + field);
+        }
+        return column;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " out of bounds for size " + size);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (status.length >= capacity) {
+            return;
+        }
+
+        for (int i = 0; i < longColumns.length; i++) {
+            if (longColumns[i] != null) {
+                longColumns[i] = Arrays.copyOf(longColumns[i], capacity);
+            }
+            if (intColumns[i] != null) {
+                intColumns[i] = Arrays.copyOf(intColumns[i], capacity);
+            }
+        }
+        if (vendorConsent != null) {
+            vendorConsent.ensureCapacity(capacity);
+        }
+        if (vendorLegitimateInterest != null) {
+            vendorLegitimateInterest.ensureCapacity(capacity);
+        }
+        status = Arrays.copyOf(status, capacity);
+    }
+
+    private byte decodeRow(CharSequence consentString, int row) {
+        if (vendorConsent != null) {
+            vendorConsent.clear(row);
+        }
+        if (vendorLegitimateInterest != null) {
+            vendorLegitimateInterest.clear(row);
+        }
+
+        boolean decodeVendors = decodeVendorConsent || decodeVendorLegitimateInterest;
+        int limit = decodeVendors ? consentString.length() : Math.min(consentString.length(), prefixChars);
+        int end = 0;
+        while (end < limit && consentString.charAt(end) != SEGMENT_SEPARATOR) {
+            end++;
+        }
+
+        if (scratch.length < Base64Url.maxDecodedLength(end)) {
+            scratch = new byte[Math.max(scratch.length * 2, Base64Url.maxDecodedLength(end))];
+            reader = new BitReader(scratch);
+        }
+
+        int n = Base64Url.tryDecode(consentString, 0, end, scratch, 0);
+        if (n < 0) {
+            return INVALID_BASE64;
+        }
+        int bits = n * Byte.SIZE;
+
+        if (bits < VERSION_LENGTH) {
+            return TRUNCATED;
+        }
+        if (reader.readBitsUnchecked(0, VERSION_LENGTH) != SUPPORTED_VERSION) {
+            return UNSUPPORTED_VERSION;
+        }
+        if (bits < fixedEnd) {
+            return TRUNCATED;
+        }
+
+        for (FieldDefs field : fixedFields) {
+            int i = field.ordinal();
+            long value = reader.readBitsUnchecked(OFFSETS[i], LENGTHS[i]);
+            if (longColumns[i] != null) {
+                longColumns[i][row] = value;
+            } else if (MASK_FIELDS.contains(field)) {
+                intColumns[i][row] = Integer.reverse((int) value) >>> (Integer.SIZE - LENGTHS[i]);
+            } else {
+                intColumns[i][row] = (int) value;
+            }
+        }
+
+        if (decodeVendors) {
+            int next = readVendors(vendorConsent, row, OFFSETS[FieldDefs.CORE_VENDOR_MAX_VENDOR_ID.ordinal()], bits);
+            if (next >= 0 && decodeVendorLegitimateInterest) {
+                next = readVendors(vendorLegitimateInterest, row, next, bits);
+            }
+            if (next < 0) {
+                return (byte) -next;
+            }
+        }
+        return OK;
+    }
+
+    /**
+     * Reads the vendor section starting with the max vendor id at offset into the column, or only
+     * skips it if column is null.
+     *
+     * @return the offset following the section, or the negated status if the section is invalid
+     */
+    private int readVendors(VendorColumn column, int row, int offset, int bits) {
+        if (offset + MAX_VENDOR_ID_LENGTH + 1 > bits) {
+            return -TRUNCATED;
+        }
+        int maxV = (int) reader.readBitsUnchecked(offset, MAX_VENDOR_ID_LENGTH);
+        boolean isRangeEncoding = reader.readBitsUnchecked(offset + MAX_VENDOR_ID_LENGTH, 1) != 0;
+        offset += MAX_VENDOR_ID_LENGTH + 1;
+
+        // bit i of the bitmap is vendor id i
+        int words = (maxV + Long.SIZE) / Long.SIZE;
+
+        if (!isRangeEncoding) {
+            if (offset + maxV > bits) {
+                return -TRUNCATED;
+            }
+            if (column != null) {
+                reader.readBitmap(offset, maxV, 1, column.words, column.allocate(row, words));
+            }
+            return offset + maxV;
+        }
+
+        if (offset + NUM_ENTRIES_LENGTH > bits) {
+            return -TRUNCATED;
+        }
+        int numEntries = (int) reader.readBitsUnchecked(offset, NUM_ENTRIES_LENGTH);
+        offset += NUM_ENTRIES_LENGTH;
+
+        int at = column != null ? column.allocate(row, words) : 0;
+        for (int j = 0; j < numEntries; j++) {
+            if (offset + 1 + VENDOR_ID_LENGTH > bits) {
+                return -TRUNCATED;
+            }
+            boolean isRangeEntry = reader.readBitsUnchecked(offset, 1) != 0;
+            int start = (int) reader.readBitsUnchecked(offset + 1, VENDOR_ID_LENGTH);
+            offset += 1 + VENDOR_ID_LENGTH;
+
+            int end = start;
+            if (isRangeEntry) {
+                if (offset + VENDOR_ID_LENGTH > bits) {
+                    return -TRUNCATED;
+                }
+                end = (int) reader.readBitsUnchecked(offset, VENDOR_ID_LENGTH);
+                offset += VENDOR_ID_LENGTH;
+            }
+            if (start > end || end > maxV) {
+                return -INVALID_RANGE;
+            }
+
+            if (column != null) {
+                setRange(column.words, at, start, end);
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Sets the bits [from, to] of the bitmap starting at words[at].
+     */
+    private static void setRange(long[] words, int at, int from, int to) {
+        int fromWord = at + (from >>> 6);
+        int toWord = at + (to >>> 6);
+        long fromMask = -1L << from;
+        long toMask = -1L >>> (Long.SIZE - 1 - (to & (Long.SIZE - 1)));
+
+        if (fromWord == toWord) {
+            words[fromWord] |= fromMask & toMask;
+            return;
+        }
+        words[fromWord] |= fromMask;
+        Arrays.fill(words, fromWord + 1, toWord, -1L);
+        words[toWord] |= toMask;
+    }
+
+    private void clearRow(int row) {
+        for (FieldDefs field : fixedFields) {
+            int i = field.ordinal();
+            if (longColumns[i] != null) {
+                longColumns[i][row] = 0;
+            } else {
+                intColumns[i][row] = 0;
+            }
+        }
+        if (vendorConsent != null) {
+            vendorConsent.clear(row);
+        }
+        if (vendorLegitimateInterest != null) {
+            vendorLegitimateInterest.clear(row);
+        }
+    }
+
+    /**
+     * Vendor bitmaps of all rows packed in a single arena, the bitmap of row r held by the words
+     * [offsets[r], offsets[r + 1]). Rows are filled in order.
+     */
+    private static final class VendorColumn {
+        long[] words = new long[1024];
+        int[] offsets;
+
+        VendorColumn(int capacity) {
+            offsets = new int[capacity + 1];
+        }
+
+        void ensureCapacity(int capacity) {
+            offsets = Arrays.copyOf(offsets, capacity + 1);
+        }
+
+        /**
+         * Makes the bitmap of row empty, row must be the last row filled so far.
+         */
+        void clear(int row) {
+            offsets[row + 1] = offsets[row];
+        }
+
+        /**
+         * Allocates a zeroed bitmap of n words for the row, returning its offset in the arena.
+         */
+        int allocate(int row, int n) {
+            int at = offsets[row];
+            if (words.length < at + n) {
+                words = Arrays.copyOf(words, Math.max(words.length * 2, at + n));
+            }
+            Arrays.fill(words, at, at + n, 0);
+            offsets[row + 1] = at + n;
+            return at;
+        }
+
+        boolean contains(int row, int vendorId) {
+            if (vendorId < 0) {
+                return false;
+            }
+            int word = offsets[row] + (vendorId >>> 6);
+            return word < offsets[row + 1] && (words[word] & 1L << vendorId) != 0;
+        }
+    }
+
+    public static final class Builder {
+        private final Set<FieldDefs> columns = EnumSet.noneOf(FieldDefs.class);
+        private int capacity = 1024;
+
+        private Builder() {
+        }
+
+        /**
+         * The fields to decode, all supported fields by default. Supported are the version, created,
+         * last updated, CMP id and version, consent screen, vendor list and policy version, special
+         * feature opt ins, purposes consent and legitimate interest transparency fields of the core
+         * segment as well as its vendor consent and legitimate interest sections.
+         *
+         * @throws IllegalArgumentException if a field is not supported
+         */
+        public Builder columns(FieldDefs... fields) {
+            for (FieldDefs field : fields) {
+                if (!LONG_FIELDS.contains(field) && !INT_FIELDS.contains(field) && !MASK_FIELDS.contains(field)
+                        && !VENDOR_FIELDS.contains(field)) {
+                    throw new IllegalArgumentException("unsupported column: " + field);
+                }
+                columns.add(field);
+            }
+            return this;
+        }
+
+        /**
+         * The initial number of rows of the columns, 1024 by default.
+         */
+        public Builder capacity(int capacity) {
+            if (capacity < 0) {
+                throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        public TCStringBatch build() {
+            if (columns.isEmpty()) {
+                columns.addAll(LONG_FIELDS);
+                columns.addAll(INT_FIELDS);
+                columns.addAll(MASK_FIELDS);
+                columns.addAll(VENDOR_FIELDS);
+            }
+            return new TCStringBatch(this);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Core Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.iabtcf.exceptions.ByteParseException;
+import com.iabtcf.exceptions.UnsupportedVersionException;
+import com.iabtcf.utils.Base64Url;
+
+/**
+ * A bounded cache of decoded consent strings. A small set of distinct strings, e.g. the same user
+ * across many ad slots or CMP defaults, tends to account for a large share of traffic, decoding each
+ * of them once saves the repeated work.
+ *
+ * The cache is bounded by the number of entries and by an approximate weight in bytes. Entries are
+ * split over independently locked stripes by the hash of the consent string, each stripe evicts
+ * using a segmented LRU policy: new entries are admitted to a probationary segment and only promoted
+ * to the protected segment when requested again, so a scan of strings seen once cannot flush the
+ * frequently requested ones.
+ *
+ * Decoded strings are immutable and safe for concurrent use, so cached instances are shared between
+ * callers. Strings failing to decode are never cached.
+ *
+ * <pre>
+ * TCStringCache cache = TCStringCache.newBuilder()
+ *         .maximumSize(10_000)
+ *         .maximumWeight(16 * 1024 * 1024)
+ *         .build();
+ *
+ * TCString tcString = cache.decode(consentString);
+ * </pre>
+ */
+public final class TCStringCache {
+    /**
+     * Approximate fixed cost of an entry: the node, the hash map entry, the key and the decoded
+     * string objects.
+     */
+    static final int ENTRY_OVERHEAD = 512;
+
+    private final Stripe[] stripes;
+    private final DecoderOption[] options;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private TCStringCache(Builder builder) {
+        int n = Integer.highestOneBit(Math.max(1, Math.min(builder.concurrencyLevel, builder.maximumSize)));
+        stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            // spread the bounds over the stripes, the first stripes take the remainders so the totals
+            // are exactly the bounds
+            stripes[i] = new Stripe(builder.maximumSize / n + (i < builder.maximumSize % n ? 1 : 0),
+                    builder.maximumWeight / n + (i < builder.maximumWeight % n ? 1 : 0));
+        }
+        options = builder.options.clone();
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the cached decode of consentString, decoding and caching it on a miss.
+     *
+     * @throws ByteParseException if version field failed to parse
+     * @throws UnsupportedVersionException invalid version field
+     * @throws IllegalArgumentException if consentString is not in valid Base64 scheme
+     */
+    public TCString decode(String consentString)
+            throws IllegalArgumentException, ByteParseException, UnsupportedVersionException {
+        Stripe stripe = stripeFor(consentString);
+
+        TCString tcString = stripe.get(consentString);
+        if (tcString != null) {
+            hits.increment();
+            return tcString;
+        }
+
+        misses.increment();
+        // decode outside of the lock, two threads missing on the same string both decode it and the
+        // first one to finish wins, failures are reported to the decode listener like any decode
+        tcString = TCString.decode(consentString, options);
+        return stripe.putIfAbsent(consentString, tcString, weigh(consentString));
+    }
+
+    /**
+     * Removes all entries, the counters are not reset.
+     */
+    public void invalidateAll() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * The number of cached entries.
+     */
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * The approximate weight in bytes of the cached entries.
+     */
+    public long weight() {
+        long weight = 0;
+        for (Stripe stripe : stripes) {
+            weight += stripe.weight();
+        }
+        return weight;
+    }
+
+    /**
+     * The number of decodes answered from the cache.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * The number of decodes not answered from the cache.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * The number of entries evicted to honor the bounds of the cache.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Approximate retained size of an entry. A decoded string holds the decoded bytes, 3 per 4
+     * characters, plus the fields decoded from them, which are accounted for as the same amount
+     * again.
+     */
+    static int weigh(String consentString) {
+        return ENTRY_OVERHEAD + 2 * consentString.length() + 2 * Base64Url.maxDecodedLength(consentString.length());
+    }
+
+    private Stripe stripeFor(String consentString) {
+        int h = consentString.hashCode();
+        h ^= h >>> 16;
+        return stripes[h & (stripes.length - 1)];
+    }
+
+    @Override
+    public String toString() {
+        return "TCStringCache [size=" + size() + ", weight=" + weight() + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    private static final class Node {
+        final String key;
+        final TCString value;
+        final int weight;
+        boolean isProtected;
+        Node prev;
+        Node next;
+
+        Node(String key, TCString value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * A segmented LRU over a hash map, guarded by the lock of the stripe. Both segments are doubly
+     * linked lists with the most recently used node following the sentinel head.
+     */
+    private final class Stripe {
+        private final int maximumSize;
+        private final long maximumWeight;
+        private final int maximumProtectedSize;
+        private final long maximumProtectedWeight;
+
+        private final Map<String, Node> map = new HashMap<>();
+        private final Node probation = sentinel();
+        private final Node protectedSegment = sentinel();
+        private int protectedSize;
+        private long protectedWeight;
+        private long weight;
+
+        Stripe(int maximumSize, long maximumWeight) {
+            this.maximumSize = maximumSize;
+            this.maximumWeight = maximumWeight;
+            // the protected segment takes up to 80% of the stripe, the rest admits new entries
+            this.maximumProtectedSize = maximumSize * 4 / 5;
+            this.maximumProtectedWeight = maximumWeight * 4 / 5;
+        }
+
+        synchronized TCString get(String key) {
+            Node node = map.get(key);
+            if (node == null) {
+                return null;
+            }
+
+            unlink(node);
+            if (!node.isProtected) {
+                node.isProtected = true;
+                protectedSize++;
+                protectedWeight += node.weight;
+            }
+            linkFirst(protectedSegment, node);
+
+            // demote the least recently used protected entries, they get another chance on probation
+            while (protectedSize > maximumProtectedSize || protectedWeight > maximumProtectedWeight) {
+                Node lru = protectedSegment.prev;
+                unlink(lru);
+                lru.isProtected = false;
+                protectedSize--;
+                protectedWeight -= lru.weight;
+                linkFirst(probation, lru);
+            }
+            return node.value;
+        }
+
+        synchronized TCString putIfAbsent(String key, TCString value, int nodeWeight) {
+            Node node = map.get(key);
+            if (node != null) {
+                return node.value;
+            }
+
+            node = new Node(key, value, nodeWeight);
+            map.put(key, node);
+            linkFirst(probation, node);
+            weight += nodeWeight;
+
+            while (map.size() > maximumSize || weight > maximumWeight) {
+                // victims come from the probationary segment first
+                Node victim = probation.prev != probation ? probation.prev : protectedSegment.prev;
+                unlink(victim);
+                map.remove(victim.key);
+                weight -= victim.weight;
+                if (victim.isProtected) {
+                    protectedSize--;
+                    protectedWeight -= victim.weight;
+                }
+                evictions.increment();
+            }
+            return value;
+        }
+
+        synchronized void clear() {
+            map.clear();
+            probation.prev = probation;
+            probation.next = probation;
+            protectedSegment.prev = protectedSegment;
+            protectedSegment.next = protectedSegment;
+            protectedSize = 0;
+            protectedWeight = 0;
+            weight = 0;
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        synchronized long weight() {
+            return weight;
+        }
+
+        private Node sentinel() {
+            Node node = new Node(null, null, 0);
+            node.prev = node;
+            node.next = node;
+            return node;
+        }
+
+        private void linkFirst(Node head, Node node) {
+            node.prev = head;
+            node.next = head.next;
+            head.next.prev = node;
+            head.next = node;
+        }
+
+        private void unlink(Node node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    public static final class Builder {
+        private int maximumSize = 10_000;
+        private long maximumWeight = 16L * 1024 * 1024;
+        private int concurrencyLevel = 16;
+        private DecoderOption[] options = {};
+
+        private Builder() {
+        }
+
+        /**
+         * The maximum number of cached entries, 10000 by default.
+         */
+        public Builder maximumSize(int maximumSize) {
+            if (maximumSize < 1) {
+                throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * The maximum approximate weight in bytes of the cached entries, 16 MiB by default.
+         */
+        public Builder maximumWeight(long maximumWeight) {
+            if (maximumWeight < 1) {
+                throw new IllegalArgumentException("maximumWeight must be positive: " + maximumWeight);
+            }
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        /**
+         * The number of independently locked stripes, rounded down to a power of two, 16 by default.
+         * The bounds are split evenly over the stripes.
+         */
+        public Builder concurrencyLevel(int concurrencyLevel) {
+            if (concurrencyLevel < 1) {
+                throw new IllegalArgumentException("concurrencyLevel must be positive: " + concurrencyLevel);
+            }
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
+        /**
+         * The options consent strings are decoded with. Strings are decoded eagerly by default, so
+         * invalid strings fail before being cached.
+         */
+        public Builder decoderOptions(DecoderOption... options) {
+            this.options = options.clone();
+            return this;
+        }
+
+        public TCStringCache build() {
+            return new TCStringCache(this);
+        }
+    }
+}
@@ -20,23 +20,20 @@ package com.iabtcf.decoder;
  * #L%
  */
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.EnumSet;
 
 import com.iabtcf.exceptions.ByteParseException;
 import com.iabtcf.exceptions.UnsupportedVersionException;
+import com.iabtcf.utils.Base64Url;
 import com.iabtcf.utils.BitReader;
 import com.iabtcf.utils.FieldDefs;
 
 class TCStringDecoder {
-    static BitReader vectorFromString(String base64UrlEncodedString) {
-        // SegmentInputStream sis = new SegmentInputStream(base64UrlEncodedString, 0);
-        // InputStream is = DECODER.wrap(sis);
-        //
-        //
-        byte[] bytes = Base64.getUrlDecoder().decode(base64UrlEncodedString);
-        return new BitReader(bytes);
-    }
+    static final char SEGMENT_SEPARATOR = '.';
 
     /**
      * Decodes the consent string with the specified options.
@@ -47,34 +44,238 @@ class TCStringDecoder {
      */
     public static TCString decode(String consentString, DecoderOption... options)
             throws IllegalArgumentException, ByteParseException, UnsupportedVersionException {
+        return decode(consentString, 0, consentString.length(), options);
+    }
+
+    /**
+     * Decodes the consent string held by the characters [start, end) of the sequence.
+     *
+     * @throws ByteParseException if version field failed to parse
+     * @throws UnsupportedVersionException invalid version field
+     * @throws IllegalArgumentException if consentString is not in valid Base64 scheme
+     * @throws IndexOutOfBoundsException if the range is not within the sequence
+     */
+    public static TCString decode(CharSequence consentString, int start, int end, DecoderOption... options)
+            throws IllegalArgumentException, ByteParseException, UnsupportedVersionException {
+        checkRange(start, end, consentString.length());
+
+        if (isStreaming(options)) {
+            return decodeStreaming(consentString.subSequence(start, end).toString(), options);
+        }
+
+        boolean lazy = isLazy(options);
+        if (lazy && !(consentString instanceof String)) {
+            // a lazily decoded string keeps reading its characters, take a copy of mutable input
+            return decode(consentString.subSequence(start, end).toString(), options);
+        }
+
+        return decode(new SegmentSource.Chars(consentString), start, end, lazy, options);
+    }
+
+    /**
+     * Decodes the percent-encoded consent string held by the characters [start, end) of the
+     * sequence, e.g. the value of a query parameter within a request URI. Escapes are decoded and
+     * padding is skipped while base64 decoding the segments, without unescaping into a copy.
+     * Segments are always base64 decoded up front, the options only apply to reading the fields.
+     *
+     * @throws ByteParseException if version field failed to parse
+     * @throws UnsupportedVersionException invalid version field
+     * @throws IllegalArgumentException if consentString is not in valid Base64 scheme once unescaped
+     * @throws IndexOutOfBoundsException if the range is not within the sequence
+     */
+    public static TCString decodeUrlEncoded(CharSequence consentString, int start, int end,
+            DecoderOption... options) throws IllegalArgumentException, ByteParseException, UnsupportedVersionException {
+        checkRange(start, end, consentString.length());
+
+        return decode(new SegmentSource.PercentEncoded(consentString), start, end, false, options);
+    }
+
+    /**
+     * Decodes the consent string held by the ASCII bytes [offset, offset + length) of the array.
+     *
+     * @throws ByteParseException if version field failed to parse
+     * @throws UnsupportedVersionException invalid version field
+     * @throws IllegalArgumentException if consentString is not in valid Base64 scheme
+     * @throws IndexOutOfBoundsException if the range is not within the array
+     */
+    public static TCString decode(byte[] consentString, int offset, int length, DecoderOption... options)
+            throws IllegalArgumentException, ByteParseException, UnsupportedVersionException {
+        int end = offset + length;
+        checkRange(offset, end, consentString.length);
+
+        if (isStreaming(options)) {
+            return decodeStreaming(new String(consentString, offset, length, StandardCharsets.US_ASCII), options);
+        }
+        if (isLazy(options)) {
+            // a lazily decoded string keeps reading its characters, take a copy of mutable input
+            byte[] copy = Arrays.copyOfRange(consentString, offset, end);
+            return decode(new SegmentSource.Bytes(copy), 0, length, true, options);
+        }
+        return decode(new SegmentSource.Bytes(consentString), offset, end, false, options);
+    }
+
+    /**
+     * Decodes the consent string held by the ASCII bytes between the position and the limit of the
+     * buffer. The position of the buffer is not changed.
+     *
+     * @throws ByteParseException if version field failed to parse
+     * @throws UnsupportedVersionException invalid version field
+     * @throws IllegalArgumentException if consentString is not in valid Base64 scheme
+     */
+    public static TCString decode(ByteBuffer consentString, DecoderOption... options)
+            throws IllegalArgumentException, ByteParseException, UnsupportedVersionException {
+        if (isStreaming(options)) {
+            return decodeStreaming(new AsciiSequence(consentString).toString(), options);
+        }
+        if (isLazy(options)) {
+            // a lazily decoded string keeps reading its characters, take a copy of mutable input
+            byte[] copy = new byte[consentString.remaining()];
+            consentString.duplicate().get(copy);
+            return decode(new SegmentSource.Bytes(copy), 0, copy.length, true, options);
+        }
+
+        if (consentString.hasArray()) {
+            return decode(consentString.array(), consentString.arrayOffset() + consentString.position(),
+                    consentString.remaining(), options);
+        }
+
+        return decode(new AsciiSequence(consentString), 0, consentString.remaining(), options);
+    }
+
+    /**
+     * Splits the string into segment streams, each base64 decoded by its reader on first access.
+     */
+    private static TCString decodeStreaming(String consentString, DecoderOption... options) {
+        SegmentSource source = new SegmentSource.Chars(consentString);
+        LazySegmentFactory factory = new LazySegmentFactory(consentString);
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        BitReader[] segments = new BitReader[source.maxSegments(0, consentString.length())];
+        int used = split(source, 0, consentString.length(), null, (index, from, to) -> {
+            segments[index] = new BitReader(decoder.wrap(factory.next().get()));
+        });
+
+        return decode(segments, used, options);
+    }
+
+    /**
+     * Splits the characters [start, end) of the source into segments, either decoding them upfront
+     * or reading the base64url characters in place.
+     */
+    private static TCString decode(SegmentSource source, int start, int end, boolean lazy,
+            DecoderOption... options) {
+        byte[] buffer = lazy ? null : new byte[Base64Url.maxDecodedLength(end - start)];
+        BitReader[] segments = new BitReader[source.maxSegments(start, end)];
+        int used = split(source, start, end, buffer, (index, from, to) -> {
+            segments[index] = buffer != null ? new BitReader(buffer, from, to) : source.fromBase64(from, to);
+        });
+        return decode(segments, used, options);
+    }
+
+    /**
+     * Receives the segments of a consent string from {@link TCStringDecoder#split}.
+     */
+    interface SegmentSink {
+
+        /**
+         * The segment at index was decoded into the bytes [from, to) of the buffer or, when split
+         * without a buffer, is held by the characters [from, to) of the source.
+         */
+        void segment(int index, int from, int to);
+    }
+
+    /**
+     * Splits the characters [start, end) of the source into segments, reporting the base64
+     * decoding of each and the whole split to the listener. Trailing empty segments are ignored.
+     * Given a buffer of at least {@link Base64Url#maxDecodedLength(int)} bytes the segments are
+     * decoded into it one after the other, without a buffer the sink reads them in place.
+     *
+     * @return the number of segments passed to the sink
+     * @throws IllegalArgumentException if a segment is not valid base64url
+     */
+    static int split(SegmentSource source, int start, int end, byte[] buffer, SegmentSink sink) {
+        DecodeListener listener = DecodeListeners.get();
+        long splitStart = listener != null ? System.nanoTime() : 0;
+        int index = 0;
+        int segmentStart = start;
+        int dp = 0;
+        while (index == 0 || !source.isTrailing(segmentStart, end)) {
+            int segmentEnd = source.segmentEnd(segmentStart, end);
+
+            long base64Start = listener != null ? System.nanoTime() : 0;
+            int n;
+            if (buffer != null) {
+                n = source.decode(segmentStart, segmentEnd, buffer, dp);
+                sink.segment(index, dp, dp + n);
+                dp += n;
+            } else {
+                n = Base64Url.maxDecodedLength(segmentEnd - segmentStart);
+                sink.segment(index, segmentStart, segmentEnd);
+            }
+            if (listener != null) {
+                listener.base64Decoded(segmentEnd - segmentStart, n, System.nanoTime() - base64Start);
+            }
+
+            index++;
+            segmentStart = segmentEnd + source.separatorLength(segmentEnd, end);
+        }
+        if (listener != null) {
+            listener.segmentsSplit(index, System.nanoTime() - splitStart);
+        }
+        return index;
+    }
+
+    static boolean isLazy(DecoderOption... options) {
+        for (DecoderOption opt : options) {
+            if (opt == DecoderOption.LAZY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isStreaming(DecoderOption... options) {
+        for (DecoderOption opt : options) {
+            if (opt == DecoderOption.STREAMING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void checkRange(int start, int end, int length) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(
+                    String.format("range [%d, %d) out of bounds for length %d", start, end, length));
+        }
+    }
+
+    /**
+     * Decodes the first used segments, trailing empty segments are ignored.
+     */
+    static TCString decode(BitReader[] segments, int used, DecoderOption... options) {
         EnumSet<DecoderOption> optSet = EnumSet.noneOf(DecoderOption.class);
         for (DecoderOption opt : options) {
             optSet.add(opt);
         }
 
-        String[] split = consentString.split("\\.");
-        String base64UrlEncodedString = split[0];
-        BitReader bitVector = vectorFromString(base64UrlEncodedString);
-
+        boolean eager = !optSet.contains(DecoderOption.LAZY) && !optSet.contains(DecoderOption.STREAMING);
+        BitReader bitVector = segments[0];
         int version = bitVector.readBits6(FieldDefs.CORE_VERSION);
 
         switch (version) {
             case 1:
-                return TCStringV1.fromBitVector(bitVector);
-            case 2:
-                TCString tcString = null;
-                if (split.length > 1) {
-                    BitReader[] remaining = new BitReader[split.length - 1];
-                    for (int i = 1; i < split.length; i++) {
-                        remaining[i - 1] = vectorFromString(split[i]);
-                    }
-                    tcString = TCStringV2.fromBitVector(bitVector, remaining);
-                } else {
-                    tcString = TCStringV2.fromBitVector(bitVector);
+                TCStringV1 tcStringV1 = TCStringV1.fromBitVector(bitVector);
+
+                if (eager) {
+                    tcStringV1.decodeAll();
                 }
 
-                if (!optSet.contains(DecoderOption.LAZY)) {
-                    tcString.hashCode();
+                return tcStringV1;
+            case 2:
+                TCStringV2 tcString = TCStringV2.fromBitVector(bitVector, Arrays.copyOfRange(segments, 1, used));
+
+                if (eager) {
+                    tcString.decodeAll();
                 }
 
                 return tcString;
@@ -82,4 +283,43 @@ class TCStringDecoder {
                 throw new UnsupportedVersionException("Version " + version + "is unsupported yet");
         }
     }
+
+    /**
+     * Views the remaining ASCII bytes of a (direct) buffer as characters, without copying them.
+     */
+    private static class AsciiSequence implements CharSequence {
+        private final ByteBuffer buffer;
+        private final int position;
+        private final int length;
+
+        AsciiSequence(ByteBuffer buffer) {
+            this(buffer, buffer.position(), buffer.remaining());
+        }
+
+        private AsciiSequence(ByteBuffer buffer, int position, int length) {
+            this.buffer = buffer;
+            this.position = position;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(position + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiSequence(buffer, position + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(length).append(this).toString();
+        }
+    }
 }
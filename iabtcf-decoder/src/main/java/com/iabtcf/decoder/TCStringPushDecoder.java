@@ -0,0 +1,284 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static com.iabtcf.decoder.TCStringDecoder.SEGMENT_SEPARATOR;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.iabtcf.exceptions.ByteParseException;
+import com.iabtcf.exceptions.UnsupportedVersionException;
+import com.iabtcf.utils.Base64Url;
+import com.iabtcf.utils.BitReader;
+import com.iabtcf.utils.FieldDefs;
+
+/**
+ * Decodes a consent string pushed in chunks as they arrive, e.g. from a non blocking channel, instead
+ * of pulling it from a blocking stream. Each chunk is base64 decoded right away, the fixed header
+ * fields of the core segment can be read as soon as their bits have arrived.
+ *
+ * The consent string ends at the first byte that can't be part of it, e.g. the closing quote of a
+ * JSON string, or when {@link #finish()} is called. Trailing padding is skipped whatever its length.
+ *
+ * <pre>
+ * TCStringPushDecoder decoder = new TCStringPushDecoder();
+ * while (decoder.feed(chunk) == TCStringPushDecoder.State.NEED_MORE_INPUT) {
+ *     chunk = nextChunk();
+ * }
+ * TCString tcString = decoder.getTCString();
+ * decoder.reset();
+ * </pre>
+ *
+ * The decoder keeps its buffer across {@link #reset()}, decoders held per connection or per thread
+ * only allocate the right-sized copy backing each decoded {@link TCString}. Instances are not thread
+ * safe.
+ *
+ * @since 2.0.8
+ */
+public final class TCStringPushDecoder {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final char PADDING = '=';
+
+    private static final FieldDefs[] FIELDS = FieldDefs.values();
+
+    /**
+     * Offsets and versions of the fixed header fields of the core segment by ordinal, -1 for other
+     * fields.
+     */
+    private static final int[] OFFSETS = new int[FIELDS.length];
+    private static final int[] VERSIONS = new int[FIELDS.length];
+
+    static {
+        Arrays.fill(OFFSETS, -1);
+        Arrays.fill(VERSIONS, -1);
+        BitReader empty = new BitReader(new byte[0]);
+        header(2, FieldDefs.CORE_VERSION, FieldDefs.CORE_PUBLISHER_CC, empty);
+        header(1, FieldDefs.V1_VERSION, FieldDefs.V1_PURPOSES_ALLOW, empty);
+    }
+
+    /**
+     * The outcome of feeding a chunk.
+     */
+    public enum State {
+        /**
+         * The chunk was consumed without reaching the end of the consent string.
+         */
+        NEED_MORE_INPUT,
+
+        /**
+         * The end of the consent string was reached, {@link #getTCString()} decodes it.
+         */
+        DONE
+    }
+
+    private final DecoderOption[] options;
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+
+    /**
+     * Start offsets of the decoded segments in buffer, segments[count] being the end of the last.
+     */
+    private int[] segments = new int[4];
+    private int count;
+    private int used;
+
+    private int length;
+    private int bits;
+    private int nbits;
+    private int characters;
+    private boolean padding;
+    private State state;
+
+    private static void header(int version, FieldDefs first, FieldDefs last, BitReader empty) {
+        for (int i = first.ordinal(); i <= last.ordinal(); i++) {
+            OFFSETS[i] = FIELDS[i].getOffset(empty);
+            VERSIONS[i] = version;
+        }
+    }
+
+    /**
+     * Creates a decoder, the options apply to the decoded {@link TCString}.
+     */
+    public TCStringPushDecoder(DecoderOption... options) {
+        this.options = options.clone();
+        reset();
+    }
+
+    /**
+     * Clears the decoder to decode the next consent string, keeping its buffer.
+     */
+    public void reset() {
+        count = 0;
+        used = 0;
+        length = 0;
+        bits = 0;
+        nbits = 0;
+        characters = 0;
+        padding = false;
+        state = State.NEED_MORE_INPUT;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Decodes the remaining bytes of the chunk up to the end of the consent string, if it is part
+     * of the chunk. The position of the chunk is advanced past the consumed bytes, it is left at the
+     * byte ending the consent string.
+     *
+     * @throws IllegalStateException if the end of the consent string was already reached
+     * @throws IllegalArgumentException if the consent string is not in valid Base64 scheme
+     */
+    public State feed(ByteBuffer chunk) {
+        if (state == State.DONE) {
+            throw new IllegalStateException("the consent string is complete, reset the decoder first");
+        }
+        ensureCapacity(length + Base64Url.maxDecodedLength(chunk.remaining()) + 1);
+
+        // heap buffers are read from their array, skipping the bounds checks of the buffer
+        byte[] array = chunk.hasArray() ? chunk.array() : null;
+        int arrayOffset = array != null ? chunk.arrayOffset() : 0;
+        int position = chunk.position();
+        int limit = chunk.limit();
+        for (; position < limit; position++) {
+            int c = (array != null ? array[arrayOffset + position] : chunk.get(position)) & 0xFF;
+            int v = Base64Url.sextet(c);
+            if (v >= 0 && !padding) {
+                bits = bits << 6 | v;
+                nbits += 6;
+                if (nbits >= Byte.SIZE) {
+                    nbits -= Byte.SIZE;
+                    buffer[length++] = (byte) (bits >>> nbits);
+                }
+                characters++;
+            } else if (c == PADDING) {
+                padding = true;
+                characters++;
+            } else if (c == SEGMENT_SEPARATOR) {
+                endSegment();
+            } else if (v >= 0) {
+                chunk.position(position);
+                throw new IllegalArgumentException("Illegal base64 character " + Integer.toString(c, 16)
+                        + " following padding");
+            } else {
+                chunk.position(position);
+                return finish();
+            }
+        }
+        chunk.position(position);
+        return state;
+    }
+
+    /**
+     * Marks the end of the input, the consent string ends with the bytes fed so far.
+     *
+     * @throws IllegalArgumentException if the consent string is not in valid Base64 scheme
+     */
+    public State finish() {
+        if (state == State.NEED_MORE_INPUT) {
+            endSegment();
+            state = State.DONE;
+        }
+        return state;
+    }
+
+    private void endSegment() {
+        if (nbits == 6) {
+            throw new IllegalArgumentException("Last unit does not have enough valid bits");
+        }
+        if (count + 1 == segments.length) {
+            segments = Arrays.copyOf(segments, segments.length * 2);
+        }
+        if (characters > 0) {
+            used = count + 1;
+        }
+        segments[++count] = length;
+        bits = 0;
+        nbits = 0;
+        characters = 0;
+        padding = false;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length + (buffer.length >> 1)));
+        }
+    }
+
+    /**
+     * Returns true if the field is a header field of the core segment of this version, and its
+     * bits have arrived. The version is available once the first byte has arrived.
+     */
+    public boolean isAvailable(FieldDefs field) {
+        int offset = OFFSETS[field.ordinal()];
+        int coreLength = count > 0 ? segments[1] : length;
+        if (offset < 0 || offset + field.getLength() > coreLength * Byte.SIZE) {
+            return false;
+        }
+        return VERSIONS[field.ordinal()] == readBits(0, FieldDefs.CORE_VERSION.getLength());
+    }
+
+    /**
+     * Reads a header field of the core segment, e.g. {@link FieldDefs#CORE_CMP_ID}, as an unsigned
+     * value.
+     *
+     * @throws IllegalStateException if the field is not {@link #isAvailable(FieldDefs) available}
+     */
+    public long readBits(FieldDefs field) {
+        if (!isAvailable(field)) {
+            throw new IllegalStateException(field + " is not available");
+        }
+        return readBits(OFFSETS[field.ordinal()], field.getLength());
+    }
+
+    private long readBits(int offset, int length) {
+        long rv = 0;
+        for (int i = offset; i < offset + length; i++) {
+            rv = rv << 1 | (buffer[i >>> 3] >>> (7 - (i & 7)) & 1);
+        }
+        return rv;
+    }
+
+    /**
+     * Decodes the complete consent string with the options of this decoder. The string is backed by
+     * a copy of the decoded bytes, it stays valid once the decoder is reset.
+     *
+     * @throws IllegalStateException if the end of the consent string was not reached
+     * @throws ByteParseException if version field failed to parse
+     * @throws UnsupportedVersionException invalid version field
+     */
+    public TCString getTCString() {
+        if (state != State.DONE) {
+            throw new IllegalStateException("the consent string is not complete");
+        }
+        try {
+            byte[] bytes = Arrays.copyOf(buffer, length);
+            BitReader[] readers = new BitReader[Math.max(used, 1)];
+            for (int s = 0; s < readers.length; s++) {
+                readers[s] = new BitReader(bytes, segments[s], segments[s + 1]);
+            }
+            return TCStringDecoder.decode(readers, readers.length, options);
+        } catch (RuntimeException e) {
+            throw DecodeListeners.failed(e);
+        }
+    }
+}
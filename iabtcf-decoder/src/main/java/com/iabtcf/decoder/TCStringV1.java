@@ -34,19 +34,33 @@ import static com.iabtcf.utils.FieldDefs.V1_VERSION;
 
 import java.time.Instant;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
+import com.iabtcf.exceptions.TCStringDecodeException;
 import com.iabtcf.exceptions.InvalidRangeFieldException;
 import com.iabtcf.utils.BitReader;
 import com.iabtcf.utils.BitSetIntIterable;
 import com.iabtcf.utils.FieldDefs;
 import com.iabtcf.utils.IntIterable;
 import com.iabtcf.v2.PublisherRestriction;
+import com.iabtcf.v2.SegmentType;
 
 class TCStringV1 implements TCString {
 
+    /*
+     * Fields are decoded on first access and published through volatile references (racy
+     * single-check), like the fields of TCStringV2.
+     */
+    private volatile Instant created;
+    private volatile Instant lastUpdated;
+    private volatile String consentLanguage;
+    private volatile IntIterable purposesConsent;
+    private volatile IntIterable vendorConsent;
+
     private final BitReader bbv;
 
     private TCStringV1(BitReader bitVector) {
@@ -57,49 +71,98 @@ class TCStringV1 implements TCString {
         return new TCStringV1(bitVector);
     }
 
+    /**
+     * Decodes every field front to back, as expected from an eagerly decoded string. Version 1
+     * strings have always been decoded leniently: decoding stops at the first field that fails and
+     * the remaining fields throw on access, so truncated legacy strings keep answering the fields
+     * they carry.
+     */
+    void decodeAll() {
+        try {
+            created = Instant.ofEpochMilli(bbv.readBits36(V1_CREATED) * 100);
+            lastUpdated = Instant.ofEpochMilli(bbv.readBits36(V1_LAST_UPDATED) * 100);
+            consentLanguage = bbv.readStr2(V1_CONSENT_LANGUAGE);
+            purposesConsent = TCStringV2.fillBitSet(bbv, V1_PURPOSES_ALLOW);
+            vendorConsent = fillVendorsV1(bbv, V1_VENDOR_MAX_VENDOR_ID, V1_VENDOR_BITRANGE_FIELD);
+        } catch (TCStringDecodeException e) {
+            // thrown again by the getter of the field
+        }
+    }
+
+    /**
+     * A version 1 consent string is made of a single segment.
+     */
+    @Override
+    public Set<SegmentType> getSegmentTypes() {
+        return Collections.singleton(SegmentType.DEFAULT);
+    }
+
     @Override
     public int getVersion() {
-        return bbv.readBits6(V1_VERSION);
+        return (int) bbv.readBits(V1_VERSION);
     }
 
     @Override
     public Instant getCreated() {
-        return Instant.ofEpochMilli(bbv.readBits36(V1_CREATED) * 100);
+        Instant rv = created;
+        if (rv == null) {
+            rv = Instant.ofEpochMilli(bbv.readBits36(V1_CREATED) * 100);
+            created = rv;
+        }
+        return rv;
     }
 
     @Override
     public Instant getLastUpdated() {
-        return Instant.ofEpochMilli(bbv.readBits36(V1_LAST_UPDATED) * 100);
+        Instant rv = lastUpdated;
+        if (rv == null) {
+            rv = Instant.ofEpochMilli(bbv.readBits36(V1_LAST_UPDATED) * 100);
+            lastUpdated = rv;
+        }
+        return rv;
     }
 
     @Override
     public int getCmpId() {
-        return bbv.readBits12(V1_CMP_ID);
+        return (int) bbv.readBits(V1_CMP_ID);
     }
 
     @Override
     public int getCmpVersion() {
-        return bbv.readBits12(V1_CMP_VERSION);
+        return (int) bbv.readBits(V1_CMP_VERSION);
     }
 
     @Override
     public int getConsentScreen() {
-        return bbv.readBits6(V1_CONSENT_SCREEN);
+        return (int) bbv.readBits(V1_CONSENT_SCREEN);
     }
 
     @Override
     public String getConsentLanguage() {
-        return bbv.readStr2(V1_CONSENT_LANGUAGE);
+        String rv = consentLanguage;
+        if (rv == null) {
+            rv = bbv.readStr2(V1_CONSENT_LANGUAGE);
+            consentLanguage = rv;
+        }
+        return rv;
     }
 
     @Override
     public int getVendorListVersion() {
-        return bbv.readBits12(V1_VENDOR_LIST_VERSION);
+        return (int) bbv.readBits(V1_VENDOR_LIST_VERSION);
     }
 
+    /**
+     * @throws InvalidRangeFieldException
+     */
     @Override
     public IntIterable getVendorConsent() {
-        return fillVendorsV1(bbv, V1_VENDOR_MAX_VENDOR_ID, V1_VENDOR_BITRANGE_FIELD);
+        IntIterable rv = vendorConsent;
+        if (rv == null) {
+            rv = fillVendorsV1(bbv, V1_VENDOR_MAX_VENDOR_ID, V1_VENDOR_BITRANGE_FIELD);
+            vendorConsent = rv;
+        }
+        return rv;
     }
 
     @Override
@@ -110,7 +173,12 @@ class TCStringV1 implements TCString {
 
     @Override
     public IntIterable getPurposesConsent() {
-        return TCStringV2.fillBitSet(bbv, V1_PURPOSES_ALLOW);
+        IntIterable rv = purposesConsent;
+        if (rv == null) {
+            rv = TCStringV2.fillBitSet(bbv, V1_PURPOSES_ALLOW);
+            purposesConsent = rv;
+        }
+        return rv;
     }
 
     @Override
@@ -191,27 +259,21 @@ class TCStringV1 implements TCString {
     /**
      * @throws InvalidRangeFieldException
      */
-    private IntIterable fillVendorsV1(BitReader bbv, FieldDefs maxVendor, FieldDefs vendorField) {
-        BitSet bs = new BitSet();
-
+    private static IntIterable fillVendorsV1(BitReader bbv, FieldDefs maxVendor, FieldDefs vendorField) {
         int maxV = bbv.readBits16(maxVendor);
         boolean isRangeEncoding = bbv.readBits1(maxVendor.getEnd(bbv));
 
-        if (isRangeEncoding) {
-            boolean defaultConsent = bbv.readBits1(FieldDefs.V1_VENDOR_DEFAULT_CONSENT);
-            TCStringV2.vendorIdsFromRange(bbv, bs, FieldDefs.V1_VENDOR_NUM_ENTRIES.getOffset(bbv),
-                    Optional.of(maxVendor));
-
-            if (defaultConsent) {
-                bs.flip(1, maxV + 1);
-            }
-        } else {
-            for (int i = 0; i < maxV; i++) {
-                boolean hasVendorConsent = bbv.readBits1(vendorField.getOffset(bbv) + i);
-                if (hasVendorConsent) {
-                    bs.set(i + 1);
-                }
-            }
+        if (!isRangeEncoding) {
+            return BitSetIntIterable.from(bbv.readBitmap(vendorField.getOffset(bbv), maxV, 1));
+        }
+
+        BitSet bs = new BitSet();
+        boolean defaultConsent = bbv.readBits1(FieldDefs.V1_VENDOR_DEFAULT_CONSENT);
+        TCStringV2.vendorIdsFromRange(bbv, bs, FieldDefs.V1_VENDOR_NUM_ENTRIES.getOffset(bbv),
+                Optional.of(maxVendor));
+
+        if (defaultConsent) {
+            bs.flip(1, maxV + 1);
         }
 
         return BitSetIntIterable.from(bs);
@@ -49,120 +49,376 @@ import static com.iabtcf.utils.FieldDefs.DV_VENDOR_BITRANGE_FIELD;
 import static com.iabtcf.utils.FieldDefs.OOB_SEGMENT_TYPE;
 import static com.iabtcf.utils.FieldDefs.PPTC_CUSTOM_PURPOSES_CONSENT;
 import static com.iabtcf.utils.FieldDefs.PPTC_CUSTOM_PURPOSES_LI_TRANSPARENCY;
+import static com.iabtcf.utils.FieldDefs.PPTC_NUM_CUSTOM_PURPOSES;
 import static com.iabtcf.utils.FieldDefs.PPTC_PUB_PURPOSES_CONSENT;
 import static com.iabtcf.utils.FieldDefs.PPTC_PUB_PURPOSES_LI_TRANSPARENCY;
+import static com.iabtcf.utils.FieldDefs.PPTC_SEGMENT_TYPE;
 
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.BitSet;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
+import com.iabtcf.exceptions.ByteParseException;
 import com.iabtcf.exceptions.InvalidRangeFieldException;
+import com.iabtcf.exceptions.InvalidSegmentException;
 import com.iabtcf.utils.BitReader;
 import com.iabtcf.utils.BitSetIntIterable;
 import com.iabtcf.utils.FieldDefs;
+import com.iabtcf.utils.FieldLayout;
 import com.iabtcf.utils.IntIterable;
 import com.iabtcf.v2.PublisherRestriction;
 import com.iabtcf.v2.RestrictionType;
 import com.iabtcf.v2.SegmentType;
 
 class TCStringV2 implements TCString {
+    private static final SegmentType[] OOB_SEGMENT_TYPES =
+            {SegmentType.DISCLOSED_VENDOR, SegmentType.ALLOWED_VENDOR, SegmentType.PUBLISHER_TC};
+    private static final int NUM_ENTRIES_LENGTH = FieldDefs.NUM_ENTRIES.getLength();
+    private static final int VENDOR_ID_LENGTH = FieldDefs.START_OR_ONLY_VENDOR_ID.getLength();
+    private static final int MAX_VENDOR_ID_LENGTH = FieldDefs.CORE_VENDOR_MAX_VENDOR_ID.getLength();
+    private static final int PURPOSE_ID_LENGTH = FieldDefs.PURPOSE_ID.getLength();
+    private static final int RESTRICTION_TYPE_LENGTH = FieldDefs.RESTRICTION_TYPE.getLength();
+    private static final int PURPOSES_LENGTH = CORE_PURPOSES_CONSENT.getLength();
+    private static final int SPECIAL_FEATURE_OPT_INS_LENGTH = CORE_SPECIAL_FEATURE_OPT_INS.getLength();
+    private static final int NUM_CUSTOM_PURPOSES_LENGTH = PPTC_NUM_CUSTOM_PURPOSES.getLength();
+
+    /**
+     * Offsets of the fixed position fields read by {@link #decodeAll()}, the fields from the vendor
+     * sections on are read at a running offset.
+     */
+    private static final int CREATED_OFFSET = fixedOffset(CORE_CREATED);
+    private static final int LAST_UPDATED_OFFSET = fixedOffset(CORE_LAST_UPDATED);
+    private static final int CONSENT_LANGUAGE_OFFSET = fixedOffset(CORE_CONSENT_LANGUAGE);
+    private static final int SPECIAL_FEATURE_OPT_INS_OFFSET = fixedOffset(CORE_SPECIAL_FEATURE_OPT_INS);
+    private static final int PURPOSES_CONSENT_OFFSET = fixedOffset(CORE_PURPOSES_CONSENT);
+    private static final int PURPOSES_LI_TRANSPARENCY_OFFSET = fixedOffset(CORE_PURPOSES_LI_TRANSPARENCY);
+    private static final int PUBLISHER_CC_OFFSET = fixedOffset(CORE_PUBLISHER_CC);
+    private static final int CORE_VENDORS_OFFSET = fixedOffset(CORE_VENDOR_MAX_VENDOR_ID);
+    private static final int OOB_VENDORS_OFFSET = OOB_SEGMENT_TYPE.getLength();
+    private static final int PUB_PURPOSES_OFFSET = PPTC_SEGMENT_TYPE.getLength();
+    private static final int VENDOR_CONSENT_INDEX = 0;
+    private static final int VENDOR_LI_INDEX = 1;
+    private static final int ALLOWED_VENDOR_INDEX = 2;
+    private static final int DISCLOSED_VENDOR_INDEX = 3;
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    /*
+     * Fields are decoded on first access and published through volatile references. Two threads may
+     * race to decode the same field, both produce an equal value and either one may win
+     * (racy single-check), so no locking is needed. Primitive fields are cheap enough to read
+     * straight from the bit reader on every access.
+     */
+    private volatile Instant consentRecordCreated;
+    private volatile Instant consentRecordLastUpdated;
+    private volatile String consentLanguage;
+    private volatile IntIterable specialFeaturesOptInts;
+    private volatile IntIterable purposesConsent;
+    private volatile IntIterable purposesLITransparency;
+    private volatile String publisherCountryCode;
+    private volatile IntIterable vendorConsents;
+    private volatile IntIterable vendorLegitimateInterests;
+    private volatile List<PublisherRestriction> publisherRestrictions;
+    private volatile PublisherRestrictions publisherRestrictionIndex;
+    private volatile IntIterable disclosedVendors;
+    private volatile IntIterable allowedVendors;
+    private volatile IntIterable publisherPurposesConsent;
+    private volatile IntIterable publisherPurposesLITransparency;
+    private volatile IntIterable customPurposesConsent;
+    private volatile IntIterable customPurposesLITransparency;
+
+    /**
+     * Zero until computed. A fingerprint that happens to be zero is computed again on every call,
+     * like String#hashCode.
+     */
+    private volatile long fingerprint;
 
-    private int version;
-    private Instant consentRecordCreated;
-    private Instant consentRecordLastUpdated;
-    private int consentManagerProviderId;
-    private int consentManagerProviderVersion;
-    private int consentScreen;
-    private String consentLanguage;
-    private int vendorListVersion;
-    private int policyVersion;
-    private boolean isServiceSpecific;
-    private boolean useNonStandardStacks;
-    private IntIterable specialFeaturesOptInts;
-    private IntIterable purposesConsent;
-    private IntIterable purposesLITransparency;
-    private boolean isPurposeOneTreatment;
-    private String publisherCountryCode;
-    private IntIterable vendorConsents;
-    private IntIterable vendorLegitimateInterests;
-    private List<PublisherRestriction> publisherRestrictions;
-    private IntIterable disclosedVendors;
-    private IntIterable allowedVendors;
-    private IntIterable publisherPurposesConsent;
-    private IntIterable publisherPurposesLITransparency;
-    private IntIterable customPurposesConsent;
-    private IntIterable customPurposesLITransparency;
-
-    private final EnumSet<FieldDefs> cache = EnumSet.noneOf(FieldDefs.class);
     private final BitReader bbv;
-    private final Collection<BitReader> remainingVectors;
+    private final FieldLayout core;
+
+    /**
+     * The OOB segments indexed by the ordinal of their segment type, resolved once at decode time.
+     */
+    private final BitReader[] segmentReaders = new BitReader[SegmentType.values().length];
+    private final Set<SegmentType> segmentTypes;
+
+    /**
+     * Layouts of the OOB segments, created on first access. Layouts only have final fields and an
+     * initially zero volatile field, so publishing them through the array without synchronization
+     * is safe.
+     */
+    private final FieldLayout[] segments = new FieldLayout[SegmentType.values().length];
+
+    /**
+     * Indexes of range encoded vendor sections, created by the first membership query. Indexes only
+     * have final fields and are published like the segment layouts.
+     */
+    private final RangeIndex[] rangeIndexes = new RangeIndex[4];
 
     private TCStringV2(BitReader bbv) {
         this(bbv, new BitReader[] {});
     }
 
+    /**
+     * @throws ByteParseException if the type of an OOB segment can't be read
+     * @throws InvalidSegmentException if an OOB segment type appears more than once
+     */
     private TCStringV2(BitReader bbv, BitReader... theRest) {
         this.bbv = bbv;
-        this.remainingVectors = Arrays.asList(theRest);
+        this.core = FieldLayout.of(bbv, SegmentType.DEFAULT);
+
+        EnumSet<SegmentType> types = EnumSet.of(SegmentType.DEFAULT);
+        for (BitReader rbbv : theRest) {
+            SegmentType segmentType = SegmentType.from(rbbv.readBits3(OOB_SEGMENT_TYPE));
+            if (segmentType == SegmentType.DEFAULT || segmentType == SegmentType.INVALID) {
+                // segments unknown to this version of the specification are ignored
+                types.add(SegmentType.INVALID);
+                continue;
+            }
+            if (segmentReaders[segmentType.ordinal()] != null) {
+                throw new InvalidSegmentException("duplicate segment type " + segmentType);
+            }
+            segmentReaders[segmentType.ordinal()] = rbbv;
+            types.add(segmentType);
+        }
+        this.segmentTypes = Collections.unmodifiableSet(types);
     }
 
     public static TCStringV2 fromBitVector(BitReader coreBitVector, BitReader... remainingVectors) {
         return new TCStringV2(coreBitVector, remainingVectors);
     }
 
-    private BitReader getSegment(SegmentType segmentType) {
+    private FieldLayout getSegment(SegmentType segmentType) {
         if (segmentType == SegmentType.DEFAULT) {
-            return bbv;
+            return core;
         }
 
-        for (BitReader rbbv : remainingVectors) {
-            int rSegmentType = rbbv.readBits3(OOB_SEGMENT_TYPE);
-            if (segmentType == SegmentType.from(rSegmentType)) {
-                return rbbv;
-            }
+        BitReader rbbv = segmentReaders[segmentType.ordinal()];
+        if (rbbv == null) {
+            return null;
         }
-        return null;
+
+        FieldLayout layout = segments[segmentType.ordinal()];
+        if (layout == null) {
+            layout = FieldLayout.of(rbbv, segmentType);
+            segments[segmentType.ordinal()] = layout;
+        }
+        return layout;
     }
 
     @Override
-    public IntIterable getPubPurposesConsent() {
-        if (cache.add(PPTC_PUB_PURPOSES_CONSENT)) {
+    public Set<SegmentType> getSegmentTypes() {
+        return segmentTypes;
+    }
+
+    /**
+     * Decodes every field in a single forward pass over each segment, validating the structure of
+     * the string on the way. Used by eager decoding instead of scanning the layouts and decoding
+     * the fields one by one through them.
+     *
+     * @throws ByteParseException
+     * @throws InvalidRangeFieldException
+     */
+    void decodeAll() {
+        DecodeListener listener = DecodeListeners.get();
+        long start = listener != null ? System.nanoTime() : 0;
+
+        consentRecordCreated = Instant.ofEpochMilli(bbv.readBits36(CREATED_OFFSET) * 100);
+        consentRecordLastUpdated = Instant.ofEpochMilli(bbv.readBits36(LAST_UPDATED_OFFSET) * 100);
+        consentLanguage = bbv.readStr2(CONSENT_LANGUAGE_OFFSET);
+        specialFeaturesOptInts = fillBitSet(bbv, SPECIAL_FEATURE_OPT_INS_OFFSET, SPECIAL_FEATURE_OPT_INS_LENGTH);
+        purposesConsent = fillBitSet(bbv, PURPOSES_CONSENT_OFFSET, PURPOSES_LENGTH);
+        purposesLITransparency = fillBitSet(bbv, PURPOSES_LI_TRANSPARENCY_OFFSET, PURPOSES_LENGTH);
+        publisherCountryCode = bbv.readStr2(PUBLISHER_CC_OFFSET);
+
+        int offset = readVendors(bbv, CORE_VENDORS_OFFSET, CORE_VENDOR_BITRANGE_FIELD, listener);
+        offset = readVendors(bbv, offset, CORE_VENDOR_LI_BITRANGE_FIELD, listener);
+        List<PublisherRestriction> restrictions = new ArrayList<>();
+        offset = fillPublisherRestrictions(restrictions, offset, bbv);
+        publisherRestrictions = Collections.unmodifiableList(restrictions);
+        start = segmentDecoded(listener, SegmentType.DEFAULT, offset, start);
+
+        BitReader dvBbv = segmentReaders[SegmentType.DISCLOSED_VENDOR.ordinal()];
+        if (dvBbv != null) {
+            offset = readVendors(dvBbv, OOB_VENDORS_OFFSET, DV_VENDOR_BITRANGE_FIELD, listener);
+            start = segmentDecoded(listener, SegmentType.DISCLOSED_VENDOR, offset, start);
+        } else {
+            disclosedVendors = BitSetIntIterable.EMPTY;
+        }
+
+        BitReader avBbv = segmentReaders[SegmentType.ALLOWED_VENDOR.ordinal()];
+        if (avBbv != null) {
+            offset = readVendors(avBbv, OOB_VENDORS_OFFSET, AV_VENDOR_BITRANGE_FIELD, listener);
+            start = segmentDecoded(listener, SegmentType.ALLOWED_VENDOR, offset, start);
+        } else {
+            allowedVendors = BitSetIntIterable.EMPTY;
+        }
+
+        BitReader ppBbv = segmentReaders[SegmentType.PUBLISHER_TC.ordinal()];
+        if (ppBbv != null) {
+            offset = PUB_PURPOSES_OFFSET;
+            publisherPurposesConsent = fillBitSet(ppBbv, offset, PURPOSES_LENGTH);
+            offset += PURPOSES_LENGTH;
+            publisherPurposesLITransparency = fillBitSet(ppBbv, offset, PURPOSES_LENGTH);
+            offset += PURPOSES_LENGTH;
+            int numCustomPurposes = ppBbv.readBits6(offset);
+            offset += NUM_CUSTOM_PURPOSES_LENGTH;
+            customPurposesConsent = fillBitSet(ppBbv, offset, numCustomPurposes);
+            offset += numCustomPurposes;
+            customPurposesLITransparency = fillBitSet(ppBbv, offset, numCustomPurposes);
+            offset += numCustomPurposes;
+            segmentDecoded(listener, SegmentType.PUBLISHER_TC, offset, start);
+        } else {
             publisherPurposesConsent = BitSetIntIterable.EMPTY;
+            publisherPurposesLITransparency = BitSetIntIterable.EMPTY;
+            customPurposesConsent = BitSetIntIterable.EMPTY;
+            customPurposesLITransparency = BitSetIntIterable.EMPTY;
+        }
+    }
+
+    /**
+     * Returns the offset of a field of the core segment preceding the vendor sections, given by the
+     * lengths of the fields before it.
+     */
+    private static int fixedOffset(FieldDefs field) {
+        int offset = 0;
+        for (int i = CORE_VERSION.ordinal(); i < field.ordinal(); i++) {
+            offset += FieldDefs.values()[i].getLength();
+        }
+        return offset;
+    }
+
+    /**
+     * Reports the decoded segment to the listener, if any.
+     *
+     * @return the start time of the next segment
+     */
+    private static long segmentDecoded(DecodeListener listener, SegmentType segmentType, int bits, long start) {
+        if (listener == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        listener.segmentDecoded(segmentType, bits, now - start);
+        return now;
+    }
+
+    /**
+     * Decodes the vendor section starting with the max vendor id field at offset into the field of
+     * vendorField.
+     *
+     * @return the offset following the section
+     * @throws InvalidRangeFieldException
+     */
+    private int readVendors(BitReader bbv, int offset, FieldDefs vendorField, DecodeListener listener) {
+        int maxV = bbv.readBits16(offset);
+        offset += MAX_VENDOR_ID_LENGTH;
+        boolean isRangeEncoding = bbv.readBits1(offset++);
+        if (listener != null) {
+            listener.vendorSectionDecoded(vendorField, isRangeEncoding, maxV);
+        }
 
-            BitReader dvBbv = getSegment(SegmentType.PUBLISHER_TC);
+        BitSetIntIterable rv;
+        if (isRangeEncoding) {
+            BitSet bs = new BitSet();
+            offset = vendorIdsFromRange(bbv, bs, offset, maxV);
+            rv = BitSetIntIterable.from(bs);
+        } else {
+            rv = BitSetIntIterable.from(bbv.readBitmap(offset, maxV, 1));
+            offset += maxV;
+        }
+
+        switch (vendorField) {
+            case CORE_VENDOR_BITRANGE_FIELD:
+                vendorConsents = rv;
+                break;
+            case CORE_VENDOR_LI_BITRANGE_FIELD:
+                vendorLegitimateInterests = rv;
+                break;
+            case DV_VENDOR_BITRANGE_FIELD:
+                disclosedVendors = rv;
+                break;
+            default:
+                allowedVendors = rv;
+                break;
+        }
+        return offset;
+    }
+
+    @Override
+    public IntIterable getPubPurposesConsent() {
+        IntIterable rv = publisherPurposesConsent;
+        if (rv == null) {
+            rv = BitSetIntIterable.EMPTY;
+
+            FieldLayout dvBbv = getSegment(SegmentType.PUBLISHER_TC);
             if (dvBbv != null) {
-                publisherPurposesConsent = fillBitSet(dvBbv, PPTC_PUB_PURPOSES_CONSENT);
+                rv = fillBitSet(dvBbv, PPTC_PUB_PURPOSES_CONSENT);
             }
+            publisherPurposesConsent = rv;
         }
-        return publisherPurposesConsent;
+        return rv;
     }
 
     /**
      * @throws InvalidRangeFieldException
      */
-    static BitSetIntIterable fillVendors(BitReader bbv, FieldDefs maxVendor, FieldDefs vendorField) {
-        BitSet bs = new BitSet();
+    static BitSetIntIterable fillVendors(FieldLayout layout, FieldDefs maxVendor, FieldDefs vendorField) {
+        DecodeListener listener = DecodeListeners.get();
+        long start = listener != null ? System.nanoTime() : 0;
+        try {
+            BitReader bbv = layout.getReader();
+            int maxV = (int) layout.readBits(maxVendor);
+            boolean isRangeEncoding = bbv.readBits1(layout.getEnd(maxVendor));
+
+            BitSetIntIterable rv;
+            if (isRangeEncoding) {
+                BitSet bs = new BitSet();
+                vendorIdsFromRange(bbv, bs, layout.getOffset(vendorField), maxV);
+                rv = BitSetIntIterable.from(bs);
+            } else {
+                rv = BitSetIntIterable.from(layout.readBitmap(vendorField));
+            }
 
-        int maxV = bbv.readBits16(maxVendor);
-        boolean isRangeEncoding = bbv.readBits1(maxVendor.getEnd(bbv));
+            if (listener != null) {
+                listener.vendorSectionDecoded(vendorField, isRangeEncoding, maxV);
+                listener.fieldDecoded(vendorField, System.nanoTime() - start);
+            }
+            return rv;
+        } catch (RuntimeException e) {
+            throw DecodeListeners.failed(e);
+        }
+    }
+
+    /**
+     * Answers whether the vendor section contains vendorId from the raw bits, probing a single bit
+     * of a bit field or searching the (lazily indexed) entries of a range section.
+     *
+     * @throws InvalidRangeFieldException
+     */
+    private boolean hasVendor(FieldLayout layout, FieldDefs maxVendor, FieldDefs vendorField, int index,
+            int vendorId) {
+        BitReader bbv = layout.getReader();
+        boolean isRangeEncoding = bbv.readBits1(layout.getEnd(maxVendor));
 
         if (isRangeEncoding) {
-            vendorIdsFromRange(bbv, bs, vendorField, Optional.of(maxVendor));
-        } else {
-            for (int i = 0; i < maxV; i++) {
-                boolean hasVendorConsent = bbv.readBits1(vendorField.getOffset(bbv) + i);
-                if (hasVendorConsent) {
-                    bs.set(i + 1);
-                }
+            RangeIndex rangeIndex = rangeIndexes[index];
+            if (rangeIndex == null) {
+                rangeIndex = RangeIndex.of(bbv, layout.getOffset(vendorField), (int) layout.readBits(maxVendor));
+                rangeIndexes[index] = rangeIndex;
             }
+            return rangeIndex.contains(vendorId);
+        }
+
+        if (vendorId < 1 || vendorId > layout.getLength(vendorField)) {
+            return false;
         }
-        return BitSetIntIterable.from(bs);
+        return bbv.readBits1(layout.getOffset(vendorField) + vendorId - 1);
     }
 
     /**
@@ -172,27 +428,29 @@ class TCStringV2 implements TCString {
      */
     static int vendorIdsFromRange(BitReader bbv, BitSet bs, int numberOfVendorEntriesOffset,
             Optional<FieldDefs> maxVendor) {
-        int numberOfVendorEntries = bbv.readBits12(numberOfVendorEntriesOffset);
-        int offset = numberOfVendorEntriesOffset + FieldDefs.NUM_ENTRIES.getLength(bbv);
         int maxV = maxVendor.map(maxVF -> bbv.readBits16(maxVF)).orElse(Integer.MAX_VALUE);
+        return vendorIdsFromRange(bbv, bs, numberOfVendorEntriesOffset, maxV);
+    }
+
+    /**
+     * Returns the offset following this range entry
+     *
+     * @throws InvalidRangeFieldException
+     */
+    static int vendorIdsFromRange(BitReader bbv, BitSet bs, int numberOfVendorEntriesOffset, int maxV) {
+        int numberOfVendorEntries = bbv.readBits12(numberOfVendorEntriesOffset);
+        int offset = numberOfVendorEntriesOffset + NUM_ENTRIES_LENGTH;
 
         for (int j = 0; j < numberOfVendorEntries; j++) {
             boolean isRangeEntry = bbv.readBits1(offset++);
             int startOrOnlyVendorId = bbv.readBits16(offset);
-            offset += FieldDefs.START_OR_ONLY_VENDOR_ID.getLength(bbv);
+            offset += VENDOR_ID_LENGTH;
             if (isRangeEntry) {
                 int endVendorId = bbv.readBits16(offset);
-                offset += FieldDefs.START_OR_ONLY_VENDOR_ID.getLength(bbv);
+                offset += VENDOR_ID_LENGTH;
 
-                if (startOrOnlyVendorId > endVendorId) {
-                    throw new InvalidRangeFieldException(String.format(
-                            "start vendor id (%d) is greater than endVendorId (%d)", startOrOnlyVendorId,
-                            endVendorId));
-                }
-
-                if (endVendorId > maxV) {
-                    throw new InvalidRangeFieldException(
-                            String.format("end vendor id (%d) is greater than max (%d)", endVendorId, maxV));
+                if (startOrOnlyVendorId > endVendorId || endVendorId > maxV) {
+                    throw new InvalidRangeFieldException(startOrOnlyVendorId, endVendorId, maxV);
                 }
 
                 bs.set(startOrOnlyVendorId, endVendorId + 1);
@@ -207,29 +465,22 @@ class TCStringV2 implements TCString {
     /**
      * @throws InvalidRangeFieldException
      */
-    static void vendorIdsFromRange(BitReader bbv, BitSet bs, FieldDefs vendorField, Optional<FieldDefs> maxVendor) {
-        vendorIdsFromRange(bbv, bs, vendorField.getOffset(bbv), maxVendor);
-    }
-
-    /**
-     * @throws InvalidRangeFieldException
-     */
-    private int fillPublisherRestrictions(
+    static int fillPublisherRestrictions(
             List<PublisherRestriction> publisherRestrictions, int currentPointer, BitReader bitVector) {
 
         int numberOfPublisherRestrictions = bitVector.readBits12(currentPointer);
-        currentPointer += FieldDefs.NUM_ENTRIES.getLength(bitVector);
+        currentPointer += NUM_ENTRIES_LENGTH;
 
         for (int i = 0; i < numberOfPublisherRestrictions; i++) {
             int purposeId = bitVector.readBits6(currentPointer);
-            currentPointer += FieldDefs.PURPOSE_ID.getLength(bitVector);
+            currentPointer += PURPOSE_ID_LENGTH;
 
             int restrictionTypeId = bitVector.readBits2(currentPointer);
-            currentPointer += 2;
+            currentPointer += RESTRICTION_TYPE_LENGTH;
             RestrictionType restrictionType = RestrictionType.from(restrictionTypeId);
 
             BitSet bs = new BitSet();
-            currentPointer = vendorIdsFromRange(bbv, bs, currentPointer, Optional.empty());
+            currentPointer = vendorIdsFromRange(bitVector, bs, currentPointer, Integer.MAX_VALUE);
             PublisherRestriction publisherRestriction =
                     new PublisherRestriction(purposeId, restrictionType, BitSetIntIterable.from(bs));
             publisherRestrictions.add(publisherRestriction);
@@ -238,88 +489,93 @@ class TCStringV2 implements TCString {
     }
 
     static BitSetIntIterable fillBitSet(BitReader bbv, FieldDefs field) {
-        int offset = field.getOffset(bbv);
-        int length = field.getLength(bbv);
+        return fillBitSet(bbv, field.getOffset(bbv), field.getLength(bbv));
+    }
+
+    static BitSetIntIterable fillBitSet(BitReader bbv, int offset, int length) {
+        return BitSetIntIterable.from(bbv.readBitmap(offset, length, 1));
+    }
 
-        BitSetIntIterable.Builder bs = BitSetIntIterable.newBuilder();
-        for (int i = 0; i < length; i++) {
-            if (bbv.readBits1(offset + i)) {
-                bs.add(i + 1);
+    /**
+     * Decodes a bit field on first access, reporting it to the listener, if any.
+     */
+    static BitSetIntIterable fillBitSet(FieldLayout layout, FieldDefs field) {
+        DecodeListener listener = DecodeListeners.get();
+        long start = listener != null ? System.nanoTime() : 0;
+        try {
+            BitSetIntIterable rv = BitSetIntIterable.from(layout.readBitmap(field));
+            if (listener != null) {
+                listener.fieldDecoded(field, System.nanoTime() - start);
             }
+            return rv;
+        } catch (RuntimeException e) {
+            throw DecodeListeners.failed(e);
         }
-        return bs.build();
     }
 
     @Override
     public int getVersion() {
-        if (cache.add(CORE_VERSION)) {
-            version = bbv.readBits6(CORE_VERSION);
-        }
-        return version;
+        return (int) core.readBits(CORE_VERSION);
     }
 
     @Override
     public Instant getCreated() {
-        if (cache.add(CORE_CREATED)) {
-            consentRecordCreated = Instant.ofEpochMilli(bbv.readBits36(CORE_CREATED) * 100);
+        Instant rv = consentRecordCreated;
+        if (rv == null) {
+            rv = Instant.ofEpochMilli(core.readBits(CORE_CREATED) * 100);
+            consentRecordCreated = rv;
         }
-        return consentRecordCreated;
+        return rv;
     }
 
     @Override
     public Instant getLastUpdated() {
-        if (cache.add(CORE_LAST_UPDATED)) {
-            consentRecordLastUpdated = Instant.ofEpochMilli(bbv.readBits36(CORE_LAST_UPDATED) * 100);
+        Instant rv = consentRecordLastUpdated;
+        if (rv == null) {
+            rv = Instant.ofEpochMilli(core.readBits(CORE_LAST_UPDATED) * 100);
+            consentRecordLastUpdated = rv;
         }
-        return consentRecordLastUpdated;
+        return rv;
     }
 
     @Override
     public int getCmpId() {
-        if (cache.add(CORE_CMP_ID)) {
-            consentManagerProviderId = (short) bbv.readBits12(CORE_CMP_ID);
-        }
-        return consentManagerProviderId;
+        return (int) core.readBits(CORE_CMP_ID);
     }
 
     @Override
     public int getCmpVersion() {
-        if (cache.add(CORE_CMP_VERSION)) {
-            consentManagerProviderVersion = (short) bbv.readBits12(CORE_CMP_VERSION);
-        }
-        return consentManagerProviderVersion;
+        return (int) core.readBits(CORE_CMP_VERSION);
     }
 
     @Override
     public int getConsentScreen() {
-        if (cache.add(CORE_CONSENT_SCREEN)) {
-            consentScreen = bbv.readBits6(CORE_CONSENT_SCREEN);
-        }
-        return consentScreen;
+        return (int) core.readBits(CORE_CONSENT_SCREEN);
     }
 
     @Override
     public String getConsentLanguage() {
-        if (cache.add(CORE_CONSENT_LANGUAGE)) {
-            consentLanguage = bbv.readStr2(CORE_CONSENT_LANGUAGE);
+        String rv = consentLanguage;
+        if (rv == null) {
+            rv = core.readStr2(CORE_CONSENT_LANGUAGE);
+            consentLanguage = rv;
         }
-        return consentLanguage;
+        return rv;
     }
 
     @Override
     public int getVendorListVersion() {
-        if (cache.add(CORE_VENDOR_LIST_VERSION)) {
-            vendorListVersion = (short) bbv.readBits12(CORE_VENDOR_LIST_VERSION);
-        }
-        return vendorListVersion;
+        return (int) core.readBits(CORE_VENDOR_LIST_VERSION);
     }
 
     @Override
     public IntIterable getPurposesConsent() {
-        if (cache.add(CORE_PURPOSES_CONSENT)) {
-            purposesConsent = fillBitSet(bbv, CORE_PURPOSES_CONSENT);
+        IntIterable rv = purposesConsent;
+        if (rv == null) {
+            rv = fillBitSet(core, CORE_PURPOSES_CONSENT);
+            purposesConsent = rv;
         }
-        return purposesConsent;
+        return rv;
     }
 
     /**
@@ -327,10 +583,25 @@ class TCStringV2 implements TCString {
      */
     @Override
     public IntIterable getVendorConsent() {
-        if (cache.add(CORE_VENDOR_BITRANGE_FIELD)) {
-            vendorConsents = fillVendors(bbv, CORE_VENDOR_MAX_VENDOR_ID, CORE_VENDOR_BITRANGE_FIELD);
+        IntIterable rv = vendorConsents;
+        if (rv == null) {
+            rv = fillVendors(core, CORE_VENDOR_MAX_VENDOR_ID, CORE_VENDOR_BITRANGE_FIELD);
+            vendorConsents = rv;
+        }
+        return rv;
+    }
+
+    /**
+     * @throws InvalidRangeFieldException
+     */
+    @Override
+    public boolean hasVendorConsent(int vendorId) {
+        IntIterable rv = vendorConsents;
+        if (rv != null) {
+            return rv.contains(vendorId);
         }
-        return vendorConsents;
+        return hasVendor(core, CORE_VENDOR_MAX_VENDOR_ID, CORE_VENDOR_BITRANGE_FIELD, VENDOR_CONSENT_INDEX,
+                vendorId);
     }
 
     @Override
@@ -340,58 +611,52 @@ class TCStringV2 implements TCString {
 
     @Override
     public int getTcfPolicyVersion() {
-        if (cache.add(CORE_TCF_POLICY_VERSION)) {
-            policyVersion = bbv.readBits6(CORE_TCF_POLICY_VERSION);
-        }
-        return policyVersion;
+        return (int) core.readBits(CORE_TCF_POLICY_VERSION);
     }
 
     @Override
     public boolean isServiceSpecific() {
-        if (cache.add(CORE_IS_SERVICE_SPECIFIC)) {
-            isServiceSpecific = bbv.readBits1(CORE_IS_SERVICE_SPECIFIC);
-        }
-        return isServiceSpecific;
+        return core.readBits1(CORE_IS_SERVICE_SPECIFIC);
     }
 
     @Override
     public boolean getUseNonStandardStacks() {
-        if (cache.add(CORE_USE_NON_STANDARD_STOCKS)) {
-            useNonStandardStacks = bbv.readBits1(CORE_USE_NON_STANDARD_STOCKS);
-        }
-        return useNonStandardStacks;
+        return core.readBits1(CORE_USE_NON_STANDARD_STOCKS);
     }
 
     @Override
     public IntIterable getSpecialFeatureOptIns() {
-        if (cache.add(CORE_SPECIAL_FEATURE_OPT_INS)) {
-            specialFeaturesOptInts = fillBitSet(bbv, CORE_SPECIAL_FEATURE_OPT_INS);
+        IntIterable rv = specialFeaturesOptInts;
+        if (rv == null) {
+            rv = fillBitSet(core, CORE_SPECIAL_FEATURE_OPT_INS);
+            specialFeaturesOptInts = rv;
         }
-        return specialFeaturesOptInts;
+        return rv;
     }
 
     @Override
     public IntIterable getPurposesLITransparency() {
-        if (cache.add(CORE_PURPOSES_LI_TRANSPARENCY)) {
-            purposesLITransparency = fillBitSet(bbv, CORE_PURPOSES_LI_TRANSPARENCY);
+        IntIterable rv = purposesLITransparency;
+        if (rv == null) {
+            rv = fillBitSet(core, CORE_PURPOSES_LI_TRANSPARENCY);
+            purposesLITransparency = rv;
         }
-        return purposesLITransparency;
+        return rv;
     }
 
     @Override
     public boolean getPurposeOneTreatment() {
-        if (cache.add(CORE_PURPOSE_ONE_TREATMENT)) {
-            isPurposeOneTreatment = bbv.readBits1(CORE_PURPOSE_ONE_TREATMENT);
-        }
-        return isPurposeOneTreatment;
+        return core.readBits1(CORE_PURPOSE_ONE_TREATMENT);
     }
 
     @Override
     public String getPublisherCC() {
-        if (cache.add(CORE_PUBLISHER_CC)) {
-            publisherCountryCode = bbv.readStr2(CORE_PUBLISHER_CC);
+        String rv = publisherCountryCode;
+        if (rv == null) {
+            rv = core.readStr2(CORE_PUBLISHER_CC);
+            publisherCountryCode = rv;
         }
-        return publisherCountryCode;
+        return rv;
     }
 
     /**
@@ -399,11 +664,25 @@ class TCStringV2 implements TCString {
      */
     @Override
     public IntIterable getVendorLegitimateInterest() {
-        if (cache.add(CORE_VENDOR_LI_BITRANGE_FIELD)) {
-            vendorLegitimateInterests =
-                    fillVendors(bbv, CORE_VENDOR_LI_MAX_VENDOR_ID, FieldDefs.CORE_VENDOR_LI_BITRANGE_FIELD);
+        IntIterable rv = vendorLegitimateInterests;
+        if (rv == null) {
+            rv = fillVendors(core, CORE_VENDOR_LI_MAX_VENDOR_ID, CORE_VENDOR_LI_BITRANGE_FIELD);
+            vendorLegitimateInterests = rv;
         }
-        return vendorLegitimateInterests;
+        return rv;
+    }
+
+    /**
+     * @throws InvalidRangeFieldException
+     */
+    @Override
+    public boolean hasVendorLegitimateInterest(int vendorId) {
+        IntIterable rv = vendorLegitimateInterests;
+        if (rv != null) {
+            return rv.contains(vendorId);
+        }
+        return hasVendor(core, CORE_VENDOR_LI_MAX_VENDOR_ID, CORE_VENDOR_LI_BITRANGE_FIELD, VENDOR_LI_INDEX,
+                vendorId);
     }
 
     /**
@@ -411,11 +690,41 @@ class TCStringV2 implements TCString {
      */
     @Override
     public List<PublisherRestriction> getPublisherRestrictions() {
-        if (cache.add(CORE_PUB_RESTRICTION_ENTRY)) {
-            publisherRestrictions = new ArrayList<>();
-            fillPublisherRestrictions(publisherRestrictions, CORE_NUM_PUB_RESTRICTION.getOffset(bbv), bbv);
+        List<PublisherRestriction> rv = publisherRestrictions;
+        if (rv == null) {
+            DecodeListener listener = DecodeListeners.get();
+            long start = listener != null ? System.nanoTime() : 0;
+            List<PublisherRestriction> restrictions = new ArrayList<>();
+            try {
+                fillPublisherRestrictions(restrictions, core.getOffset(CORE_NUM_PUB_RESTRICTION), bbv);
+            } catch (RuntimeException e) {
+                throw DecodeListeners.failed(e);
+            }
+            if (listener != null) {
+                listener.fieldDecoded(CORE_PUB_RESTRICTION_ENTRY, System.nanoTime() - start);
+            }
+            rv = Collections.unmodifiableList(restrictions);
+            publisherRestrictions = rv;
         }
-        return publisherRestrictions;
+        return rv;
+    }
+
+    /**
+     * Indexes the restrictions without decoding their vendors, which are decoded on first lookup of
+     * a purpose and restriction type.
+     */
+    @Override
+    public PublisherRestrictions getPublisherRestrictionIndex() {
+        PublisherRestrictions rv = publisherRestrictionIndex;
+        if (rv == null) {
+            try {
+                rv = PublisherRestrictions.of(bbv, core.getOffset(CORE_NUM_PUB_RESTRICTION));
+            } catch (RuntimeException e) {
+                throw DecodeListeners.failed(e);
+            }
+            publisherRestrictionIndex = rv;
+        }
+        return rv;
     }
 
     /**
@@ -423,103 +732,201 @@ class TCStringV2 implements TCString {
      */
     @Override
     public IntIterable getAllowedVendors() {
-        if (cache.add(AV_VENDOR_BITRANGE_FIELD)) {
-            allowedVendors = BitSetIntIterable.EMPTY;
+        IntIterable rv = allowedVendors;
+        if (rv == null) {
+            rv = BitSetIntIterable.EMPTY;
 
-            BitReader dvBbv = getSegment(SegmentType.ALLOWED_VENDOR);
+            FieldLayout dvBbv = getSegment(SegmentType.ALLOWED_VENDOR);
             if (dvBbv != null) {
-                allowedVendors = fillVendors(dvBbv, AV_MAX_VENDOR_ID, AV_VENDOR_BITRANGE_FIELD);
+                rv = fillVendors(dvBbv, AV_MAX_VENDOR_ID, AV_VENDOR_BITRANGE_FIELD);
             }
+            allowedVendors = rv;
         }
-        return allowedVendors;
+        return rv;
     }
 
     /**
      * @throws InvalidRangeFieldException
      */
     @Override
-    public IntIterable getDisclosedVendors() {
-        if (cache.add(DV_VENDOR_BITRANGE_FIELD)) {
-            disclosedVendors = BitSetIntIterable.EMPTY;
+    public boolean isVendorAllowed(int vendorId) {
+        IntIterable rv = allowedVendors;
+        if (rv != null) {
+            return rv.contains(vendorId);
+        }
+
+        FieldLayout avBbv = getSegment(SegmentType.ALLOWED_VENDOR);
+        return avBbv != null
+                && hasVendor(avBbv, AV_MAX_VENDOR_ID, AV_VENDOR_BITRANGE_FIELD, ALLOWED_VENDOR_INDEX, vendorId);
+    }
 
-            BitReader dvBbv = getSegment(SegmentType.DISCLOSED_VENDOR);
+    /**
+     * @throws InvalidRangeFieldException
+     */
+    @Override
+    public IntIterable getDisclosedVendors() {
+        IntIterable rv = disclosedVendors;
+        if (rv == null) {
+            rv = BitSetIntIterable.EMPTY;
 
+            FieldLayout dvBbv = getSegment(SegmentType.DISCLOSED_VENDOR);
             if (dvBbv != null) {
-                disclosedVendors = fillVendors(dvBbv, DV_MAX_VENDOR_ID, DV_VENDOR_BITRANGE_FIELD);
+                rv = fillVendors(dvBbv, DV_MAX_VENDOR_ID, DV_VENDOR_BITRANGE_FIELD);
             }
+            disclosedVendors = rv;
         }
-        return disclosedVendors;
+        return rv;
+    }
+
+    /**
+     * @throws InvalidRangeFieldException
+     */
+    @Override
+    public boolean isVendorDisclosed(int vendorId) {
+        IntIterable rv = disclosedVendors;
+        if (rv != null) {
+            return rv.contains(vendorId);
+        }
+
+        FieldLayout dvBbv = getSegment(SegmentType.DISCLOSED_VENDOR);
+        return dvBbv != null
+                && hasVendor(dvBbv, DV_MAX_VENDOR_ID, DV_VENDOR_BITRANGE_FIELD, DISCLOSED_VENDOR_INDEX, vendorId);
     }
 
     @Override
     public IntIterable getPubPurposesLITransparency() {
-        if (cache.add(PPTC_PUB_PURPOSES_LI_TRANSPARENCY)) {
-            publisherPurposesLITransparency = BitSetIntIterable.EMPTY;
+        IntIterable rv = publisherPurposesLITransparency;
+        if (rv == null) {
+            rv = BitSetIntIterable.EMPTY;
 
-            BitReader dvBbv = getSegment(SegmentType.PUBLISHER_TC);
+            FieldLayout dvBbv = getSegment(SegmentType.PUBLISHER_TC);
             if (dvBbv != null) {
-                publisherPurposesLITransparency = fillBitSet(dvBbv, PPTC_PUB_PURPOSES_LI_TRANSPARENCY);
+                rv = fillBitSet(dvBbv, PPTC_PUB_PURPOSES_LI_TRANSPARENCY);
             }
+            publisherPurposesLITransparency = rv;
         }
-        return publisherPurposesLITransparency;
+        return rv;
     }
 
     @Override
     public IntIterable getCustomPurposesConsent() {
-        if (cache.add(PPTC_CUSTOM_PURPOSES_CONSENT)) {
-            customPurposesConsent = BitSetIntIterable.EMPTY;
+        IntIterable rv = customPurposesConsent;
+        if (rv == null) {
+            rv = BitSetIntIterable.EMPTY;
 
-            BitReader dvBbv = getSegment(SegmentType.PUBLISHER_TC);
+            FieldLayout dvBbv = getSegment(SegmentType.PUBLISHER_TC);
             if (dvBbv != null) {
-                customPurposesConsent = fillBitSet(dvBbv, PPTC_CUSTOM_PURPOSES_CONSENT);
+                rv = fillBitSet(dvBbv, PPTC_CUSTOM_PURPOSES_CONSENT);
             }
+            customPurposesConsent = rv;
         }
-        return customPurposesConsent;
+        return rv;
     }
 
     @Override
     public IntIterable getCustomPurposesLITransparency() {
-        if (cache.add(PPTC_CUSTOM_PURPOSES_LI_TRANSPARENCY)) {
-            customPurposesLITransparency = BitSetIntIterable.EMPTY;
+        IntIterable rv = customPurposesLITransparency;
+        if (rv == null) {
+            rv = BitSetIntIterable.EMPTY;
 
-            BitReader dvBbv = getSegment(SegmentType.PUBLISHER_TC);
+            FieldLayout dvBbv = getSegment(SegmentType.PUBLISHER_TC);
             if (dvBbv != null) {
-                customPurposesLITransparency = fillBitSet(dvBbv, PPTC_CUSTOM_PURPOSES_LI_TRANSPARENCY);
+                rv = fillBitSet(dvBbv, PPTC_CUSTOM_PURPOSES_LI_TRANSPARENCY);
+            }
+            customPurposesLITransparency = rv;
+        }
+        return rv;
+    }
+
+    /**
+     * Hashes the bits of the core segment followed by the known OOB segments in the order of their
+     * types. Only the bits up to the end of the last field of each segment are hashed, the order of
+     * the segments in the string and their padding don't change the fingerprint.
+     *
+     * @throws ByteParseException
+     * @throws InvalidRangeFieldException
+     */
+    @Override
+    public long fingerprint() {
+        long h = fingerprint;
+        if (h == 0) {
+            h = mixSegment(0, core);
+            for (SegmentType segmentType : OOB_SEGMENT_TYPES) {
+                FieldLayout layout = getSegment(segmentType);
+                if (layout != null) {
+                    h = mixSegment(mix(h, segmentType.ordinal()), layout);
+                }
+            }
+            h = fmix(h);
+            fingerprint = h;
+        }
+        return h;
+    }
+
+    private static long mixSegment(long h, FieldLayout layout) {
+        BitReader bbv = layout.getReader();
+        int length = layout.getSegmentLength();
+
+        h = mix(h, length);
+        int offset = 0;
+        for (; offset + Long.SIZE <= length; offset += Long.SIZE) {
+            h = mix(h, bbv.readBitsUnchecked(offset, Long.SIZE));
+        }
+        return mix(h, bbv.readBitsUnchecked(offset, length - offset));
+    }
+
+    /**
+     * The block mixing step of MurmurHash3 (x64).
+     */
+    private static long mix(long h, long k) {
+        k *= C1;
+        k = Long.rotateLeft(k, 31);
+        k *= C2;
+        h ^= k;
+        return Long.rotateLeft(h, 27) * 5 + 0x52dce729;
+    }
+
+    /**
+     * The finalization step of MurmurHash3 (x64).
+     */
+    private static long fmix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static boolean sameBits(FieldLayout a, FieldLayout b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+
+        int length = a.getSegmentLength();
+        if (length != b.getSegmentLength()) {
+            return false;
+        }
+
+        BitReader abbv = a.getReader();
+        BitReader bbbv = b.getReader();
+        for (int offset = 0; offset < length; offset += Long.SIZE) {
+            int nbits = Math.min(Long.SIZE, length - offset);
+            if (abbv.readBitsUnchecked(offset, nbits) != bbbv.readBitsUnchecked(offset, nbits)) {
+                return false;
             }
         }
-        return customPurposesLITransparency;
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(
-                getAllowedVendors(),
-                getConsentLanguage(),
-                getCmpId(),
-                getCmpVersion(),
-                getCreated(),
-                getLastUpdated(),
-                getConsentScreen(),
-                getCustomPurposesConsent(),
-                getCustomPurposesLITransparency(),
-                getDisclosedVendors(),
-                getPurposeOneTreatment(),
-                isServiceSpecific(),
-                getTcfPolicyVersion(),
-                getPublisherCC(),
-                getPubPurposesConsent(),
-                getPubPurposesLITransparency(),
-                getPublisherRestrictions(),
-                getPurposesConsent(),
-                getPurposesLITransparency(),
-                getSpecialFeatureOptIns(),
-                getUseNonStandardStacks(),
-                getVendorConsent(),
-                getVendorLegitimateInterest(),
-                getVendorListVersion(),
-                getVersion());
+        return Long.hashCode(fingerprint());
     }
 
+    /**
+     * Strings are equal when they encode the same fields in the same way, see {@link #fingerprint()}.
+     */
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -532,31 +939,15 @@ class TCStringV2 implements TCString {
             return false;
         }
         TCStringV2 other = (TCStringV2) obj;
-        return Objects.equals(getAllowedVendors(), other.getAllowedVendors())
-                && Objects.equals(getConsentLanguage(), other.getConsentLanguage())
-                && getCmpId() == other.getCmpId()
-                && getCmpVersion() == other.getCmpVersion()
-                && Objects.equals(getCreated(), other.getCreated())
-                && Objects.equals(getLastUpdated(), other.getLastUpdated())
-                && getConsentScreen() == other.getConsentScreen()
-                && Objects.equals(getCustomPurposesConsent(), other.getCustomPurposesConsent())
-                && Objects.equals(getCustomPurposesLITransparency(),
-                        other.getCustomPurposesLITransparency())
-                && Objects.equals(getDisclosedVendors(), other.getDisclosedVendors())
-                && getPurposeOneTreatment() == other.getPurposeOneTreatment()
-                && isServiceSpecific() == other.isServiceSpecific()
-                && getTcfPolicyVersion() == other.getTcfPolicyVersion()
-                && Objects.equals(getPublisherCC(), other.getPublisherCC())
-                && Objects.equals(getPubPurposesConsent(), other.getPubPurposesConsent())
-                && Objects.equals(getPubPurposesLITransparency(), other.getPubPurposesLITransparency())
-                && Objects.equals(getPublisherRestrictions(), other.getPublisherRestrictions())
-                && Objects.equals(getPurposesConsent(), other.getPurposesConsent())
-                && Objects.equals(getPurposesLITransparency(), other.getPurposesLITransparency())
-                && Objects.equals(getSpecialFeatureOptIns(), other.getSpecialFeatureOptIns())
-                && getUseNonStandardStacks() == other.getUseNonStandardStacks()
-                && Objects.equals(getVendorConsent(), other.getVendorConsent())
-                && Objects.equals(getVendorLegitimateInterest(), other.getVendorLegitimateInterest())
-                && getVendorListVersion() == other.getVendorListVersion() && getVersion() == other.getVersion();
+        if (fingerprint() != other.fingerprint() || !sameBits(core, other.core)) {
+            return false;
+        }
+        for (SegmentType segmentType : OOB_SEGMENT_TYPES) {
+            if (!sameBits(getSegment(segmentType), other.getSegment(segmentType))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -0,0 +1,390 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static com.iabtcf.decoder.TCStringDecoder.SEGMENT_SEPARATOR;
+import static com.iabtcf.utils.FieldDefs.AV_IS_RANGE_ENCODING;
+import static com.iabtcf.utils.FieldDefs.AV_MAX_VENDOR_ID;
+import static com.iabtcf.utils.FieldDefs.AV_VENDOR_BITRANGE_FIELD;
+import static com.iabtcf.utils.FieldDefs.CORE_NUM_PUB_RESTRICTION;
+import static com.iabtcf.utils.FieldDefs.CORE_PUBLISHER_CC;
+import static com.iabtcf.utils.FieldDefs.CORE_PUB_RESTRICTION_ENTRY;
+import static com.iabtcf.utils.FieldDefs.CORE_VENDOR_BITRANGE_FIELD;
+import static com.iabtcf.utils.FieldDefs.CORE_VENDOR_IS_RANGE_ENCODING;
+import static com.iabtcf.utils.FieldDefs.CORE_VENDOR_LI_BITRANGE_FIELD;
+import static com.iabtcf.utils.FieldDefs.CORE_VENDOR_LI_IS_RANGE_ENCODING;
+import static com.iabtcf.utils.FieldDefs.CORE_VENDOR_LI_MAX_VENDOR_ID;
+import static com.iabtcf.utils.FieldDefs.CORE_VENDOR_MAX_VENDOR_ID;
+import static com.iabtcf.utils.FieldDefs.CORE_VERSION;
+import static com.iabtcf.utils.FieldDefs.DV_IS_RANGE_ENCODING;
+import static com.iabtcf.utils.FieldDefs.DV_MAX_VENDOR_ID;
+import static com.iabtcf.utils.FieldDefs.DV_VENDOR_BITRANGE_FIELD;
+import static com.iabtcf.utils.FieldDefs.OOB_SEGMENT_TYPE;
+import static com.iabtcf.utils.FieldDefs.PPTC_CUSTOM_PURPOSES_CONSENT;
+import static com.iabtcf.utils.FieldDefs.PPTC_CUSTOM_PURPOSES_LI_TRANSPARENCY;
+import static com.iabtcf.utils.FieldDefs.PPTC_NUM_CUSTOM_PURPOSES;
+import static com.iabtcf.utils.FieldDefs.PPTC_PUB_PURPOSES_CONSENT;
+import static com.iabtcf.utils.FieldDefs.PPTC_PUB_PURPOSES_LI_TRANSPARENCY;
+import static com.iabtcf.utils.FieldDefs.PPTC_SEGMENT_TYPE;
+
+import com.iabtcf.utils.Base64Url;
+import com.iabtcf.utils.BitReader;
+import com.iabtcf.utils.FieldDefs;
+import com.iabtcf.v2.SegmentType;
+
+/**
+ * Validates a consent string by walking all of its segments and range entries straight from the
+ * base64url characters, applying the checks decoding applies without decoding any field. Nothing
+ * is allocated, neither buffers, bitmaps nor exceptions. Like the decoder, version 1 strings are
+ * only checked up to their version, their fields fail once read.
+ *
+ * Failures are passed around as negative codes packing the status, the failing field and the bit
+ * offset the failing read starts at, walks return the offset following what they walked otherwise.
+ */
+final class TCStringValidator {
+    private static final int SEXTET_BITS = 6;
+    private static final int FIELD_BITS = 8;
+    private static final int STATUS_BITS = 8;
+    private static final int FIELD_MASK = (1 << FIELD_BITS) - 1;
+    private static final int STATUS_MASK = (1 << STATUS_BITS) - 1;
+
+    private static final ValidationStatus[] STATUSES = ValidationStatus.values();
+    private static final FieldDefs[] FIELDS = FieldDefs.values();
+
+    /**
+     * The field packed by failures without a field.
+     */
+    private static final int NO_FIELD = FIELDS.length;
+
+    private static final int NUM_ENTRIES_LENGTH = FieldDefs.NUM_ENTRIES.getLength();
+    private static final int VENDOR_ID_LENGTH = FieldDefs.START_OR_ONLY_VENDOR_ID.getLength();
+    private static final int RESTRICTION_LENGTH =
+            FieldDefs.PURPOSE_ID.getLength() + FieldDefs.RESTRICTION_TYPE.getLength();
+
+    /**
+     * Offsets and lengths of the fixed fields leading the segments, by ordinal.
+     */
+    private static final int[] OFFSETS = new int[FIELDS.length];
+    private static final int[] LENGTHS = new int[FIELDS.length];
+
+    static {
+        BitReader empty = new BitReader(new byte[0]);
+        for (FieldDefs[] fixed : new FieldDefs[][] {
+                fields(CORE_VERSION, CORE_VENDOR_MAX_VENDOR_ID),
+                fields(PPTC_SEGMENT_TYPE, PPTC_NUM_CUSTOM_PURPOSES)}) {
+            for (FieldDefs field : fixed) {
+                OFFSETS[field.ordinal()] = field.getOffset(empty);
+                LENGTHS[field.ordinal()] = field.getLength();
+            }
+        }
+    }
+
+    private TCStringValidator() {
+    }
+
+    private static FieldDefs[] fields(FieldDefs first, FieldDefs last) {
+        FieldDefs[] rv = new FieldDefs[last.ordinal() - first.ordinal() + 1];
+        System.arraycopy(FIELDS, first.ordinal(), rv, 0, rv.length);
+        return rv;
+    }
+
+    /**
+     * Packs a failure, the offset is stored plus one leaving zero to failures without an offset.
+     */
+    private static long fail(ValidationStatus status, FieldDefs field, int offset) {
+        return ~((long) (offset + 1) << (STATUS_BITS + FIELD_BITS) | status.ordinal() << FIELD_BITS
+                | (field == null ? NO_FIELD : field.ordinal()));
+    }
+
+    static ValidationStatus status(long code) {
+        return code < 0 ? STATUSES[(int) (~code >>> FIELD_BITS) & STATUS_MASK] : ValidationStatus.VALID;
+    }
+
+    static FieldDefs field(long code) {
+        int field = (int) ~code & FIELD_MASK;
+        return code < 0 && field != NO_FIELD ? FIELDS[field] : null;
+    }
+
+    static int bitOffset(long code) {
+        return code < 0 ? (int) (~code >>> (STATUS_BITS + FIELD_BITS)) - 1 : -1;
+    }
+
+    /**
+     * Validates the characters [start, end) of the sequence.
+     */
+    static ValidationResult validate(CharSequence consentString, int start, int end) {
+        long code = check(consentString, start, end);
+        return code < 0 ? ValidationResult.of(status(code), field(code)) : ValidationResult.VALID;
+    }
+
+    /**
+     * Validates the characters [start, end) of the sequence, returning a negative failure code or
+     * zero if the string is valid.
+     */
+    static long check(CharSequence consentString, int start, int end) {
+        // trailing empty segments are ignored
+        while (end > start && consentString.charAt(end - 1) == SEGMENT_SEPARATOR) {
+            end--;
+        }
+
+        // like the decoder, all segments are base64 decoded before reading any field
+        for (int i = start; i <= end; i = segmentEnd(consentString, i, end) + 1) {
+            if (decodedBits(consentString, i, segmentEnd(consentString, i, end)) < 0) {
+                return fail(ValidationStatus.INVALID_BASE64, null, -1);
+            }
+        }
+
+        int segmentEnd = segmentEnd(consentString, start, end);
+        int bits = decodedBits(consentString, start, segmentEnd);
+
+        if (bits < CORE_VERSION.getLength()) {
+            return fail(ValidationStatus.TRUNCATED, CORE_VERSION, 0);
+        }
+        int version = readBits(consentString, start, 0, CORE_VERSION.getLength());
+        if (version == 1) {
+            // the v1 decoder only reads the version, fields failing to decode throw once read
+            return 0;
+        } else if (version != 2) {
+            return fail(ValidationStatus.UNSUPPORTED_VERSION, CORE_VERSION, 0);
+        }
+
+        // OOB segment types are read when decoding, before any field
+        int seen = 0;
+        for (int i = segmentEnd + 1; i <= end; i = segmentEnd(consentString, i, end) + 1) {
+            if (decodedBits(consentString, i, segmentEnd(consentString, i, end)) < OOB_SEGMENT_TYPE.getLength()) {
+                return fail(ValidationStatus.TRUNCATED, OOB_SEGMENT_TYPE, 0);
+            }
+            SegmentType segmentType = segmentType(consentString, i);
+            if (segmentType != SegmentType.DEFAULT && segmentType != SegmentType.INVALID) {
+                int mask = 1 << segmentType.ordinal();
+                if ((seen & mask) != 0) {
+                    return fail(ValidationStatus.INVALID_SEGMENT, OOB_SEGMENT_TYPE, 0);
+                }
+                seen |= mask;
+            }
+        }
+
+        long rv = validateCore(consentString, start, bits);
+        if (rv < 0) {
+            return rv;
+        }
+
+        while (segmentEnd < end) {
+            int segmentStart = segmentEnd + 1;
+            segmentEnd = segmentEnd(consentString, segmentStart, end);
+            bits = decodedBits(consentString, segmentStart, segmentEnd);
+
+            switch (segmentType(consentString, segmentStart)) {
+                case DISCLOSED_VENDOR:
+                    rv = vendors(consentString, segmentStart, bits, OOB_SEGMENT_TYPE.getLength(), DV_MAX_VENDOR_ID,
+                            DV_IS_RANGE_ENCODING, DV_VENDOR_BITRANGE_FIELD);
+                    break;
+                case ALLOWED_VENDOR:
+                    rv = vendors(consentString, segmentStart, bits, OOB_SEGMENT_TYPE.getLength(), AV_MAX_VENDOR_ID,
+                            AV_IS_RANGE_ENCODING, AV_VENDOR_BITRANGE_FIELD);
+                    break;
+                case PUBLISHER_TC:
+                    rv = validatePublisherTC(consentString, segmentStart, bits);
+                    break;
+                default:
+                    // segments unknown to this version of the specification are ignored
+                    break;
+            }
+            if (rv < 0) {
+                return rv;
+            }
+        }
+        return 0;
+    }
+
+    private static SegmentType segmentType(CharSequence consentString, int start) {
+        return SegmentType.from(readBits(consentString, start, 0, OOB_SEGMENT_TYPE.getLength()));
+    }
+
+    private static int segmentEnd(CharSequence consentString, int start, int end) {
+        int i = start;
+        while (i < end && consentString.charAt(i) != SEGMENT_SEPARATOR) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the number of bits the characters [start, end) decode to, or -1 if they are not
+     * valid base64url. Mirrors {@link Base64Url#decodedLength(CharSequence, int, int)}.
+     */
+    private static int decodedBits(CharSequence src, int start, int end) {
+        int dataEnd = end;
+        for (int i = start; i < end; i++) {
+            char c = src.charAt(i);
+            if (c == '=') {
+                if (dataEnd == end) {
+                    dataEnd = i;
+                }
+            } else if (dataEnd != end || Base64Url.sextet(c) < 0) {
+                return -1;
+            }
+        }
+
+        int rem = (dataEnd - start) % 4;
+        int padding = end - dataEnd;
+        if (rem == 1 || padding != 0 && (rem == 0 || rem + padding != 4)) {
+            return -1;
+        }
+        return (int) ((dataEnd - start) * (long) SEXTET_BITS / Byte.SIZE) * Byte.SIZE;
+    }
+
+    /**
+     * Reads nbits, at most 16, at the bit offset of the segment starting at start. The characters
+     * must have been validated.
+     */
+    private static int readBits(CharSequence src, int start, int offset, int nbits) {
+        int i = start + offset / SEXTET_BITS;
+        int skip = offset % SEXTET_BITS;
+        long acc = 0;
+        int have = -skip;
+        while (have < nbits) {
+            acc = acc << SEXTET_BITS | Base64Url.sextet(src.charAt(i++));
+            have += SEXTET_BITS;
+        }
+        return (int) (acc >>> (have - nbits)) & ((1 << nbits) - 1);
+    }
+
+    /**
+     * Checks the fixed fields [first, last] fit in the segment.
+     */
+    private static long fixed(int bits, FieldDefs first, FieldDefs last) {
+        for (int i = first.ordinal(); i <= last.ordinal(); i++) {
+            if (OFFSETS[i] + LENGTHS[i] > bits) {
+                return fail(ValidationStatus.TRUNCATED, FIELDS[i], OFFSETS[i]);
+            }
+        }
+        return OFFSETS[last.ordinal()] + LENGTHS[last.ordinal()];
+    }
+
+    private static long validateCore(CharSequence src, int start, int bits) {
+        long rv = fixed(bits, CORE_VERSION, CORE_PUBLISHER_CC);
+        if (rv < 0) {
+            return rv;
+        }
+
+        rv = vendors(src, start, bits, (int) rv, CORE_VENDOR_MAX_VENDOR_ID, CORE_VENDOR_IS_RANGE_ENCODING,
+                CORE_VENDOR_BITRANGE_FIELD);
+        if (rv < 0) {
+            return rv;
+        }
+        rv = vendors(src, start, bits, (int) rv, CORE_VENDOR_LI_MAX_VENDOR_ID, CORE_VENDOR_LI_IS_RANGE_ENCODING,
+                CORE_VENDOR_LI_BITRANGE_FIELD);
+        if (rv < 0) {
+            return rv;
+        }
+
+        int offset = (int) rv;
+        if (offset + CORE_NUM_PUB_RESTRICTION.getLength() > bits) {
+            return fail(ValidationStatus.TRUNCATED, CORE_NUM_PUB_RESTRICTION, offset);
+        }
+        int numRestrictions = readBits(src, start, offset, CORE_NUM_PUB_RESTRICTION.getLength());
+        rv = offset + CORE_NUM_PUB_RESTRICTION.getLength();
+
+        for (int i = 0; i < numRestrictions && rv >= 0; i++) {
+            rv = ranges(src, start, bits, (int) rv + RESTRICTION_LENGTH, Integer.MAX_VALUE,
+                    CORE_PUB_RESTRICTION_ENTRY);
+        }
+        return rv;
+    }
+
+    private static long validatePublisherTC(CharSequence src, int start, int bits) {
+        long rv = fixed(bits, PPTC_SEGMENT_TYPE, PPTC_NUM_CUSTOM_PURPOSES);
+        if (rv < 0) {
+            return rv;
+        }
+
+        int offset = (int) rv;
+        int numCustomPurposes = readBits(src, start, OFFSETS[PPTC_NUM_CUSTOM_PURPOSES.ordinal()],
+                PPTC_NUM_CUSTOM_PURPOSES.getLength());
+        if (offset + numCustomPurposes > bits) {
+            return fail(ValidationStatus.TRUNCATED, PPTC_CUSTOM_PURPOSES_CONSENT, offset);
+        }
+        offset += numCustomPurposes;
+        if (offset + numCustomPurposes > bits) {
+            return fail(ValidationStatus.TRUNCATED, PPTC_CUSTOM_PURPOSES_LI_TRANSPARENCY, offset);
+        }
+        return offset + numCustomPurposes;
+    }
+
+    /**
+     * Walks a vendor section made of the max vendor id, the is range encoding flag and the vendor
+     * bit field or range entries.
+     */
+    private static long vendors(CharSequence src, int start, int bits, int offset, FieldDefs maxVendor,
+            FieldDefs isRangeEncodingField, FieldDefs vendorField) {
+        if (offset + maxVendor.getLength() > bits) {
+            return fail(ValidationStatus.TRUNCATED, maxVendor, offset);
+        }
+        int maxV = readBits(src, start, offset, maxVendor.getLength());
+        offset += maxVendor.getLength();
+
+        if (offset + isRangeEncodingField.getLength() > bits) {
+            return fail(ValidationStatus.TRUNCATED, isRangeEncodingField, offset);
+        }
+        boolean isRangeEncoding = readBits(src, start, offset, 1) != 0;
+        offset += isRangeEncodingField.getLength();
+
+        if (!isRangeEncoding) {
+            return offset + maxV > bits ? fail(ValidationStatus.TRUNCATED, vendorField, offset) : offset + maxV;
+        }
+        return ranges(src, start, bits, offset, maxV, vendorField);
+    }
+
+    /**
+     * Walks range entries, validating them the same way the decoder does.
+     */
+    private static long ranges(CharSequence src, int start, int bits, int offset, int maxVendorId, FieldDefs field) {
+        if (offset + NUM_ENTRIES_LENGTH > bits) {
+            return fail(ValidationStatus.TRUNCATED, field, offset);
+        }
+        int numEntries = readBits(src, start, offset, NUM_ENTRIES_LENGTH);
+        offset += NUM_ENTRIES_LENGTH;
+
+        for (int i = 0; i < numEntries; i++) {
+            int entry = offset;
+            if (offset + 1 + VENDOR_ID_LENGTH > bits) {
+                return fail(ValidationStatus.TRUNCATED, field, entry);
+            }
+            boolean isRange = readBits(src, start, offset, 1) != 0;
+            int startVendorId = readBits(src, start, offset + 1, VENDOR_ID_LENGTH);
+            offset += 1 + VENDOR_ID_LENGTH;
+
+            if (isRange) {
+                if (offset + VENDOR_ID_LENGTH > bits) {
+                    return fail(ValidationStatus.TRUNCATED, field, entry);
+                }
+                int endVendorId = readBits(src, start, offset, VENDOR_ID_LENGTH);
+                offset += VENDOR_ID_LENGTH;
+
+                if (startVendorId > endVendorId || endVendorId > maxVendorId) {
+                    return fail(ValidationStatus.INVALID_RANGE, field, entry);
+                }
+            }
+        }
+        return offset;
+    }
+}
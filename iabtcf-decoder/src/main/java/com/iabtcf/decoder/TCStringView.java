@@ -0,0 +1,702 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Core Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static com.iabtcf.utils.FieldDefs.AV_MAX_VENDOR_ID;
+import static com.iabtcf.utils.FieldDefs.AV_VENDOR_BITRANGE_FIELD;
+import static com.iabtcf.utils.FieldDefs.CORE_CMP_ID;
+import static com.iabtcf.utils.FieldDefs.CORE_CMP_VERSION;
+import static com.iabtcf.utils.FieldDefs.CORE_CONSENT_LANGUAGE;
+import static com.iabtcf.utils.FieldDefs.CORE_CONSENT_SCREEN;
+import static com.iabtcf.utils.FieldDefs.CORE_CREATED;
+import static com.iabtcf.utils.FieldDefs.CORE_IS_SERVICE_SPECIFIC;
+import static com.iabtcf.utils.FieldDefs.CORE_LAST_UPDATED;
+import static com.iabtcf.utils.FieldDefs.CORE_NUM_PUB_RESTRICTION;
+import static com.iabtcf.utils.FieldDefs.CORE_PUBLISHER_CC;
+import static com.iabtcf.utils.FieldDefs.CORE_PURPOSES_CONSENT;
+import static com.iabtcf.utils.FieldDefs.CORE_PURPOSES_LI_TRANSPARENCY;
+import static com.iabtcf.utils.FieldDefs.CORE_PURPOSE_ONE_TREATMENT;
+import static com.iabtcf.utils.FieldDefs.CORE_SPECIAL_FEATURE_OPT_INS;
+import static com.iabtcf.utils.FieldDefs.CORE_TCF_POLICY_VERSION;
+import static com.iabtcf.utils.FieldDefs.CORE_USE_NON_STANDARD_STOCKS;
+import static com.iabtcf.utils.FieldDefs.CORE_VENDOR_BITRANGE_FIELD;
+import static com.iabtcf.utils.FieldDefs.CORE_VENDOR_LIST_VERSION;
+import static com.iabtcf.utils.FieldDefs.CORE_VENDOR_LI_BITRANGE_FIELD;
+import static com.iabtcf.utils.FieldDefs.CORE_VENDOR_LI_MAX_VENDOR_ID;
+import static com.iabtcf.utils.FieldDefs.CORE_VENDOR_MAX_VENDOR_ID;
+import static com.iabtcf.utils.FieldDefs.CORE_VERSION;
+import static com.iabtcf.utils.FieldDefs.DV_MAX_VENDOR_ID;
+import static com.iabtcf.utils.FieldDefs.DV_VENDOR_BITRANGE_FIELD;
+import static com.iabtcf.utils.FieldDefs.PPTC_CUSTOM_PURPOSES_CONSENT;
+import static com.iabtcf.utils.FieldDefs.PPTC_CUSTOM_PURPOSES_LI_TRANSPARENCY;
+import static com.iabtcf.utils.FieldDefs.PPTC_PUB_PURPOSES_CONSENT;
+import static com.iabtcf.utils.FieldDefs.PPTC_PUB_PURPOSES_LI_TRANSPARENCY;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.iabtcf.exceptions.ByteParseException;
+import com.iabtcf.exceptions.InvalidRangeFieldException;
+import com.iabtcf.exceptions.InvalidSegmentException;
+import com.iabtcf.exceptions.UnsupportedVersionException;
+import com.iabtcf.utils.Base64Url;
+import com.iabtcf.utils.BitReader;
+import com.iabtcf.utils.FieldDefs;
+import com.iabtcf.utils.FieldLayout;
+import com.iabtcf.utils.IntIterable;
+import com.iabtcf.utils.IntIterator;
+import com.iabtcf.v2.PublisherRestriction;
+import com.iabtcf.v2.SegmentType;
+
+/**
+ * A mutable, reusable view of a version 2 consent string, for decoding one string per request
+ * without allocating. A view is meant to be held per thread or per event loop and pointed at the
+ * next consent string with {@link #reset(CharSequence)}.
+ *
+ * The view owns its decode buffer, bit readers, field layouts and the bitmaps backing the
+ * returned {@link IntIterable}s, all of which are reused by the next reset. Fields are decoded
+ * lazily like with {@link DecoderOption#LAZY}. Once the buffers have grown to the size of the
+ * strings seen, resetting the view and reading its int, boolean and bit field accessors,
+ * {@link #getConsentLanguage()} and {@link #getPublisherCC()} allocates nothing.
+ * {@link #getCreated()}, {@link #getLastUpdated()} and {@link #getPublisherRestrictions()} still
+ * allocate their result, {@link #getCreatedEpochMilli()} and {@link #getLastUpdatedEpochMilli()}
+ * don't.
+ *
+ * Returned values, including the iterables, are only valid until the next reset. A view is not
+ * safe for concurrent use, and as a mutable object it compares by identity.
+ *
+ * <pre>
+ * private static final ThreadLocal&lt;TCStringView&gt; VIEW = ThreadLocal.withInitial(TCStringView::new);
+ *
+ * TCStringView view = VIEW.get().reset(consentString);
+ * if (view.hasVendorConsent(vendorId) &amp;&amp; view.getPurposesConsent().contains(1)) {
+ *     ...
+ * }
+ * </pre>
+ */
+public final class TCStringView implements TCString {
+    private static final int SUPPORTED_VERSION = 2;
+    private static final SegmentType[] SEGMENT_TYPES = {SegmentType.DEFAULT, SegmentType.DISCLOSED_VENDOR,
+            SegmentType.ALLOWED_VENDOR, SegmentType.PUBLISHER_TC};
+    private static final int SEGMENT_TYPE_SHIFT = Byte.SIZE - FieldDefs.OOB_SEGMENT_TYPE.getLength();
+    private static final int NUM_ENTRIES_LENGTH = FieldDefs.NUM_ENTRIES.getLength();
+    private static final int VENDOR_ID_LENGTH = FieldDefs.START_OR_ONLY_VENDOR_ID.getLength();
+
+    /**
+     * Two letter codes by their 12 bit encoding, created on first use and shared by all views.
+     */
+    private static final String[] LETTER_CODES = new String[1 << CORE_CONSENT_LANGUAGE.getLength()];
+
+    private byte[] buffer = new byte[256];
+    private final BitReader[] readers = new BitReader[SegmentType.values().length];
+    private final FieldLayout[] layouts = new FieldLayout[SegmentType.values().length];
+    private final EnumSet<SegmentType> segmentTypes = EnumSet.noneOf(SegmentType.class);
+    private final Set<SegmentType> unmodifiableSegmentTypes = Collections.unmodifiableSet(segmentTypes);
+    private final SegmentSource.Chars chars = new SegmentSource.Chars(null);
+    private final SegmentSource.Bytes bytes = new SegmentSource.Bytes(null);
+    private final TCStringDecoder.SegmentSink segmentSink = (index, from, to) -> addSegment(from, to, index == 0);
+
+    /**
+     * Bitmaps of the bit fields and vendor sections by the ordinal of the field, filled on first
+     * access after a reset.
+     */
+    private final Bitmap[] bitmaps = new Bitmap[FieldDefs.values().length];
+    private final boolean[] filled = new boolean[FieldDefs.values().length];
+    private List<PublisherRestriction> publisherRestrictions;
+    private PublisherRestrictions publisherRestrictionIndex;
+
+    /**
+     * Creates an empty view, reading any field throws until the view is reset to a consent string.
+     */
+    public TCStringView() {
+        for (SegmentType segmentType : SEGMENT_TYPES) {
+            BitReader reader = new BitReader(buffer, 0, 0);
+            readers[segmentType.ordinal()] = reader;
+            layouts[segmentType.ordinal()] = FieldLayout.of(reader, segmentType);
+        }
+    }
+
+    /**
+     * Points the view at a consent string. Like {@link TCString#decode(String, DecoderOption...)}
+     * the segments are base64 decoded, the version and the OOB segment types are read upfront and
+     * the remaining fields on access. If the reset fails the view is left empty.
+     *
+     * @throws ByteParseException if version field failed to parse
+     * @throws UnsupportedVersionException if the version is not 2
+     * @throws InvalidSegmentException if an OOB segment type appears more than once
+     * @throws IllegalArgumentException if consentString is not in valid Base64 scheme
+     */
+    public TCStringView reset(CharSequence consentString) {
+        return reset(consentString, 0, consentString.length());
+    }
+
+    /**
+     * Points the view at the consent string held by the characters [start, end) of the sequence.
+     * The characters are decoded by the reset, the sequence may change afterwards.
+     *
+     * @throws ByteParseException if version field failed to parse
+     * @throws UnsupportedVersionException if the version is not 2
+     * @throws InvalidSegmentException if an OOB segment type appears more than once
+     * @throws IllegalArgumentException if consentString is not in valid Base64 scheme
+     * @throws IndexOutOfBoundsException if the range is not within the sequence
+     */
+    public TCStringView reset(CharSequence consentString, int start, int end) {
+        checkRange(start, end, consentString.length());
+        try {
+            return reset(chars.reset(consentString), start, end);
+        } finally {
+            chars.reset(null);
+        }
+    }
+
+    /**
+     * Points the view at the consent string held by the ASCII bytes [offset, offset + length) of
+     * the array. The bytes are decoded by the reset, the array may change afterwards.
+     *
+     * @throws ByteParseException if version field failed to parse
+     * @throws UnsupportedVersionException if the version is not 2
+     * @throws InvalidSegmentException if an OOB segment type appears more than once
+     * @throws IllegalArgumentException if consentString is not in valid Base64 scheme
+     * @throws IndexOutOfBoundsException if the range is not within the array
+     */
+    public TCStringView reset(byte[] consentString, int offset, int length) {
+        checkRange(offset, offset + length, consentString.length);
+        try {
+            return reset(bytes.reset(consentString), offset, offset + length);
+        } finally {
+            bytes.reset(null);
+        }
+    }
+
+    /**
+     * Decodes the segments of the source into the buffer, pointing the readers at them.
+     */
+    private TCStringView reset(SegmentSource source, int start, int end) {
+        clear();
+        ensureBuffer(Base64Url.maxDecodedLength(end - start));
+        try {
+            TCStringDecoder.split(source, start, end, buffer, segmentSink);
+            return this;
+        } catch (RuntimeException e) {
+            clear();
+            throw e;
+        }
+    }
+
+    private static void checkRange(int start, int end, int length) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(
+                    String.format("range [%d, %d) out of bounds for length %d", start, end, length));
+        }
+    }
+
+    private void ensureBuffer(int length) {
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(buffer.length * 2, length)];
+        }
+    }
+
+    private void clear() {
+        for (SegmentType segmentType : SEGMENT_TYPES) {
+            layouts[segmentType.ordinal()].reset();
+        }
+        readers[SegmentType.DEFAULT.ordinal()].reset(buffer, 0, 0);
+        segmentTypes.clear();
+        Arrays.fill(filled, false);
+        publisherRestrictions = null;
+        publisherRestrictionIndex = null;
+    }
+
+    /**
+     * Adds the segment decoded into the bytes [from, to) of the buffer.
+     */
+    private void addSegment(int from, int to, boolean isCore) {
+        SegmentType segmentType = SegmentType.DEFAULT;
+        if (!isCore) {
+            if (from == to) {
+                throw new ByteParseException("empty segment");
+            }
+            segmentType = SegmentType.from((buffer[from] & 0xFF) >>> SEGMENT_TYPE_SHIFT);
+            if (segmentType == SegmentType.DEFAULT || segmentType == SegmentType.INVALID) {
+                // segments unknown to this version of the specification are ignored
+                segmentTypes.add(SegmentType.INVALID);
+                return;
+            }
+            if (segmentTypes.contains(segmentType)) {
+                throw new InvalidSegmentException("duplicate segment type " + segmentType);
+            }
+        }
+
+        readers[segmentType.ordinal()].reset(buffer, from, to);
+        segmentTypes.add(segmentType);
+
+        if (isCore) {
+            int version = (int) core().readBits(CORE_VERSION);
+            if (version != SUPPORTED_VERSION) {
+                throw new UnsupportedVersionException("Version " + version + " is unsupported by views");
+            }
+        }
+    }
+
+    private FieldLayout core() {
+        return layouts[SegmentType.DEFAULT.ordinal()];
+    }
+
+    private FieldLayout getSegment(SegmentType segmentType) {
+        return segmentTypes.contains(segmentType) ? layouts[segmentType.ordinal()] : null;
+    }
+
+    private Bitmap bitmap(FieldDefs field) {
+        Bitmap rv = bitmaps[field.ordinal()];
+        if (rv == null) {
+            rv = new Bitmap();
+            bitmaps[field.ordinal()] = rv;
+        }
+        return rv;
+    }
+
+    /**
+     * The bit field of a segment, empty if the segment is absent.
+     *
+     * @throws ByteParseException
+     */
+    private IntIterable bitField(SegmentType segmentType, FieldDefs field) {
+        Bitmap rv = bitmap(field);
+        if (!filled[field.ordinal()]) {
+            rv.clear();
+
+            FieldLayout layout = getSegment(segmentType);
+            if (layout != null) {
+                int length = layout.getLength(field);
+                rv.readBitField(layout.getReader(), layout.getOffset(field), length);
+            }
+            filled[field.ordinal()] = true;
+        }
+        return rv;
+    }
+
+    /**
+     * The vendor section of a segment, empty if the segment is absent.
+     *
+     * @throws ByteParseException
+     * @throws InvalidRangeFieldException
+     */
+    private IntIterable vendors(SegmentType segmentType, FieldDefs maxVendor, FieldDefs vendorField) {
+        Bitmap rv = bitmap(vendorField);
+        if (!filled[vendorField.ordinal()]) {
+            rv.clear();
+
+            FieldLayout layout = getSegment(segmentType);
+            if (layout != null) {
+                BitReader bbv = layout.getReader();
+                // resolving the offset validates the whole section
+                int offset = layout.getOffset(vendorField);
+                int length = layout.getLength(vendorField);
+                if (bbv.readBits1(layout.getEnd(maxVendor))) {
+                    readRange(bbv, offset, rv);
+                } else {
+                    rv.readBitField(bbv, offset, length);
+                }
+            }
+            filled[vendorField.ordinal()] = true;
+        }
+        return rv;
+    }
+
+    /**
+     * Sets the vendors of a range section validated by the field layout.
+     */
+    private static void readRange(BitReader bbv, int offset, Bitmap bitmap) {
+        int numEntries = (int) bbv.readBitsUnchecked(offset, NUM_ENTRIES_LENGTH);
+        offset += NUM_ENTRIES_LENGTH;
+
+        for (int j = 0; j < numEntries; j++) {
+            boolean isRangeEntry = bbv.readBitsUnchecked(offset++, 1) != 0;
+            int start = (int) bbv.readBitsUnchecked(offset, VENDOR_ID_LENGTH);
+            offset += VENDOR_ID_LENGTH;
+
+            int end = start;
+            if (isRangeEntry) {
+                end = (int) bbv.readBitsUnchecked(offset, VENDOR_ID_LENGTH);
+                offset += VENDOR_ID_LENGTH;
+            }
+            bitmap.set(start, end);
+        }
+    }
+
+    private static String letterCode(FieldLayout layout, FieldDefs field) {
+        int code = (int) layout.readBits(field);
+        String rv = LETTER_CODES[code];
+        if (rv == null) {
+            rv = layout.readStr2(field);
+            LETTER_CODES[code] = rv;
+        }
+        return rv;
+    }
+
+    @Override
+    public Set<SegmentType> getSegmentTypes() {
+        return unmodifiableSegmentTypes;
+    }
+
+    @Override
+    public int getVersion() {
+        return (int) core().readBits(CORE_VERSION);
+    }
+
+    @Override
+    public Instant getCreated() {
+        return Instant.ofEpochMilli(getCreatedEpochMilli());
+    }
+
+    /**
+     * Same as {@link #getCreated()} without allocating.
+     */
+    public long getCreatedEpochMilli() {
+        return core().readBits(CORE_CREATED) * 100;
+    }
+
+    @Override
+    public Instant getLastUpdated() {
+        return Instant.ofEpochMilli(getLastUpdatedEpochMilli());
+    }
+
+    /**
+     * Same as {@link #getLastUpdated()} without allocating.
+     */
+    public long getLastUpdatedEpochMilli() {
+        return core().readBits(CORE_LAST_UPDATED) * 100;
+    }
+
+    @Override
+    public int getCmpId() {
+        return (int) core().readBits(CORE_CMP_ID);
+    }
+
+    @Override
+    public int getCmpVersion() {
+        return (int) core().readBits(CORE_CMP_VERSION);
+    }
+
+    @Override
+    public int getConsentScreen() {
+        return (int) core().readBits(CORE_CONSENT_SCREEN);
+    }
+
+    @Override
+    public String getConsentLanguage() {
+        return letterCode(core(), CORE_CONSENT_LANGUAGE);
+    }
+
+    @Override
+    public int getVendorListVersion() {
+        return (int) core().readBits(CORE_VENDOR_LIST_VERSION);
+    }
+
+    @Override
+    public IntIterable getPurposesConsent() {
+        return bitField(SegmentType.DEFAULT, CORE_PURPOSES_CONSENT);
+    }
+
+    /**
+     * @throws InvalidRangeFieldException
+     */
+    @Override
+    public IntIterable getVendorConsent() {
+        return vendors(SegmentType.DEFAULT, CORE_VENDOR_MAX_VENDOR_ID, CORE_VENDOR_BITRANGE_FIELD);
+    }
+
+    /**
+     * @throws InvalidRangeFieldException
+     */
+    @Override
+    public boolean hasVendorConsent(int vendorId) {
+        return getVendorConsent().contains(vendorId);
+    }
+
+    @Override
+    public boolean getDefaultVendorConsent() {
+        return false;
+    }
+
+    @Override
+    public int getTcfPolicyVersion() {
+        return (int) core().readBits(CORE_TCF_POLICY_VERSION);
+    }
+
+    @Override
+    public boolean isServiceSpecific() {
+        return core().readBits1(CORE_IS_SERVICE_SPECIFIC);
+    }
+
+    @Override
+    public boolean getUseNonStandardStacks() {
+        return core().readBits1(CORE_USE_NON_STANDARD_STOCKS);
+    }
+
+    @Override
+    public IntIterable getSpecialFeatureOptIns() {
+        return bitField(SegmentType.DEFAULT, CORE_SPECIAL_FEATURE_OPT_INS);
+    }
+
+    @Override
+    public IntIterable getPurposesLITransparency() {
+        return bitField(SegmentType.DEFAULT, CORE_PURPOSES_LI_TRANSPARENCY);
+    }
+
+    @Override
+    public boolean getPurposeOneTreatment() {
+        return core().readBits1(CORE_PURPOSE_ONE_TREATMENT);
+    }
+
+    @Override
+    public String getPublisherCC() {
+        return letterCode(core(), CORE_PUBLISHER_CC);
+    }
+
+    /**
+     * @throws InvalidRangeFieldException
+     */
+    @Override
+    public IntIterable getVendorLegitimateInterest() {
+        return vendors(SegmentType.DEFAULT, CORE_VENDOR_LI_MAX_VENDOR_ID, CORE_VENDOR_LI_BITRANGE_FIELD);
+    }
+
+    /**
+     * @throws InvalidRangeFieldException
+     */
+    @Override
+    public boolean hasVendorLegitimateInterest(int vendorId) {
+        return getVendorLegitimateInterest().contains(vendorId);
+    }
+
+    /**
+     * Allocates the restrictions on first access after a reset.
+     *
+     * @throws InvalidRangeFieldException
+     */
+    @Override
+    public List<PublisherRestriction> getPublisherRestrictions() {
+        List<PublisherRestriction> rv = publisherRestrictions;
+        if (rv == null) {
+            List<PublisherRestriction> restrictions = new ArrayList<>();
+            FieldLayout core = core();
+            TCStringV2.fillPublisherRestrictions(restrictions, core.getOffset(CORE_NUM_PUB_RESTRICTION),
+                    core.getReader());
+            rv = Collections.unmodifiableList(restrictions);
+            publisherRestrictions = rv;
+        }
+        return rv;
+    }
+
+    /**
+     * Allocates the index on first access after a reset, its lookups read the buffers of this view.
+     */
+    @Override
+    public PublisherRestrictions getPublisherRestrictionIndex() {
+        PublisherRestrictions rv = publisherRestrictionIndex;
+        if (rv == null) {
+            FieldLayout core = core();
+            rv = PublisherRestrictions.of(core.getReader(), core.getOffset(CORE_NUM_PUB_RESTRICTION));
+            publisherRestrictionIndex = rv;
+        }
+        return rv;
+    }
+
+    /**
+     * @throws InvalidRangeFieldException
+     */
+    @Override
+    public IntIterable getAllowedVendors() {
+        return vendors(SegmentType.ALLOWED_VENDOR, AV_MAX_VENDOR_ID, AV_VENDOR_BITRANGE_FIELD);
+    }
+
+    /**
+     * @throws InvalidRangeFieldException
+     */
+    @Override
+    public boolean isVendorAllowed(int vendorId) {
+        return getAllowedVendors().contains(vendorId);
+    }
+
+    /**
+     * @throws InvalidRangeFieldException
+     */
+    @Override
+    public IntIterable getDisclosedVendors() {
+        return vendors(SegmentType.DISCLOSED_VENDOR, DV_MAX_VENDOR_ID, DV_VENDOR_BITRANGE_FIELD);
+    }
+
+    /**
+     * @throws InvalidRangeFieldException
+     */
+    @Override
+    public boolean isVendorDisclosed(int vendorId) {
+        return getDisclosedVendors().contains(vendorId);
+    }
+
+    @Override
+    public IntIterable getPubPurposesConsent() {
+        return bitField(SegmentType.PUBLISHER_TC, PPTC_PUB_PURPOSES_CONSENT);
+    }
+
+    @Override
+    public IntIterable getPubPurposesLITransparency() {
+        return bitField(SegmentType.PUBLISHER_TC, PPTC_PUB_PURPOSES_LI_TRANSPARENCY);
+    }
+
+    @Override
+    public IntIterable getCustomPurposesConsent() {
+        return bitField(SegmentType.PUBLISHER_TC, PPTC_CUSTOM_PURPOSES_CONSENT);
+    }
+
+    @Override
+    public IntIterable getCustomPurposesLITransparency() {
+        return bitField(SegmentType.PUBLISHER_TC, PPTC_CUSTOM_PURPOSES_LI_TRANSPARENCY);
+    }
+
+    @Override
+    public String toString() {
+        return "TCStringView [getSegmentTypes()=" + segmentTypes + "]";
+    }
+
+    /**
+     * A reusable set of ids backed by a growable bitmap, bit i set for id i.
+     */
+    private static final class Bitmap extends IntIterable {
+        private long[] words = new long[4];
+
+        /**
+         * Number of leading words in use, the remaining words are zero.
+         */
+        private int used;
+
+        void clear() {
+            Arrays.fill(words, 0, used, 0);
+            used = 0;
+        }
+
+        private void ensureWords(int n) {
+            if (words.length < n) {
+                words = Arrays.copyOf(words, Math.max(words.length * 2, n));
+            }
+            used = Math.max(used, n);
+        }
+
+        /**
+         * Reads a bit field, bit i of the field being id i + 1.
+         */
+        void readBitField(BitReader bbv, int offset, int length) {
+            ensureWords((length + Long.SIZE) / Long.SIZE);
+            bbv.readBitmap(offset, length, 1, words, 0);
+        }
+
+        /**
+         * Sets the ids [from, to].
+         */
+        void set(int from, int to) {
+            int fromWord = from >>> 6;
+            int toWord = to >>> 6;
+            ensureWords(toWord + 1);
+
+            long fromMask = -1L << from;
+            long toMask = -1L >>> (Long.SIZE - 1 - (to & (Long.SIZE - 1)));
+            if (fromWord == toWord) {
+                words[fromWord] |= fromMask & toMask;
+                return;
+            }
+            words[fromWord] |= fromMask;
+            Arrays.fill(words, fromWord + 1, toWord, -1L);
+            words[toWord] |= toMask;
+        }
+
+        private int nextSetBit(int from) {
+            int w = from >>> 6;
+            if (w >= used) {
+                return -1;
+            }
+            long word = words[w] & -1L << from;
+            while (word == 0) {
+                if (++w == used) {
+                    return -1;
+                }
+                word = words[w];
+            }
+            return w * Long.SIZE + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        public boolean contains(int value) {
+            int w = value >>> 6;
+            return value >= 0 && w < used && (words[w] & 1L << value) != 0;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return nextSetBit(0) < 0;
+        }
+
+        @Override
+        public IntIterator intIterator() {
+            return new IntIterator() {
+                private int next = nextSetBit(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public Integer next() {
+                    return nextInt();
+                }
+
+                @Override
+                public int nextInt() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int rv = next;
+                    next = nextSetBit(rv + 1);
+                    return rv;
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("{");
+            for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+                if (builder.length() > 1) {
+                    builder.append(", ");
+                }
+                builder.append(i);
+            }
+            return builder.append('}').toString();
+        }
+    }
+}
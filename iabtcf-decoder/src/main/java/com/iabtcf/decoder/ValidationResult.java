@@ -0,0 +1,82 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.iabtcf.utils.FieldDefs;
+
+/**
+ * The status of a validated consent string and the field failing validation. Results are shared
+ * constants, validating doesn't allocate them.
+ */
+public final class ValidationResult {
+    public static final ValidationResult VALID = new ValidationResult(ValidationStatus.VALID, null);
+
+    private static final int NO_FIELD = FieldDefs.values().length;
+
+    /**
+     * Results by status and field ordinal, the last column holding the results without a field.
+     */
+    private static final ValidationResult[][] RESULTS =
+            new ValidationResult[ValidationStatus.values().length][NO_FIELD + 1];
+
+    static {
+        for (ValidationStatus status : ValidationStatus.values()) {
+            ValidationResult[] results = RESULTS[status.ordinal()];
+            for (FieldDefs field : FieldDefs.values()) {
+                results[field.ordinal()] = new ValidationResult(status, field);
+            }
+            results[NO_FIELD] = status == ValidationStatus.VALID ? VALID : new ValidationResult(status, null);
+        }
+    }
+
+    private final ValidationStatus status;
+    private final FieldDefs field;
+
+    private ValidationResult(ValidationStatus status, FieldDefs field) {
+        this.status = status;
+        this.field = field;
+    }
+
+    static ValidationResult of(ValidationStatus status, FieldDefs field) {
+        return RESULTS[status.ordinal()][field == null ? NO_FIELD : field.ordinal()];
+    }
+
+    public boolean isValid() {
+        return status == ValidationStatus.VALID;
+    }
+
+    public ValidationStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * The field failing validation, e.g. the field exceeding its segment or the vendor section
+     * holding an invalid range entry. Null if the string is valid or not valid base64url.
+     */
+    public FieldDefs getField() {
+        return field;
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationResult [status=" + status + ", field=" + field + "]";
+    }
+}
@@ -0,0 +1,59 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * The outcome of {@link TCString#validate(CharSequence)}.
+ */
+public enum ValidationStatus {
+    /**
+     * The consent string decodes without error.
+     */
+    VALID,
+
+    /**
+     * A segment is not valid base64url, decoding throws an {@link IllegalArgumentException}.
+     */
+    INVALID_BASE64,
+
+    /**
+     * The version is neither 1 nor 2, decoding throws an
+     * {@link com.iabtcf.exceptions.UnsupportedVersionException}.
+     */
+    UNSUPPORTED_VERSION,
+
+    /**
+     * A field exceeds its segment, decoding throws a {@link com.iabtcf.exceptions.ByteParseException}.
+     */
+    TRUNCATED,
+
+    /**
+     * A range entry is invalid, decoding throws an
+     * {@link com.iabtcf.exceptions.InvalidRangeFieldException}.
+     */
+    INVALID_RANGE,
+
+    /**
+     * An OOB segment type appears more than once, decoding throws an
+     * {@link com.iabtcf.exceptions.InvalidSegmentException}.
+     */
+    INVALID_SEGMENT;
+}
@@ -23,11 +23,43 @@ package com.iabtcf.exceptions;
 public class ByteParseException extends TCStringDecodeException {
     private static final long serialVersionUID = 2736378835587004853L;
 
+    private final int index;
+    private final int length;
+    private final int bufferLength;
+
     public ByteParseException(String message) {
         super(message);
+        this.index = -1;
+        this.length = -1;
+        this.bufferLength = -1;
+    }
+
+    /**
+     * Thrown when reading length bytes at index exceeds the buffer. The exception has no stack
+     * trace and its message is only formatted if asked for.
+     *
+     * @since 2.0.8
+     */
+    public ByteParseException(int index, int length, int bufferLength) {
+        super(null, null, false);
+        this.index = index;
+        this.length = length;
+        this.bufferLength = bufferLength;
     }
 
     public ByteParseException(String message, Throwable cause) {
         super(message, cause);
+        this.index = -1;
+        this.length = -1;
+        this.bufferLength = -1;
+    }
+
+    @Override
+    public String getMessage() {
+        if (index < 0) {
+            return super.getMessage();
+        }
+        return String.format("read %d bytes at index %d out of bounds for buffer length %d", length, index,
+                bufferLength);
     }
 }
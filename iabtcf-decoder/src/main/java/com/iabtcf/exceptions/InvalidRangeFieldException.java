@@ -23,7 +23,39 @@ package com.iabtcf.exceptions;
 public class InvalidRangeFieldException extends TCStringDecodeException {
     private static final long serialVersionUID = -7791569956366524902L;
 
+    private final int startVendorId;
+    private final int endVendorId;
+    private final int maxVendorId;
+
     public InvalidRangeFieldException(String message) {
         super(message);
+        this.startVendorId = -1;
+        this.endVendorId = -1;
+        this.maxVendorId = -1;
+    }
+
+    /**
+     * Thrown for a range entry starting after its end or ending after the max vendor id. The
+     * exception has no stack trace and its message is only formatted if asked for.
+     *
+     * @since 2.0.8
+     */
+    public InvalidRangeFieldException(int startVendorId, int endVendorId, int maxVendorId) {
+        super(null, null, false);
+        this.startVendorId = startVendorId;
+        this.endVendorId = endVendorId;
+        this.maxVendorId = maxVendorId;
+    }
+
+    @Override
+    public String getMessage() {
+        if (startVendorId < 0) {
+            return super.getMessage();
+        }
+        if (startVendorId > endVendorId) {
+            return String.format("start vendor id (%d) is greater than endVendorId (%d)", startVendorId,
+                    endVendorId);
+        }
+        return String.format("end vendor id (%d) is greater than max (%d)", endVendorId, maxVendorId);
     }
 }
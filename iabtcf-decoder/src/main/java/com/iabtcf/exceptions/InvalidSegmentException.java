@@ -0,0 +1,33 @@
+package com.iabtcf.exceptions;
+
+/*-
+ * #%L
+ * IAB TCF Core Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Thrown if the segments of a consent string are not well formed, e.g. the same OOB segment type
+ * appears more than once.
+ */
+public class InvalidSegmentException extends TCStringDecodeException {
+    private static final long serialVersionUID = -3316180487123765214L;
+
+    public InvalidSegmentException(String message) {
+        super(message);
+    }
+}
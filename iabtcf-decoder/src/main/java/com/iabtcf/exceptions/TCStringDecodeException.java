@@ -34,4 +34,12 @@ public class TCStringDecodeException extends RuntimeException {
     public TCStringDecodeException(String message, Throwable cause) {
         super(message, cause);
     }
+
+    /**
+     * Creates an exception without a stack trace if writableStackTrace is false. Malformed input
+     * throws the subclasses using it often, filling in the stack trace would dominate the cost.
+     */
+    protected TCStringDecodeException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, true, writableStackTrace);
+    }
 }
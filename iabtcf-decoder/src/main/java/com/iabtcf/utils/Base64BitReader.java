@@ -0,0 +1,91 @@
+package com.iabtcf.utils;
+
+/*-
+ * #%L
+ * IAB TCF Core Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Reads bits straight from base64url characters, translating the characters spanned by a read
+ * through a lookup table. The characters must have been validated, see
+ * {@link Base64Url#decodedLength(CharSequence, int, int)}.
+ */
+final class Base64BitReader extends BitReader {
+    private static final int SEXTET_BITS = 6;
+
+    /**
+     * The widest read served from a single long: 10 characters hold 60 bits, enough for 54 bits
+     * starting anywhere in the first character.
+     */
+    private static final int MAX_CHUNK = 54;
+
+    private final CharSequence chars;
+    private final byte[] bytes;
+    private final int start;
+
+    /**
+     * Exactly one of chars and bytes is non null.
+     */
+    Base64BitReader(CharSequence chars, byte[] bytes, int start, int length) {
+        super(length);
+        this.chars = chars;
+        this.bytes = bytes;
+        this.start = start;
+    }
+
+    @Override
+    public long readBits(int offset, int nbits) {
+        assert nbits >= 0 && nbits <= Long.SIZE;
+
+        checkReadable(offset, nbits);
+        return readBitsUnchecked(offset, nbits);
+    }
+
+    @Override
+    public long readBitsUnchecked(int offset, int nbits) {
+        if (nbits == 0) {
+            return 0;
+        }
+        if (nbits > MAX_CHUNK) {
+            int high = nbits - Integer.SIZE;
+            return readChunk(offset, high) << Integer.SIZE | readChunk(offset + high, Integer.SIZE);
+        }
+        return readChunk(offset, nbits);
+    }
+
+    /**
+     * Accumulates the characters spanned by [offset, offset + nbits), at most 10, and drops the
+     * bits outside of the range.
+     */
+    private long readChunk(int offset, int nbits) {
+        int first = offset / SEXTET_BITS;
+        int last = (offset + nbits - 1) / SEXTET_BITS;
+
+        long acc = 0;
+        for (int i = first; i <= last; i++) {
+            acc = acc << SEXTET_BITS | sextet(start + i);
+        }
+
+        int trailing = (last + 1) * SEXTET_BITS - offset - nbits;
+        return acc >>> trailing & (-1L >>> (Long.SIZE - nbits));
+    }
+
+    private int sextet(int index) {
+        return Base64Url.sextet(chars != null ? chars.charAt(index) : bytes[index]);
+    }
+}
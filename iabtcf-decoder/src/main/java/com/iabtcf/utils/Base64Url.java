@@ -0,0 +1,407 @@
+package com.iabtcf.utils;
+
+/*-
+ * #%L
+ * IAB TCF Core Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Table driven base64url decoding (RFC 4648, section 5) of ASCII input into a caller supplied
+ * buffer. Accepts the same input as {@link java.util.Base64#getUrlDecoder()}, padding is optional
+ * but must be correct when present.
+ *
+ * The decoders work on 8 characters at a time: the sextets of the block are combined into a single
+ * 48 bit word and validated together, a lookup of an illegal character yields -1 and turns the sign
+ * bit of the combined sextets on.
+ *
+ * This is an internal only class and subject to change.
+ */
+public final class Base64Url {
+    private static final byte[] SEXTETS = new byte[128];
+
+    /**
+     * Same as SEXTETS for every byte value, so ASCII input is looked up without a bounds check.
+     */
+    private static final byte[] SEXTETS_ASCII = new byte[256];
+
+    static {
+        Arrays.fill(SEXTETS, (byte) -1);
+        Arrays.fill(SEXTETS_ASCII, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            SEXTETS[alphabet.charAt(i)] = (byte) i;
+            SEXTETS_ASCII[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private Base64Url() {
+    }
+
+    /**
+     * Returns the 6 bit value of the base64url character c, or -1 if c is not part of the alphabet.
+     */
+    public static int sextet(int c) {
+        return c >= 0 && c < SEXTETS.length ? SEXTETS[c] : -1;
+    }
+
+    /**
+     * Upper bound of the number of bytes decoded from length characters.
+     */
+    public static int maxDecodedLength(int length) {
+        return (int) (length * 3L / 4);
+    }
+
+    /**
+     * Decodes the characters [start, end) of src into dst starting at dstOffset.
+     *
+     * @return the number of bytes written to dst
+     * @throws IllegalArgumentException if the input is not valid base64url, the message holds the
+     *         index of the first illegal character
+     */
+    public static int decode(CharSequence src, int start, int end, byte[] dst, int dstOffset) {
+        int n = tryDecode(src, start, end, dst, dstOffset);
+        if (n < 0) {
+            throw invalid(src, start, end);
+        }
+        return n;
+    }
+
+    /**
+     * Same as {@link #decode(CharSequence, int, int, byte[], int)} without creating an exception for
+     * invalid input, the content of dst is then undefined.
+     *
+     * @return the number of bytes written to dst, or -1 if the input is not valid base64url
+     */
+    public static int tryDecode(CharSequence src, int start, int end, byte[] dst, int dstOffset) {
+        int dataEnd = end;
+        while (dataEnd > start && src.charAt(dataEnd - 1) == '=') {
+            dataEnd--;
+        }
+        if (!isValidPadding(dataEnd - start, end - dataEnd)) {
+            return -1;
+        }
+
+        int sp = start;
+        int dp = dstOffset;
+        // 8 characters decode to 6 bytes, an illegal character turns the sign bit of check on
+        for (; sp + 8 <= dataEnd; sp += 8) {
+            int s0 = sextet(src.charAt(sp));
+            int s1 = sextet(src.charAt(sp + 1));
+            int s2 = sextet(src.charAt(sp + 2));
+            int s3 = sextet(src.charAt(sp + 3));
+            int s4 = sextet(src.charAt(sp + 4));
+            int s5 = sextet(src.charAt(sp + 5));
+            int s6 = sextet(src.charAt(sp + 6));
+            int s7 = sextet(src.charAt(sp + 7));
+            if ((s0 | s1 | s2 | s3 | s4 | s5 | s6 | s7) < 0) {
+                return -1;
+            }
+
+            long bits = (long) s0 << 42 | (long) s1 << 36 | (long) s2 << 30 | (long) s3 << 24
+                    | s4 << 18 | s5 << 12 | s6 << 6 | s7;
+            dst[dp] = (byte) (bits >>> 40);
+            dst[dp + 1] = (byte) (bits >>> 32);
+            dst[dp + 2] = (byte) (bits >>> 24);
+            dst[dp + 3] = (byte) (bits >>> 16);
+            dst[dp + 4] = (byte) (bits >>> 8);
+            dst[dp + 5] = (byte) bits;
+            dp += 6;
+        }
+
+        long bits = 0;
+        int n = dataEnd - sp;
+        for (int i = 0; i < n; i++) {
+            int v = sextet(src.charAt(sp + i));
+            if (v < 0) {
+                return -1;
+            }
+            bits = bits << 6 | v;
+        }
+        return dp - dstOffset + writeTail(bits, n, dst, dp);
+    }
+
+    /**
+     * Decodes the ASCII characters [start, end) of src into dst starting at dstOffset.
+     *
+     * @return the number of bytes written to dst
+     * @throws IllegalArgumentException if the input is not valid base64url, the message holds the
+     *         index of the first illegal character
+     */
+    public static int decode(byte[] src, int start, int end, byte[] dst, int dstOffset) {
+        int dataEnd = end;
+        while (dataEnd > start && src[dataEnd - 1] == '=') {
+            dataEnd--;
+        }
+        checkPadding(dataEnd - start, end - dataEnd);
+
+        int sp = start;
+        int dp = dstOffset;
+        for (; sp + 8 <= dataEnd; sp += 8) {
+            int s0 = SEXTETS_ASCII[src[sp] & 0xFF];
+            int s1 = SEXTETS_ASCII[src[sp + 1] & 0xFF];
+            int s2 = SEXTETS_ASCII[src[sp + 2] & 0xFF];
+            int s3 = SEXTETS_ASCII[src[sp + 3] & 0xFF];
+            int s4 = SEXTETS_ASCII[src[sp + 4] & 0xFF];
+            int s5 = SEXTETS_ASCII[src[sp + 5] & 0xFF];
+            int s6 = SEXTETS_ASCII[src[sp + 6] & 0xFF];
+            int s7 = SEXTETS_ASCII[src[sp + 7] & 0xFF];
+            if ((s0 | s1 | s2 | s3 | s4 | s5 | s6 | s7) < 0) {
+                throw illegalCharacter(src, sp, sp + 8);
+            }
+
+            long bits = (long) s0 << 42 | (long) s1 << 36 | (long) s2 << 30 | (long) s3 << 24
+                    | s4 << 18 | s5 << 12 | s6 << 6 | s7;
+            dst[dp] = (byte) (bits >>> 40);
+            dst[dp + 1] = (byte) (bits >>> 32);
+            dst[dp + 2] = (byte) (bits >>> 24);
+            dst[dp + 3] = (byte) (bits >>> 16);
+            dst[dp + 4] = (byte) (bits >>> 8);
+            dst[dp + 5] = (byte) bits;
+            dp += 6;
+        }
+
+        long bits = 0;
+        int n = dataEnd - sp;
+        for (int i = 0; i < n; i++) {
+            int v = SEXTETS_ASCII[src[sp + i] & 0xFF];
+            if (v < 0) {
+                throw illegalCharacter(src, sp + i, sp + i + 1);
+            }
+            bits = bits << 6 | v;
+        }
+        return dp - dstOffset + writeTail(bits, n, dst, dp);
+    }
+
+    /**
+     * Same as {@link #decode(CharSequence, int, int, byte[], int)} for characters taken from a URL
+     * or a cookie. Percent-encoded characters are decoded on the fly, and trailing padding, escaped
+     * or not, is skipped whatever its length.
+     *
+     * @return the number of bytes written to dst
+     * @throws IllegalArgumentException if the unescaped input is not valid base64url or holds a
+     *         malformed escape, the message holds the index of the offending character
+     */
+    public static int decodePercentEncoded(CharSequence src, int start, int end, byte[] dst, int dstOffset) {
+        int dp = dstOffset;
+        int bits = 0;
+        int n = 0;
+        boolean padding = false;
+        for (int i = start; i < end;) {
+            // runs of 8 characters without escapes or padding decode like the plain input
+            if (n == 0 && i + 8 <= end) {
+                int s0 = sextet(src.charAt(i));
+                int s1 = sextet(src.charAt(i + 1));
+                int s2 = sextet(src.charAt(i + 2));
+                int s3 = sextet(src.charAt(i + 3));
+                int s4 = sextet(src.charAt(i + 4));
+                int s5 = sextet(src.charAt(i + 5));
+                int s6 = sextet(src.charAt(i + 6));
+                int s7 = sextet(src.charAt(i + 7));
+                if ((s0 | s1 | s2 | s3 | s4 | s5 | s6 | s7) >= 0 && !padding) {
+                    long block = (long) s0 << 42 | (long) s1 << 36 | (long) s2 << 30 | (long) s3 << 24
+                            | s4 << 18 | s5 << 12 | s6 << 6 | s7;
+                    dst[dp] = (byte) (block >>> 40);
+                    dst[dp + 1] = (byte) (block >>> 32);
+                    dst[dp + 2] = (byte) (block >>> 24);
+                    dst[dp + 3] = (byte) (block >>> 16);
+                    dst[dp + 4] = (byte) (block >>> 8);
+                    dst[dp + 5] = (byte) block;
+                    dp += 6;
+                    i += 8;
+                    continue;
+                }
+            }
+
+            int index = i;
+            int c = src.charAt(i++);
+            if (c == '%') {
+                c = unescape(src, index, end);
+                i += 2;
+            }
+
+            if (c == '=') {
+                padding = true;
+                continue;
+            }
+            int v = sextet(c);
+            if (v < 0 || padding) {
+                throw illegalCharacter(c, index);
+            }
+
+            // 4 characters decode to 3 bytes
+            bits = bits << 6 | v;
+            if (++n == 4) {
+                dst[dp] = (byte) (bits >>> 16);
+                dst[dp + 1] = (byte) (bits >>> 8);
+                dst[dp + 2] = (byte) bits;
+                dp += 3;
+                bits = 0;
+                n = 0;
+            }
+        }
+        if (n == 1) {
+            throw new IllegalArgumentException("Last unit does not have enough valid bits");
+        }
+        return dp - dstOffset + writeTail(bits, n, dst, dp);
+    }
+
+    /**
+     * Returns the character escaped by the percent sign at index.
+     */
+    private static int unescape(CharSequence src, int index, int end) {
+        int hi = index + 2 < end ? hexDigit(src.charAt(index + 1)) : -1;
+        int lo = hi >= 0 ? hexDigit(src.charAt(index + 2)) : -1;
+        if (lo < 0) {
+            throw new IllegalArgumentException("Illegal percent escape at index " + index);
+        }
+        return hi << 4 | lo;
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the bytes of the last (up to 7) characters, their n sextets right aligned in bits. The
+     * excess bits of a partial unit are dropped.
+     *
+     * @return the number of bytes written
+     */
+    private static int writeTail(long bits, int n, byte[] dst, int dp) {
+        long aligned = bits << (6 * (8 - n));
+        int length = n * 6 >> 3;
+        for (int i = 0; i < length; i++) {
+            dst[dp + i] = (byte) (aligned >>> (40 - 8 * i));
+        }
+        return length;
+    }
+
+    /**
+     * Validates the characters [start, end) of src without decoding them.
+     *
+     * @return the number of bytes the characters decode to
+     * @throws IllegalArgumentException if the input is not valid base64url, the message holds the
+     *         index of the first illegal character
+     */
+    public static int decodedLength(CharSequence src, int start, int end) {
+        int dataEnd = end;
+        while (dataEnd > start && src.charAt(dataEnd - 1) == '=') {
+            dataEnd--;
+        }
+        checkPadding(dataEnd - start, end - dataEnd);
+
+        int check = 0;
+        for (int i = start; i < dataEnd; i++) {
+            check |= sextet(src.charAt(i));
+        }
+        if (check < 0) {
+            throw illegalCharacter(src, start, dataEnd);
+        }
+        return (int) ((dataEnd - start) * 6L >> 3);
+    }
+
+    /**
+     * Validates the ASCII characters [start, end) of src without decoding them.
+     *
+     * @return the number of bytes the characters decode to
+     * @throws IllegalArgumentException if the input is not valid base64url, the message holds the
+     *         index of the first illegal character
+     */
+    public static int decodedLength(byte[] src, int start, int end) {
+        int dataEnd = end;
+        while (dataEnd > start && src[dataEnd - 1] == '=') {
+            dataEnd--;
+        }
+        checkPadding(dataEnd - start, end - dataEnd);
+
+        int check = 0;
+        for (int i = start; i < dataEnd; i++) {
+            check |= SEXTETS_ASCII[src[i] & 0xFF];
+        }
+        if (check < 0) {
+            throw illegalCharacter(src, start, dataEnd);
+        }
+        return (int) ((dataEnd - start) * 6L >> 3);
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     */
+    private static void checkPadding(int dataLength, int padding) {
+        int rem = dataLength % 4;
+        if (rem == 1) {
+            throw new IllegalArgumentException("Last unit does not have enough valid bits");
+        }
+        if (padding != 0 && (rem == 0 || rem + padding != 4)) {
+            throw new IllegalArgumentException("Input byte array has wrong 4-byte ending unit");
+        }
+    }
+
+    private static boolean isValidPadding(int dataLength, int padding) {
+        int rem = dataLength % 4;
+        return rem != 1 && (padding == 0 || rem != 0 && rem + padding == 4);
+    }
+
+    /**
+     * Builds the exception for the invalid characters [start, end) of src, throws it right away if
+     * the padding is invalid.
+     */
+    private static IllegalArgumentException invalid(CharSequence src, int start, int end) {
+        int dataEnd = end;
+        while (dataEnd > start && src.charAt(dataEnd - 1) == '=') {
+            dataEnd--;
+        }
+        checkPadding(dataEnd - start, end - dataEnd);
+        return illegalCharacter(src, start, dataEnd);
+    }
+
+    /**
+     * Locates the first illegal character within [from, to) of src.
+     */
+    private static IllegalArgumentException illegalCharacter(CharSequence src, int from, int to) {
+        int i = from;
+        while (i < to - 1 && sextet(src.charAt(i)) >= 0) {
+            i++;
+        }
+        return illegalCharacter(src.charAt(i), i);
+    }
+
+    private static IllegalArgumentException illegalCharacter(byte[] src, int from, int to) {
+        int i = from;
+        while (i < to - 1 && SEXTETS_ASCII[src[i] & 0xFF] >= 0) {
+            i++;
+        }
+        return illegalCharacter(src[i] & 0xFF, i);
+    }
+
+    private static IllegalArgumentException illegalCharacter(int c, int index) {
+        return new IllegalArgumentException(
+                "Illegal base64 character " + Integer.toString(c, 16) + " at index " + index);
+    }
+}
@@ -28,27 +28,109 @@ import com.iabtcf.exceptions.ByteParseException;
 
 /**
  * This is an internal only class and subject to change.
+ *
+ * A reader is safe for concurrent use. Readers over a byte array never mutate their buffer, readers
+ * over an input stream serialize buffering from the stream.
  */
 public class BitReader {
     private byte[] buffer;
+    private int from;
     private int isrpos;
     private final InputStream is;
     final LengthOffsetCache cache;
 
     public BitReader(InputStream is) {
         this.buffer = new byte[4096];
+        this.from = 0;
         this.is = is;
         this.isrpos = 0;
         cache = new LengthOffsetCache(this);
     }
 
     public BitReader(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Creates a reader over the bytes [from, to) of the buffer, the first bit of buffer[from] being
+     * bit 0 of the reader. The buffer is not copied, several readers may share one buffer.
+     *
+     * @throws IndexOutOfBoundsException if the range is not within the buffer
+     */
+    public BitReader(byte[] buffer, int from, int to) {
+        checkRange(from, to, buffer.length);
         this.buffer = buffer;
-        this.isrpos = buffer.length;
+        this.from = from;
+        this.isrpos = to - from;
+        this.is = null;
+        cache = new LengthOffsetCache(this);
+    }
+
+    /**
+     * Creates a reader over the base64url characters [start, end) of src. Each character maps to
+     * 6 bits, bit offset n lives in character n / 6, so fields are translated on demand rather than
+     * decoding the whole input upfront. The characters are not copied, src must not change while the
+     * reader is in use.
+     *
+     * The reader covers the same bits as a reader over the decoded bytes would.
+     *
+     * @throws IllegalArgumentException if the characters are not valid base64url
+     * @throws IndexOutOfBoundsException if the range is not within src
+     */
+    public static BitReader fromBase64(CharSequence src, int start, int end) {
+        checkRange(start, end, src.length());
+        return new Base64BitReader(src, null, start, Base64Url.decodedLength(src, start, end));
+    }
+
+    /**
+     * Same as {@link #fromBase64(CharSequence, int, int)} for ASCII characters.
+     *
+     * @throws IllegalArgumentException if the characters are not valid base64url
+     * @throws IndexOutOfBoundsException if the range is not within src
+     */
+    public static BitReader fromBase64(byte[] src, int start, int end) {
+        checkRange(start, end, src.length);
+        return new Base64BitReader(null, src, start, Base64Url.decodedLength(src, start, end));
+    }
+
+    /**
+     * For readers not backed by a byte buffer, length is the number of readable bytes. Such readers
+     * must override {@link #readBits(int, int)} and {@link #readBitsUnchecked(int, int)}.
+     */
+    BitReader(int length) {
+        this.buffer = null;
+        this.from = 0;
+        this.isrpos = length;
         this.is = null;
         cache = new LengthOffsetCache(this);
     }
 
+    /**
+     * Points a reader over a byte array at the bytes [from, to) of buffer, forgetting the cached
+     * lengths and offsets, so a single reader can be reused across decodes. Unlike reads, resetting
+     * is not safe while other threads use the reader.
+     *
+     * @throws IllegalStateException if the reader is not backed by a byte array
+     * @throws IndexOutOfBoundsException if the range is not within the buffer
+     */
+    public void reset(byte[] buffer, int from, int to) {
+        if (this.buffer == null || is != null) {
+            throw new IllegalStateException("reader is not backed by a byte array");
+        }
+        checkRange(from, to, buffer.length);
+        this.buffer = buffer;
+        this.from = from;
+        this.isrpos = to - from;
+        cache.clear();
+    }
+
+    private static void checkRange(int from, int to, int length) {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException(
+                    String.format("range [%d, %d) out of bounds for buffer length %d", from, to, length));
+        }
+    }
+
     private void ensureCapacity(int length) {
         if (buffer.length >= length) {
             return;
@@ -60,20 +142,38 @@ public class BitReader {
     }
 
     /**
+     * Returns the buffer to read the requested bytes from. Callers must read from the returned array
+     * rather than the buffer field, the stream backed reader may replace it concurrently.
+     *
+     * @throws ByteParseException
+     */
+    private byte[] ensureReadable(int offset, int length) {
+        if (is == null) {
+            if (offset + length > isrpos) {
+                throw new ByteParseException(offset, length, isrpos);
+            }
+            return buffer;
+        }
+
+        synchronized (this) {
+            fill(offset, length);
+            return buffer;
+        }
+    }
+
+    /**
+     * Reads from the underlying stream until the requested bytes are buffered or the stream ends.
+     * Must be called while holding the lock on this reader.
+     *
      * @throws ByteParseException
      */
-    private boolean ensureReadable(int offset, int length) {
+    private void fill(int offset, int length) {
         int tlength = offset + length;
         int n;
         int rem = tlength - isrpos;
 
         if (tlength <= isrpos) {
-            return true;
-        }
-
-        if (is == null) {
-            throw new ByteParseException(String.format("read %d bytes at index %d out of bounds for buffer length %d",
-                    length, offset, buffer.length));
+            return;
         }
 
         ensureCapacity(tlength);
@@ -82,7 +182,7 @@ public class BitReader {
             while (rem > 0) {
                 n = is.read(buffer, isrpos, rem);
                 if (n == -1) {
-                    return false;
+                    return;
                 }
 
                 isrpos += n;
@@ -91,13 +191,125 @@ public class BitReader {
         } catch (IOException e) {
             throw new ByteParseException(String.format("error decoding at offset %d length %d", offset, length), e);
         }
+    }
+
+    /**
+     * Returns true if the bits [offset, offset + nbits) can be read, buffering them from the
+     * underlying stream if necessary. Once this returns true for a range, every read within the
+     * range may use {@link #readBitsUnchecked(int, int)}.
+     */
+    public boolean isReadable(int offset, int nbits) {
+        int startByte = offset >> 3;
+        int length = byteLength(offset, nbits);
+
+        if (is == null) {
+            return offset >= 0 && nbits >= 0 && startByte + length <= isrpos;
+        }
+
+        synchronized (this) {
+            fill(startByte, length);
+            return startByte + length <= isrpos;
+        }
+    }
+
+    /**
+     * Checks once that the bits [offset, offset + nbits) can be read.
+     *
+     * @throws ByteParseException
+     */
+    public void checkReadable(int offset, int nbits) {
+        ensureReadable(offset >> 3, byteLength(offset, nbits));
+    }
+
+    private static int byteLength(int offset, int nbits) {
+        return ((offset & 7) + nbits + 7) >> 3;
+    }
+
+    /**
+     * Reads nbits, at most 64, starting at offset and returns them as an unsigned big endian value.
+     *
+     * @throws ByteParseException
+     */
+    public long readBits(int offset, int nbits) {
+        assert nbits >= 0 && nbits <= Long.SIZE;
+
+        byte[] buffer = ensureReadable(offset >> 3, byteLength(offset, nbits));
+        return readBits(buffer, from, offset, nbits);
+    }
+
+    /**
+     * Reads the whole field, at most 64 bits wide.
+     *
+     * @throws ByteParseException
+     */
+    public long readBits(FieldDefs field) {
+        return readBits(field.getOffset(this), field.getLength(this));
+    }
+
+    /**
+     * Same as {@link #readBits(int, int)} without checking the bounds of the read. Callers must have
+     * established the range is readable, e.g. using {@link #checkReadable(int, int)}. Reading out of
+     * bounds is not detected, it returns whatever bits follow the range in the underlying buffer,
+     * e.g. those of the next segment of a reader created over part of a buffer, zero bits past the
+     * end of the buffer, or throws ArrayIndexOutOfBoundsException.
+     */
+    public long readBitsUnchecked(int offset, int nbits) {
+        if (is != null) {
+            // the buffer of a stream backed reader must be read under the lock
+            return readBits(offset, nbits);
+        }
+        return readBits(buffer, from, offset, nbits);
+    }
+
+    /**
+     * Loads the (up to) 8 bytes starting at the byte containing offset as a single word, shifts out
+     * the leading bits and picks up the trailing bits from a 9th byte when the read straddles it.
+     * Offset is relative to buffer[from].
+     */
+    private static long readBits(byte[] buffer, int from, int offset, int nbits) {
+        if (nbits == 0) {
+            return 0;
+        }
 
-        return true;
+        int startByte = from + (offset >> 3);
+        int bitPos = offset & 7;
+        long value = readWord(buffer, startByte) << bitPos;
+
+        if (bitPos + nbits > Long.SIZE) {
+            value |= (buffer[startByte + 8] & 0xFFL) >>> (8 - bitPos);
+        }
+
+        return value >>> (Long.SIZE - nbits);
+    }
+
+    /**
+     * Big endian load of 8 bytes, zero padded past the end of the buffer.
+     */
+    private static long readWord(byte[] buffer, int index) {
+        if (index + 8 <= buffer.length) {
+            return (buffer[index] & 0xFFL) << 56
+                    | (buffer[index + 1] & 0xFFL) << 48
+                    | (buffer[index + 2] & 0xFFL) << 40
+                    | (buffer[index + 3] & 0xFFL) << 32
+                    | (buffer[index + 4] & 0xFFL) << 24
+                    | (buffer[index + 5] & 0xFFL) << 16
+                    | (buffer[index + 6] & 0xFFL) << 8
+                    | (buffer[index + 7] & 0xFFL);
+        }
+
+        long word = 0;
+        for (int i = 0; i < 8; i++) {
+            word <<= 8;
+            if (index + i < buffer.length) {
+                word |= buffer[index + i] & 0xFFL;
+            }
+        }
+        return word;
     }
 
     public String readStr2(int offset) {
-        return String
-            .valueOf(new char[] {(char) ('A' + readBits6(offset)), (char) ('A' + readBits6(offset + 6))});
+        int chars = (int) readBits(offset, 12);
+        return String.valueOf(new char[] {(char) ('A' + (chars >>> 6)), (char) ('A' + (chars & 0x3F))});
     }
 
     public String readStr2(FieldDefs field) {
@@ -116,12 +328,7 @@ public class BitReader {
      * @throws ByteParseException
      */
     public boolean readBits1(int offset) {
-        int startByte = offset >> 3;
-        int bitPos = offset % 8;
-
-        ensureReadable(startByte, 1);
-
-        return ((buffer[startByte] >>> (7 - bitPos)) & 1) == 1;
+        return readBits(offset, 1) != 0;
     }
 
     /**
@@ -136,7 +343,7 @@ public class BitReader {
      * @throws ByteParseException
      */
     public byte readBits2(int offset) {
-        return readByteBits(offset, 2);
+        return (byte) readBits(offset, 2);
     }
 
     /**
@@ -151,7 +358,7 @@ public class BitReader {
      * @throws ByteParseException
      */
     public byte readBits3(int offset) {
-        return readByteBits(offset, 3);
+        return (byte) readBits(offset, 3);
     }
 
     /**
@@ -166,38 +373,7 @@ public class BitReader {
      * @throws ByteParseException
      */
     public byte readBits6(int offset) {
-        int startByte = offset >> 3;
-        int bitPos = offset % 8;
-        int n = 8 - bitPos;
-
-        if (n < 6) {
-            ensureReadable(startByte, 2);
-            return (byte) (unsafeReadLsb(buffer[startByte], 6 - n, n)
-                    | unsafeReadMsb(buffer[startByte + 1], 0, 6 - n));
-        } else {
-            ensureReadable(startByte, 1);
-            return unsafeReadMsb(buffer[startByte], bitPos, 6);
-        }
-    }
-
-    /**
-     * When nbits <= 8
-     *
-     * @throws ByteParseException
-     */
-    private byte readByteBits(int offset, int nbits) {
-        int startByte = offset >> 3;
-        int bitPos = offset % 8;
-        int n = 8 - bitPos;
-
-        if (n < nbits) {
-            ensureReadable(startByte, 2);
-            return (byte) (unsafeReadLsb(buffer[startByte], nbits - n, n)
-                    | unsafeReadMsb(buffer[startByte + 1], 0, nbits - n));
-        } else {
-            ensureReadable(startByte, 1);
-            return unsafeReadMsb(buffer[startByte], bitPos, nbits);
-        }
+        return (byte) readBits(offset, 6);
     }
 
     /**
@@ -212,20 +388,7 @@ public class BitReader {
      * @throws ByteParseException
      */
     public int readBits12(int offset) {
-        int startByte = offset >> 3;
-        int bitPos = offset % 8;
-        int n = 8 - bitPos;
-
-        if (n < 4) {
-            ensureReadable(startByte, 3);
-            return (unsafeReadLsb(buffer[startByte], bitPos, n) & 0xFF) << 4
-                    | (buffer[startByte + 1] & 0xFF) << (bitPos - 4)
-                    | (unsafeReadMsb(buffer[startByte + 2], 0, bitPos - 4) & 0xFF);
-        } else {
-            ensureReadable(startByte, 2);
-            return (unsafeReadLsb(buffer[startByte], bitPos, n) & 0xFF) << 4
-                    | (unsafeReadMsb(buffer[startByte + 1], 0, 4 + bitPos) & 0xFF);
-        }
+        return (int) readBits(offset, 12);
     }
 
     /**
@@ -240,20 +403,7 @@ public class BitReader {
      * @throws ByteParseException
      */
     public int readBits16(int offset) {
-        int startByte = offset >> 3;
-        int bitPos = offset % 8;
-        int n = 8 - bitPos;
-
-        if (n < 8) {
-            ensureReadable(startByte, 3);
-            return ((unsafeReadLsb(buffer[startByte], bitPos, n) & 0xFF) << 8)
-                    | (buffer[startByte + 1] & 0xFF) << bitPos
-                    | (unsafeReadMsb(buffer[startByte + 2], 0, bitPos) & 0xFF);
-        } else {
-            ensureReadable(startByte, 2);
-            return (buffer[startByte] & 0xFF) << 8
-                    | (buffer[startByte + 1] & 0xFF);
-        }
+        return (int) readBits(offset, 16);
     }
 
     /**
@@ -268,22 +418,7 @@ public class BitReader {
      * @throws ByteParseException
      */
     public int readBits24(int offset) {
-        int startByte = offset >> 3;
-        int bitPos = offset % 8;
-        int n = 8 - bitPos;
-
-        if (n < 8) {
-            ensureReadable(startByte, 4);
-            return ((unsafeReadLsb(buffer[startByte], bitPos, n) & 0xFF) << 16)
-                    | (buffer[startByte + 1] & 0xFF) << (8 + bitPos)
-                    | (buffer[startByte + 2] & 0xFF) << bitPos
-                    | (unsafeReadMsb(buffer[startByte + 3], 0, bitPos) & 0xFF);
-        } else {
-            ensureReadable(startByte, 3);
-            return (buffer[startByte] & 0xFF) << 16
-                    | (buffer[startByte + 1] & 0xFF) << 8
-                    | (buffer[startByte + 2] & 0xFF);
-        }
+        return (int) readBits(offset, 24);
     }
 
     /**
@@ -298,47 +433,57 @@ public class BitReader {
      * @throws ByteParseException
      */
     public long readBits36(int offset) {
-        int startByte = offset >> 3;
-        int bitPos = offset % 8;
-        int n = 8 - bitPos; // # bits to read
-
-        if (n < 4) {
-            ensureReadable(startByte, 6);
-            return ((long) unsafeReadLsb(buffer[startByte], bitPos, n) & 0xFF) << 28
-                    | ((long) buffer[startByte + 1] & 0xFF) << (20 + bitPos)
-                    | ((long) buffer[startByte + 2] & 0xFF) << (12 + bitPos)
-                    | ((long) buffer[startByte + 3] & 0xFF) << (4 + bitPos)
-                    | ((long) buffer[startByte + 4] & 0xFF) << (bitPos - 4)
-                    | ((long) unsafeReadMsb(buffer[startByte + 5], 0, bitPos - 4) & 0xFF);
-        } else {
-            ensureReadable(startByte, 5);
-            return ((long) unsafeReadLsb(buffer[startByte], bitPos, n) & 0xFF) << 28
-                    | ((long) buffer[startByte + 1] & 0xFF) << (20 + bitPos)
-                    | ((long) buffer[startByte + 2] & 0xFF) << (12 + bitPos)
-                    | ((long) buffer[startByte + 3] & 0xFF) << (4 + bitPos)
-                    | ((long) unsafeReadMsb(buffer[startByte + 4], 0, 4 + bitPos) & 0xFF);
-        }
+        return readBits(offset, 36);
     }
 
     /**
      * @throws ByteParseException
      */
     public BitSet readBitSet(int offset, int length) {
-        // TODO(mk): can we read larger chunks at a time?
-        BitSet bs = new BitSet(length);
-        for (int i = 0; i < length; i++) {
-            if (readBits1(offset + i)) {
-                bs.set(i);
-            }
-        }
-        return bs;
+        return BitSet.valueOf(readBitmap(offset, length, 0));
     }
 
-    private byte unsafeReadMsb(byte from, int offset, int length) {
-        return length == 0 ? 0 : (byte) ((from >>> ((8 - length) - offset)) & ((1 << length) - 1));
+    /**
+     * Reads the bit field [offset, offset + length) into the words of a bitmap in the layout of
+     * {@link BitSet#valueOf(long[])}, bit i of the field becoming bit i + base of the bitmap. Vendor
+     * and purpose bit fields use a base of 1 as ids start at 1.
+     *
+     * The field is read 64 bits at a time, each word is bit reversed so the first bit of the field
+     * lands in the least significant bit, making the conversion O(words) rather than O(bits).
+     *
+     * @throws ByteParseException
+     */
+    public long[] readBitmap(int offset, int length, int base) {
+        assert base >= 0 && base < Long.SIZE;
+
+        long[] words = new long[(base + length + Long.SIZE - 1) / Long.SIZE];
+        readBitmap(offset, length, base, words, 0);
+        return words;
     }
 
-    private byte unsafeReadLsb(byte from, int offset, int length) {
-        return length == 0 ? from : (byte) ((from & ((1 << length) - 1)) << offset);
+    /**
+     * Same as {@link #readBitmap(int, int, int)} writing the (base + length + 63) / 64 words of the
+     * bitmap to dst starting at dstOffset, e.g. to fill a preallocated arena.
+     *
+     * @throws ByteParseException
+     */
+    public void readBitmap(int offset, int length, int base, long[] dst, int dstOffset) {
+        assert base >= 0 && base < Long.SIZE;
+
+        checkReadable(offset, length);
+
+        int nwords = (base + length + Long.SIZE - 1) / Long.SIZE;
+        for (int k = 0; k < nwords; k++) {
+            // the field bits [from, to) map to the bitmap bits of word k
+            int from = Math.max(0, k * Long.SIZE - base);
+            int to = Math.min(length, (k + 1) * Long.SIZE - base);
+            int n = to - from;
+            if (n <= 0) {
+                dst[dstOffset + k] = 0;
+                continue;
+            }
+            int position = from + base - k * Long.SIZE;
+            dst[dstOffset + k] = Long.reverse(readBitsUnchecked(offset + from, n)) >>> (Long.SIZE - n - position);
+        }
     }
 }
@@ -36,6 +36,14 @@ public class BitSetIntIterable extends IntIterable {
         return new BitSetIntIterable((BitSet) bs.clone());
     }
 
+    /**
+     * Creates an instance from the words of a bitmap, bit n being set if bit n % 64 of words[n / 64]
+     * is set. The words are copied.
+     */
+    public static BitSetIntIterable from(long[] words) {
+        return new BitSetIntIterable(BitSet.valueOf(words));
+    }
+
     public static BitSetIntIterable from(IntIterable ii) {
         if (ii instanceof BitSetIntIterable) {
             return ((BitSetIntIterable) ii).clone();
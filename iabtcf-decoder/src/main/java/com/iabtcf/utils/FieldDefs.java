@@ -34,6 +34,9 @@ import java.util.function.Function;
  * ByteBitVector used to parse the consent string.
  *
  * All fields following a dynamic field are treated as a dynamic field.
+ *
+ * The decoder resolves the fields of TCF v2 segments with a single forward scan using
+ * {@link FieldLayout} instead.
  */
 public enum FieldDefs {
     CORE_VERSION(6, 0),
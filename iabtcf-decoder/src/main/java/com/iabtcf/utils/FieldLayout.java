@@ -0,0 +1,388 @@
+package com.iabtcf.utils;
+
+/*-
+ * #%L
+ * IAB TCF Core Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static com.iabtcf.utils.FieldDefs.AV_IS_RANGE_ENCODING;
+import static com.iabtcf.utils.FieldDefs.AV_MAX_VENDOR_ID;
+import static com.iabtcf.utils.FieldDefs.AV_VENDOR_BITRANGE_FIELD;
+import static com.iabtcf.utils.FieldDefs.CORE_NUM_PUB_RESTRICTION;
+import static com.iabtcf.utils.FieldDefs.CORE_PUB_RESTRICTION_ENTRY;
+import static com.iabtcf.utils.FieldDefs.CORE_VENDOR_BITRANGE_FIELD;
+import static com.iabtcf.utils.FieldDefs.CORE_VENDOR_LI_BITRANGE_FIELD;
+import static com.iabtcf.utils.FieldDefs.CORE_VERSION;
+import static com.iabtcf.utils.FieldDefs.DV_IS_RANGE_ENCODING;
+import static com.iabtcf.utils.FieldDefs.DV_MAX_VENDOR_ID;
+import static com.iabtcf.utils.FieldDefs.DV_VENDOR_BITRANGE_FIELD;
+import static com.iabtcf.utils.FieldDefs.OOB_SEGMENT_TYPE;
+import static com.iabtcf.utils.FieldDefs.PPTC_CUSTOM_PURPOSES_CONSENT;
+import static com.iabtcf.utils.FieldDefs.PPTC_CUSTOM_PURPOSES_LI_TRANSPARENCY;
+import static com.iabtcf.utils.FieldDefs.PPTC_NUM_CUSTOM_PURPOSES;
+import static com.iabtcf.utils.FieldDefs.PPTC_PUB_PURPOSES_CONSENT;
+import static com.iabtcf.utils.FieldDefs.PPTC_PUB_PURPOSES_LI_TRANSPARENCY;
+import static com.iabtcf.utils.FieldDefs.PPTC_SEGMENT_TYPE;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import com.iabtcf.exceptions.ByteParseException;
+import com.iabtcf.exceptions.InvalidRangeFieldException;
+import com.iabtcf.v2.SegmentType;
+
+/**
+ * The bit offsets and lengths of the fields of a single TCF v2 segment, resolved by a single
+ * forward scan over the segment rather than through the FieldDefs offset and length suppliers.
+ * Offsets and lengths are kept in int arrays indexed by the position of the field within its
+ * segment, so once a field has been scanned looking it up is an array access.
+ *
+ * The scan is incremental, accessing a field only scans the segment up to that field, and it
+ * validates the structure of what it scans: every field must fit within the segment and range
+ * entries must be well formed.
+ *
+ * A layout is safe for concurrent use without locking. Scanning is a pure function of the
+ * underlying bits, so threads racing to scan the same fields store identical values before
+ * publishing their progress through a volatile write.
+ *
+ * This is an internal only class and subject to change.
+ */
+public final class FieldLayout {
+    private static final int OK = 0;
+    private static final int TRUNCATED = -1;
+    private static final int INVALID_RANGE = -2;
+
+    private static final FieldDefs[] CORE = fieldsBetween(CORE_VERSION, CORE_PUB_RESTRICTION_ENTRY);
+    private static final FieldDefs[] DISCLOSED_VENDOR =
+            {OOB_SEGMENT_TYPE, DV_MAX_VENDOR_ID, DV_IS_RANGE_ENCODING, DV_VENDOR_BITRANGE_FIELD};
+    private static final FieldDefs[] ALLOWED_VENDOR =
+            {OOB_SEGMENT_TYPE, AV_MAX_VENDOR_ID, AV_IS_RANGE_ENCODING, AV_VENDOR_BITRANGE_FIELD};
+    private static final FieldDefs[] PUBLISHER_TC = {PPTC_SEGMENT_TYPE, PPTC_PUB_PURPOSES_CONSENT,
+            PPTC_PUB_PURPOSES_LI_TRANSPARENCY, PPTC_NUM_CUSTOM_PURPOSES, PPTC_CUSTOM_PURPOSES_CONSENT,
+            PPTC_CUSTOM_PURPOSES_LI_TRANSPARENCY};
+
+    private static final EnumSet<FieldDefs> DYNAMIC_LENGTH = EnumSet.of(CORE_VENDOR_BITRANGE_FIELD,
+            CORE_VENDOR_LI_BITRANGE_FIELD, CORE_PUB_RESTRICTION_ENTRY, DV_VENDOR_BITRANGE_FIELD,
+            AV_VENDOR_BITRANGE_FIELD, PPTC_CUSTOM_PURPOSES_CONSENT, PPTC_CUSTOM_PURPOSES_LI_TRANSPARENCY);
+
+    /**
+     * Position of each field within its segment, by ordinal. OOB_SEGMENT_TYPE is shared by the
+     * disclosed and allowed vendor segments, at position 0 in both.
+     */
+    private static final int[] INDEX = new int[FieldDefs.values().length];
+
+    /**
+     * Length of each static field, by ordinal.
+     */
+    private static final int[] STATIC_LENGTH = new int[FieldDefs.values().length];
+
+    private static final int NUM_ENTRIES_LENGTH = FieldDefs.NUM_ENTRIES.getLength();
+    private static final int IS_A_RANGE_LENGTH = FieldDefs.IS_A_RANGE.getLength();
+    private static final int VENDOR_ID_LENGTH = FieldDefs.START_OR_ONLY_VENDOR_ID.getLength();
+    private static final int RESTRICTION_LENGTH =
+            FieldDefs.PURPOSE_ID.getLength() + FieldDefs.RESTRICTION_TYPE.getLength();
+
+    static {
+        Arrays.fill(INDEX, -1);
+        for (FieldDefs[] fields : new FieldDefs[][] {CORE, DISCLOSED_VENDOR, ALLOWED_VENDOR, PUBLISHER_TC}) {
+            for (int i = 0; i < fields.length; i++) {
+                INDEX[fields[i].ordinal()] = i;
+                if (!DYNAMIC_LENGTH.contains(fields[i])) {
+                    STATIC_LENGTH[fields[i].ordinal()] = fields[i].getLength();
+                }
+            }
+        }
+    }
+
+    private final BitReader bbv;
+    private final FieldDefs[] fields;
+    private final int[] offsets;
+    private final int[] lengths;
+
+    /**
+     * Number of leading fields whose offsets and lengths are resolved.
+     */
+    private volatile int scanned;
+
+    private FieldLayout(BitReader bbv, FieldDefs[] fields) {
+        this.bbv = bbv;
+        this.fields = fields;
+        this.offsets = new int[fields.length];
+        this.lengths = new int[fields.length];
+    }
+
+    /**
+     * Creates the (yet unscanned) layout of a segment of the specified type.
+     *
+     * @throws IllegalArgumentException if the segment type is invalid
+     */
+    public static FieldLayout of(BitReader bbv, SegmentType segmentType) {
+        switch (segmentType) {
+            case DEFAULT:
+                return new FieldLayout(bbv, CORE);
+            case DISCLOSED_VENDOR:
+                return new FieldLayout(bbv, DISCLOSED_VENDOR);
+            case ALLOWED_VENDOR:
+                return new FieldLayout(bbv, ALLOWED_VENDOR);
+            case PUBLISHER_TC:
+                return new FieldLayout(bbv, PUBLISHER_TC);
+            default:
+                throw new IllegalArgumentException("no layout for segment type " + segmentType);
+        }
+    }
+
+    private static FieldDefs[] fieldsBetween(FieldDefs first, FieldDefs last) {
+        return Arrays.copyOfRange(FieldDefs.values(), first.ordinal(), last.ordinal() + 1);
+    }
+
+    public BitReader getReader() {
+        return bbv;
+    }
+
+    /**
+     * Forgets the scanned fields after the reader was reset to other bits. Unlike scanning, this is
+     * not safe while other threads use the layout.
+     */
+    public void reset() {
+        scanned = 0;
+    }
+
+    /**
+     * Returns the offset of the field.
+     *
+     * @throws ByteParseException if the segment is too short to hold the fields up to this field
+     * @throws InvalidRangeFieldException if a range entry up to this field is invalid
+     */
+    public int getOffset(FieldDefs field) {
+        return offsets[resolve(field)];
+    }
+
+    /**
+     * Returns the length of the field.
+     *
+     * @throws ByteParseException if the segment is too short to hold the fields up to this field
+     * @throws InvalidRangeFieldException if a range entry up to this field is invalid
+     */
+    public int getLength(FieldDefs field) {
+        return lengths[resolve(field)];
+    }
+
+    /**
+     * Returns the offset of the next field.
+     *
+     * @throws ByteParseException if the segment is too short to hold the fields up to this field
+     * @throws InvalidRangeFieldException if a range entry up to this field is invalid
+     */
+    public int getEnd(FieldDefs field) {
+        int index = resolve(field);
+        return offsets[index] + lengths[index];
+    }
+
+    /**
+     * Reads the whole field, at most 64 bits wide.
+     *
+     * @throws ByteParseException
+     * @throws InvalidRangeFieldException
+     */
+    public long readBits(FieldDefs field) {
+        int index = resolve(field);
+        return bbv.readBitsUnchecked(offsets[index], lengths[index]);
+    }
+
+    /**
+     * @throws ByteParseException
+     * @throws InvalidRangeFieldException
+     */
+    public boolean readBits1(FieldDefs field) {
+        assert getLength(field) == 1;
+        return readBits(field) != 0;
+    }
+
+    /**
+     * @throws ByteParseException
+     * @throws InvalidRangeFieldException
+     */
+    public String readStr2(FieldDefs field) {
+        return bbv.readStr2(getOffset(field));
+    }
+
+    /**
+     * Reads a bit field, bit i of the field becoming bit i + 1 of the returned bitmap.
+     *
+     * @see BitReader#readBitmap(int, int, int)
+     * @throws ByteParseException
+     * @throws InvalidRangeFieldException
+     */
+    public long[] readBitmap(FieldDefs field) {
+        int index = resolve(field);
+        return bbv.readBitmap(offsets[index], lengths[index], 1);
+    }
+
+    /**
+     * Scans the whole segment, validating its structure.
+     *
+     * @throws ByteParseException if the segment is too short to hold all of its fields
+     * @throws InvalidRangeFieldException if a range entry is invalid
+     */
+    public void scanAll() {
+        resolve(fields.length - 1);
+    }
+
+    /**
+     * Returns the length of the segment up to the end of its last field, leaving out the padding
+     * to a whole number of base64 characters.
+     *
+     * @throws ByteParseException if the segment is too short to hold all of its fields
+     * @throws InvalidRangeFieldException if a range entry is invalid
+     */
+    public int getSegmentLength() {
+        int index = resolve(fields.length - 1);
+        return offsets[index] + lengths[index];
+    }
+
+    private int resolve(FieldDefs field) {
+        int index = INDEX[field.ordinal()];
+        if (index < 0 || index >= fields.length || fields[index] != field) {
+            throw new IllegalArgumentException(field + " is not a field of this segment");
+        }
+
+        return resolve(index);
+    }
+
+    private int resolve(int index) {
+        if (index < scanned) {
+            return index;
+        }
+
+        int status = scan(index);
+        if (status == TRUNCATED) {
+            FieldDefs failed = fields[scanned];
+            throw new ByteParseException(String.format("field %s exceeds the segment", failed));
+        } else if (status == INVALID_RANGE) {
+            FieldDefs failed = fields[scanned];
+            throw new InvalidRangeFieldException(String.format("invalid range entry in field %s", failed));
+        }
+
+        return index;
+    }
+
+    /**
+     * Scans the segment up to and including the field at index, without throwing.
+     *
+     * @return OK, or the status of the first field that could not be resolved
+     */
+    private int scan(int index) {
+        int i = scanned;
+        int offset = i == 0 ? 0 : offsets[i - 1] + lengths[i - 1];
+        int status = OK;
+
+        for (; i <= index; i++) {
+            int length = lengthOf(i, offset);
+            if (length < 0) {
+                status = length;
+                break;
+            }
+            if (!bbv.isReadable(offset, length)) {
+                status = TRUNCATED;
+                break;
+            }
+
+            offsets[i] = offset;
+            lengths[i] = length;
+            offset += length;
+        }
+
+        if (i > scanned) {
+            scanned = i;
+        }
+        return status;
+    }
+
+    /**
+     * Returns the length of the field at index, which starts at offset, or a negative status if it
+     * can not be determined. Fields before index are resolved.
+     */
+    private int lengthOf(int index, int offset) {
+        switch (fields[index]) {
+            case CORE_VENDOR_BITRANGE_FIELD:
+            case CORE_VENDOR_LI_BITRANGE_FIELD:
+            case DV_VENDOR_BITRANGE_FIELD:
+            case AV_VENDOR_BITRANGE_FIELD:
+                // preceded by the max vendor id and is range encoding fields
+                int maxVendorId = (int) bbv.readBitsUnchecked(offsets[index - 2], lengths[index - 2]);
+                boolean isRangeEncoding = bbv.readBitsUnchecked(offsets[index - 1], 1) != 0;
+                return isRangeEncoding ? rangeLength(offset, maxVendorId) : maxVendorId;
+            case CORE_PUB_RESTRICTION_ENTRY:
+                int numRestrictions = (int) bbv.readBitsUnchecked(offsets[index - 1], lengths[index - 1]);
+                return restrictionsLength(offset, numRestrictions);
+            case PPTC_CUSTOM_PURPOSES_CONSENT:
+            case PPTC_CUSTOM_PURPOSES_LI_TRANSPARENCY:
+                int numCustomPurposes = INDEX[PPTC_NUM_CUSTOM_PURPOSES.ordinal()];
+                return (int) bbv.readBitsUnchecked(offsets[numCustomPurposes], lengths[numCustomPurposes]);
+            default:
+                return STATIC_LENGTH[fields[index].ordinal()];
+        }
+    }
+
+    private int restrictionsLength(int offset, int numRestrictions) {
+        int cptr = offset;
+        for (int i = 0; i < numRestrictions; i++) {
+            cptr += RESTRICTION_LENGTH;
+            int length = rangeLength(cptr, Integer.MAX_VALUE);
+            if (length < 0) {
+                return length;
+            }
+            cptr += length;
+        }
+        return cptr - offset;
+    }
+
+    /**
+     * Walks a range section, validating the range entries the same way the decoder does.
+     */
+    private int rangeLength(int offset, int maxVendorId) {
+        int cptr = offset;
+        if (!bbv.isReadable(cptr, NUM_ENTRIES_LENGTH)) {
+            return TRUNCATED;
+        }
+        int numEntries = (int) bbv.readBitsUnchecked(cptr, NUM_ENTRIES_LENGTH);
+        cptr += NUM_ENTRIES_LENGTH;
+
+        for (int i = 0; i < numEntries; i++) {
+            if (!bbv.isReadable(cptr, IS_A_RANGE_LENGTH + VENDOR_ID_LENGTH)) {
+                return TRUNCATED;
+            }
+            boolean isRange = bbv.readBitsUnchecked(cptr, IS_A_RANGE_LENGTH) != 0;
+            cptr += IS_A_RANGE_LENGTH + VENDOR_ID_LENGTH;
+
+            if (isRange) {
+                if (!bbv.isReadable(cptr, VENDOR_ID_LENGTH)) {
+                    return TRUNCATED;
+                }
+                int startVendorId = (int) bbv.readBitsUnchecked(cptr - VENDOR_ID_LENGTH, VENDOR_ID_LENGTH);
+                int endVendorId = (int) bbv.readBitsUnchecked(cptr, VENDOR_ID_LENGTH);
+                cptr += VENDOR_ID_LENGTH;
+
+                if (startVendorId > endVendorId || endVendorId > maxVendorId) {
+                    return INVALID_RANGE;
+                }
+            }
+        }
+        return cptr - offset;
+    }
+}
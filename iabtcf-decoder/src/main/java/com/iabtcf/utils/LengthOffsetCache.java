@@ -20,36 +20,61 @@ package com.iabtcf.utils;
  * #L%
  */
 
-import java.util.EnumMap;
+import java.util.Arrays;
 import java.util.function.Function;
 
+/**
+ * Caches the lengths and offsets of the dynamic fields of a single BitReader.
+ *
+ * The cache is safe for concurrent use without locking. Lengths and offsets are a pure function of
+ * the (immutable) underlying bits, so threads racing to compute the same entry store the same
+ * value, and int array slots are written atomically. A thread either observes the unset marker and
+ * recomputes the entry, or observes the final value (racy single-check).
+ */
 class LengthOffsetCache {
+    private static final int UNSET = -1;
+
     private final BitReader bbv;
-    private final EnumMap<FieldDefs, Integer> lengthCache = new EnumMap<>(FieldDefs.class);
-    private final EnumMap<FieldDefs, Integer> offsetCache = new EnumMap<>(FieldDefs.class);
+    private final int[] lengthCache;
+    private final int[] offsetCache;
 
     public LengthOffsetCache(BitReader bbv) {
         this.bbv = bbv;
+        this.lengthCache = newCache();
+        this.offsetCache = newCache();
+    }
+
+    private static int[] newCache() {
+        int[] cache = new int[FieldDefs.values().length];
+        Arrays.fill(cache, UNSET);
+        return cache;
+    }
+
+    /**
+     * Forgets all entries, not safe for concurrent use.
+     */
+    public void clear() {
+        Arrays.fill(lengthCache, UNSET);
+        Arrays.fill(offsetCache, UNSET);
     }
 
-    public Integer getLength(FieldDefs field, Function<BitReader, Integer> f) {
+    public int getLength(FieldDefs field, Function<BitReader, Integer> f) {
         return memoize(field, lengthCache, f);
     }
 
-    public Integer getOffset(FieldDefs field, Function<BitReader, Integer> f) {
+    public int getOffset(FieldDefs field, Function<BitReader, Integer> f) {
         return memoize(field, offsetCache, f);
     }
 
-    private Integer memoize(FieldDefs field, EnumMap<FieldDefs, Integer> cache,
-            Function<BitReader, Integer> f) {
+    private int memoize(FieldDefs field, int[] cache, Function<BitReader, Integer> f) {
         if (!field.isDynamic()) {
             return f.apply(bbv);
         }
 
-        Integer rv = cache.get(field);
-        if (rv == null) {
+        int rv = cache[field.ordinal()];
+        if (rv == UNSET) {
             rv = f.apply(bbv);
-            cache.put(field, rv);
+            cache[field.ordinal()] = rv;
         }
 
         return rv;
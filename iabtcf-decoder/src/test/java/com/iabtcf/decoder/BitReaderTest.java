@@ -26,6 +26,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -520,6 +521,153 @@ public class BitReaderTest {
         }
     }
 
+    @Test
+    public void testReadBits_Random() {
+        byte[] rb = new byte[24];
+        r.nextBytes(rb);
+        BitReader bv = new BitReader(rb);
+        BitReader sbv = new BitReader(new ByteArrayInputStream(rb));
+
+        for (int offset = 0; offset < rb.length * 8; offset++) {
+            for (int nbits = 0; nbits <= 64 && offset + nbits <= rb.length * 8; nbits++) {
+                long expect = 0;
+                for (int i = 0; i < nbits; i++) {
+                    expect = (expect << 1) | (bv.readBits1(offset + i) ? 1 : 0);
+                }
+                String msg = String.format("offset %d nbits %d", offset, nbits);
+                assertEquals(msg, expect, bv.readBits(offset, nbits));
+                assertEquals(msg, expect, bv.readBitsUnchecked(offset, nbits));
+                assertEquals(msg, expect, sbv.readBits(offset, nbits));
+            }
+        }
+    }
+
+    @Test
+    public void testReadBitsMatchesFixedWidth() {
+        byte[] rb = new byte[16];
+        r.nextBytes(rb);
+        BitReader bv = new BitReader(rb);
+
+        for (int offset = 0; offset < 64; offset++) {
+            assertEquals(bv.readBits2(offset), bv.readBits(offset, 2));
+            assertEquals(bv.readBits3(offset), bv.readBits(offset, 3));
+            assertEquals(bv.readBits6(offset), bv.readBits(offset, 6));
+            assertEquals(bv.readBits12(offset), bv.readBits(offset, 12));
+            assertEquals(bv.readBits16(offset), bv.readBits(offset, 16));
+            assertEquals(bv.readBits24(offset), bv.readBits(offset, 24));
+            assertEquals(bv.readBits36(offset), bv.readBits(offset, 36));
+        }
+    }
+
+    @Test
+    public void testReadBitsEndOfBuffer() {
+        BitReader bv = new BitReader(new byte[] {(byte) 0xFF, (byte) 0x81});
+        assertEquals(0xFF81, bv.readBits(0, 16));
+        assertEquals(0x81, bv.readBits(8, 8));
+        assertEquals(1, bv.readBits(15, 1));
+        assertTrue(bv.isReadable(0, 16));
+        assertFalse(bv.isReadable(1, 16));
+    }
+
+    @Test(expected = ByteParseException.class)
+    public void testReadBitsOutOfBounds() {
+        new BitReader(new byte[] {(byte) 0xFF, (byte) 0x81}).readBits(1, 16);
+    }
+
+    @Test(expected = ByteParseException.class)
+    public void testCheckReadableOutOfBounds() {
+        new BitReader(new byte[] {(byte) 0xFF, (byte) 0x81}).checkReadable(0, 17);
+    }
+
+    @Test
+    public void testStreamIsReadable() {
+        BitReader bv = new BitReader(new ByteArrayInputStream(new byte[] {(byte) 0xFF, (byte) 0x81}));
+        assertTrue(bv.isReadable(0, 16));
+        assertFalse(bv.isReadable(8, 9));
+    }
+
+    @Test
+    public void testReadBitmap_Random() {
+        byte[] rb = new byte[40];
+        r.nextBytes(rb);
+        BitReader bv = new BitReader(rb);
+
+        for (int base : new int[] {0, 1, 7, 63}) {
+            for (int offset = 0; offset < 24; offset++) {
+                for (int length = 0; length + offset <= rb.length * 8; length += 13) {
+                    BitSet expect = new BitSet();
+                    for (int i = 0; i < length; i++) {
+                        if (bv.readBits1(offset + i)) {
+                            expect.set(i + base);
+                        }
+                    }
+                    String msg = String.format("base %d offset %d length %d", base, offset, length);
+                    assertEquals(msg, expect, BitSet.valueOf(bv.readBitmap(offset, length, base)));
+                }
+            }
+        }
+    }
+
+    @Test(expected = ByteParseException.class)
+    public void testReadBitmapOutOfBounds() {
+        new BitReader(new byte[] {(byte) 0xFF, (byte) 0x81}).readBitmap(4, 13, 1);
+    }
+
+    @Test
+    public void testView() {
+        byte[] rb = new byte[32];
+        r.nextBytes(rb);
+        BitReader whole = new BitReader(rb);
+        BitReader view = new BitReader(rb, 5, 20);
+
+        for (int offset = 0; offset + 64 <= 15 * 8; offset++) {
+            assertEquals(whole.readBits(40 + offset, 64), view.readBits(offset, 64));
+        }
+        assertTrue(view.isReadable(0, 15 * 8));
+        assertFalse(view.isReadable(1, 15 * 8));
+    }
+
+    @Test(expected = ByteParseException.class)
+    public void testViewOutOfBounds() {
+        new BitReader(new byte[8], 2, 4).readBits(10, 8);
+    }
+
+    @Test
+    public void testBase64Reader() {
+        for (int length = 0; length < 40; length++) {
+            byte[] bytes = new byte[length];
+            r.nextBytes(bytes);
+            BitReader expected = new BitReader(bytes);
+            String padded = Base64.getUrlEncoder().encodeToString(bytes);
+            String unpadded = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+            for (BitReader bv : new BitReader[] {BitReader.fromBase64(padded, 0, padded.length()),
+                    BitReader.fromBase64(unpadded.getBytes(StandardCharsets.US_ASCII), 0, unpadded.length()),
+                    BitReader.fromBase64("x." + unpadded + ".y", 2, 2 + unpadded.length())}) {
+                for (int offset = 0; offset <= length * 8; offset++) {
+                    for (int nbits = 0; nbits <= Long.SIZE; nbits++) {
+                        assertEquals(expected.isReadable(offset, nbits), bv.isReadable(offset, nbits));
+                        if (expected.isReadable(offset, nbits)) {
+                            assertEquals(expected.readBits(offset, nbits), bv.readBits(offset, nbits));
+                        }
+                    }
+                }
+                assertEquals(expected.readBitSet(0, length * 8), bv.readBitSet(0, length * 8));
+            }
+        }
+    }
+
+    @Test(expected = ByteParseException.class)
+    public void testBase64ReaderBeyondBuffer() {
+        // 3 characters hold 18 bits of which 16 are readable
+        BitReader.fromBase64("AAA", 0, 3).readBits(10, 7);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBase64ReaderInvalid() {
+        BitReader.fromBase64("AA+A", 0, 4);
+    }
+
     @Test
     public void testBitset1() {
         BitReader bv = new BitReader(new byte[] {(byte) 0b11100001});
@@ -0,0 +1,185 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.iabtcf.exceptions.ByteParseException;
+import com.iabtcf.test.utils.ConsentStrings;
+import com.iabtcf.utils.FieldDefs;
+import com.iabtcf.v2.SegmentType;
+
+public class DecodeListenerTest {
+    private static final String CONSENT_STRING = ConsentStrings.ALL_SEGMENTS;
+
+    /**
+     * Records the callbacks as strings, leaving out the durations.
+     */
+    private static class RecordingListener implements DecodeListener {
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void base64Decoded(int characters, int bytes, long nanos) {
+            events.add("base64 " + characters + " " + bytes);
+        }
+
+        @Override
+        public void segmentsSplit(int segments, long nanos) {
+            events.add("split " + segments);
+        }
+
+        @Override
+        public void segmentDecoded(SegmentType segmentType, int bits, long nanos) {
+            events.add("segment " + segmentType);
+        }
+
+        @Override
+        public void fieldDecoded(FieldDefs field, long nanos) {
+            events.add("field " + field);
+        }
+
+        @Override
+        public void vendorSectionDecoded(FieldDefs field, boolean rangeEncoded, int maxVendorId) {
+            events.add("vendors " + field + " " + (rangeEncoded ? "range" : "bitfield"));
+        }
+
+        @Override
+        public void decodeFailed(RuntimeException cause) {
+            events.add("failed " + cause.getClass().getSimpleName());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        DecodeListeners.unregister();
+    }
+
+    @Test
+    public void testEagerDecode() {
+        RecordingListener listener = new RecordingListener();
+        DecodeListeners.register(listener);
+
+        TCString.decode(CONSENT_STRING);
+
+        List<String> expected = new ArrayList<>();
+        expected.add("base64 82 61");
+        expected.add("base64 26 19");
+        expected.add("base64 14 10");
+        expected.add("base64 12 8");
+        expected.add("split 4");
+        expected.add("vendors CORE_VENDOR_BITRANGE_FIELD bitfield");
+        expected.add("vendors CORE_VENDOR_LI_BITRANGE_FIELD bitfield");
+        expected.add("segment DEFAULT");
+        expected.add("vendors DV_VENDOR_BITRANGE_FIELD bitfield");
+        expected.add("segment DISCLOSED_VENDOR");
+        expected.add("vendors AV_VENDOR_BITRANGE_FIELD bitfield");
+        expected.add("segment ALLOWED_VENDOR");
+        expected.add("segment PUBLISHER_TC");
+        assertEquals(expected, listener.events);
+    }
+
+    @Test
+    public void testStreamingSplit() {
+        RecordingListener listener = new RecordingListener();
+        DecodeListeners.register(listener);
+
+        TCString.decode(CONSENT_STRING + "..", DecoderOption.STREAMING);
+
+        List<String> expected = new ArrayList<>();
+        expected.add("base64 82 61");
+        expected.add("base64 26 19");
+        expected.add("base64 14 10");
+        expected.add("base64 12 9");
+        expected.add("split 4");
+        assertEquals(expected, listener.events);
+    }
+
+    @Test
+    public void testLazyFieldDecode() {
+        TCString tcString = TCString.decode(CONSENT_STRING, DecoderOption.LAZY);
+        RecordingListener listener = new RecordingListener();
+        DecodeListeners.register(listener);
+
+        tcString.getVendorConsent();
+        tcString.getVendorConsent();
+        tcString.getPurposesConsent();
+
+        List<String> expected = new ArrayList<>();
+        expected.add("vendors CORE_VENDOR_BITRANGE_FIELD bitfield");
+        expected.add("field CORE_VENDOR_BITRANGE_FIELD");
+        expected.add("field CORE_PURPOSES_CONSENT");
+        assertEquals(expected, listener.events);
+    }
+
+    @Test
+    public void testFailures() {
+        RecordingListener listener = new RecordingListener();
+        DecodeListeners.register(listener);
+
+        try {
+            TCString.decode("COrEAV4OrXx94!");
+            fail("illegal character");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals("failed IllegalArgumentException", listener.events.get(listener.events.size() - 1));
+
+        TCString tcString = TCString.decode("COtybn4PA_zT4KjACBENAPCIAEBAAECAAIA", DecoderOption.LAZY);
+        try {
+            tcString.getVendorConsent();
+            fail("truncated");
+        } catch (ByteParseException e) {
+            // expected
+        }
+        assertEquals("failed ByteParseException", listener.events.get(listener.events.size() - 1));
+
+        try {
+            TCStringCache.newBuilder().build().decode("COrEAV4OrXx94!");
+            fail("illegal character");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals("failed IllegalArgumentException", listener.events.get(listener.events.size() - 1));
+    }
+
+    @Test
+    public void testUnregister() {
+        RecordingListener listener = new RecordingListener();
+        DecodeListeners.register(listener);
+        DecodeListeners.unregister();
+
+        TCString.decode(CONSENT_STRING).getVendorConsent();
+        assertTrue(listener.events.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegisterNull() {
+        DecodeListeners.register(null);
+    }
+}
@@ -0,0 +1,161 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Core Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Base64;
+
+import org.junit.Test;
+
+import com.iabtcf.exceptions.ByteParseException;
+import com.iabtcf.exceptions.InvalidRangeFieldException;
+import com.iabtcf.test.utils.ConsentStrings;
+import com.iabtcf.utils.BitReader;
+import com.iabtcf.utils.FieldDefs;
+import com.iabtcf.utils.FieldLayout;
+import com.iabtcf.v2.SegmentType;
+
+public class FieldLayoutTest {
+    private static final String RANGE_CORE = "COv__-wOv__-wC2AAAENAPCgAAAAAAAAAAAAA_wAQA_gEBABAEAAAA";
+
+    private static BitReader reader(String segment) {
+        return new BitReader(Base64.getUrlDecoder().decode(segment));
+    }
+
+    private static void assertMatchesFieldDefs(String segment, SegmentType segmentType, FieldDefs first,
+            FieldDefs last) {
+        BitReader bbv = reader(segment);
+        FieldLayout layout = FieldLayout.of(reader(segment), segmentType);
+        layout.scanAll();
+
+        for (int i = first.ordinal(); i <= last.ordinal(); i++) {
+            FieldDefs field = FieldDefs.values()[i];
+            assertEquals(field.name(), field.getOffset(bbv), layout.getOffset(field));
+            if (field == FieldDefs.CORE_PUB_RESTRICTION_ENTRY) {
+                // FieldDefs counts the number of restrictions field twice
+                assertEquals(field.name(), field.getLength(bbv) - FieldDefs.CORE_NUM_PUB_RESTRICTION.getLength(),
+                        layout.getLength(field));
+            } else {
+                assertEquals(field.name(), field.getLength(bbv), layout.getLength(field));
+            }
+        }
+    }
+
+    private static void setBits(byte[] bytes, int offset, int nbits, int value) {
+        for (int i = 0; i < nbits; i++) {
+            int bit = offset + i;
+            int mask = 1 << (7 - bit % 8);
+            if ((value >>> (nbits - 1 - i) & 1) == 1) {
+                bytes[bit / 8] |= mask;
+            } else {
+                bytes[bit / 8] &= ~mask;
+            }
+        }
+    }
+
+    @Test
+    public void testBitFieldCore() {
+        assertMatchesFieldDefs("COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA", SegmentType.DEFAULT,
+                FieldDefs.CORE_VERSION, FieldDefs.CORE_PUB_RESTRICTION_ENTRY);
+    }
+
+    @Test
+    public void testRangeCore() {
+        assertMatchesFieldDefs(RANGE_CORE, SegmentType.DEFAULT, FieldDefs.CORE_VERSION,
+                FieldDefs.CORE_PUB_RESTRICTION_ENTRY);
+    }
+
+    @Test
+    public void testPublisherRestrictionsCore() {
+        assertMatchesFieldDefs(ConsentStrings.BITFIELD_CORE,
+                SegmentType.DEFAULT, FieldDefs.CORE_VERSION, FieldDefs.CORE_PUB_RESTRICTION_ENTRY);
+    }
+
+    @Test
+    public void testOOBSegments() {
+        assertMatchesFieldDefs("IBAgAAAgAIAwgAgAAAAEAAAACA", SegmentType.DISCLOSED_VENDOR, FieldDefs.OOB_SEGMENT_TYPE,
+                FieldDefs.DV_VENDOR_BITRANGE_FIELD);
+        assertMatchesFieldDefs("QAagAQAgAIAwgA", SegmentType.ALLOWED_VENDOR, FieldDefs.AV_MAX_VENDOR_ID,
+                FieldDefs.AV_VENDOR_BITRANGE_FIELD);
+        assertMatchesFieldDefs("cAAAAAAAITg=", SegmentType.PUBLISHER_TC, FieldDefs.PPTC_SEGMENT_TYPE,
+                FieldDefs.PPTC_CUSTOM_PURPOSES_LI_TRANSPARENCY);
+    }
+
+    @Test
+    public void testTruncatedSegmentScansIncrementally() {
+        byte[] bytes = Base64.getUrlDecoder().decode(RANGE_CORE);
+        byte[] truncated = new byte[FieldDefs.CORE_PUBLISHER_CC.getOffset(new BitReader(bytes)) / 8 + 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+
+        FieldLayout layout = FieldLayout.of(new BitReader(truncated), SegmentType.DEFAULT);
+        assertEquals(2, layout.readBits(FieldDefs.CORE_VERSION));
+        assertEquals(FieldDefs.CORE_PUBLISHER_CC.getOffset(new BitReader(bytes)),
+                layout.getOffset(FieldDefs.CORE_PUBLISHER_CC));
+
+        try {
+            layout.scanAll();
+            fail("expected ByteParseException");
+        } catch (ByteParseException e) {
+            assertTrue(e.getMessage().contains(FieldDefs.CORE_VENDOR_MAX_VENDOR_ID.name()));
+        }
+    }
+
+    @Test(expected = InvalidRangeFieldException.class)
+    public void testInvalidRange() {
+        byte[] bytes = Base64.getUrlDecoder().decode(RANGE_CORE);
+        FieldLayout layout = FieldLayout.of(new BitReader(bytes), SegmentType.DEFAULT);
+        int entry = layout.getOffset(FieldDefs.CORE_VENDOR_BITRANGE_FIELD) + FieldDefs.NUM_ENTRIES.getLength();
+
+        // make the first entry a range ending before it starts
+        setBits(bytes, entry, 1, 1);
+        setBits(bytes, entry + 1, 16, 10);
+        setBits(bytes, entry + 17, 16, 9);
+
+        FieldLayout.of(new BitReader(bytes), SegmentType.DEFAULT).scanAll();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFieldOfOtherSegment() {
+        FieldLayout.of(reader(RANGE_CORE), SegmentType.DEFAULT).getOffset(FieldDefs.AV_MAX_VENDOR_ID);
+    }
+
+    @Test
+    public void testLazyDecodeDefersValidation() {
+        byte[] bytes = Base64.getUrlDecoder().decode(RANGE_CORE);
+        byte[] truncated = new byte[FieldDefs.CORE_PUBLISHER_CC.getOffset(new BitReader(bytes)) / 8 + 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        String consentString = Base64.getUrlEncoder().withoutPadding().encodeToString(truncated);
+
+        TCString lazy = TCString.decode(consentString, DecoderOption.LAZY);
+        assertEquals(2, lazy.getVersion());
+        assertEquals(TCString.decode(RANGE_CORE).getCmpId(), lazy.getCmpId());
+
+        try {
+            TCString.decode(consentString);
+            fail("expected ByteParseException");
+        } catch (ByteParseException e) {
+            // expected
+        }
+    }
+}
@@ -46,4 +46,15 @@ public class PPCStringTest {
         assertThat(decode.getStandardPurposesAllowed(), matchInts(19, 21, 22, 24));
         assertTrue(decode.getCustomPurposesBitField().isEmpty());
     }
+
+    @Test
+    public void decodeLazily() {
+        String consentString = "BOxgOqAOxgOqAAAABBENC2-AAAAtHAA";
+        PPCString lazy = PPCString.decode(consentString, DecoderOption.LAZY);
+        PPCString eager = PPCString.decode(consentString);
+
+        assertEquals(eager.toString(), lazy.toString());
+        assertEquals(eager, lazy);
+        assertEquals(eager.hashCode(), lazy.hashCode());
+    }
 }
@@ -0,0 +1,183 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Base64;
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+import com.iabtcf.exceptions.ByteParseException;
+import com.iabtcf.exceptions.UnsupportedVersionException;
+import com.iabtcf.test.utils.ConsentStrings;
+import com.iabtcf.utils.BitReader;
+import com.iabtcf.utils.FieldDefs;
+
+public class ProjectionTest {
+    private static final String[] CONSENT_STRINGS =
+            {ConsentStrings.ALL_SEGMENTS, ConsentStrings.RANGE_CORE, ConsentStrings.NO_VENDORS_CORE + ".."};
+
+    private static final Projection HEADER = Projection.of(EnumSet.range(FieldDefs.CORE_VERSION,
+            FieldDefs.CORE_PUBLISHER_CC));
+
+    @Test
+    public void testMatchesGetters() {
+        for (String consentString : CONSENT_STRINGS) {
+            TCString tcString = TCString.decode(consentString);
+            ProjectedFields fields = HEADER.project(consentString);
+
+            assertEquals(2, fields.get(FieldDefs.CORE_VERSION));
+            assertEquals(tcString.getCreated(), fields.getInstant(FieldDefs.CORE_CREATED));
+            assertEquals(tcString.getLastUpdated(), fields.getInstant(FieldDefs.CORE_LAST_UPDATED));
+            assertEquals(tcString.getCmpId(), fields.get(FieldDefs.CORE_CMP_ID));
+            assertEquals(tcString.getCmpVersion(), fields.get(FieldDefs.CORE_CMP_VERSION));
+            assertEquals(tcString.getConsentScreen(), fields.get(FieldDefs.CORE_CONSENT_SCREEN));
+            assertEquals(tcString.getVendorListVersion(), fields.get(FieldDefs.CORE_VENDOR_LIST_VERSION));
+            assertEquals(tcString.getTcfPolicyVersion(), fields.get(FieldDefs.CORE_TCF_POLICY_VERSION));
+            assertEquals(tcString.isServiceSpecific(), fields.get(FieldDefs.CORE_IS_SERVICE_SPECIFIC) == 1);
+            assertEquals(tcString.getPurposeOneTreatment(), fields.get(FieldDefs.CORE_PURPOSE_ONE_TREATMENT) == 1);
+        }
+    }
+
+    @Test
+    public void testV1() {
+        String consentString = "BOEFEAyOEFEAyAHABDENAI4AAAB9vABAASA";
+        TCString tcString = TCString.decode(consentString);
+        ProjectedFields fields = Projection.of(FieldDefs.V1_CMP_ID, FieldDefs.V1_LAST_UPDATED).project(consentString);
+
+        assertEquals(tcString.getCmpId(), fields.get(FieldDefs.V1_CMP_ID));
+        assertEquals(tcString.getLastUpdated(), fields.getInstant(FieldDefs.V1_LAST_UPDATED));
+    }
+
+    @Test
+    public void testReadsOnlyLeadingCharacters() {
+        String consentString = CONSENT_STRINGS[1];
+        Projection projection = Projection.of(FieldDefs.CORE_CMP_ID);
+        // the cmp id ends at bit 90, within the 15th character
+        String garbage = consentString.substring(0, 15) + "!!!not base64!!!";
+
+        int cmpId = TCString.decode(consentString).getCmpId();
+        assertEquals(cmpId, projection.project(garbage).get(FieldDefs.CORE_CMP_ID));
+        assertEquals(cmpId,
+                TCString.project(garbage, EnumSet.of(FieldDefs.CORE_CMP_ID)).get(FieldDefs.CORE_CMP_ID));
+    }
+
+    @Test
+    public void testRange() {
+        String consentString = CONSENT_STRINGS[1];
+        String embedded = "gdpr_consent=" + consentString + "&gdpr=1";
+        int start = "gdpr_consent=".length();
+
+        ProjectedFields fields = HEADER.project(embedded, start, start + consentString.length());
+        assertEquals(HEADER.project(consentString).toString(), fields.toString());
+    }
+
+    @Test
+    public void testContains() {
+        Projection projection = Projection.of(FieldDefs.CORE_CMP_ID);
+        assertTrue(projection.contains(FieldDefs.CORE_CMP_ID));
+        assertFalse(projection.contains(FieldDefs.CORE_VERSION));
+        assertEquals(2, projection.getVersion());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFieldNotProjected() {
+        Projection.of(FieldDefs.CORE_CMP_ID).project(CONSENT_STRINGS[1]).get(FieldDefs.CORE_CMP_VERSION);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVariableOffsetField() {
+        Projection.of(FieldDefs.CORE_CMP_ID, FieldDefs.CORE_VENDOR_MAX_VENDOR_ID);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMixedVersions() {
+        Projection.of(FieldDefs.CORE_CMP_ID, FieldDefs.V1_CMP_ID);
+    }
+
+    @Test(expected = ByteParseException.class)
+    public void testTruncated() {
+        Projection.of(FieldDefs.CORE_CMP_ID).project(CONSENT_STRINGS[1].substring(0, 14));
+    }
+
+    @Test(expected = ByteParseException.class)
+    public void testTruncatedAtSegment() {
+        Projection.of(FieldDefs.CORE_PUBLISHER_CC).project("COv__-wOv__-wC2AAAENAPCgAAAA.IAAA");
+    }
+
+    @Test(expected = ByteParseException.class)
+    public void testTruncatedWithinPartialByte() {
+        // 22 characters decode to 16 bytes, the vendor list version ends at bit 132 within the last character
+        Projection.of(FieldDefs.CORE_VENDOR_LIST_VERSION).project("COtybn4PA_zT4KjACBENAP");
+    }
+
+    @Test(expected = ByteParseException.class)
+    public void testTruncatedWithinPartialByteBeforeSegment() {
+        Projection.of(FieldDefs.CORE_VENDOR_LIST_VERSION).project("COtybn4PA_zT4KjACBENAP.IAAA");
+    }
+
+    @Test
+    public void testTruncationAgreesWithDecoder() {
+        String consentString = CONSENT_STRINGS[1];
+        for (int length = 0; length <= 36; length++) {
+            if (length % 4 == 1) {
+                // not valid base64
+                continue;
+            }
+            String truncated = consentString.substring(0, length);
+            BitReader reader = new BitReader(Base64.getUrlDecoder().decode(truncated));
+            for (FieldDefs field : EnumSet.range(FieldDefs.CORE_CREATED, FieldDefs.CORE_PUBLISHER_CC)) {
+                assertEquals(truncated + " " + field, readBits(reader, field), project(truncated, field));
+                assertEquals(truncated + " " + field, readBits(reader, field), project(truncated + ".IAAA", field));
+            }
+        }
+    }
+
+    private static Long readBits(BitReader reader, FieldDefs field) {
+        try {
+            return reader.readBits(FieldDefs.CORE_VERSION) == 2 ? reader.readBits(field) : null;
+        } catch (ByteParseException e) {
+            return null;
+        }
+    }
+
+    private static Long project(String consentString, FieldDefs field) {
+        try {
+            return Projection.of(field).project(consentString).get(field);
+        } catch (ByteParseException e) {
+            return null;
+        }
+    }
+
+    @Test(expected = UnsupportedVersionException.class)
+    public void testVersionMismatch() {
+        Projection.of(FieldDefs.V1_CMP_ID).project(CONSENT_STRINGS[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalCharacter() {
+        Projection.of(FieldDefs.CORE_CMP_ID).project("COv__-wOv__-wC!AAAENAPCgAAAA");
+    }
+}
@@ -196,4 +196,13 @@ public class SegmentInputStreamTest {
         text = IOUtils.toString(new SegmentInputStream(s, 0), StandardCharsets.US_ASCII);
         assertNotEquals(s, text);
     }
+
+    @Test
+    public void testResetToStart() throws IOException {
+        SegmentInputStream s = newSegmentInputStream("hello.world", 6);
+        assertEquals("world", IOUtils.toString(s, StandardCharsets.US_ASCII.name()));
+
+        s.reset();
+        assertEquals("world", IOUtils.toString(s, StandardCharsets.US_ASCII.name()));
+    }
 }
@@ -0,0 +1,175 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.iabtcf.test.utils.ConsentStrings;
+import com.iabtcf.utils.FieldDefs;
+import com.iabtcf.utils.IntIterable;
+
+public class TCStringBatchTest {
+    private static final List<String> CONSENT_STRINGS = Arrays.asList(
+            ConsentStrings.BITFIELD_CORE + "." + ConsentStrings.DISCLOSED_VENDORS_SEGMENT + "."
+                    + ConsentStrings.ALLOWED_VENDORS_SEGMENT,
+            ConsentStrings.RANGE_CORE,
+            ConsentStrings.VENDOR_RANGES_CORE,
+            ConsentStrings.VENDOR_IDS_CORE,
+            ConsentStrings.NO_VENDORS_CORE);
+
+    private static void assertRow(TCStringBatch batch, int row, String consentString) {
+        TCString expected = TCString.decode(consentString);
+
+        assertEquals(TCStringBatch.OK, batch.getStatus(row));
+        assertEquals(expected.getCreated().toEpochMilli() / 100,
+                batch.getLongColumn(FieldDefs.CORE_CREATED)[row]);
+        assertEquals(expected.getLastUpdated().toEpochMilli() / 100,
+                batch.getLongColumn(FieldDefs.CORE_LAST_UPDATED)[row]);
+        assertEquals(expected.getVersion(), batch.getIntColumn(FieldDefs.CORE_VERSION)[row]);
+        assertEquals(expected.getCmpId(), batch.getIntColumn(FieldDefs.CORE_CMP_ID)[row]);
+        assertEquals(expected.getCmpVersion(), batch.getIntColumn(FieldDefs.CORE_CMP_VERSION)[row]);
+        assertEquals(expected.getConsentScreen(), batch.getIntColumn(FieldDefs.CORE_CONSENT_SCREEN)[row]);
+        assertEquals(expected.getVendorListVersion(),
+                batch.getIntColumn(FieldDefs.CORE_VENDOR_LIST_VERSION)[row]);
+        assertEquals(expected.getTcfPolicyVersion(), batch.getIntColumn(FieldDefs.CORE_TCF_POLICY_VERSION)[row]);
+        assertEquals(mask(expected.getSpecialFeatureOptIns()),
+                batch.getIntColumn(FieldDefs.CORE_SPECIAL_FEATURE_OPT_INS)[row]);
+        assertEquals(mask(expected.getPurposesConsent()), batch.getIntColumn(FieldDefs.CORE_PURPOSES_CONSENT)[row]);
+        assertEquals(mask(expected.getPurposesLITransparency()),
+                batch.getIntColumn(FieldDefs.CORE_PURPOSES_LI_TRANSPARENCY)[row]);
+
+        for (int vendorId = 0; vendorId < 2000; vendorId++) {
+            assertEquals(expected.getVendorConsent().contains(vendorId), batch.hasVendorConsent(row, vendorId));
+            assertEquals(expected.getVendorLegitimateInterest().contains(vendorId),
+                    batch.hasVendorLegitimateInterest(row, vendorId));
+        }
+    }
+
+    private static int mask(IntIterable ids) {
+        int mask = 0;
+        for (int id : ids.toSet()) {
+            mask |= 1 << id - 1;
+        }
+        return mask;
+    }
+
+    @Test
+    public void testDecodeAllColumns() {
+        TCStringBatch batch = TCStringBatch.newBuilder().capacity(2).build();
+        batch.decode(CONSENT_STRINGS);
+
+        assertEquals(CONSENT_STRINGS.size(), batch.size());
+        for (int row = 0; row < CONSENT_STRINGS.size(); row++) {
+            assertRow(batch, row, CONSENT_STRINGS.get(row));
+        }
+    }
+
+    @Test
+    public void testReuseAcrossBatches() {
+        TCStringBatch batch = TCStringBatch.newBuilder().build();
+        batch.decode(CONSENT_STRINGS);
+
+        List<String> reversed = Arrays.asList(CONSENT_STRINGS.get(4), CONSENT_STRINGS.get(3));
+        batch.decode(reversed);
+
+        assertEquals(2, batch.size());
+        assertRow(batch, 0, reversed.get(0));
+        assertRow(batch, 1, reversed.get(1));
+        try {
+            batch.getStatus(2);
+            fail("row beyond the batch");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testVendorBitmaps() {
+        TCStringBatch batch = TCStringBatch.newBuilder().columns(FieldDefs.CORE_VENDOR_LI_BITRANGE_FIELD).build();
+        batch.decode(CONSENT_STRINGS);
+
+        long[] bitmaps = batch.getVendorBitmaps(FieldDefs.CORE_VENDOR_LI_BITRANGE_FIELD);
+        int[] offsets = batch.getVendorOffsets(FieldDefs.CORE_VENDOR_LI_BITRANGE_FIELD);
+        for (int row = 0; row < batch.size(); row++) {
+            long[] bitmap = Arrays.copyOfRange(bitmaps, offsets[row], offsets[row + 1]);
+            assertEquals(TCString.decode(CONSENT_STRINGS.get(row)).getVendorLegitimateInterest().toSet(),
+                    BitSet.valueOf(bitmap).stream().boxed().collect(Collectors.toSet()));
+        }
+    }
+
+    @Test
+    public void testProjection() {
+        TCStringBatch batch = TCStringBatch.newBuilder().columns(FieldDefs.CORE_CMP_ID).build();
+
+        // only the characters up to the CMP id are decoded, the rest of the string is never read
+        batch.decode(Arrays.asList(CONSENT_STRINGS.get(1).substring(0, 16) + "!!!!"));
+        assertEquals(TCStringBatch.OK, batch.getStatus(0));
+        assertEquals(TCString.decode(CONSENT_STRINGS.get(1)).getCmpId(), batch.getIntColumn(FieldDefs.CORE_CMP_ID)[0]);
+
+        try {
+            batch.getIntColumn(FieldDefs.CORE_CMP_VERSION);
+            fail("column is not projected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            batch.hasVendorConsent(0, 1);
+            fail("column is not projected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            TCStringBatch.newBuilder().columns(FieldDefs.CORE_PUBLISHER_CC);
+            fail("column is not supported");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInvalidRows() {
+        String valid = CONSENT_STRINGS.get(4);
+        TCStringBatch batch = TCStringBatch.newBuilder().build();
+        batch.decode(Arrays.asList(
+                "COtybn4PA_zT4KjACBENAPCIAEBA!ECAAIAAAAAAAAAA",
+                "BOEFEAyOEFEAyAHABDENAI4AAAB9vABAASA",
+                valid.substring(0, 30),
+                "",
+                valid));
+
+        assertEquals(TCStringBatch.INVALID_BASE64, batch.getStatus(0));
+        assertEquals(TCStringBatch.UNSUPPORTED_VERSION, batch.getStatus(1));
+        assertEquals(TCStringBatch.TRUNCATED, batch.getStatus(2));
+        assertEquals(TCStringBatch.TRUNCATED, batch.getStatus(3));
+        assertEquals(0, batch.getIntColumn(FieldDefs.CORE_CMP_ID)[1]);
+        assertFalse(batch.hasVendorConsent(2, 1));
+        assertRow(batch, 4, valid);
+    }
+}
@@ -0,0 +1,176 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TCStringCacheTest {
+    private static final String CONSENT_STRING = "COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA";
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+
+    /**
+     * Distinct valid consent strings, varying the characters holding the created timestamp.
+     */
+    private static String consentString(int i) {
+        char[] chars = CONSENT_STRING.toCharArray();
+        chars[3] = ALPHABET.charAt(i & 63);
+        chars[4] = ALPHABET.charAt(i >>> 6 & 63);
+        return new String(chars);
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        TCStringCache cache = TCStringCache.newBuilder().build();
+
+        TCString first = cache.decode(CONSENT_STRING);
+        assertEquals(TCString.decode(CONSENT_STRING), first);
+        assertSame(first, cache.decode(new String(CONSENT_STRING.toCharArray())));
+        assertSame(first, cache.decode(CONSENT_STRING));
+
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(0, cache.getEvictionCount());
+        assertEquals(1, cache.size());
+        assertEquals(TCStringCache.weigh(CONSENT_STRING), cache.weight());
+    }
+
+    @Test
+    public void testBoundedBySize() {
+        TCStringCache cache = TCStringCache.newBuilder().maximumSize(100).concurrencyLevel(4).build();
+        for (int i = 0; i < 1000; i++) {
+            cache.decode(consentString(i));
+        }
+
+        assertTrue(cache.size() <= 100);
+        assertEquals(1000, cache.size() + cache.getEvictionCount());
+    }
+
+    @Test
+    public void testBoundsNotMultipleOfStripes() {
+        long maximumWeight = 10 * TCStringCache.weigh(CONSENT_STRING) + 3;
+        TCStringCache cache = TCStringCache.newBuilder()
+                .maximumSize(10)
+                .maximumWeight(maximumWeight)
+                .concurrencyLevel(4)
+                .build();
+        for (int i = 0; i < 1000; i++) {
+            cache.decode(consentString(i));
+            assertTrue(cache.size() <= 10);
+            assertTrue(cache.weight() <= maximumWeight);
+        }
+    }
+
+    @Test
+    public void testBoundedByWeight() {
+        long maximumWeight = 10 * TCStringCache.weigh(CONSENT_STRING);
+        TCStringCache cache = TCStringCache.newBuilder().maximumWeight(maximumWeight).concurrencyLevel(1).build();
+        for (int i = 0; i < 100; i++) {
+            cache.decode(consentString(i));
+        }
+
+        assertEquals(10, cache.size());
+        assertTrue(cache.weight() <= maximumWeight);
+        assertEquals(90, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testScanResistant() {
+        TCStringCache cache = TCStringCache.newBuilder().maximumSize(50).concurrencyLevel(1).build();
+        List<TCString> hot = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            hot.add(cache.decode(consentString(i)));
+            cache.decode(consentString(i));
+        }
+
+        // a scan of strings seen once only churns the probationary segment
+        for (int i = 10; i < 1000; i++) {
+            cache.decode(consentString(i));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(hot.get(i), cache.decode(consentString(i)));
+        }
+    }
+
+    @Test
+    public void testFailuresAreNotCached() {
+        TCStringCache cache = TCStringCache.newBuilder().build();
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.decode("CO+tybn4PA");
+                fail("expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        TCStringCache cache = TCStringCache.newBuilder().build();
+        TCString first = cache.decode(CONSENT_STRING);
+        cache.invalidateAll();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+        assertNotSame(first, cache.decode(CONSENT_STRING));
+    }
+
+    @Test
+    public void testConcurrentDecodes() throws Exception {
+        TCStringCache cache = TCStringCache.newBuilder().maximumSize(64).build();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        String consentString = consentString((i * 31 + seed) % 200);
+                        assertEquals(TCString.decode(consentString), cache.decode(consentString));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(16000, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.size() <= 64);
+    }
+}
@@ -19,14 +19,22 @@ package com.iabtcf.decoder;
  * limitations under the License.
  * #L%
  */
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.EnumSet;
 
 import org.junit.Test;
 
 import com.iabtcf.exceptions.ByteParseException;
 import com.iabtcf.exceptions.UnsupportedVersionException;
+import com.iabtcf.test.utils.ConsentStrings;
+import com.iabtcf.v2.SegmentType;
 
 public class TCStringDecoderTest {
 
@@ -70,4 +78,140 @@ public class TCStringDecoderTest {
     public void testLazyFailure() {
         TCString.decode("CA==", DecoderOption.LAZY).getCmpId();
     }
+
+    @Test
+    public void testDecodeFromBytes() {
+        String tcString = ConsentStrings.ALL_SEGMENTS;
+        TCString expected = TCString.decode(tcString);
+
+        byte[] framed = ("gdpr_consent=" + tcString + "&gdpr=1").getBytes(StandardCharsets.US_ASCII);
+        int offset = "gdpr_consent=".length();
+        assertEquals(expected, TCString.decode(framed, offset, tcString.length()));
+
+        ByteBuffer heap = ByteBuffer.wrap(framed, offset, tcString.length()).slice();
+        assertEquals(expected, TCString.decode(heap));
+        assertEquals(0, heap.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(framed.length);
+        direct.put(framed);
+        direct.position(offset).limit(offset + tcString.length());
+        assertEquals(expected, TCString.decode(direct));
+        assertEquals(offset, direct.position());
+
+        StringBuilder sb = new StringBuilder("gdpr_consent=").append(tcString).append("&gdpr=1");
+        assertEquals(expected, TCString.decode(sb, offset, offset + tcString.length()));
+    }
+
+    @Test
+    public void testLazyDecodeFromBytes() {
+        String tcString = ConsentStrings.ALL_SEGMENTS;
+        TCString expected = TCString.decode(tcString);
+        assertEquals(expected, TCString.decode(tcString, DecoderOption.LAZY));
+
+        byte[] framed = ("gdpr_consent=" + tcString + "&gdpr=1").getBytes(StandardCharsets.US_ASCII);
+        int offset = "gdpr_consent=".length();
+        TCString fromBytes = TCString.decode(framed, offset, tcString.length(), DecoderOption.LAZY);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(framed.length);
+        direct.put(framed);
+        direct.position(offset).limit(offset + tcString.length());
+        TCString fromBuffer = TCString.decode(direct, DecoderOption.LAZY);
+        assertEquals(offset, direct.position());
+
+        StringBuilder sb = new StringBuilder("gdpr_consent=").append(tcString).append("&gdpr=1");
+        TCString fromBuilder = TCString.decode(sb, offset, offset + tcString.length(), DecoderOption.LAZY);
+
+        // lazily decoded strings must not observe later changes to the input
+        Arrays.fill(framed, (byte) 'A');
+        direct.clear();
+        direct.put(framed);
+        sb.setLength(0);
+
+        assertEquals(expected, fromBytes);
+        assertEquals(expected, fromBuffer);
+        assertEquals(expected, fromBuilder);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLazyInvalidBase64() {
+        TCString.decode("COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA.IF+E", DecoderOption.LAZY);
+    }
+
+    @Test
+    public void testTrailingSeparatorIgnored() {
+        String tcString = "COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA";
+        assertEquals(TCString.decode(tcString), TCString.decode(tcString + ".."));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBase64Bytes() {
+        byte[] bytes = "COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA".getBytes(StandardCharsets.US_ASCII);
+        bytes[10] = '+';
+        TCString.decode(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void testDecodeUrlEncoded() {
+        String[] tcStrings = ConsentStrings.MIXED;
+
+        for (String tcString : tcStrings) {
+            TCString expected = TCString.decode(tcString);
+            String escaped = tcString.replace("=", "%3D").replace("A.", "A%2E").replace(".", "%2e")
+                    .replace("_", "%5F");
+            String uri = "/bid?gdpr=1&gdpr_consent=" + escaped + "&us_privacy=1---";
+            int start = uri.indexOf("gdpr_consent=") + "gdpr_consent=".length();
+            int end = uri.indexOf('&', start);
+
+            assertEquals(expected, TCString.decodeUrlEncoded(uri, start, end));
+            assertEquals(expected, TCString.decodeUrlEncoded(uri, start, end, DecoderOption.LAZY));
+            assertEquals(expected, TCString.decodeUrlEncoded(tcString, 0, tcString.length()));
+        }
+
+        // stray padding
+        assertEquals(TCString.decode("COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA"),
+                TCString.decodeUrlEncoded("COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA==", 0, 46));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeUrlEncodedInvalidEscape() {
+        String tcString = "COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA%2EIF%";
+        TCString.decodeUrlEncoded(tcString, 0, tcString.length());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testRangeOutOfBounds() {
+        TCString.decode("COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA", 1, 100);
+    }
+
+    @Test
+    public void testStreaming() {
+        String[] tcStrings = ConsentStrings.MIXED;
+
+        for (String tcString : tcStrings) {
+            TCString expected = TCString.decode(tcString);
+            assertEquals(expected, TCString.decode(tcString, DecoderOption.STREAMING));
+
+            byte[] bytes = tcString.getBytes(StandardCharsets.US_ASCII);
+            assertEquals(expected, TCString.decode(bytes, 0, bytes.length, DecoderOption.STREAMING));
+        }
+    }
+
+    /**
+     * The disclosed vendors segment holds an illegal character, it is never decoded unless asked for.
+     */
+    @Test
+    public void testStreamingSkipsUnreadSegments() {
+        TCString tcString = TCString.decode(
+                "COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA.IFoEUQQgAIQw!IwQABAEAAAAOIAACAIA", DecoderOption.STREAMING);
+
+        assertEquals(EnumSet.of(SegmentType.DEFAULT, SegmentType.DISCLOSED_VENDOR), tcString.getSegmentTypes());
+        assertEquals(TCString.decode("COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA").getVendorConsent(),
+                tcString.getVendorConsent());
+        try {
+            tcString.getDisclosedVendors();
+            fail("illegal character");
+        } catch (ByteParseException e) {
+            // expected
+        }
+    }
 }
@@ -0,0 +1,142 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.iabtcf.decoder.TCStringPushDecoder.State;
+import com.iabtcf.test.utils.ConsentStrings;
+import com.iabtcf.utils.FieldDefs;
+
+public class TCStringPushDecoderTest {
+    private static final String[] CONSENT_STRINGS = ConsentStrings.MIXED;
+
+    /**
+     * Feeds the value of a JSON property in chunks of the given size.
+     */
+    private static TCString decode(TCStringPushDecoder decoder, String consentString, int chunkSize) {
+        byte[] json = ("{\"consent\":\"" + consentString + "\",\"gdpr\":1}").getBytes(StandardCharsets.US_ASCII);
+        int start = "{\"consent\":\"".length();
+
+        State state = State.NEED_MORE_INPUT;
+        ByteBuffer chunk = null;
+        for (int offset = start; state == State.NEED_MORE_INPUT; offset += chunkSize) {
+            chunk = ByteBuffer.wrap(json, offset, Math.min(chunkSize, json.length - offset));
+            state = decoder.feed(chunk);
+        }
+        assertEquals('"', chunk.get(chunk.position()));
+        assertEquals(start + consentString.length(), chunk.position());
+        return decoder.getTCString();
+    }
+
+    @Test
+    public void testChunks() {
+        TCStringPushDecoder decoder = new TCStringPushDecoder();
+        for (String consentString : CONSENT_STRINGS) {
+            TCString expected = TCString.decode(consentString);
+            for (int chunkSize : new int[] {1, 2, 3, 7, 64, 1024}) {
+                assertEquals(expected, decode(decoder, consentString, chunkSize));
+                decoder.reset();
+            }
+        }
+    }
+
+    @Test
+    public void testLazy() {
+        TCStringPushDecoder decoder = new TCStringPushDecoder(DecoderOption.LAZY);
+        for (String consentString : CONSENT_STRINGS) {
+            TCString tcString = decode(decoder, consentString, 5);
+            decoder.reset();
+            // the decoded string doesn't share the buffer of the decoder
+            decode(decoder, CONSENT_STRINGS[1], 5);
+            decoder.reset();
+            assertEquals(TCString.decode(consentString), tcString);
+        }
+    }
+
+    @Test
+    public void testFinish() {
+        TCStringPushDecoder decoder = new TCStringPushDecoder();
+        String consentString = CONSENT_STRINGS[0];
+        int half = consentString.length() / 2;
+
+        assertEquals(State.NEED_MORE_INPUT, decoder.feed(ByteBuffer.wrap(bytes(consentString.substring(0, half)))));
+        assertEquals(State.NEED_MORE_INPUT, decoder.feed(ByteBuffer.wrap(bytes(consentString.substring(half)))));
+        assertEquals(State.DONE, decoder.finish());
+        assertEquals(State.DONE, decoder.getState());
+        assertEquals(TCString.decode(consentString), decoder.getTCString());
+    }
+
+    @Test
+    public void testHeaderFieldsAvailableEarly() {
+        String consentString = "COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA";
+        TCString expected = TCString.decode(consentString);
+        TCStringPushDecoder decoder = new TCStringPushDecoder();
+        assertFalse(decoder.isAvailable(FieldDefs.CORE_VERSION));
+
+        decoder.feed(ByteBuffer.wrap(bytes(consentString.substring(0, 2))));
+        assertTrue(decoder.isAvailable(FieldDefs.CORE_VERSION));
+        assertFalse(decoder.isAvailable(FieldDefs.V1_VERSION));
+        assertEquals(2, decoder.readBits(FieldDefs.CORE_VERSION));
+        assertFalse(decoder.isAvailable(FieldDefs.CORE_CREATED));
+
+        // 84 bits decode to 10 bytes, the cmp id ends at bit 90
+        decoder.feed(ByteBuffer.wrap(bytes(consentString.substring(2, 14))));
+        assertTrue(decoder.isAvailable(FieldDefs.CORE_LAST_UPDATED));
+        assertEquals(expected.getLastUpdated().toEpochMilli(), decoder.readBits(FieldDefs.CORE_LAST_UPDATED) * 100);
+        assertFalse(decoder.isAvailable(FieldDefs.CORE_CMP_ID));
+
+        decoder.feed(ByteBuffer.wrap(bytes(consentString.substring(14))));
+        assertEquals(expected.getCmpId(), decoder.readBits(FieldDefs.CORE_CMP_ID));
+        assertEquals(expected.getVendorListVersion(), decoder.readBits(FieldDefs.CORE_VENDOR_LIST_VERSION));
+        assertFalse(decoder.isAvailable(FieldDefs.CORE_VENDOR_MAX_VENDOR_ID));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIncomplete() {
+        TCStringPushDecoder decoder = new TCStringPushDecoder();
+        decoder.feed(ByteBuffer.wrap(bytes(CONSENT_STRINGS[1])));
+        decoder.getTCString();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFeedAfterDone() {
+        TCStringPushDecoder decoder = new TCStringPushDecoder();
+        decoder.feed(ByteBuffer.wrap(bytes(CONSENT_STRINGS[1] + "\"")));
+        decoder.feed(ByteBuffer.wrap(bytes(CONSENT_STRINGS[1])));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBase64() {
+        new TCStringPushDecoder().feed(ByteBuffer.wrap(bytes("COtybn4PA_zT4.IF")));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -24,20 +24,26 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.time.Instant;
+import java.util.Collections;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.junit.Test;
 
+import com.iabtcf.exceptions.ByteParseException;
+import com.iabtcf.v2.SegmentType;
+
 public class TCStringV1Test {
 
     private static TCString parse(String consentString) {
         TCString model = TCString.decode(consentString);
         assertTrue(model instanceof TCStringV1);
         assertEquals(1, model.getVersion());
+        assertEquals(Collections.singleton(SegmentType.DEFAULT), model.getSegmentTypes());
 
         return model;
     }
@@ -163,4 +169,32 @@ public class TCStringV1Test {
         TCString model = parse("BOwOh-wOwOh-wABABBAAABAAAAACqADgAUACgAHgAPg");
         assertTrue(model.getVendorConsent().contains(15));
     }
+
+    @Test
+    public void testEagerDecodeMatchesLazy() {
+        String[] consentStrings = {
+            "BOOzQoAOOzQoAAPAFSENCW-AIBACBAAABCA=",
+            "BOwOh-wOwOh-wABABBAAABAAAAACqADgAUACgAHgAPg",
+            "BOEFEAyOEFEAyAHABDENAI4AAAB9vABAASA"};
+
+        for (String consentString : consentStrings) {
+            TCString lazy = TCString.decode(consentString, DecoderOption.LAZY);
+            TCString eager = parse(consentString);
+            assertEquals(lazy.toString(), eager.toString());
+            assertEquals(lazy, eager);
+            assertEquals(lazy.hashCode(), eager.hashCode());
+        }
+    }
+
+    @Test
+    public void testTruncatedVendorSectionThrowsOnAccess() {
+        TCString model = parse("BOOzQoAOOzQoAAPAFSENCW-AIBA=");
+        assertEquals("EN", model.getConsentLanguage());
+        try {
+            model.getVendorConsent();
+            fail("truncated vendor section");
+        } catch (ByteParseException e) {
+            // expected
+        }
+    }
 }
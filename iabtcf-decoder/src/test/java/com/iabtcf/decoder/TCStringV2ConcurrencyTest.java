@@ -0,0 +1,159 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.iabtcf.test.utils.ConsentStrings;
+
+/**
+ * Shares lazily decoded consent strings between threads and verifies every thread observes the same
+ * values as an eagerly decoded reference, regardless of which thread decodes a field first.
+ */
+public class TCStringV2ConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 250;
+
+    private static final List<Function<TCString, Object>> GETTERS = Arrays.asList(
+            TCString::getVersion,
+            TCString::getCreated,
+            TCString::getLastUpdated,
+            TCString::getCmpId,
+            TCString::getCmpVersion,
+            TCString::getConsentScreen,
+            TCString::getConsentLanguage,
+            TCString::getVendorListVersion,
+            TCString::getTcfPolicyVersion,
+            TCString::isServiceSpecific,
+            TCString::getUseNonStandardStacks,
+            TCString::getSpecialFeatureOptIns,
+            TCString::getPurposesConsent,
+            TCString::getPurposesLITransparency,
+            TCString::getPurposeOneTreatment,
+            TCString::getPublisherCC,
+            TCString::getVendorConsent,
+            TCString::getVendorLegitimateInterest,
+            TCString::getPublisherRestrictions,
+            TCString::getDisclosedVendors,
+            TCString::getAllowedVendors,
+            TCString::getPubPurposesConsent,
+            TCString::getPubPurposesLITransparency,
+            TCString::getCustomPurposesConsent,
+            TCString::getCustomPurposesLITransparency,
+            t -> t.hasVendorConsent(23),
+            t -> t.hasVendorLegitimateInterest(128),
+            t -> t.isVendorDisclosed(98),
+            t -> t.isVendorAllowed(12),
+            t -> t.getPublisherRestrictionIndex().getRestriction(1, 4),
+            TCString::hashCode);
+
+    private static ExecutorService executor;
+
+    @BeforeClass
+    public static void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterClass
+    public static void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private static void assertConcurrentReads(String consentString) throws Exception {
+        TCString reference = TCString.decode(consentString);
+        List<Object> expected = new ArrayList<>();
+        for (Function<TCString, Object> getter : GETTERS) {
+            expected.add(getter.apply(reference));
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            TCString shared = TCString.decode(consentString, DecoderOption.LAZY);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>();
+
+            for (int t = 0; t < THREADS; t++) {
+                // every thread walks the getters from a different starting point so that each
+                // field is raced for by threads arriving from different code paths
+                int first = (t + round) % GETTERS.size();
+                results.add(executor.submit(() -> {
+                    start.await();
+                    int mismatches = 0;
+                    for (int i = 0; i < GETTERS.size(); i++) {
+                        int g = (first + i) % GETTERS.size();
+                        if (!Objects.equals(expected.get(g), GETTERS.get(g).apply(shared))) {
+                            mismatches++;
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+
+            start.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(consentString, 0, (int) result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(reference, shared);
+        }
+    }
+
+    @Test
+    public void testCoreString() throws Exception {
+        assertConcurrentReads("COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA");
+    }
+
+    @Test
+    public void testRangeEncodedVendors() throws Exception {
+        assertConcurrentReads("COv__-wOv__-wC2AAAENAPCgAAAAAAAAAAAAA_wAQA_gEBABAEAAAA");
+    }
+
+    @Test
+    public void testPublisherRestrictions() throws Exception {
+        assertConcurrentReads(ConsentStrings.BITFIELD_CORE);
+    }
+
+    @Test
+    public void testAllSegments() throws Exception {
+        assertConcurrentReads(ConsentStrings.ALL_SEGMENTS);
+    }
+
+    @Test
+    public void testDisclosedVendorsSegment() throws Exception {
+        assertConcurrentReads(
+                "COwBOpCOwBOpCLqAAAENAPCAAAAAAAAAAAAAFfwAQFfgUbABAUaAAA.IFoEUQQgAIQwgIwQABAEAAAAOIAACAIAAAAQAIAgE"
+                        + "AACEAAAAAgAQBAAAAAAAGBAAgAAAAAAAFAAECAAAgAAQARAEQAAAAAJAAIAAgAAAYQEAAAQmAgBC3ZAYzUw");
+    }
+}
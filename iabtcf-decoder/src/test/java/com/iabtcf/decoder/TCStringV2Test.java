@@ -24,6 +24,7 @@ import static com.iabtcf.test.utils.IntIterableMatcher.matchInts;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -31,13 +32,19 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.EnumSet;
 import java.util.List;
 
 import org.junit.Test;
 
+import com.iabtcf.exceptions.InvalidRangeFieldException;
+import com.iabtcf.exceptions.InvalidSegmentException;
+import com.iabtcf.test.utils.ConsentStrings;
+import com.iabtcf.utils.BitReader;
 import com.iabtcf.utils.BitSetIntIterable;
 import com.iabtcf.v2.PublisherRestriction;
 import com.iabtcf.v2.RestrictionType;
+import com.iabtcf.v2.SegmentType;
 
 public class TCStringV2Test {
     private static TCString parse(String consentString) {
@@ -180,6 +187,96 @@ public class TCStringV2Test {
         assertFalse(actual.get(0).getVendorIds().iterator().hasNext());
     }
 
+    /**
+     * The core segment of {@link #testPublisherRestrictions()} up to the number of restrictions.
+     */
+    private static final String RESTRICTIONS_CORE = "0000100011101011100"
+            + "1000000000000001010"
+            + "0000001110101110010"
+            + "0000000000000101000"
+            + "0000110011111000000"
+            + "0000000000000000100"
+            + "0011010000000011110"
+            + "0001000000000000000"
+            + "0000000000000000000"
+            + "0000000000000000000"
+            + "0000000000000000000"
+            + "0000000000000000000"
+            + "0000000000000000000";
+
+    private static String bits(int value, int length) {
+        return String.format("%" + length + "s", Integer.toBinaryString(value)).replace(' ', '0');
+    }
+
+    private static String restriction(int purposeId, RestrictionType restrictionType, int[]... entries) {
+        StringBuilder sb = new StringBuilder()
+                .append(bits(purposeId, 6))
+                .append(bits(restrictionType.ordinal(), 2))
+                .append(bits(entries.length, 12));
+        for (int[] entry : entries) {
+            sb.append(entry.length == 1 ? "0" : "1");
+            for (int vendorId : entry) {
+                sb.append(bits(vendorId, 16));
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testPublisherRestrictionIndex() {
+        String bitString = RESTRICTIONS_CORE
+                + bits(4, 12)
+                + restriction(1, RestrictionType.REQUIRE_CONSENT, new int[] {5}, new int[] {10, 20})
+                + restriction(1, RestrictionType.NOT_ALLOWED, new int[] {7})
+                + restriction(1, RestrictionType.REQUIRE_CONSENT, new int[] {30, 31})
+                + restriction(3, RestrictionType.REQUIRE_LEGITIMATE_INTEREST);
+
+        for (DecoderOption[] options : new DecoderOption[][] {{}, {DecoderOption.LAZY}}) {
+            TCString tcModel = TCString.decode(base64FromBitString(bitString), options);
+            PublisherRestrictions index = tcModel.getPublisherRestrictionIndex();
+            assertFalse(index.isEmpty());
+
+            assertEquals(RestrictionType.REQUIRE_CONSENT, index.getRestriction(1, 5));
+            assertEquals(RestrictionType.REQUIRE_CONSENT, index.getRestriction(1, 15));
+            assertEquals(RestrictionType.REQUIRE_CONSENT, index.getRestriction(1, 31));
+            assertEquals(RestrictionType.NOT_ALLOWED, index.getRestriction(1, 7));
+            assertNull(index.getRestriction(1, 8));
+            assertNull(index.getRestriction(2, 5));
+            assertNull(index.getRestriction(3, 5));
+            assertNull(index.getRestriction(65, 5));
+            assertTrue(index.isRestricted(1, RestrictionType.NOT_ALLOWED, 7));
+            assertFalse(index.isRestricted(1, RestrictionType.REQUIRE_CONSENT, 7));
+
+            // the index built from the list of restrictions answers the same
+            PublisherRestrictions fromList = PublisherRestrictions.from(tcModel.getPublisherRestrictions());
+            for (int purposeId = 0; purposeId < 5; purposeId++) {
+                for (int vendorId = 0; vendorId < 40; vendorId++) {
+                    assertEquals(index.getRestriction(purposeId, vendorId),
+                            fromList.getRestriction(purposeId, vendorId));
+                }
+            }
+        }
+
+        assertTrue(parse(base64FromBitString(RESTRICTIONS_CORE + bits(0, 12)))
+                .getPublisherRestrictionIndex().isEmpty());
+    }
+
+    /**
+     * The vendors of a purpose and restriction type are only decoded when looked up.
+     */
+    @Test(expected = InvalidRangeFieldException.class)
+    public void testPublisherRestrictionIndexDecodesLazily() {
+        String bitString = RESTRICTIONS_CORE
+                + bits(2, 12)
+                + restriction(1, RestrictionType.NOT_ALLOWED, new int[] {7})
+                + restriction(2, RestrictionType.NOT_ALLOWED, new int[] {9, 4});
+
+        PublisherRestrictions index = TCString.decode(base64FromBitString(bitString), DecoderOption.LAZY)
+                .getPublisherRestrictionIndex();
+        assertEquals(RestrictionType.NOT_ALLOWED, index.getRestriction(1, 7));
+        index.getRestriction(2, 5);
+    }
+
     @Test
     public void testPublisherPurposes() {
         String base64CoreString = "COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA";
@@ -277,4 +374,95 @@ public class TCStringV2Test {
 
         assertNotEquals(tcModel1.hashCode(), tcModel2.hashCode());
     }
+
+    @Test
+    public void testFingerprintIgnoresSegmentOrderAndPadding() {
+        String core = ConsentStrings.BITFIELD_CORE;
+        TCString tcModel1 = parse(core + ".IBAgAAAgAIAwgAgAAAAEAAAACA.QAagAQAgAIAwgA.cAAAAAAAITg=");
+        TCString tcModel2 = parse(core + "AAAA.cAAAAAAAITg.QAagAQAgAIAwgAA.IBAgAAAgAIAwgAgAAAAEAAAACA");
+
+        assertEquals(tcModel1, tcModel2);
+        assertEquals(tcModel1.fingerprint(), tcModel2.fingerprint());
+        assertEquals(tcModel1.hashCode(), tcModel2.hashCode());
+        assertEquals(tcModel1, TCString.decode(core + ".IBAgAAAgAIAwgAgAAAAEAAAACA.QAagAQAgAIAwgA.cAAAAAAAITg=",
+                DecoderOption.LAZY));
+
+        TCString tcModel3 = parse(core + ".IBAgAAAgAIAwgAgAAAAEAAAACA.QAagAQAgAIAwgA");
+        assertNotEquals(tcModel1, tcModel3);
+        assertNotEquals(tcModel1.fingerprint(), tcModel3.fingerprint());
+    }
+
+    @Test
+    public void testEagerDecodeMatchesLazy() {
+        String[] consentStrings = {ConsentStrings.ALL_SEGMENTS, ConsentStrings.RANGE_CORE,
+            ConsentStrings.VENDOR_RANGES_DISCLOSED_VENDORS, ConsentStrings.NO_VENDORS_CORE};
+
+        for (String consentString : consentStrings) {
+            // toString lists every field
+            assertEquals(TCString.decode(consentString, DecoderOption.LAZY).toString(), parse(consentString).toString());
+        }
+    }
+
+    @Test
+    public void testVendorMembershipQueries() {
+        String[] consentStrings = {ConsentStrings.ALL_SEGMENTS, ConsentStrings.RANGE_CORE,
+            ConsentStrings.VENDOR_RANGES_DISCLOSED_VENDORS, ConsentStrings.NO_VENDORS_CORE};
+
+        for (String consentString : consentStrings) {
+            TCString expected = parse(consentString);
+            for (TCString tcModel : new TCString[] {expected, TCString.decode(consentString, DecoderOption.LAZY)}) {
+                for (int vendorId = -1; vendorId <= 1000; vendorId++) {
+                    assertEquals(expected.getVendorConsent().contains(vendorId), tcModel.hasVendorConsent(vendorId));
+                    assertEquals(expected.getVendorLegitimateInterest().contains(vendorId),
+                            tcModel.hasVendorLegitimateInterest(vendorId));
+                    assertEquals(expected.getAllowedVendors().contains(vendorId), tcModel.isVendorAllowed(vendorId));
+                    assertEquals(expected.getDisclosedVendors().contains(vendorId),
+                            tcModel.isVendorDisclosed(vendorId));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRangeIndexMergesUnorderedEntries() {
+        String bitString = "000000000100" // 4 entries
+                + "1" + "0000000000001010" + "0000000000010100" // 10-20
+                + "0" + "0000000000000101" // 5
+                + "1" + "0000000000001111" + "0000000000011110" // 15-30
+                + "0" + "0000000000011111"; // 31
+        RangeIndex index = RangeIndex.of(
+                new BitReader(Base64.getUrlDecoder().decode(base64FromBitString(bitString))), 0, 100);
+
+        for (int vendorId = 0; vendorId <= 40; vendorId++) {
+            assertEquals(vendorId == 5 || vendorId >= 10 && vendorId <= 31, index.contains(vendorId));
+        }
+    }
+
+    @Test(expected = InvalidRangeFieldException.class)
+    public void testRangeIndexEndGreaterThanMax() {
+        String bitString = "000000000001" + "1" + "0000000000001010" + "0000000000010100" + "000";
+        RangeIndex.of(new BitReader(Base64.getUrlDecoder().decode(base64FromBitString(bitString))), 0, 15);
+    }
+
+    @Test
+    public void testSegmentTypes() {
+        String core = ConsentStrings.BITFIELD_CORE;
+        assertEquals(EnumSet.of(SegmentType.DEFAULT), parse(core).getSegmentTypes());
+        assertEquals(EnumSet.of(SegmentType.DEFAULT, SegmentType.DISCLOSED_VENDOR, SegmentType.ALLOWED_VENDOR,
+                SegmentType.PUBLISHER_TC),
+                parse(core + ".IBAgAAAgAIAwgAgAAAAEAAAACA.QAagAQAgAIAwgA.cAAAAAAAITg=").getSegmentTypes());
+        assertEquals(EnumSet.of(SegmentType.DEFAULT, SegmentType.ALLOWED_VENDOR),
+                TCString.decode(core + ".QAagAQAgAIAwgA", DecoderOption.LAZY).getSegmentTypes());
+
+        // segment types 0 and 4 to 7 are not valid OOB segment types
+        assertEquals(EnumSet.of(SegmentType.DEFAULT, SegmentType.INVALID),
+                parse(core + "." + base64FromBitString("00000000")).getSegmentTypes());
+        assertEquals(EnumSet.of(SegmentType.DEFAULT, SegmentType.INVALID, SegmentType.ALLOWED_VENDOR),
+                parse(core + "." + base64FromBitString("11100000") + ".QAagAQAgAIAwgA").getSegmentTypes());
+    }
+
+    @Test(expected = InvalidSegmentException.class)
+    public void testDuplicateSegmentType() {
+        TCString.decode(ConsentStrings.DUPLICATE_SEGMENTS, DecoderOption.LAZY);
+    }
 }
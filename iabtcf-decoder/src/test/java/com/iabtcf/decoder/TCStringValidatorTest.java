@@ -0,0 +1,250 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+import com.iabtcf.exceptions.ByteParseException;
+import com.iabtcf.exceptions.InvalidRangeFieldException;
+import com.iabtcf.exceptions.InvalidSegmentException;
+import com.iabtcf.exceptions.UnsupportedVersionException;
+import com.iabtcf.test.utils.ConsentStrings;
+import com.iabtcf.utils.BitReader;
+import com.iabtcf.utils.FieldDefs;
+
+public class TCStringValidatorTest {
+    private static final String[] CONSENT_STRINGS = {
+            ConsentStrings.ALL_SEGMENTS,
+            ConsentStrings.RANGE_CORE,
+            ConsentStrings.VENDOR_RANGES_CORE,
+            ConsentStrings.VENDOR_IDS_CORE,
+            ConsentStrings.NO_VENDORS_CORE,
+            ConsentStrings.V1_RANGE,
+            ConsentStrings.V1_BITFIELD};
+
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+
+    /**
+     * The status of fully decoding the string, the way validation is specified.
+     */
+    private static ValidationStatus decodeStatus(String consentString) {
+        try {
+            TCString.decode(consentString);
+            return ValidationStatus.VALID;
+        } catch (UnsupportedVersionException e) {
+            return ValidationStatus.UNSUPPORTED_VERSION;
+        } catch (ByteParseException e) {
+            return ValidationStatus.TRUNCATED;
+        } catch (InvalidRangeFieldException e) {
+            return ValidationStatus.INVALID_RANGE;
+        } catch (InvalidSegmentException e) {
+            return ValidationStatus.INVALID_SEGMENT;
+        } catch (IllegalArgumentException e) {
+            return ValidationStatus.INVALID_BASE64;
+        }
+    }
+
+    /**
+     * A vendor consent range 5-3 in a range encoded core segment.
+     */
+    private static String invalidRange() {
+        return TCStringV2Test.base64FromBitString(String.format("%-213s", "000010").replace(' ', '0')
+                + "0000000000001010" + "1" + "000000000001" + "1" + "0000000000000101" + "0000000000000011"
+                + "0000000000000000" + "0"
+                + "000000000000" + "00000000");
+    }
+
+    private static void assertAgreesWithDecode(String consentString) {
+        assertEquals(consentString, decodeStatus(consentString), TCString.validate(consentString).getStatus());
+    }
+
+    @Test
+    public void testValid() {
+        for (String consentString : CONSENT_STRINGS) {
+            assertSame(ValidationResult.VALID, TCString.validate(consentString));
+        }
+    }
+
+    @Test
+    public void testTruncated() {
+        for (String consentString : CONSENT_STRINGS) {
+            for (int length = 0; length < consentString.length(); length++) {
+                assertAgreesWithDecode(consentString.substring(0, length));
+            }
+        }
+        assertEquals(ValidationResult.of(ValidationStatus.TRUNCATED, FieldDefs.CORE_VERSION),
+                TCString.validate(""));
+        assertEquals(ValidationResult.of(ValidationStatus.TRUNCATED, FieldDefs.CORE_CMP_ID),
+                TCString.validate("COtybn4PA_zT4K"));
+    }
+
+    @Test
+    public void testTruncatedV1DecodesLeniently() {
+        // the vendor section is cut off, the decoder only fails once the vendors are read
+        assertSame(ValidationResult.VALID, TCString.validate("BOOzQoAOOzQoAAPAFSENCW-AIBA="));
+    }
+
+    /**
+     * Every single character substitution of the strings.
+     */
+    @Test
+    public void testMutated() {
+        for (String consentString : CONSENT_STRINGS) {
+            char[] chars = consentString.toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                char c = chars[i];
+                for (int j = 0; j < ALPHABET.length(); j += 7) {
+                    chars[i] = ALPHABET.charAt(j);
+                    assertAgreesWithDecode(new String(chars));
+                }
+                chars[i] = '.';
+                assertAgreesWithDecode(new String(chars));
+                chars[i] = c;
+            }
+        }
+    }
+
+    @Test
+    public void testFailures() {
+        assertEquals(ValidationResult.of(ValidationStatus.INVALID_BASE64, null),
+                TCString.validate("COtybn4PA_zT4KjACBENAPCIAEBA!ECAAIAAAAAAAAAA"));
+        assertEquals(ValidationResult.of(ValidationStatus.UNSUPPORTED_VERSION, FieldDefs.CORE_VERSION),
+                TCString.validate("DOtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA"));
+        assertEquals(ValidationResult.of(ValidationStatus.INVALID_SEGMENT, FieldDefs.OOB_SEGMENT_TYPE),
+                TCString.validate(ConsentStrings.DUPLICATE_SEGMENTS));
+
+        String invalidRange = invalidRange();
+        assertEquals(ValidationStatus.INVALID_RANGE, decodeStatus(invalidRange));
+        assertEquals(ValidationResult.of(ValidationStatus.INVALID_RANGE, FieldDefs.CORE_VENDOR_BITRANGE_FIELD),
+                TCString.validate(invalidRange));
+    }
+
+    @Test
+    public void testTryDecode() {
+        for (String consentString : CONSENT_STRINGS) {
+            DecodeResult result = TCString.tryDecode(consentString);
+            assertTrue(result.isValid());
+            assertEquals(TCString.decode(consentString), result.getTCString());
+            assertEquals(-1, result.getBitOffset());
+
+            for (int length = 0; length < consentString.length(); length++) {
+                String truncated = consentString.substring(0, length);
+                ValidationResult validation = TCString.validate(truncated);
+                result = TCString.tryDecode(truncated, DecoderOption.LAZY);
+                assertEquals(truncated, validation.getStatus(), result.getStatus());
+                assertEquals(truncated, validation.getField(), result.getField());
+                assertEquals(truncated, validation.isValid(), result.getTCString() != null);
+                assertEquals(truncated, decodeStatus(truncated) == ValidationStatus.VALID, result.isValid());
+            }
+        }
+    }
+
+    @Test
+    public void testTryDecodeTruncatedV1() {
+        String consentString = "BOOzQoAOOzQoAAPAFSENCW-AIBA=";
+        DecodeResult result = TCString.tryDecode(consentString);
+        assertTrue(result.isValid());
+        assertEquals(TCString.decode(consentString).getCmpId(), result.getTCString().getCmpId());
+    }
+
+    @Test
+    public void testTryDecodeBitOffset() {
+        DecodeResult result = TCString.tryDecode("COtybn4PA_zT4K");
+        assertEquals(ValidationStatus.TRUNCATED, result.getStatus());
+        assertEquals(FieldDefs.CORE_CMP_ID, result.getField());
+        assertEquals(78, result.getBitOffset());
+        assertNull(result.getTCString());
+
+        result = TCString.tryDecode("COtybn4PA_zT4KjACBENAPCIAEBA!ECAAIAAAAAAAAAA");
+        assertEquals(ValidationStatus.INVALID_BASE64, result.getStatus());
+        assertNull(result.getField());
+        assertEquals(-1, result.getBitOffset());
+
+        result = TCString.tryDecode("DOtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA");
+        assertEquals(ValidationStatus.UNSUPPORTED_VERSION, result.getStatus());
+        assertEquals(0, result.getBitOffset());
+
+        // the range entry follows the max vendor id, the is range encoding flag and the number of entries
+        result = TCString.tryDecode(invalidRange());
+        assertEquals(ValidationStatus.INVALID_RANGE, result.getStatus());
+        assertEquals(FieldDefs.CORE_VENDOR_BITRANGE_FIELD, result.getField());
+        assertEquals(213 + 16 + 1 + 12, result.getBitOffset());
+    }
+
+    @Test
+    public void testStacklessExceptions() {
+        try {
+            new BitReader(new byte[2]).readBits(8, 16);
+            fail("expected ByteParseException");
+        } catch (ByteParseException e) {
+            assertEquals(0, e.getStackTrace().length);
+            assertEquals("read 2 bytes at index 1 out of bounds for buffer length 2", e.getMessage());
+        }
+
+        try {
+            TCString.decode(invalidRange());
+            fail("expected InvalidRangeFieldException");
+        } catch (InvalidRangeFieldException e) {
+            assertEquals(0, e.getStackTrace().length);
+            assertEquals("start vendor id (5) is greater than endVendorId (3)", e.getMessage());
+        }
+    }
+
+    /**
+     * Once warmed up, validating must not allocate.
+     */
+    @Test
+    public void testDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        long threadId = Thread.currentThread().getId();
+        int iterations = 10_000;
+
+        int valid = validate(iterations);
+        long before = threads.getThreadAllocatedBytes(threadId);
+        valid += validate(iterations);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(2 * iterations, valid);
+        assertTrue("allocated " + allocated + " bytes", allocated < iterations);
+    }
+
+    private static int validate(int iterations) {
+        int valid = 0;
+        for (int i = 0; i < iterations; i++) {
+            if (TCString.validate(CONSENT_STRINGS[i % CONSENT_STRINGS.length]).isValid()) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+}
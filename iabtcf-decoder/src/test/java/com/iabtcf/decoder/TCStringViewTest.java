@@ -0,0 +1,177 @@
+package com.iabtcf.decoder;
+
+/*-
+ * #%L
+ * IAB TCF Java Decoder Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.iabtcf.exceptions.ByteParseException;
+import com.iabtcf.exceptions.InvalidSegmentException;
+import com.iabtcf.exceptions.UnsupportedVersionException;
+import com.iabtcf.test.utils.ConsentStrings;
+
+public class TCStringViewTest {
+    private static final String[] CONSENT_STRINGS = ConsentStrings.V2;
+
+    private static void assertView(TCString expected, TCStringView actual) {
+        assertEquals(expected.getSegmentTypes(), actual.getSegmentTypes());
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getCreated(), actual.getCreated());
+        assertEquals(expected.getLastUpdated(), actual.getLastUpdated());
+        assertEquals(expected.getCreated().toEpochMilli(), actual.getCreatedEpochMilli());
+        assertEquals(expected.getCmpId(), actual.getCmpId());
+        assertEquals(expected.getCmpVersion(), actual.getCmpVersion());
+        assertEquals(expected.getConsentScreen(), actual.getConsentScreen());
+        assertEquals(expected.getConsentLanguage(), actual.getConsentLanguage());
+        assertEquals(expected.getVendorListVersion(), actual.getVendorListVersion());
+        assertEquals(expected.getTcfPolicyVersion(), actual.getTcfPolicyVersion());
+        assertEquals(expected.isServiceSpecific(), actual.isServiceSpecific());
+        assertEquals(expected.getUseNonStandardStacks(), actual.getUseNonStandardStacks());
+        assertEquals(expected.getPurposeOneTreatment(), actual.getPurposeOneTreatment());
+        assertEquals(expected.getPublisherCC(), actual.getPublisherCC());
+        assertEquals(expected.getSpecialFeatureOptIns().toSet(), actual.getSpecialFeatureOptIns().toSet());
+        assertEquals(expected.getPurposesConsent().toSet(), actual.getPurposesConsent().toSet());
+        assertEquals(expected.getPurposesLITransparency().toSet(), actual.getPurposesLITransparency().toSet());
+        assertEquals(expected.getVendorConsent().toSet(), actual.getVendorConsent().toSet());
+        assertEquals(expected.getVendorLegitimateInterest().toSet(), actual.getVendorLegitimateInterest().toSet());
+        assertEquals(expected.getPublisherRestrictions(), actual.getPublisherRestrictions());
+        assertEquals(expected.getDisclosedVendors().toSet(), actual.getDisclosedVendors().toSet());
+        assertEquals(expected.getAllowedVendors().toSet(), actual.getAllowedVendors().toSet());
+        assertEquals(expected.getPubPurposesConsent().toSet(), actual.getPubPurposesConsent().toSet());
+        assertEquals(expected.getPubPurposesLITransparency().toSet(), actual.getPubPurposesLITransparency().toSet());
+        assertEquals(expected.getCustomPurposesConsent().toSet(), actual.getCustomPurposesConsent().toSet());
+        assertEquals(expected.getCustomPurposesLITransparency().toSet(),
+                actual.getCustomPurposesLITransparency().toSet());
+
+        for (int vendorId = 0; vendorId < 2000; vendorId++) {
+            assertEquals(expected.hasVendorConsent(vendorId), actual.hasVendorConsent(vendorId));
+            assertEquals(expected.hasVendorLegitimateInterest(vendorId), actual.hasVendorLegitimateInterest(vendorId));
+            assertEquals(expected.isVendorAllowed(vendorId), actual.isVendorAllowed(vendorId));
+            assertEquals(expected.isVendorDisclosed(vendorId), actual.isVendorDisclosed(vendorId));
+            for (int purposeId = 1; purposeId <= 10; purposeId++) {
+                assertEquals(expected.getPublisherRestrictionIndex().getRestriction(purposeId, vendorId),
+                        actual.getPublisherRestrictionIndex().getRestriction(purposeId, vendorId));
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesDecode() {
+        TCStringView view = new TCStringView();
+
+        // the same view in turn, so stale state from a previous string would show
+        for (int i = 0; i < 2; i++) {
+            for (String consentString : CONSENT_STRINGS) {
+                assertSame(view, view.reset(consentString));
+                assertView(TCString.decode(consentString), view);
+            }
+        }
+    }
+
+    @Test
+    public void testResetFromBytes() {
+        TCStringView view = new TCStringView();
+        for (String consentString : CONSENT_STRINGS) {
+            byte[] bytes = ("  " + consentString + "  ").getBytes(StandardCharsets.US_ASCII);
+            view.reset(bytes, 2, bytes.length - 4);
+            assertView(TCString.decode(consentString), view);
+        }
+    }
+
+    @Test
+    public void testFailedResetLeavesViewEmpty() {
+        TCStringView view = new TCStringView().reset(CONSENT_STRINGS[0]);
+
+        try {
+            view.reset(ConsentStrings.DUPLICATE_SEGMENTS);
+            fail("duplicate segment");
+        } catch (InvalidSegmentException e) {
+            // expected
+        }
+        assertTrue(view.getSegmentTypes().isEmpty());
+        assertTrue(view.getAllowedVendors().isEmpty());
+        try {
+            view.getCmpId();
+            fail("empty view");
+        } catch (ByteParseException e) {
+            // expected
+        }
+
+        try {
+            view.reset("COrEAV4OrXx94ACABBENAHCIAD-AAAAA!AAAAAAAAAA");
+            fail("invalid base64");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            view.reset("BOEFEAyOEFEAyAHABDENAI4AAAB9vABAASA");
+            fail("version 1");
+        } catch (UnsupportedVersionException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Once warmed up, resetting the view and querying it must not allocate.
+     */
+    @Test
+    public void testSteadyStateDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        TCStringView view = new TCStringView();
+        long threadId = Thread.currentThread().getId();
+        int iterations = 10_000;
+
+        long checksum = query(view, iterations);
+        long before = threads.getThreadAllocatedBytes(threadId);
+        checksum += query(view, iterations);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(checksum != 0);
+        // allows for the measurement itself, far less than a single byte per decode
+        assertTrue("allocated " + allocated + " bytes", allocated < iterations);
+    }
+
+    private static long query(TCStringView view, int iterations) {
+        long checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            view.reset(CONSENT_STRINGS[i % CONSENT_STRINGS.length]);
+            checksum += view.getCmpId() + view.getVendorListVersion() + view.getCreatedEpochMilli();
+            checksum += view.hasVendorConsent(755) ? 1 : 0;
+            checksum += view.hasVendorLegitimateInterest(128) ? 1 : 0;
+            checksum += view.getPurposesConsent().contains(1) ? 1 : 0;
+            checksum += view.isVendorAllowed(15) ? 1 : 0;
+            checksum += view.getConsentLanguage().length() + view.getSegmentTypes().size();
+        }
+        return checksum;
+    }
+}
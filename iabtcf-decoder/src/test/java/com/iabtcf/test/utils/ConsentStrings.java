@@ -0,0 +1,102 @@
+package com.iabtcf.test.utils;
+
+/*-
+ * #%L
+ * IAB TCF Core Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Consent strings shared by the decoder tests.
+ */
+public final class ConsentStrings {
+
+    /**
+     * Core segment with bit field encoded vendor sections.
+     */
+    public static final String BITFIELD_CORE =
+            "COrEAV4OrXx94ACABBENAHCIAD-AAAAAAACAAxAAAAgAIAwgAgAAAAEAgQAAAAAEAYQAQAAAACAAAABAAA";
+
+    public static final String DISCLOSED_VENDORS_SEGMENT = "IBAgAAAgAIAwgAgAAAAEAAAACA";
+    public static final String ALLOWED_VENDORS_SEGMENT = "QAagAQAgAIAwgA";
+    public static final String PUBLISHER_TC_SEGMENT = "cAAAAAAAITg=";
+
+    /**
+     * {@link #BITFIELD_CORE} followed by the disclosed vendors, allowed vendors and publisher TC
+     * segments.
+     */
+    public static final String ALL_SEGMENTS = BITFIELD_CORE + "." + DISCLOSED_VENDORS_SEGMENT + "."
+            + ALLOWED_VENDORS_SEGMENT + "." + PUBLISHER_TC_SEGMENT;
+
+    /**
+     * {@link #BITFIELD_CORE} followed by two allowed vendors segments, which fails to decode.
+     */
+    public static final String DUPLICATE_SEGMENTS =
+            BITFIELD_CORE + "." + ALLOWED_VENDORS_SEGMENT + "." + ALLOWED_VENDORS_SEGMENT;
+
+    /**
+     * Core segment with range encoded vendor sections of a single vendor each.
+     */
+    public static final String RANGE_CORE = "COv__-wOv__-wC2AAAENAPCgAAAAAAAAAAAAA_wAQA_gEBABAEAAAA";
+
+    /**
+     * Core segment with range encoded vendor sections holding ranges.
+     */
+    public static final String VENDOR_RANGES_CORE = "COwBOpCOwBOpCLqAAAENAPCAAAAAAAAAAAAAFfwAYFfAV-BVkAGBVYFWAAA";
+
+    /**
+     * {@link #VENDOR_RANGES_CORE} followed by a large disclosed vendors segment.
+     */
+    public static final String VENDOR_RANGES_DISCLOSED_VENDORS = VENDOR_RANGES_CORE
+            + ".IFoEUQQgAIQwgIwQABAEAAAAOIAACAIAAAAQAIAgEAACEAAAAAgAQBAAAAAAAGBAAgAAAAAAAFAAECAAAgAAQARAEQ"
+            + "AAAAAJAAIAAgAAAYQEAAAQmAgBC3ZAYzUw";
+
+    /**
+     * Core segment with range encoded vendor sections of single vendor ids.
+     */
+    public static final String VENDOR_IDS_CORE = "COwBOpCOwBOpCLqAAAENAPCAAAAAAAAAAAAAFfwAQFfgUbABAUaAAA";
+
+    /**
+     * Core segment without any vendor.
+     */
+    public static final String NO_VENDORS_CORE = "COtybn4PA_zT4KjACBENAPCIAEBAAECAAIAAAAAAAAAA";
+
+    /**
+     * Version 1 string with a range encoded vendor section.
+     */
+    public static final String V1_RANGE = "BOEFEAyOEFEAyAHABDENAI4AAAB9vABAASA";
+
+    /**
+     * Version 1 string with a bit field encoded vendor section.
+     */
+    public static final String V1_BITFIELD =
+            "BOOlLqOOOlLqTABABAENAk-AAAAXx7_______9______9uz_Gv_r_f__3nW8_39P3g_7_O3_7m_-zzV48_lrQV1yPAUCgA";
+
+    /**
+     * Well formed strings of both versions, including trailing empty segments.
+     */
+    public static final String[] MIXED = {ALL_SEGMENTS, RANGE_CORE, NO_VENDORS_CORE + "..", V1_RANGE};
+
+    /**
+     * Version 2 strings covering all vendor section encodings and OOB segments.
+     */
+    public static final String[] V2 =
+            {ALL_SEGMENTS, RANGE_CORE, VENDOR_RANGES_DISCLOSED_VENDORS, VENDOR_IDS_CORE, NO_VENDORS_CORE};
+
+    private ConsentStrings() {
+    }
+}
@@ -0,0 +1,189 @@
+package com.iabtcf.utils;
+
+/*-
+ * #%L
+ * IAB TCF Core Library
+ * %%
+ * Copyright (C) 2020 IAB Technology Laboratory, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class Base64UrlTest {
+    private final Random r = new Random();
+
+    private static byte[] decode(String s) {
+        byte[] dst = new byte[Base64Url.maxDecodedLength(s.length())];
+        int n = Base64Url.decode(s, 0, s.length(), dst, 0);
+        return Arrays.copyOf(dst, n);
+    }
+
+    private static byte[] decodeAscii(String s) {
+        byte[] src = s.getBytes(StandardCharsets.US_ASCII);
+        byte[] dst = new byte[Base64Url.maxDecodedLength(src.length)];
+        int n = Base64Url.decode(src, 0, src.length, dst, 0);
+        return Arrays.copyOf(dst, n);
+    }
+
+    private static void assertRejected(String s) {
+        try {
+            Base64.getUrlDecoder().decode(s);
+            fail("JDK accepts " + s);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            decode(s);
+            fail("accepted " + s);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            decodeAscii(s);
+            fail("accepted " + s);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(-1, Base64Url.tryDecode(s, 0, s.length(), new byte[s.length()], 0));
+    }
+
+    @Test
+    public void testMatchesJdkDecoder() {
+        for (int length = 0; length < 64; length++) {
+            byte[] bytes = new byte[length];
+            r.nextBytes(bytes);
+
+            String padded = Base64.getUrlEncoder().encodeToString(bytes);
+            String unpadded = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+            assertArrayEquals(padded, bytes, decode(padded));
+            assertArrayEquals(padded, bytes, decodeAscii(padded));
+            assertArrayEquals(unpadded, bytes, decode(unpadded));
+            assertArrayEquals(unpadded, bytes, decodeAscii(unpadded));
+            assertEquals(length, Base64Url.tryDecode(padded, 0, padded.length(), new byte[length], 0));
+        }
+    }
+
+    @Test
+    public void testDecodeRange() {
+        byte[] dst = new byte[8];
+        assertEquals(3, Base64Url.decode("..AQID..", 2, 6, dst, 4));
+        assertArrayEquals(new byte[] {0, 0, 0, 0, 1, 2, 3, 0}, dst);
+
+        assertEquals(1, Base64Url.decode("CA==.".getBytes(StandardCharsets.US_ASCII), 0, 4, dst, 0));
+        assertEquals(8, dst[0]);
+    }
+
+    @Test
+    public void testRejectsInvalidInput() {
+        assertRejected("C");
+        assertRejected("CA=");
+        assertRejected("CAA==");
+        assertRejected("CAAA=");
+        assertRejected("CA==A");
+        assertRejected("====");
+        assertRejected("CA+A");
+        assertRejected("CA/A");
+        assertRejected("CA.A");
+        assertRejected("CA\u00e9A");
+    }
+
+    @Test
+    public void testReportsIndexOfIllegalCharacter() {
+        String valid = "COtybn4PA_zT4KjACBENAPCIAEBAAECA";
+        for (int i = 0; i < valid.length(); i++) {
+            String s = valid.substring(0, i) + "!" + valid.substring(i + 1);
+            byte[] ascii = s.getBytes(StandardCharsets.US_ASCII);
+            String expected = "Illegal base64 character 21 at index " + (i + 1);
+
+            assertIllegal(expected, () -> Base64Url.decode("." + s, 1, s.length() + 1, new byte[24], 0));
+            assertIllegal(expected, () -> Base64Url.decodedLength("." + s, 1, s.length() + 1));
+
+            byte[] framed = new byte[ascii.length + 1];
+            System.arraycopy(ascii, 0, framed, 1, ascii.length);
+            assertIllegal(expected, () -> Base64Url.decode(framed, 1, framed.length, new byte[24], 0));
+            assertIllegal(expected, () -> Base64Url.decodedLength(framed, 1, framed.length));
+        }
+    }
+
+    private static byte[] decodePercentEncoded(String s) {
+        byte[] dst = new byte[Base64Url.maxDecodedLength(s.length())];
+        int n = Base64Url.decodePercentEncoded(s, 0, s.length(), dst, 0);
+        return Arrays.copyOf(dst, n);
+    }
+
+    @Test
+    public void testDecodePercentEncoded() {
+        for (int length = 0; length < 64; length++) {
+            byte[] bytes = new byte[length];
+            r.nextBytes(bytes);
+
+            String padded = Base64.getUrlEncoder().encodeToString(bytes);
+            StringBuilder escaped = new StringBuilder();
+            for (char c : padded.toCharArray()) {
+                if (r.nextBoolean()) {
+                    escaped.append(String.format(r.nextBoolean() ? "%%%02X" : "%%%02x", (int) c));
+                } else {
+                    escaped.append(c);
+                }
+            }
+
+            assertArrayEquals(padded, bytes, decodePercentEncoded(padded));
+            assertArrayEquals(escaped.toString(), bytes, decodePercentEncoded(escaped.toString()));
+            // stray padding is skipped
+            assertArrayEquals(padded, bytes, decodePercentEncoded(padded + "=%3D"));
+        }
+    }
+
+    @Test
+    public void testRejectsInvalidPercentEncodedInput() {
+        assertIllegal("Last unit does not have enough valid bits", () -> decodePercentEncoded("C"));
+        assertIllegal("Illegal base64 character 41 at index 3", () -> decodePercentEncoded("CA=A"));
+        assertIllegal("Illegal base64 character 2e at index 2", () -> decodePercentEncoded("CA%2EA"));
+        assertIllegal("Illegal base64 character 2b at index 2", () -> decodePercentEncoded("CA+A"));
+        assertIllegal("Illegal percent escape at index 2", () -> decodePercentEncoded("CA%4"));
+        assertIllegal("Illegal percent escape at index 2", () -> decodePercentEncoded("CA%G1"));
+    }
+
+    private static void assertIllegal(String message, Runnable decode) {
+        try {
+            decode.run();
+            fail("accepted");
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testSextet() {
+        assertEquals(0, Base64Url.sextet('A'));
+        assertEquals(26, Base64Url.sextet('a'));
+        assertEquals(52, Base64Url.sextet('0'));
+        assertEquals(62, Base64Url.sextet('-'));
+        assertEquals(63, Base64Url.sextet('_'));
+        assertEquals(-1, Base64Url.sextet('='));
+        assertEquals(-1, Base64Url.sextet(0x100 + 'A'));
+    }
+}
@@ -45,6 +45,13 @@ public class BitSetIntIterableTest {
         assertEquals(0, e.toStream().count());
     }
 
+    @Test
+    public void testFromWords() {
+        BitSetIntIterable bs = BitSetIntIterable.from(new long[] {0b1010L, 0L, 1L << 63, 0L});
+        assertEquals(BitSetIntIterable.from(1, 3, 191), bs);
+        assertEquals(BitSetIntIterable.EMPTY, BitSetIntIterable.from(new long[] {0L}));
+    }
+
     @Test
     public void testLengthZero() {
         BitSet bs = new BitSet();